@@ -24,22 +24,32 @@ public class ClientInventoryCache {
     private final Map<ItemStackKey, CachedEntry> cache;
 
     /**
-     * A cached entry containing the reference ItemStack and its count.
+     * A cached entry containing the key of an item variant and its count.
+     * The reference stack is the key's shared stack, so entries do not hold copies.
      */
     public static class CachedEntry {
-        private final ItemStack referenceStack;
+        private final ItemStackKey key;
         private long count;
 
         /**
          * Creates a new cached entry.
          *
-         * @param referenceStack The reference ItemStack (will be copied)
+         * @param referenceStack The reference ItemStack (not retained)
          * @param count          The count of items
          */
         public CachedEntry(ItemStack referenceStack, long count) {
-            // Store a copy with count of 1 as the reference
-            this.referenceStack = referenceStack.copy();
-            this.referenceStack.setCount(1);
+            this.key = ItemStackKey.of(referenceStack);
+            this.count = count;
+        }
+
+        /**
+         * Creates a new cached entry for an already resolved key.
+         *
+         * @param key   The canonical key of the variant
+         * @param count The count of items
+         */
+        CachedEntry(ItemStackKey key, long count) {
+            this.key = key;
             this.count = count;
         }
 
@@ -49,7 +59,17 @@ public class ClientInventoryCache {
          * @return A copy of the reference stack with count 1
          */
         public ItemStack getReferenceStack() {
-            return referenceStack.copy();
+            return key.getSharedStack().copy();
+        }
+
+        /**
+         * Gets the shared reference ItemStack without copying it.
+         * Used when rendering the grid every frame; the returned stack must not be modified.
+         *
+         * @return The shared read-only reference stack with count 1
+         */
+        public ItemStack viewReferenceStack() {
+            return key.getSharedStack();
         }
 
         /**
@@ -73,7 +93,7 @@ public class ClientInventoryCache {
         @Override
         public String toString() {
             return "CachedEntry{" +
-                    "item=" + BuiltInRegistries.ITEM.getKey(referenceStack.getItem()) +
+                    "item=" + BuiltInRegistries.ITEM.getKey(key.getItem()) +
                     ", count=" + count +
                     '}';
         }
@@ -154,8 +174,8 @@ public class ClientInventoryCache {
             if (entry.stack() == null || entry.stack().isEmpty()) {
                 continue;
             }
-            ItemStackKey key = new ItemStackKey(entry.stack());
-            cache.put(key, new CachedEntry(entry.stack(), entry.count()));
+            ItemStackKey key = ItemStackKey.of(entry.stack());
+            cache.put(key, new CachedEntry(key, entry.count()));
         }
 
         LOGGER.debug("Full sync completed: {} unique items", cache.size());
@@ -172,7 +192,7 @@ public class ClientInventoryCache {
                 continue;
             }
 
-            ItemStackKey key = new ItemStackKey(entry.stack());
+            ItemStackKey key = ItemStackKey.of(entry.stack());
 
             if (entry.count() <= 0) {
                 // Remove entries with count 0 or less
@@ -185,7 +205,7 @@ public class ClientInventoryCache {
                     existing.setCount(entry.count());
                     LOGGER.debug("Updated item in cache: {} -> {}", key, entry.count());
                 } else {
-                    cache.put(key, new CachedEntry(entry.stack(), entry.count()));
+                    cache.put(key, new CachedEntry(key, entry.count()));
                     LOGGER.debug("Added item to cache: {} = {}", key, entry.count());
                 }
             }
@@ -208,7 +228,12 @@ public class ClientInventoryCache {
             return 0;
         }
 
-        ItemStackKey key = new ItemStackKey(stack);
+        // Cached keys are always pooled, so a missing key means the item is not cached
+        ItemStackKey key = ItemStackKey.find(stack);
+        if (key == null) {
+            return 0;
+        }
+
         CachedEntry entry = cache.get(key);
         return entry != null ? entry.getCount() : 0;
     }
@@ -261,8 +286,8 @@ public class ClientInventoryCache {
         List<CachedEntry> entries = new ArrayList<>(cache.values());
 
         entries.sort((a, b) -> {
-            String nameA = BuiltInRegistries.ITEM.getKey(a.referenceStack.getItem()).toString();
-            String nameB = BuiltInRegistries.ITEM.getKey(b.referenceStack.getItem()).toString();
+            String nameA = BuiltInRegistries.ITEM.getKey(a.key.getItem()).toString();
+            String nameB = BuiltInRegistries.ITEM.getKey(b.key.getItem()).toString();
             return nameA.compareTo(nameB);
         });
 
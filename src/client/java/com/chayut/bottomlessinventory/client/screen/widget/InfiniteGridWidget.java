@@ -115,8 +115,8 @@ public class InfiniteGridWidget extends AbstractWidget {
             graphics.fill(cellX, cellY, cellX + CELL_SIZE, cellY + CELL_SIZE, HOVER_HIGHLIGHT_COLOR);
         }
 
-        // Render item icon centered in cell
-        ItemStack stack = entry.getReferenceStack();
+        // Render item icon centered in cell (shared stack, no per-frame copy)
+        ItemStack stack = entry.viewReferenceStack();
         int itemX = cellX + CELL_PADDING;
         int itemY = cellY + CELL_PADDING;
         graphics.renderItem(stack, itemX, itemY);
@@ -172,7 +172,7 @@ public class InfiniteGridWidget extends AbstractWidget {
      * @param shiftDown   Whether shift is held
      */
     private void handleCellClick(CachedEntry entry, int button, boolean shiftDown) {
-        ItemStack stack = entry.getReferenceStack();
+        ItemStack stack = entry.viewReferenceStack();
         long count = entry.getCount();
 
         if (shiftDown) {
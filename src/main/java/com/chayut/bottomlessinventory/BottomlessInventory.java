@@ -1,11 +1,20 @@
 package com.chayut.bottomlessinventory;
 
+import com.chayut.bottomlessinventory.command.MemoryReportCommand;
+import com.chayut.bottomlessinventory.config.BottomlessConfig;
+import com.chayut.bottomlessinventory.data.InventorySessionManager;
 import com.chayut.bottomlessinventory.data.ModAttachments;
+import com.chayut.bottomlessinventory.inventory.ComponentNormalizer;
+import com.chayut.bottomlessinventory.inventory.InventoryIndex;
+import com.chayut.bottomlessinventory.inventory.ItemStackKey;
 import com.chayut.bottomlessinventory.network.BottomlessNetworking;
 import com.chayut.bottomlessinventory.network.InventorySyncHandler;
 import com.chayut.bottomlessinventory.network.OpenInventoryHandler;
 import com.chayut.bottomlessinventory.screen.BottomlessScreenHandler;
 import net.fabricmc.api.ModInitializer;
+import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
+import net.fabricmc.fabric.api.event.lifecycle.v1.CommonLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import net.minecraft.core.Registry;
 import net.minecraft.core.registries.BuiltInRegistries;
 import net.minecraft.resources.ResourceLocation;
@@ -35,6 +44,21 @@ public class BottomlessInventory implements ModInitializer {
 
 		LOGGER.info("Initializing Bottomless Inventory mod");
 
+		// Load config before anything reads it
+		BottomlessConfig.load();
+
+		// Component normalization is a storage rule of the logical server, applied before any
+		// inventory is loaded. A client connected to a remote server keeps no rules of its own:
+		// the stacks it is sent are already normalized, so its keys match the server's.
+		ServerLifecycleEvents.SERVER_STARTING.register(server -> {
+			BottomlessConfig.Normalization normalization = BottomlessConfig.get().normalization;
+			ItemStackKey.setNormalizer(ComponentNormalizer.fromIds(
+					normalization.stripComponents,
+					normalization.stripCustomDataKeys
+			));
+		});
+		ServerLifecycleEvents.SERVER_STOPPED.register(server -> ItemStackKey.setNormalizer(ComponentNormalizer.NONE));
+
 		// Register screen handler type
 		Registry.register(
 			BuiltInRegistries.MENU,
@@ -45,6 +69,16 @@ public class BottomlessInventory implements ModInitializer {
 		// Register attachments
 		ModAttachments.register();
 
+		// Register live inventory sessions (must be after attachments)
+		InventorySessionManager.register();
+
+		// Rebuild inventory tag indexes after datapack/tag reloads
+		CommonLifecycleEvents.TAGS_LOADED.register((registries, client) -> InventoryIndex.invalidateTags());
+
+		// Register admin commands
+		CommandRegistrationCallback.EVENT.register((dispatcher, registryAccess, environment) ->
+				MemoryReportCommand.register(dispatcher));
+
 		// Register networking
 		BottomlessNetworking.register();
 
@@ -0,0 +1,139 @@
+package com.chayut.bottomlessinventory.command;
+
+import com.chayut.bottomlessinventory.data.InventorySession;
+import com.chayut.bottomlessinventory.data.InventorySessionManager;
+import com.chayut.bottomlessinventory.inventory.InfiniteInventory;
+import com.chayut.bottomlessinventory.inventory.MemoryEstimate;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.level.ServerPlayer;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Operator command that reports the estimated heap cost of every open inventory session:
+ *
+ *   /bottomless memory [limit]
+ *
+ * Lists the largest consumers first with a breakdown of where the memory goes, so storage
+ * limits can be set from evidence. Estimates are O(1) per player (see InfiniteInventory.estimateMemory).
+ * Variants spilled to cold segments (see ColdStorage) cost no heap, but are reported next to it,
+ * since they count against the quotas and return to memory when paged in.
+ */
+public class MemoryReportCommand {
+    private static final int DEFAULT_LIMIT = 10;
+
+    /**
+     * One player's line in the report.
+     *
+     * @param playerId The player's UUID
+     * @param uniqueItems The number of stored variants
+     * @param estimate The player's memory estimate
+     * @param coldVariants The number of variants in the player's cold segments
+     * @param coldBytes The estimated heap the cold variants would cost if paged in
+     */
+    record Consumer(UUID playerId, int uniqueItems, MemoryEstimate estimate, int coldVariants, long coldBytes) {
+    }
+
+    /**
+     * Registers the command. Should be called from a CommandRegistrationCallback.
+     *
+     * @param dispatcher The server command dispatcher
+     */
+    public static void register(CommandDispatcher<CommandSourceStack> dispatcher) {
+        dispatcher.register(Commands.literal("bottomless")
+                .requires(source -> source.hasPermission(2))
+                .then(Commands.literal("memory")
+                        .executes(context -> report(context.getSource(), DEFAULT_LIMIT))
+                        .then(Commands.argument("limit", IntegerArgumentType.integer(1, 100))
+                                .executes(context -> report(context.getSource(),
+                                        IntegerArgumentType.getInteger(context, "limit"))))));
+    }
+
+    private static int report(CommandSourceStack source, int limit) {
+        Map<UUID, InventorySession> sessions = InventorySessionManager.getSessions();
+        List<Consumer> consumers = rank(sessions, limit);
+
+        long total = 0;
+        long cold = 0;
+        for (InventorySession session : sessions.values()) {
+            total += session.getInventory().estimateMemory().totalBytes();
+            cold += session.getColdEstimatedBytes();
+        }
+        long sessionTotal = total;
+        long coldTotal = cold;
+        source.sendSuccess(() -> Component.literal(String.format(Locale.ROOT,
+                "Bottomless inventory memory: %s across %d open sessions (%s more in cold storage)",
+                formatBytes(sessionTotal), sessions.size(), formatBytes(coldTotal))), false);
+
+        for (int i = 0; i < consumers.size(); i++) {
+            Consumer consumer = consumers.get(i);
+            String line = formatLine(i + 1, nameOf(source, consumer.playerId()), consumer);
+            source.sendSuccess(() -> Component.literal(line), false);
+        }
+        return consumers.size();
+    }
+
+    /**
+     * Orders sessions by estimated memory, largest first.
+     *
+     * @param sessions The open sessions
+     * @param limit The maximum number of consumers to return
+     * @return The largest consumers
+     */
+    static List<Consumer> rank(Map<UUID, InventorySession> sessions, int limit) {
+        List<Consumer> consumers = new ArrayList<>(sessions.size());
+        for (Map.Entry<UUID, InventorySession> entry : sessions.entrySet()) {
+            InventorySession session = entry.getValue();
+            InfiniteInventory inventory = session.getInventory();
+            consumers.add(new Consumer(entry.getKey(), inventory.getUniqueItemCount(), inventory.estimateMemory(),
+                    session.getColdVariantCount(), session.getColdEstimatedBytes()));
+        }
+        consumers.sort(Comparator.comparingLong((Consumer consumer) -> consumer.estimate().totalBytes()).reversed());
+        return consumers.subList(0, Math.min(limit, consumers.size()));
+    }
+
+    static String formatLine(int rank, String name, Consumer consumer) {
+        MemoryEstimate estimate = consumer.estimate();
+        String line = String.format(Locale.ROOT,
+                "%d. %s: %s (%d variants; storage %s, keys %s, stacks %s, index %s)",
+                rank, name, formatBytes(estimate.totalBytes()), consumer.uniqueItems(),
+                formatBytes(estimate.storageBytes()), formatBytes(estimate.keyBytes()),
+                formatBytes(estimate.referenceStackBytes()), formatBytes(estimate.indexBytes()));
+        if (consumer.coldVariants() > 0) {
+            line += String.format(Locale.ROOT, " + %d cold variants (%s if paged in)",
+                    consumer.coldVariants(), formatBytes(consumer.coldBytes()));
+        }
+        return line;
+    }
+
+    /**
+     * Formats a byte count with a binary unit, e.g. "1.5 MiB".
+     */
+    static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        String[] units = {"KiB", "MiB", "GiB", "TiB"};
+        double value = bytes;
+        int unit = -1;
+        while (value >= 1024 && unit < units.length - 1) {
+            value /= 1024;
+            unit++;
+        }
+        return String.format(Locale.ROOT, "%.1f %s", value, units[unit]);
+    }
+
+    private static String nameOf(CommandSourceStack source, UUID playerId) {
+        ServerPlayer player = source.getServer().getPlayerList().getPlayer(playerId);
+        return player != null ? player.getName().getString() : playerId.toString();
+    }
+}
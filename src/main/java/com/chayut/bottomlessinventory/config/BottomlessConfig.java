@@ -0,0 +1,189 @@
+package com.chayut.bottomlessinventory.config;
+
+import com.chayut.bottomlessinventory.BottomlessInventory;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import net.fabricmc.loader.api.FabricLoader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Server-side settings, read from config/bottomless-inventory.json.
+ * A file with the default values is written on first start, so every option is discoverable.
+ * Missing fields keep their defaults, and an unreadable file is logged and ignored.
+ */
+public class BottomlessConfig {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final String FILE_NAME = BottomlessInventory.MOD_ID + ".json";
+
+    private static BottomlessConfig instance = new BottomlessConfig();
+
+    /**
+     * How item components are normalized before stacks are stored.
+     */
+    public Normalization normalization = new Normalization();
+
+    /**
+     * Per-player storage caps.
+     */
+    public Quotas quotas = new Quotas();
+
+    /**
+     * When rarely used variants are moved out of memory.
+     */
+    public ColdStorage coldStorage = new ColdStorage();
+
+    /**
+     * What happens to items a player picks up.
+     */
+    public Pickup pickup = new Pickup();
+
+    /**
+     * Component normalization rules (see ComponentNormalizer).
+     */
+    public static class Normalization {
+        /**
+         * Component type ids removed from every stored stack, e.g. "minecraft:repair_cost".
+         */
+        public List<String> stripComponents = new ArrayList<>();
+
+        /**
+         * Keys removed from the minecraft:custom_data component. Custom data left empty is dropped.
+         */
+        public List<String> stripCustomDataKeys = new ArrayList<>();
+    }
+
+    /**
+     * Per-player storage caps (see StorageQuota). 0 means unlimited.
+     */
+    public static class Quotas {
+        /**
+         * Maximum number of different item variants per player.
+         */
+        public int maxUniqueItems = 0;
+
+        /**
+         * Maximum total number of items per player.
+         */
+        public long maxTotalItems = 0;
+
+        /**
+         * Maximum estimated heap size of one player's storage, in bytes.
+         */
+        public long maxEstimatedBytes = 0;
+    }
+
+    /**
+     * Cold storage of rarely used component variants (see data.ColdStorage).
+     * Variants are moved to per-player files on disk when the player is saved, and an item's
+     * variants are paged back in when the player takes or looks up one of them.
+     */
+    public static class ColdStorage {
+        /**
+         * Variants unchanged for this many game ticks are moved to disk. 0 disables eviction by age.
+         * The default is one week of server uptime.
+         */
+        public long evictAfterTicks = 7L * 24 * 60 * 60 * 20;
+
+        /**
+         * Maximum number of component variants kept in memory per player; the least recently
+         * changed ones beyond it are moved to disk. 0 means unlimited.
+         */
+        public int maxHotVariants = 2048;
+    }
+
+    /**
+     * Item pickups (see mixin.ItemEntityMixin).
+     */
+    public static class Pickup {
+        /**
+         * Items a player walks over that do not fit their own inventory go into the bottomless
+         * inventory instead of staying on the ground. They count against the quotas. Off by
+         * default, since it changes how survival pickups behave.
+         */
+        public boolean overflowIntoBottomless = false;
+    }
+
+    /**
+     * Gets the loaded config.
+     *
+     * @return The current config (defaults until {@link #load()} runs)
+     */
+    public static BottomlessConfig get() {
+        return instance;
+    }
+
+    /**
+     * Loads the config from the Fabric config directory, writing the defaults if the file does not exist.
+     *
+     * @return The loaded config
+     */
+    public static BottomlessConfig load() {
+        Path path = FabricLoader.getInstance().getConfigDir().resolve(FILE_NAME);
+        instance = load(path);
+        return instance;
+    }
+
+    /**
+     * Loads the config from a file, writing the defaults if it does not exist.
+     *
+     * @param path The config file
+     * @return The loaded config, or the defaults if the file could not be read
+     */
+    static BottomlessConfig load(Path path) {
+        BottomlessConfig config = new BottomlessConfig();
+        if (Files.exists(path)) {
+            try (Reader reader = Files.newBufferedReader(path)) {
+                BottomlessConfig read = GSON.fromJson(reader, BottomlessConfig.class);
+                if (read != null) {
+                    config = read;
+                }
+            } catch (IOException | JsonParseException e) {
+                BottomlessInventory.LOGGER.error("Failed to read config {}, using defaults", path, e);
+                return config;
+            }
+        }
+
+        config.fillDefaults();
+        try {
+            Files.createDirectories(path.getParent());
+            try (Writer writer = Files.newBufferedWriter(path)) {
+                GSON.toJson(config, writer);
+            }
+        } catch (IOException e) {
+            BottomlessInventory.LOGGER.warn("Failed to write config {}", path, e);
+        }
+        return config;
+    }
+
+    /**
+     * Replaces sections that were missing or null in the file with their defaults.
+     */
+    private void fillDefaults() {
+        if (normalization == null) {
+            normalization = new Normalization();
+        }
+        if (normalization.stripComponents == null) {
+            normalization.stripComponents = new ArrayList<>();
+        }
+        if (normalization.stripCustomDataKeys == null) {
+            normalization.stripCustomDataKeys = new ArrayList<>();
+        }
+        if (quotas == null) {
+            quotas = new Quotas();
+        }
+        if (coldStorage == null) {
+            coldStorage = new ColdStorage();
+        }
+        if (pickup == null) {
+            pickup = new Pickup();
+        }
+    }
+}
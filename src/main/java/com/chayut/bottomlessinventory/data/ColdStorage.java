@@ -0,0 +1,267 @@
+package com.chayut.bottomlessinventory.data;
+
+import com.chayut.bottomlessinventory.BottomlessInventory;
+import com.chayut.bottomlessinventory.inventory.InfiniteInventory;
+import com.chayut.bottomlessinventory.inventory.InfiniteInventoryEntry;
+import com.chayut.bottomlessinventory.inventory.InfiniteInventorySerializer;
+import net.minecraft.core.HolderLookup;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtAccounter;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.level.storage.LevelResource;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Cold tier of the infinite inventory: per-player segment files holding the component
+ * variants a player has not touched in a while, so they cost neither heap nor space in
+ * every save of the player attachment.
+ *
+ * Segments are compressed NBT in the regular inventory format, stored as
+ * {@code <world>/bottomless-inventory/cold/<uuid>-<generation>.dat}. A segment is never
+ * rewritten: each spill writes only the newly cold entries, as a new segment under the next
+ * generation, and the session records the list of generations in the player attachment,
+ * along with a per-item index of which generations hold each item's live records.
+ * Paging in an item reads only its segments and merges only its records; the segments keep
+ * the records of paged-in items, which the index no longer counts as live.
+ * Once a player has MAX_SEGMENTS segments, the next spill compacts their live records into
+ * one, so the number of files stays bounded while a spill still only writes new data most of the time.
+ * If the server stops between writing a segment and saving the player, the attachment still
+ * names the previous segments, which still exist, so entries are never lost or duplicated.
+ * Segments the attachment does not name are deleted when the player's session opens.
+ */
+public class ColdStorage {
+    private static final String DIRECTORY = "cold";
+    private static final String EXTENSION = ".dat";
+
+    /**
+     * The most segments a player has before a spill compacts them into one.
+     */
+    static final int MAX_SEGMENTS = 16;
+
+    /**
+     * Gets the directory holding the segments of a server's world.
+     *
+     * @param server The server
+     * @return The segment directory (created on the first write)
+     */
+    public static Path getDirectory(MinecraftServer server) {
+        return server.getWorldPath(LevelResource.ROOT).resolve(BottomlessInventory.MOD_ID).resolve(DIRECTORY);
+    }
+
+    /**
+     * Gets the file of one segment generation.
+     */
+    static Path segmentPath(Path directory, UUID playerId, long generation) {
+        return directory.resolve(playerId + "-" + generation + EXTENSION);
+    }
+
+    /**
+     * Moves a session's cold variants out of memory, into a new segment generation.
+     * The new segment holds only the newly cold entries, unless the session already has
+     * MAX_SEGMENTS segments; then their entries are carried over and the new segment replaces them.
+     * If anything fails, the spilled entries are kept in memory instead and nothing is lost.
+     *
+     * @param directory The segment directory
+     * @param playerId The player owning the session
+     * @param session The session to spill from
+     * @param cutoffTick Variants last modified before this tick are cold
+     * @param maxHotVariants The most component variants to keep in memory, or 0 for no limit
+     * @param registryAccess Registry access for ItemStack serialization
+     * @return The number of variants moved to disk
+     */
+    public static int spill(Path directory, UUID playerId, InventorySession session, long cutoffTick,
+                            int maxHotVariants, HolderLookup.Provider registryAccess) {
+        InfiniteInventory inventory = session.getInventory();
+        InfiniteInventory cold = new InfiniteInventory();
+        int spilled = inventory.spillColdEntries(cold, cutoffTick, maxHotVariants);
+        if (spilled == 0) {
+            return 0;
+        }
+
+        boolean compact = session.getColdSegments().length >= MAX_SEGMENTS
+                && carryOver(directory, playerId, session, cold, registryAccess);
+        long next = session.nextColdGeneration();
+        try {
+            write(segmentPath(directory, playerId, next), cold, registryAccess);
+        } catch (IOException e) {
+            BottomlessInventory.LOGGER.error("Failed to write cold segment {} of {}, keeping entries in memory",
+                    next, playerId, e);
+            inventory.mergeColdEntries(cold);
+            if (compact) {
+                // The old segments' entries were read as well, so the session no longer needs them
+                session.setColdSegments();
+                session.clearColdContents();
+                session.markDirty();
+            }
+            return 0;
+        }
+
+        if (compact) {
+            session.setColdSegments(next);
+            session.clearColdContents();
+        } else {
+            session.addColdSegment(next);
+        }
+        session.addColdContents(next, cold);
+        session.markDirty();
+        return spilled;
+    }
+
+    /**
+     * Reads the live records of every segment of a session into the entries of a new segment.
+     *
+     * @return false if a segment could not be read, leaving the new segment's own entries only
+     */
+    private static boolean carryOver(Path directory, UUID playerId, InventorySession session, InfiniteInventory cold,
+                                     HolderLookup.Provider registryAccess) {
+        List<InfiniteInventory> segments = new ArrayList<>();
+        for (long generation : session.getColdSegments()) {
+            try {
+                segments.add(readLive(directory, playerId, session, generation, registryAccess));
+            } catch (IOException e) {
+                BottomlessInventory.LOGGER.error("Failed to read cold segment {} of {}, not compacting",
+                        generation, playerId, e);
+                return false;
+            }
+        }
+        for (InfiniteInventory segment : segments) {
+            cold.mergeColdEntries(segment);
+        }
+        return true;
+    }
+
+    /**
+     * Moves the cold variants of one item back into memory, reading only the segments the
+     * session's index lists for it and merging only its records. Nothing is merged unless every
+     * one of those segments can be read. The segment files themselves stay until the next
+     * session opens, because the player's saved attachment may still refer to them.
+     *
+     * @param directory The segment directory
+     * @param playerId The player owning the session
+     * @param session The session to page into
+     * @param item The item to page in
+     * @param registryAccess Registry access for ItemStack deserialization
+     * @return The number of entries paged in, or -1 if a segment could not be read
+     */
+    public static int pageIn(Path directory, UUID playerId, InventorySession session, Item item,
+                             HolderLookup.Provider registryAccess) {
+        InventorySession.ColdItem coldItem = session.getColdItem(item);
+        if (coldItem == null) {
+            return 0;
+        }
+
+        List<InfiniteInventory> colds = new ArrayList<>(coldItem.segments().length);
+        for (long generation : coldItem.segments()) {
+            try {
+                colds.add(read(segmentPath(directory, playerId, generation), registryAccess));
+            } catch (IOException e) {
+                BottomlessInventory.LOGGER.error("Failed to read cold segment {} of {}", generation, playerId, e);
+                return -1;
+            }
+        }
+
+        int paged = 0;
+        for (InfiniteInventory cold : colds) {
+            paged += session.getInventory().mergeColdEntries(cold, item);
+        }
+        session.removeColdItem(item);
+        session.markDirty();
+        return paged;
+    }
+
+    /**
+     * Reads the live records of a session's segments without moving them into memory,
+     * e.g. to show them in a full sync. Variants in more than one segment are added up.
+     *
+     * @param directory The segment directory
+     * @param playerId The player owning the session
+     * @param session The session whose segments to read
+     * @param registryAccess Registry access for ItemStack deserialization
+     * @return Detached cold entries (none without segments), or null if a segment could not be read
+     */
+    public static List<InfiniteInventoryEntry> readEntries(Path directory, UUID playerId, InventorySession session,
+                                                           HolderLookup.Provider registryAccess) {
+        InfiniteInventory entries = new InfiniteInventory();
+        for (long generation : session.getColdSegments()) {
+            try {
+                entries.mergeColdEntries(readLive(directory, playerId, session, generation, registryAccess));
+            } catch (IOException e) {
+                BottomlessInventory.LOGGER.error("Failed to read cold segment {} of {}", generation, playerId, e);
+                return null;
+            }
+        }
+        return List.copyOf(entries.getAllEntries());
+    }
+
+    /**
+     * Deletes every segment of a player except the given generations.
+     *
+     * @param directory The segment directory
+     * @param playerId The player
+     * @param keepGenerations The generations the player's attachment refers to
+     */
+    public static void deleteStale(Path directory, UUID playerId, long... keepGenerations) {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+
+        Set<Path> keep = new HashSet<>();
+        for (long generation : keepGenerations) {
+            keep.add(segmentPath(directory, playerId, generation));
+        }
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, playerId + "-*" + EXTENSION)) {
+            for (Path segment : segments) {
+                if (!keep.contains(segment)) {
+                    Files.deleteIfExists(segment);
+                }
+            }
+        } catch (IOException e) {
+            BottomlessInventory.LOGGER.warn("Failed to delete stale cold segments of {}", playerId, e);
+        }
+    }
+
+    /**
+     * Reads the records of a segment that are still cold, leaving out items paged in since it was written.
+     */
+    private static InfiniteInventory readLive(Path directory, UUID playerId, InventorySession session, long generation,
+                                              HolderLookup.Provider registryAccess) throws IOException {
+        InfiniteInventory segment = read(segmentPath(directory, playerId, generation), registryAccess);
+        InfiniteInventory live = new InfiniteInventory();
+        for (Item item : List.copyOf(segment.getStoredItems())) {
+            if (session.isColdRecordLive(item, generation)) {
+                live.mergeColdEntries(segment, item);
+            }
+        }
+        return live;
+    }
+
+    /**
+     * Reads a segment. A missing segment is an error, since the attachment refers to it.
+     */
+    static InfiniteInventory read(Path path, HolderLookup.Provider registryAccess) throws IOException {
+        CompoundTag tag = NbtIo.readCompressed(path, NbtAccounter.unlimitedHeap());
+        return InfiniteInventorySerializer.deserialize(tag, registryAccess);
+    }
+
+    /**
+     * Writes a segment through a temporary file, so a partly written segment is never read.
+     */
+    static void write(Path path, InfiniteInventory inventory, HolderLookup.Provider registryAccess) throws IOException {
+        Files.createDirectories(path.getParent());
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        NbtIo.writeCompressed(InfiniteInventorySerializer.serialize(inventory, registryAccess), temp);
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,440 @@
+package com.chayut.bottomlessinventory.data;
+
+import com.chayut.bottomlessinventory.inventory.ChangeJournal;
+import com.chayut.bottomlessinventory.inventory.ColdTier;
+import com.chayut.bottomlessinventory.inventory.InfiniteInventory;
+import com.chayut.bottomlessinventory.inventory.InsertionBuffer;
+import net.minecraft.world.item.Item;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * A live, server-side view of one player's infinite inventory.
+ * The inventory is deserialized once when the session opens and is then mutated in place.
+ * Changes are only written back to persistent storage when the session is flushed.
+ *
+ * The session keeps two change journals on its inventory: one drained after every action
+ * to send incremental syncs, and one that tracks unsaved changes between flushes.
+ * The client counts cold entries as stored (they are part of its full sync), so the sync
+ * journal leaves out entries moving to or from the cold segments. A cold entry that can not
+ * be paged in therefore stays as the client last saw it instead of being synced as removed.
+ * High-rate insertions (item pickups) go through its insertion buffer, which is merged once
+ * per tick and always before a flush.
+ *
+ * Rarely used variants may live in cold segments on disk instead (see ColdStorage).
+ * The session keeps a per-item index of them: which segment generations hold live records of
+ * each item and what they add up to. It is the inventory's ColdTier: the cold entries count
+ * against the quota, and a lookup of a variant that may be cold pages in only that item's
+ * records through the session's cold pager, leaving every other cold item on disk.
+ */
+public class InventorySession {
+    private final InfiniteInventory inventory;
+    private final ChangeJournal syncJournal;
+    private final ChangeJournal saveJournal;
+    private final InsertionBuffer insertions;
+    private boolean dirty;
+    private long[] coldSegments = new long[0];
+    private long lastColdGeneration;
+
+    /**
+     * What the cold segments hold of each item. A segment keeps the records of an item that was
+     * paged in since it was written, but only the generations listed here hold live records.
+     */
+    private final Map<Item, ColdItem> coldIndex = new LinkedHashMap<>();
+
+    /**
+     * The index summed up (all zero without cold items). Summed over the segments,
+     * so a variant spilled into two of them is counted as two.
+     */
+    private int coldVariantCount;
+    private long coldItemCount;
+    private long coldEstimatedBytes;
+
+    /**
+     * Pages the cold records of one item back in (see ColdStorage.pageIn).
+     */
+    private ToIntFunction<Item> coldPager = item -> 0;
+
+    /**
+     * Items whose page-in failed, so lookups do not retry reading their segments every time.
+     * They are retried when the player's next session opens.
+     */
+    private final Set<Item> coldPageInFailed = new HashSet<>();
+
+    /**
+     * What the cold segments hold of one item.
+     *
+     * @param segments The generations of the segments with live records of the item, in the order they were written
+     * @param variantCount The number of cold variants of the item
+     * @param itemCount The total count of the item's cold variants
+     * @param estimatedBytes The estimated heap the item's cold entries would cost in memory
+     */
+    public record ColdItem(long[] segments, int variantCount, long itemCount, long estimatedBytes) {
+    }
+
+    /**
+     * Creates a new session around an already loaded inventory.
+     *
+     * @param inventory The live inventory for this session
+     */
+    public InventorySession(InfiniteInventory inventory) {
+        if (inventory == null) {
+            throw new IllegalArgumentException("Session inventory cannot be null");
+        }
+        this.inventory = inventory;
+        this.syncJournal = inventory.openJournalExcludingColdMoves();
+        this.saveJournal = inventory.openJournal();
+        this.insertions = new InsertionBuffer(inventory);
+        inventory.setColdTier(new SessionColdTier());
+    }
+
+    /**
+     * Gets the live inventory for this session.
+     * Changes to it are picked up by the session's journals automatically.
+     *
+     * @return The live inventory
+     */
+    public InfiniteInventory getInventory() {
+        return inventory;
+    }
+
+    /**
+     * Gets the journal of changes not yet sent to the client.
+     *
+     * @return The sync journal
+     */
+    public ChangeJournal getSyncJournal() {
+        return syncJournal;
+    }
+
+    /**
+     * Gets the buffer for high-rate insertions (item pickups) into this inventory.
+     *
+     * @return The insertion buffer
+     */
+    public InsertionBuffer getInsertionBuffer() {
+        return insertions;
+    }
+
+    /**
+     * Gets the generations of the cold segments holding this inventory's cold entries.
+     *
+     * @return The segment generations in the order they were written (empty if no entries are on disk)
+     */
+    public long[] getColdSegments() {
+        return coldSegments.clone();
+    }
+
+    /**
+     * Sets the generations of the cold segments holding this inventory's cold entries.
+     *
+     * @param coldSegments The segment generations in the order they were written (none if no entries are on disk)
+     */
+    public void setColdSegments(long... coldSegments) {
+        this.coldSegments = coldSegments.clone();
+        for (long generation : coldSegments) {
+            this.lastColdGeneration = Math.max(lastColdGeneration, generation);
+        }
+    }
+
+    /**
+     * Adds a newly written segment after the existing ones.
+     *
+     * @param generation The segment generation
+     */
+    public void addColdSegment(long generation) {
+        long[] segments = Arrays.copyOf(coldSegments, coldSegments.length + 1);
+        segments[coldSegments.length] = generation;
+        setColdSegments(segments);
+    }
+
+    /**
+     * Checks if any of this inventory's entries are held in cold segments.
+     *
+     * @return true if there is at least one segment
+     */
+    public boolean hasColdSegments() {
+        return coldSegments.length > 0;
+    }
+
+    /**
+     * Gets a generation for a new cold segment.
+     * It is above every generation this session has used, so a segment the saved
+     * attachment may still refer to is never overwritten, even after a page-in.
+     *
+     * @return The next unused segment generation
+     */
+    public long nextColdGeneration() {
+        return lastColdGeneration + 1;
+    }
+
+    /**
+     * Records that a newly written segment holds live records of every item in it.
+     *
+     * @param generation The segment generation
+     * @param cold The entries in the new segment
+     */
+    public void addColdContents(long generation, InfiniteInventory cold) {
+        for (Item item : cold.getStoredItems()) {
+            long itemCount = cold.getCountAnyVariant(item);
+            int variantCount = cold.getVariants(item).size();
+            long estimatedBytes = cold.estimateMemory(item);
+            ColdItem existing = coldIndex.get(item);
+            if (existing == null) {
+                coldIndex.put(item, new ColdItem(new long[] {generation}, variantCount, itemCount, estimatedBytes));
+                continue;
+            }
+            long[] segments = Arrays.copyOf(existing.segments(), existing.segments().length + 1);
+            segments[existing.segments().length] = generation;
+            long total = existing.itemCount() + itemCount;
+            // Saturate like the inventory's own totals
+            coldIndex.put(item, new ColdItem(segments, existing.variantCount() + variantCount,
+                    total < 0 ? Long.MAX_VALUE : total, existing.estimatedBytes() + estimatedBytes));
+        }
+        updateColdTotals();
+    }
+
+    /**
+     * Records what the cold segments hold of one item (e.g. as saved next to the inventory data).
+     *
+     * @param item The item
+     * @param coldItem What its cold records add up to
+     */
+    public void putColdItem(Item item, ColdItem coldItem) {
+        coldIndex.put(item, coldItem);
+        updateColdTotals();
+    }
+
+    /**
+     * Records that an item's cold records were paged in. Segments left without live records of
+     * any item are dropped; their files stay until the next session opens, since the player's
+     * saved attachment may still refer to them.
+     *
+     * @param item The item that was paged in
+     */
+    public void removeColdItem(Item item) {
+        ColdItem removed = coldIndex.remove(item);
+        if (removed == null) {
+            return;
+        }
+        long[] live = Arrays.stream(coldSegments)
+                .filter(generation -> !contains(removed.segments(), generation) || isColdSegmentIndexed(generation))
+                .toArray();
+        if (live.length != coldSegments.length) {
+            setColdSegments(live);
+        }
+        updateColdTotals();
+    }
+
+    /**
+     * Records that nothing is held in cold segments.
+     */
+    public void clearColdContents() {
+        coldIndex.clear();
+        coldPageInFailed.clear();
+        updateColdTotals();
+    }
+
+    /**
+     * Gets what the cold segments hold of one item.
+     *
+     * @param item The item
+     * @return Its cold records, or null if no variant of the item is cold
+     */
+    public ColdItem getColdItem(Item item) {
+        return coldIndex.get(item);
+    }
+
+    /**
+     * Gets what the cold segments hold of every item with a cold variant.
+     *
+     * @return A read-only view of the index
+     */
+    public Map<Item, ColdItem> getColdIndex() {
+        return Collections.unmodifiableMap(coldIndex);
+    }
+
+    /**
+     * Checks if a segment holds live records of an item.
+     *
+     * @param item The item
+     * @param generation The segment generation
+     * @return true if the item's records in the segment are still cold
+     */
+    public boolean isColdRecordLive(Item item, long generation) {
+        ColdItem coldItem = coldIndex.get(item);
+        return coldItem != null && contains(coldItem.segments(), generation);
+    }
+
+    private static boolean contains(long[] generations, long generation) {
+        for (long g : generations) {
+            if (g == generation) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void updateColdTotals() {
+        int variantCount = 0;
+        long itemCount = 0;
+        long estimatedBytes = 0;
+        for (ColdItem coldItem : coldIndex.values()) {
+            variantCount += coldItem.variantCount();
+            itemCount += coldItem.itemCount();
+            itemCount = itemCount < 0 ? Long.MAX_VALUE : itemCount;
+            estimatedBytes += coldItem.estimatedBytes();
+        }
+        this.coldVariantCount = variantCount;
+        this.coldItemCount = itemCount;
+        this.coldEstimatedBytes = estimatedBytes;
+    }
+
+    /**
+     * Gets the number of variants held in the cold segments.
+     *
+     * @return The number of cold variants
+     */
+    public int getColdVariantCount() {
+        return coldVariantCount;
+    }
+
+    /**
+     * Gets the total count of the items held in the cold segments.
+     *
+     * @return The number of cold items
+     */
+    public long getColdItemCount() {
+        return coldItemCount;
+    }
+
+    /**
+     * Gets the estimated heap the cold entries would cost if they were paged back in.
+     *
+     * @return The estimate in bytes
+     */
+    public long getColdEstimatedBytes() {
+        return coldEstimatedBytes;
+    }
+
+    /**
+     * Gets the items with at least one variant in the cold segments.
+     *
+     * @return A read-only set of items
+     */
+    public Set<Item> getColdItems() {
+        return Collections.unmodifiableSet(coldIndex.keySet());
+    }
+
+    /**
+     * Sets how the cold records of an item are paged back in when the inventory needs them.
+     *
+     * @param coldPager Pages in an item and returns the number of entries (-1 on failure)
+     */
+    public void setColdPager(ToIntFunction<Item> coldPager) {
+        this.coldPager = coldPager != null ? coldPager : item -> 0;
+    }
+
+    /**
+     * Pages the cold records of one item back into the inventory, if it has any.
+     * An item whose page-in failed is not read again during this session.
+     *
+     * @param item The item
+     * @return The number of entries paged in, or -1 if its segments could not be read
+     */
+    public int pageInCold(Item item) {
+        if (!coldIndex.containsKey(item)) {
+            return 0;
+        }
+        if (coldPageInFailed.contains(item)) {
+            return -1;
+        }
+        int paged = coldPager.applyAsInt(item);
+        if (paged < 0) {
+            coldPageInFailed.add(item);
+        }
+        return paged;
+    }
+
+    /**
+     * Forces the next flush to write, even if no item counts changed.
+     */
+    public void markDirty() {
+        this.dirty = true;
+    }
+
+    /**
+     * Checks if the inventory has changed since the last flush.
+     *
+     * @return true if there are unsaved changes
+     */
+    public boolean isDirty() {
+        return dirty || saveJournal.hasChanges() || !insertions.isEmpty();
+    }
+
+    /**
+     * Writes the inventory back through the given writer if it has unsaved changes.
+     * Pending insertions are merged first, so none are lost.
+     *
+     * @param writer Persists the inventory (e.g. into the player attachment)
+     * @return true if the writer was called
+     */
+    public boolean flush(Consumer<InfiniteInventory> writer) {
+        insertions.merge();
+        if (!isDirty()) {
+            return false;
+        }
+
+        writer.accept(inventory);
+        dirty = false;
+        saveJournal.clear();
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "InventorySession{" +
+                "inventory=" + inventory +
+                ", dirty=" + isDirty() +
+                ", coldSegments=" + Arrays.toString(coldSegments) +
+                ", coldVariants=" + coldVariantCount +
+                '}';
+    }
+
+    /**
+     * Exposes the session's cold segments to its inventory.
+     */
+    private class SessionColdTier implements ColdTier {
+        @Override
+        public int getVariantCount() {
+            return coldVariantCount;
+        }
+
+        @Override
+        public long getItemCount() {
+            return coldItemCount;
+        }
+
+        @Override
+        public long getEstimatedBytes() {
+            return coldEstimatedBytes;
+        }
+
+        @Override
+        public boolean mayContain(Item item) {
+            return coldIndex.containsKey(item);
+        }
+
+        @Override
+        public int pageIn(Item item) {
+            return pageInCold(item);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.chayut.bottomlessinventory.data;
+
+import com.chayut.bottomlessinventory.BottomlessInventory;
+import com.chayut.bottomlessinventory.config.BottomlessConfig;
+import com.chayut.bottomlessinventory.inventory.InfiniteInventory;
+import com.chayut.bottomlessinventory.inventory.InfiniteInventoryEntry;
+import com.chayut.bottomlessinventory.inventory.StorageQuota;
+import com.chayut.bottomlessinventory.screen.BottomlessScreenHandler;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.item.ItemStack;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Owns the live InfiniteInventory of every online player.
+ *
+ * Without sessions, every action would deserialize the whole INFINITE_INVENTORY_DATA
+ * attachment and serialize it again afterwards. Instead, the inventory is loaded once
+ * when the player joins, changed in place, and written back to the attachment only
+ * when the player's data is saved (see PlayerListMixin) or the player disconnects.
+ *
+ * Right before a save, component variants that have gone cold are spilled to the player's
+ * cold segments on disk (see ColdStorage). An item's cold variants are paged back in only when
+ * a lookup of one of them needs them, so an online player only keeps a bounded hot working set
+ * in memory. The client still sees cold entries as stored (see InventorySession).
+ */
+public class InventorySessionManager {
+
+    /**
+     * Live sessions keyed by player UUID.
+     * Keyed by UUID rather than entity so a session survives respawns.
+     */
+    private static final Map<UUID, InventorySession> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Registers the connection and lifecycle events that open and close sessions.
+     * Should be called from BottomlessInventory.onInitialize() AFTER ModAttachments.register().
+     */
+    public static void register() {
+        BottomlessInventory.LOGGER.info("Registering inventory session events");
+
+        // Load the inventory once when the player joins
+        ServerPlayConnectionEvents.JOIN.register((handler, sender, server) -> getSession(handler.player));
+
+        // Write back and drop the session when the player leaves
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> close(handler.player));
+
+        // Players are saved before the server stops, so anything left here is already persisted
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> sessions.clear());
+    }
+
+    /**
+     * Gets the session for a player, loading it from the attachment if it is not open yet.
+     *
+     * @param player The player to get the session for
+     * @return The player's live session
+     */
+    public static InventorySession getSession(ServerPlayer player) {
+        return sessions.computeIfAbsent(player.getUUID(), id -> {
+            InfiniteInventory inventory = ModAttachments.getInventory(player);
+            // Stamp changes with game time, which keeps counting across restarts
+            MinecraftServer server = player.level().getServer();
+            inventory.setClock(() -> server.overworld().getGameTime());
+            BottomlessConfig.Quotas quotas = BottomlessConfig.get().quotas;
+            inventory.setQuota(new StorageQuota(quotas.maxUniqueItems, quotas.maxTotalItems, quotas.maxEstimatedBytes));
+
+            InventorySession session = new InventorySession(inventory);
+            long[] coldSegments = ModAttachments.getColdSegments(player);
+            session.setColdSegments(coldSegments);
+            // Segments written after the player's last completed save are not referenced by anything
+            Path directory = ColdStorage.getDirectory(server);
+            ColdStorage.deleteStale(directory, id, coldSegments);
+            session.setColdPager(item -> ColdStorage.pageIn(directory, id, session, item, server.registryAccess()));
+            ModAttachments.readColdIndex(player, session);
+
+            BottomlessInventory.LOGGER.debug("Opened inventory session for {}: {}",
+                    player.getName().getString(), inventory);
+            return session;
+        });
+    }
+
+    /**
+     * Gets the live inventory for a player.
+     * Changes are tracked by the session's journals, so no explicit dirty marking is needed.
+     *
+     * @param player The player to get the inventory for
+     * @return The player's live inventory
+     */
+    public static InfiniteInventory getInventory(ServerPlayer player) {
+        return getSession(player).getInventory();
+    }
+
+    /**
+     * Forces a player's inventory to be written back on the next save.
+     *
+     * @param player The player whose inventory changed
+     */
+    public static void markDirty(ServerPlayer player) {
+        getSession(player).markDirty();
+    }
+
+    /**
+     * Offers items a player picks up to their bottomless inventory, if enabled in
+     * BottomlessConfig.pickup. They are buffered and merged at the end of the tick
+     * (see InventorySyncHandler.flushInsertions).
+     *
+     * @param player The player picking up
+     * @param stack The stack that did not fit the player's own inventory
+     * @return The number of items taken, between 0 and the stack's count
+     */
+    public static int offerPickup(ServerPlayer player, ItemStack stack) {
+        if (!BottomlessConfig.get().pickup.overflowIntoBottomless || stack.isEmpty()) {
+            return 0;
+        }
+        return (int) getSession(player).getInsertionBuffer().offer(stack, stack.getCount());
+    }
+
+    /**
+     * Writes a player's live inventory back to the attachment if it has unsaved changes.
+     * Called right before the player's data is written to disk.
+     *
+     * @param player The player being saved
+     */
+    public static void save(ServerPlayer player) {
+        InventorySession session = sessions.get(player.getUUID());
+        if (session == null) {
+            return;
+        }
+
+        // Merge pickups before spilling, so a variant just picked up is not read back from its new segment
+        session.getInsertionBuffer().merge();
+        spillColdEntries(player, session);
+        if (session.flush(inventory -> ModAttachments.setInventory(player, session))) {
+            BottomlessInventory.LOGGER.debug("Saved inventory session for {}", player.getName().getString());
+        }
+    }
+
+    /**
+     * Moves a player's cold variants to disk, as configured in BottomlessConfig.coldStorage.
+     * Skipped while the player has the bottomless inventory open, so nothing vanishes from view.
+     */
+    private static void spillColdEntries(ServerPlayer player, InventorySession session) {
+        BottomlessConfig.ColdStorage config = BottomlessConfig.get().coldStorage;
+        if ((config.evictAfterTicks <= 0 && config.maxHotVariants <= 0)
+                || player.containerMenu instanceof BottomlessScreenHandler) {
+            return;
+        }
+
+        MinecraftServer server = player.level().getServer();
+        long cutoff = config.evictAfterTicks > 0
+                ? server.overworld().getGameTime() - config.evictAfterTicks
+                : Long.MIN_VALUE;
+        int spilled = ColdStorage.spill(ColdStorage.getDirectory(server), player.getUUID(), session,
+                cutoff, config.maxHotVariants, player.registryAccess());
+        if (spilled > 0) {
+            BottomlessInventory.LOGGER.debug("Moved {} cold entries of {} to disk", spilled, player.getName().getString());
+        }
+    }
+
+    /**
+     * Reads a player's cold entries without paging them in (for a full sync).
+     *
+     * @param player The player whose cold entries are needed
+     * @return The cold entries (none if nothing is cold), or null if the segments could not be read
+     */
+    public static List<InfiniteInventoryEntry> readColdEntries(ServerPlayer player) {
+        InventorySession session = getSession(player);
+        if (!session.hasColdSegments()) {
+            return List.of();
+        }
+        MinecraftServer server = player.level().getServer();
+        return ColdStorage.readEntries(ColdStorage.getDirectory(server), player.getUUID(), session, player.registryAccess());
+    }
+
+    /**
+     * Writes back and closes a player's session.
+     *
+     * @param player The player whose session should be closed
+     */
+    public static void close(ServerPlayer player) {
+        save(player);
+        sessions.remove(player.getUUID());
+    }
+
+    /**
+     * Gets all open sessions (for diagnostics such as the memory report).
+     *
+     * @return A read-only view of the open sessions keyed by player UUID
+     */
+    public static Map<UUID, InventorySession> getSessions() {
+        return Collections.unmodifiableMap(sessions);
+    }
+
+    /**
+     * Checks if a player currently has an open session (for testing and diagnostics).
+     *
+     * @param playerId The UUID of the player
+     * @return true if a session is open
+     */
+    public static boolean hasSession(UUID playerId) {
+        return sessions.containsKey(playerId);
+    }
+}
@@ -7,9 +7,15 @@ import com.mojang.serialization.Codec;
 import net.fabricmc.fabric.api.attachment.v1.AttachmentRegistry;
 import net.fabricmc.fabric.api.attachment.v1.AttachmentType;
 import net.minecraft.core.HolderLookup;
+import net.minecraft.core.registries.BuiltInRegistries;
 import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.item.Item;
+
+import java.util.Map;
+import java.util.Optional;
 
 /**
  * Defines and registers all attachment types for the mod.
@@ -18,8 +24,29 @@ import net.minecraft.world.entity.player.Player;
  * The inventory is stored as raw NBT (CompoundTag) because Fabric's Codec-based
  * serialization doesn't provide HolderLookup.Provider during save/load.
  * Use the helper methods getInventory() and setInventory() to work with InfiniteInventory.
+ *
+ * These helpers run a full (de)serialization on every call. Gameplay code on the server
+ * should go through InventorySessionManager, which keeps the deserialized inventory live
+ * and only writes it back here when the player is saved.
  */
 public class ModAttachments {
+    /**
+     * Key of the cold segment generations stored next to the inventory data (see ColdStorage).
+     */
+    private static final String KEY_COLD_SEGMENTS = "ColdSegments";
+
+    /**
+     * Key of the per-item index of the cold segments (see InventorySession.ColdItem), so quotas
+     * and lookups know about the cold entries, and a page-in knows which segments to read,
+     * without reading the segments.
+     */
+    private static final String KEY_COLD_INDEX = "ColdIndex";
+    private static final String KEY_COLD_ITEM_ID = "Id";
+    private static final String KEY_COLD_ITEM_SEGMENTS = "Segments";
+    private static final String KEY_COLD_VARIANTS = "Variants";
+    private static final String KEY_COLD_ITEMS = "Items";
+    private static final String KEY_COLD_BYTES = "Bytes";
+
     /**
      * Attachment type for storing the infinite inventory data on players.
      * Stores raw NBT that gets converted to/from InfiniteInventory via helper methods.
@@ -59,6 +86,77 @@ public class ModAttachments {
         player.setAttached(INFINITE_INVENTORY_DATA, data);
     }
 
+    /**
+     * Sets the inventory of a session for a player, along with its cold segment generations
+     * and the per-item index of what the segments hold.
+     *
+     * @param player The player to set inventory for
+     * @param session The session whose inventory and cold segments should be stored
+     */
+    public static void setInventory(Player player, InventorySession session) {
+        CompoundTag data = InfiniteInventorySerializer.serialize(session.getInventory(), player.registryAccess());
+        if (session.hasColdSegments()) {
+            data.putLongArray(KEY_COLD_SEGMENTS, session.getColdSegments());
+
+            ListTag index = new ListTag();
+            for (Map.Entry<Item, InventorySession.ColdItem> entry : session.getColdIndex().entrySet()) {
+                InventorySession.ColdItem coldItem = entry.getValue();
+                CompoundTag itemTag = new CompoundTag();
+                itemTag.putString(KEY_COLD_ITEM_ID, BuiltInRegistries.ITEM.getKey(entry.getKey()).toString());
+                itemTag.putLongArray(KEY_COLD_ITEM_SEGMENTS, coldItem.segments());
+                itemTag.putInt(KEY_COLD_VARIANTS, coldItem.variantCount());
+                itemTag.putLong(KEY_COLD_ITEMS, coldItem.itemCount());
+                itemTag.putLong(KEY_COLD_BYTES, coldItem.estimatedBytes());
+                index.add(itemTag);
+            }
+            data.put(KEY_COLD_INDEX, index);
+        }
+        player.setAttached(INFINITE_INVENTORY_DATA, data);
+    }
+
+    /**
+     * Restores the per-item index of the cold segments saved by setInventory(Player, InventorySession).
+     * Items that are no longer registered are skipped; their records stay on disk.
+     *
+     * @param player The player
+     * @param session The session to record the index on
+     */
+    public static void readColdIndex(Player player, InventorySession session) {
+        CompoundTag data = player.getAttached(INFINITE_INVENTORY_DATA);
+        ListTag index = data != null ? data.getList(KEY_COLD_INDEX).orElse(null) : null;
+        if (index == null) {
+            return;
+        }
+
+        for (int i = 0; i < index.size(); i++) {
+            CompoundTag itemTag = index.getCompound(i).orElse(new CompoundTag());
+            Optional<Item> item = Optional.ofNullable(ResourceLocation.tryParse(itemTag.getString(KEY_COLD_ITEM_ID).orElse("")))
+                    .flatMap(BuiltInRegistries.ITEM::getOptional);
+            if (item.isEmpty()) {
+                continue;
+            }
+            session.putColdItem(item.get(), new InventorySession.ColdItem(
+                    itemTag.getLongArray(KEY_COLD_ITEM_SEGMENTS).orElse(new long[0]),
+                    itemTag.getInt(KEY_COLD_VARIANTS).orElse(0),
+                    itemTag.getLong(KEY_COLD_ITEMS).orElse(0L),
+                    itemTag.getLong(KEY_COLD_BYTES).orElse(0L)));
+        }
+    }
+
+    /**
+     * Gets the generations of the cold segments the player's saved inventory refers to.
+     *
+     * @param player The player
+     * @return The cold segment generations, or none if none of the player's entries are on disk
+     */
+    public static long[] getColdSegments(Player player) {
+        CompoundTag data = player.getAttached(INFINITE_INVENTORY_DATA);
+        if (data == null) {
+            return new long[0];
+        }
+        return data.getLongArray(KEY_COLD_SEGMENTS).orElse(new long[0]);
+    }
+
     /**
      * Convenience method to get inventory using player's level for registry access.
      *
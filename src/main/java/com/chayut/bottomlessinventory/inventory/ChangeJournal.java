@@ -0,0 +1,173 @@
+package com.chayut.bottomlessinventory.inventory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records which keys of an InfiniteInventory changed since the last checkpoint.
+ *
+ * For each dirty key the journal keeps the count it had at the checkpoint and its latest count,
+ * so several changes to one key collapse into a single net change. A key that ends up back at
+ * its checkpoint count is not reported.
+ *
+ * Journals are opened with InfiniteInventory.openJournal(). Each consumer (network sync,
+ * persistence, ...) owns its own journal, so draining one does not affect the others.
+ */
+public class ChangeJournal {
+    private final Map<ItemStackKey, Change> changes = new LinkedHashMap<>();
+
+    /**
+     * How a journal treats entries moving between memory and the cold tier
+     * (InfiniteInventory.spillColdEntries and mergeColdEntries).
+     */
+    enum ColdMoves {
+        /**
+         * Recorded like any other change.
+         */
+        RECORD,
+
+        /**
+         * Folded into the checkpoint (see rebase), so a transaction rollback never undoes them.
+         */
+        REBASE,
+
+        /**
+         * Not recorded, for consumers that count cold entries as still stored (such as the client's view).
+         */
+        IGNORE
+    }
+
+    private final ColdMoves coldMoves;
+
+    /**
+     * Mutable per-key record, so repeated changes to a key do not allocate.
+     */
+    private static final class Change {
+        private long oldCount;
+        private long newCount;
+
+        private Change(long oldCount, long newCount) {
+            this.oldCount = oldCount;
+            this.newCount = newCount;
+        }
+    }
+
+    /**
+     * Package-private: journals are created by InfiniteInventory.openJournal().
+     */
+    ChangeJournal() {
+        this(ColdMoves.RECORD);
+    }
+
+    /**
+     * Package-private: journals that treat cold moves differently are created by
+     * InfiniteInventory.openTransactionJournal() and openJournalExcludingColdMoves().
+     */
+    ChangeJournal(ColdMoves coldMoves) {
+        this.coldMoves = coldMoves;
+    }
+
+    /**
+     * Records a change of the count stored under a key.
+     */
+    void record(ItemStackKey key, long oldCount, long newCount) {
+        Change change = changes.get(key);
+        if (change == null) {
+            changes.put(key, new Change(oldCount, newCount));
+        } else {
+            change.newCount = newCount;
+        }
+    }
+
+    /**
+     * Records an entry moving between memory and the cold tier, as set by this journal's ColdMoves.
+     */
+    void recordColdMove(ItemStackKey key, long oldCount, long newCount) {
+        switch (coldMoves) {
+            case RECORD -> record(key, oldCount, newCount);
+            case REBASE -> rebase(key, oldCount, newCount);
+            case IGNORE -> {
+            }
+        }
+    }
+
+    /**
+     * Records a change that happened underneath a transaction (cold entries paged in while it
+     * was open), as if it had happened before the checkpoint: a key that was already touched
+     * keeps its net change, and an untouched key stays untouched. Rolling back then keeps the
+     * paged-in count.
+     */
+    void rebase(ItemStackKey key, long oldCount, long newCount) {
+        Change change = changes.get(key);
+        if (change != null) {
+            change.oldCount = InfiniteInventoryEntry.saturatedAdd(change.oldCount, newCount - oldCount);
+            change.newCount = newCount;
+        }
+    }
+
+    /**
+     * Gets the net changes since the last checkpoint and starts a new checkpoint.
+     *
+     * @return The net changes, in the order the keys were first touched
+     */
+    public List<InventoryChange> drain() {
+        List<InventoryChange> result = peek();
+        changes.clear();
+        return result;
+    }
+
+    /**
+     * Gets the net changes since the last checkpoint without resetting the journal.
+     *
+     * @return The net changes, in the order the keys were first touched
+     */
+    public List<InventoryChange> peek() {
+        List<InventoryChange> result = new ArrayList<>(changes.size());
+        for (Map.Entry<ItemStackKey, Change> entry : changes.entrySet()) {
+            Change change = entry.getValue();
+            if (change.oldCount != change.newCount) {
+                result.add(new InventoryChange(entry.getKey(), change.oldCount, change.newCount));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Discards all recorded changes and starts a new checkpoint.
+     */
+    public void clear() {
+        changes.clear();
+    }
+
+    /**
+     * Checks if any key has a net change since the last checkpoint.
+     *
+     * @return true if there is at least one net change
+     */
+    public boolean hasChanges() {
+        for (Change change : changes.values()) {
+            if (change.oldCount != change.newCount) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the number of keys touched since the last checkpoint (including net no-ops).
+     *
+     * @return The number of touched keys
+     */
+    public int getTouchedKeyCount() {
+        return changes.size();
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeJournal{" +
+                "touchedKeys=" + changes.size() +
+                '}';
+    }
+}
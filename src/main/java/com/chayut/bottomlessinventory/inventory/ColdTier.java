@@ -0,0 +1,52 @@
+package com.chayut.bottomlessinventory.inventory;
+
+import net.minecraft.world.item.Item;
+
+/**
+ * The entries of an InfiniteInventory that were moved out of memory with spillColdEntries(),
+ * such as a player's cold segments on disk (see data.ColdStorage).
+ *
+ * An inventory with a cold tier counts the cold entries against its quota, and pages an item's
+ * cold variants back in only for a lookup of one of its variants that may be cold. Queries over
+ * many entries leave cold entries out (see InfiniteInventory), so they never read the tier.
+ */
+public interface ColdTier {
+
+    /**
+     * Gets the number of variants held in the cold tier.
+     *
+     * @return The number of cold variants (0 if nothing is cold)
+     */
+    int getVariantCount();
+
+    /**
+     * Gets the total count of the items held in the cold tier.
+     *
+     * @return The number of cold items
+     */
+    long getItemCount();
+
+    /**
+     * Gets the estimated heap the cold entries would cost if they were paged back in.
+     *
+     * @return The estimate in bytes
+     */
+    long getEstimatedBytes();
+
+    /**
+     * Checks if a variant of an item may be held in the cold tier.
+     *
+     * @param item The item
+     * @return false only if no variant of the item is cold
+     */
+    boolean mayContain(Item item);
+
+    /**
+     * Moves the cold variants of one item back into the inventory (with mergeColdEntries),
+     * leaving every other cold entry in the tier.
+     *
+     * @param item The item
+     * @return The number of entries paged in, or -1 if they could not be read
+     */
+    int pageIn(Item item);
+}
@@ -0,0 +1,289 @@
+package com.chayut.bottomlessinventory.inventory;
+
+import com.mojang.serialization.DynamicOps;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import net.minecraft.core.HolderLookup;
+import net.minecraft.core.component.DataComponentPatch;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.NbtAccounter;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtOps;
+import net.minecraft.nbt.StringTag;
+import net.minecraft.nbt.Tag;
+import net.minecraft.network.VarInt;
+import net.minecraft.network.VarLong;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.Items;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.ToLongFunction;
+
+/**
+ * Compact storage format of InfiniteInventorySerializer (version 2).
+ *
+ * Instead of one CompoundTag with a fully encoded ItemStack per entry, the inventory is
+ * written as two tags:
+ * - ItemIds: a string table holding each item id once.
+ * - Entries: a byte array of records. Each record is a varint index into the string table,
+ *   a varint of flags, the component patch if flagged with one (a varint length followed by
+ *   the patch tag in binary NBT), and then either a varlong count and tick, or (for damage
+ *   histograms) a varint size followed by a varint damage, varlong count and varlong tick
+ *   per damage value. Plain stacks, the bulk of most inventories, have no patch.
+ *
+ * A record whose item or components can no longer be decoded (e.g. a removed mod) is skipped
+ * on its own; the rest of the stream still loads.
+ *
+ * Component patches are encoded to binary NBT once per key (see ItemStackKey#getEncodedComponents)
+ * and loaded patches seed that cache, so a save only runs the component codec for variants that
+ * are new since the last load. Every other record is written by appending varints and copying
+ * the cached bytes; no tag is built per entry, and the cache is never handed out to the saved
+ * data. Counts and ticks, the only parts of an entry that change, are varints.
+ */
+final class CompactInventoryFormat {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompactInventoryFormat.class);
+
+    static final String KEY_ITEM_IDS = "ItemIds";
+    static final String KEY_ENTRIES = "Entries";
+
+    /**
+     * The record has a component patch.
+     */
+    private static final int FLAG_COMPONENTS = 1;
+
+    /**
+     * The record is a damage histogram of its (base) key.
+     */
+    private static final int FLAG_HISTOGRAM = 2;
+
+    /**
+     * Every flag this version understands. A new record shape needs a new flag and a version
+     * bump (see InfiniteInventorySerializer.VERSION), so a reader never guesses at its layout.
+     */
+    private static final int KNOWN_FLAGS = FLAG_COMPONENTS | FLAG_HISTOGRAM;
+
+    private CompactInventoryFormat() {
+    }
+
+    /**
+     * Writes entries into a tag. Consecutive damaged variants of the same base key
+     * (as produced by damage histograms) are written as one histogram record.
+     *
+     * @param tag The tag to write into
+     * @param entries The entries to write
+     * @param ticks Looks up the tick each entry was last modified at (0 if unknown)
+     * @param registryAccess Registry access for component serialization
+     */
+    static void write(CompoundTag tag, Collection<InfiniteInventoryEntry> entries, ToLongFunction<ItemStackKey> ticks,
+                      HolderLookup.Provider registryAccess) {
+        Writer writer = new Writer(registryAccess);
+        List<InfiniteInventoryEntry> run = new ArrayList<>();
+        for (InfiniteInventoryEntry entry : entries) {
+            ItemStackKey key = entry.getKey();
+            if (!run.isEmpty() && (key.getDamage() == 0 || run.get(0).getKey().getBaseKey() != key.getBaseKey())) {
+                writer.writeRun(run, ticks);
+                run.clear();
+            }
+
+            if (key.getDamage() != 0) {
+                run.add(entry);
+            } else {
+                writer.writeEntry(entry, ticks.applyAsLong(key));
+            }
+        }
+        writer.writeRun(run, ticks);
+        writer.finish(tag);
+    }
+
+    /**
+     * Reads every record of a tag into an inventory.
+     *
+     * @param tag The tag to read from
+     * @param registryAccess Registry access for component deserialization
+     * @param inventory The inventory to add the entries to
+     * @return The number of records that could not be loaded
+     */
+    static int read(CompoundTag tag, HolderLookup.Provider registryAccess, InfiniteInventory inventory) {
+        ListTag idList = tag.getList(KEY_ITEM_IDS).orElse(new ListTag());
+        Item[] items = new Item[idList.size()];
+        for (int i = 0; i < items.length; i++) {
+            String id = idList.getString(i).orElse("");
+            items[i] = Optional.ofNullable(ResourceLocation.tryParse(id))
+                    .flatMap(BuiltInRegistries.ITEM::getOptional)
+                    .filter(item -> item != Items.AIR)
+                    .orElse(null);
+            if (items[i] == null) {
+                LOGGER.warn("Skipping entries of unknown item: {}", id);
+            }
+        }
+
+        DynamicOps<Tag> ops = registryAccess.createSerializationContext(NbtOps.INSTANCE);
+        ByteBuf in = Unpooled.wrappedBuffer(tag.getByteArray(KEY_ENTRIES).orElse(new byte[0]));
+
+        int failed = 0;
+        while (in.isReadable()) {
+            int itemIndex = VarInt.read(in);
+            int flags = VarInt.read(in);
+            if ((flags & ~KNOWN_FLAGS) != 0) {
+                // The record's length is unknown, so nothing after it can be read in step
+                LOGGER.error("Unknown inventory record flags {} (written by a newer version?), "
+                        + "skipping the remaining {} bytes of entries", flags, in.readableBytes());
+                failed++;
+                break;
+            }
+
+            // Decode the key first; the record's numbers are read either way to stay in step
+            Item item = itemIndex >= 0 && itemIndex < items.length ? items[itemIndex] : null;
+            ItemStackKey key = null;
+            if ((flags & FLAG_COMPONENTS) != 0) {
+                byte[] encoded = new byte[VarInt.read(in)];
+                in.readBytes(encoded);
+                Tag patchTag = item != null ? readTag(encoded) : null;
+
+                if (item != null && patchTag != null) {
+                    Optional<DataComponentPatch> patch = DataComponentPatch.CODEC.parse(ops, patchTag).result();
+                    if (patch.isPresent()) {
+                        key = ItemStackKey.of(item, patch.get());
+                        // The stored bytes are reused by the next save, unless normalization changed the patch
+                        if (key.getComponents().equals(patch.get())) {
+                            key.cacheEncodedComponents(registryAccess, encoded);
+                        }
+                    }
+                }
+            } else if (item != null) {
+                key = ItemStackKey.plain(item);
+            }
+
+            if ((flags & FLAG_HISTOGRAM) != 0) {
+                int size = VarInt.read(in);
+                for (int i = 0; i < size; i++) {
+                    int damage = VarInt.read(in);
+                    long count = VarLong.read(in);
+                    long tick = VarLong.read(in);
+                    if (key != null && count > 0) {
+                        inventory.addWithTick(ItemStackKey.withDamage(key, damage), count, tick);
+                    }
+                }
+            } else {
+                long count = VarLong.read(in);
+                long tick = VarLong.read(in);
+                if (key != null && count > 0) {
+                    inventory.addWithTick(key, count, tick);
+                }
+            }
+
+            if (key == null) {
+                failed++;
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Decodes a binary NBT patch, or returns null if the bytes are not a valid tag.
+     */
+    private static Tag readTag(byte[] encoded) {
+        try (ByteBufInputStream input = new ByteBufInputStream(Unpooled.wrappedBuffer(encoded))) {
+            return NbtIo.readAnyTag(input, NbtAccounter.unlimitedHeap());
+        } catch (IOException e) {
+            LOGGER.warn("Skipping inventory record with unreadable components", e);
+            return null;
+        }
+    }
+
+    /**
+     * Accumulates the string table and record stream while writing.
+     */
+    private static final class Writer {
+        private final HolderLookup.Provider registryAccess;
+        private final Reference2IntOpenHashMap<Item> itemIndexes = new Reference2IntOpenHashMap<>();
+        private final ListTag itemIds = new ListTag();
+        private final ByteBuf out = Unpooled.buffer();
+
+        private Writer(HolderLookup.Provider registryAccess) {
+            this.registryAccess = registryAccess;
+            itemIndexes.defaultReturnValue(-1);
+        }
+
+        private void writeEntry(InfiniteInventoryEntry entry, long tick) {
+            if (entry.isEmpty() || !writeHeader(entry.getKey(), 0)) {
+                return;
+            }
+            VarLong.write(out, entry.getCount());
+            VarLong.write(out, tick);
+        }
+
+        private void writeRun(List<InfiniteInventoryEntry> run, ToLongFunction<ItemStackKey> ticks) {
+            if (run.size() == 1) {
+                writeEntry(run.get(0), ticks.applyAsLong(run.get(0).getKey()));
+                return;
+            }
+            if (run.isEmpty() || !writeHeader(run.get(0).getKey().getBaseKey(), FLAG_HISTOGRAM)) {
+                return;
+            }
+
+            VarInt.write(out, run.size());
+            for (InfiniteInventoryEntry entry : run) {
+                VarInt.write(out, entry.getKey().getDamage());
+                VarLong.write(out, entry.getCount());
+                VarLong.write(out, ticks.applyAsLong(entry.getKey()));
+            }
+        }
+
+        /**
+         * Writes a record's item index, flags and component patch.
+         * The patch bytes are copied from the key's cached encoding, so only variants never saved
+         * before go through the codec.
+         *
+         * @return false if the components could not be encoded and the record was skipped
+         */
+        private boolean writeHeader(ItemStackKey key, int flags) {
+            byte[] encoded = null;
+            if (!key.isPlain()) {
+                try {
+                    encoded = key.getEncodedComponents(registryAccess);
+                    flags |= FLAG_COMPONENTS;
+                } catch (Exception e) {
+                    LOGGER.error("Failed to serialize components of inventory entry, skipping: {}", key, e);
+                    return false;
+                }
+            }
+
+            VarInt.write(out, itemIndex(key.getItem()));
+            VarInt.write(out, flags);
+            if (encoded != null) {
+                VarInt.write(out, encoded.length);
+                out.writeBytes(encoded);
+            }
+            return true;
+        }
+
+        private int itemIndex(Item item) {
+            int index = itemIndexes.getInt(item);
+            if (index < 0) {
+                index = itemIds.size();
+                itemIndexes.put(item, index);
+                itemIds.add(StringTag.valueOf(BuiltInRegistries.ITEM.getKey(item).toString()));
+            }
+            return index;
+        }
+
+        private void finish(CompoundTag tag) {
+            byte[] bytes = new byte[out.readableBytes()];
+            out.readBytes(bytes);
+            tag.put(KEY_ITEM_IDS, itemIds);
+            tag.putByteArray(KEY_ENTRIES, bytes);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.chayut.bottomlessinventory.inventory;
+
+import com.chayut.bottomlessinventory.BottomlessInventory;
+import net.minecraft.core.component.DataComponentPatch;
+import net.minecraft.core.component.DataComponentType;
+import net.minecraft.core.component.DataComponents;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.component.CustomData;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Rewrites component patches before they become ItemStackKeys, so stacks that only differ
+ * in noisy components are stored as one entry.
+ *
+ * Two rules are supported:
+ * - Stripped component types are removed from the patch entirely (e.g. minecraft:repair_cost).
+ * - Listed custom_data keys are removed from the custom_data component, and custom_data
+ *   that ends up empty is dropped (canonicalizing leftovers written by other mods).
+ *
+ * Normalization is lossy: a stack taken out of storage carries the normalized components.
+ * The normalizer in use must not change while inventories are loaded, since keys stored
+ * under the old rules would no longer be found.
+ *
+ * Only the logical server normalizes. It is active while a server runs (including the integrated
+ * server, whose client shares it); a client on a remote server builds its keys from the already
+ * normalized stacks it is synced.
+ */
+public final class ComponentNormalizer {
+    /**
+     * A normalizer that leaves every patch unchanged.
+     */
+    public static final ComponentNormalizer NONE = new ComponentNormalizer(Set.of(), Set.of());
+
+    private final Set<DataComponentType<?>> strippedTypes;
+    private final Set<String> customDataKeys;
+
+    /**
+     * Creates a normalizer.
+     *
+     * @param strippedTypes Component types removed from every patch
+     * @param customDataKeys Keys removed from the custom_data component
+     */
+    public ComponentNormalizer(Set<DataComponentType<?>> strippedTypes, Set<String> customDataKeys) {
+        this.strippedTypes = Set.copyOf(strippedTypes);
+        this.customDataKeys = Set.copyOf(customDataKeys);
+    }
+
+    /**
+     * Creates a normalizer from component type ids, as written in the config file.
+     * Unknown ids are logged and skipped.
+     *
+     * @param strippedIds Component type ids to strip, e.g. "minecraft:repair_cost"
+     * @param customDataKeys Keys to remove from custom_data
+     * @return The normalizer, or {@link #NONE} if both lists are empty
+     */
+    public static ComponentNormalizer fromIds(Collection<String> strippedIds, Collection<String> customDataKeys) {
+        Set<DataComponentType<?>> types = new LinkedHashSet<>();
+        for (String id : strippedIds) {
+            ResourceLocation location = ResourceLocation.tryParse(id);
+            DataComponentType<?> type = location != null
+                    ? BuiltInRegistries.DATA_COMPONENT_TYPE.getValue(location)
+                    : null;
+            if (type == null) {
+                BottomlessInventory.LOGGER.warn("Ignoring unknown component type in normalization config: {}", id);
+                continue;
+            }
+            types.add(type);
+        }
+
+        if (types.isEmpty() && customDataKeys.isEmpty()) {
+            return NONE;
+        }
+        return new ComponentNormalizer(types, new LinkedHashSet<>(customDataKeys));
+    }
+
+    /**
+     * Checks if this normalizer never changes a patch.
+     *
+     * @return true if no rules are configured
+     */
+    public boolean isIdentity() {
+        return strippedTypes.isEmpty() && customDataKeys.isEmpty();
+    }
+
+    /**
+     * Normalizes a component patch.
+     * Patches that no rule applies to are returned as-is, so the common case allocates nothing.
+     *
+     * @param item The item the patch belongs to
+     * @param components The component patch
+     * @return The normalized patch (the same instance if nothing changed)
+     */
+    public DataComponentPatch normalize(Item item, DataComponentPatch components) {
+        if (components.isEmpty() || isIdentity()) {
+            return components;
+        }
+
+        DataComponentPatch result = components;
+        if (!strippedTypes.isEmpty() && containsAny(components, strippedTypes)) {
+            result = result.forget(strippedTypes::contains);
+        }
+
+        if (!customDataKeys.isEmpty()) {
+            Optional<? extends CustomData> customData = result.get(DataComponents.CUSTOM_DATA);
+            if (customData != null && customData.isPresent()) {
+                result = normalizeCustomData(item, result, customData.get());
+            }
+        }
+        return result;
+    }
+
+    private DataComponentPatch normalizeCustomData(Item item, DataComponentPatch components, CustomData customData) {
+        CompoundTag tag = customData.copyTag();
+        boolean changed = false;
+        for (String key : customDataKeys) {
+            if (tag.contains(key)) {
+                tag.remove(key);
+                changed = true;
+            }
+        }
+        if (!changed) {
+            return components;
+        }
+
+        if (tag.isEmpty()) {
+            return components.forget(type -> type == DataComponents.CUSTOM_DATA);
+        }
+        ItemStack stack = new ItemStack(BuiltInRegistries.ITEM.wrapAsHolder(item), 1, components);
+        stack.set(DataComponents.CUSTOM_DATA, CustomData.of(tag));
+        return stack.getComponentsPatch();
+    }
+
+    private static boolean containsAny(DataComponentPatch components, Set<DataComponentType<?>> types) {
+        for (DataComponentType<?> type : types) {
+            if (components.get(type) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the stripped component types (for diagnostics).
+     *
+     * @return The stripped types
+     */
+    public Set<DataComponentType<?>> getStrippedTypes() {
+        return strippedTypes;
+    }
+
+    /**
+     * Gets the custom_data keys that are removed (for diagnostics).
+     *
+     * @return The removed keys
+     */
+    public Set<String> getCustomDataKeys() {
+        return customDataKeys;
+    }
+
+    @Override
+    public String toString() {
+        List<String> ids = strippedTypes.stream()
+                .map(type -> String.valueOf(BuiltInRegistries.DATA_COMPONENT_TYPE.getKey(type)))
+                .toList();
+        return "ComponentNormalizer{" +
+                "strip=" + ids +
+                ", customDataKeys=" + customDataKeys +
+                '}';
+    }
+}
@@ -0,0 +1,449 @@
+package com.chayut.bottomlessinventory.inventory;
+
+import net.minecraft.world.item.ItemStack;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread-safe infinite inventory for inserters that run off the server thread,
+ * such as import pipelines or asynchronous pickup batching.
+ *
+ * Keys are spread over a fixed number of stripes. Each stripe is a plain InfiniteInventory
+ * guarded by its own lock, so writers only contend when their keys hash to the same stripe.
+ * snapshot() locks every stripe (always in the same order) just long enough to take each
+ * stripe's O(1) copy-on-write snapshot, which gives a consistent cut across all stripes
+ * for building a full sync or a save.
+ *
+ * Per-stripe statistics and journals are not exposed; move the contents into a live
+ * InfiniteInventory with transferTo() on the server thread to sync them to a player.
+ *
+ * A StorageQuota set with setQuota() applies to the inventory as a whole. While one is set,
+ * the usage of all stripes is kept in shared atomic counters, and addItem reserves its share
+ * of every cap before touching its stripe, so concurrent writers can never overshoot a cap
+ * together. Without a quota the counters are not touched.
+ */
+public class ConcurrentInfiniteInventory {
+    /**
+     * Default number of stripes; enough to keep 16 writers mostly apart.
+     */
+    public static final int DEFAULT_STRIPES = 16;
+
+    private final InfiniteInventory[] stripes;
+    private final ReentrantLock[] locks;
+    private final int mask;
+
+    /**
+     * The quota; only changed while every stripe is locked.
+     */
+    private volatile StorageQuota quota = StorageQuota.UNLIMITED;
+
+    /**
+     * Usage of all stripes together, only kept while a quota is set.
+     */
+    private final AtomicLong uniqueItems = new AtomicLong();
+    private final AtomicLong totalItems = new AtomicLong();
+    private final AtomicLong estimatedBytes = new AtomicLong();
+
+    /**
+     * Creates an empty inventory with DEFAULT_STRIPES stripes.
+     */
+    public ConcurrentInfiniteInventory() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * Creates an empty inventory.
+     *
+     * @param stripeCount The number of stripes (rounded up to a power of two)
+     */
+    public ConcurrentInfiniteInventory(int stripeCount) {
+        if (stripeCount <= 0) {
+            throw new IllegalArgumentException("Stripe count must be positive: " + stripeCount);
+        }
+
+        int size = Integer.highestOneBit(stripeCount);
+        if (size < stripeCount) {
+            size <<= 1;
+        }
+
+        this.stripes = new InfiniteInventory[size];
+        this.locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new InfiniteInventory();
+            locks[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Sets the storage caps of the whole inventory (see StorageQuota).
+     * Items already stored are kept even if they exceed the new caps.
+     *
+     * @param quota The quota, or null for no limits
+     */
+    public void setQuota(StorageQuota quota) {
+        StorageQuota updated = quota != null ? quota : StorageQuota.UNLIMITED;
+        lockAll();
+        try {
+            int unique = 0;
+            long total = 0;
+            long bytes = 0;
+            for (InfiniteInventory stripe : stripes) {
+                unique += stripe.getUniqueItemCount();
+                total = InfiniteInventoryEntry.saturatedAdd(total, stripe.getTotalItemCount());
+                bytes += stripe.estimateMemory().totalBytes();
+            }
+            uniqueItems.set(unique);
+            totalItems.set(total);
+            estimatedBytes.set(bytes);
+            this.quota = updated;
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Gets the storage caps of the whole inventory.
+     *
+     * @return The quota (UNLIMITED if none was set)
+     */
+    public StorageQuota getQuota() {
+        return quota;
+    }
+
+    /**
+     * Adds items to the inventory. Safe to call from any thread.
+     * Counts saturate at Long.MAX_VALUE instead of wrapping around.
+     *
+     * Nothing is added if the whole count does not fit the quota, as with InfiniteInventory.addItem.
+     *
+     * @param stack The ItemStack to add (used as template)
+     * @param count The number of items to add
+     * @return true if items were successfully added
+     */
+    public boolean addItem(ItemStack stack, long count) {
+        if (stack == null || stack.isEmpty() || count <= 0) {
+            return false;
+        }
+
+        ItemStackKey key = ItemStackKey.of(stack);
+        int stripe = stripeFor(key);
+        ReentrantLock lock = locks[stripe];
+        lock.lock();
+        try {
+            InfiniteInventory inventory = stripes[stripe];
+            StorageQuota quota = this.quota;
+            if (quota.isUnlimited()) {
+                inventory.add(key, count);
+                return true;
+            }
+
+            // Whether the key is new can not change while the stripe is locked
+            boolean newVariant = inventory.storedCount(key) == 0;
+            long entryBytes = newVariant ? inventory.estimatedEntryBytes(key) : 0;
+            if (!reserve(quota, newVariant ? 1 : 0, count, entryBytes)) {
+                return false;
+            }
+
+            int uniqueBefore = inventory.getUniqueItemCount();
+            long totalBefore = inventory.getTotalItemCount();
+            long bytesBefore = inventory.estimateMemory().totalBytes();
+            inventory.add(key, count);
+            // Replace the reservation with what the stripe actually grew by
+            account(inventory.getUniqueItemCount() - uniqueBefore - (newVariant ? 1 : 0),
+                    inventory.getTotalItemCount() - totalBefore - count,
+                    inventory.estimateMemory().totalBytes() - bytesBefore - entryBytes);
+        } finally {
+            lock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Removes items from the inventory. Safe to call from any thread.
+     *
+     * @param stack The ItemStack to remove (used as key)
+     * @param count The number of items to remove
+     * @return The actual number of items removed
+     */
+    public long removeItem(ItemStack stack, long count) {
+        if (stack == null || stack.isEmpty() || count <= 0) {
+            return 0;
+        }
+
+        ItemStackKey key = ItemStackKey.findStored(stack);
+        if (key == null) {
+            return 0;
+        }
+
+        int stripe = stripeFor(key);
+        ReentrantLock lock = locks[stripe];
+        lock.lock();
+        try {
+            InfiniteInventory inventory = stripes[stripe];
+            if (quota.isUnlimited()) {
+                return inventory.remove(key, count);
+            }
+
+            int uniqueBefore = inventory.getUniqueItemCount();
+            long bytesBefore = inventory.estimateMemory().totalBytes();
+            long removed = inventory.remove(key, count);
+            account(inventory.getUniqueItemCount() - uniqueBefore, -removed,
+                    inventory.estimateMemory().totalBytes() - bytesBefore);
+            return removed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the current count of a specific item type.
+     *
+     * @param stack The ItemStack to check (used as key)
+     * @return The count of matching items, or 0 if not present
+     */
+    public long getCount(ItemStack stack) {
+        ItemStackKey key = ItemStackKey.findStored(stack);
+        if (key == null) {
+            return 0;
+        }
+
+        int stripe = stripeFor(key);
+        ReentrantLock lock = locks[stripe];
+        lock.lock();
+        try {
+            return stripes[stripe].getCount(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of different item types stored.
+     * Stripes are read one at a time; use snapshot() for a consistent view.
+     *
+     * @return The number of unique item types
+     */
+    public int getUniqueItemCount() {
+        int unique = 0;
+        for (int i = 0; i < stripes.length; i++) {
+            locks[i].lock();
+            try {
+                unique += stripes[i].getUniqueItemCount();
+            } finally {
+                locks[i].unlock();
+            }
+        }
+        return unique;
+    }
+
+    /**
+     * Gets the total count of all items, saturated at Long.MAX_VALUE.
+     * Stripes are read one at a time; use snapshot() for a consistent view.
+     *
+     * @return The total count of all items
+     */
+    public long getTotalItemCount() {
+        long total = 0;
+        for (int i = 0; i < stripes.length; i++) {
+            locks[i].lock();
+            try {
+                total = InfiniteInventoryEntry.saturatedAdd(total, stripes[i].getTotalItemCount());
+            } finally {
+                locks[i].unlock();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Checks if the inventory is empty.
+     *
+     * @return true if no items are stored
+     */
+    public boolean isEmpty() {
+        return getUniqueItemCount() == 0;
+    }
+
+    /**
+     * Takes a consistent, immutable snapshot of all stripes.
+     * Writers are blocked only while each stripe's O(1) snapshot is taken.
+     *
+     * @return A snapshot of the whole inventory
+     */
+    public InventorySnapshot snapshot() {
+        InventorySnapshot[] parts = new InventorySnapshot[stripes.length];
+
+        lockAll();
+        try {
+            for (int i = 0; i < stripes.length; i++) {
+                parts[i] = stripes[i].snapshot();
+            }
+        } finally {
+            unlockAll();
+        }
+
+        return InventorySnapshot.combine(parts);
+    }
+
+    /**
+     * Moves everything into another inventory, one stripe at a time.
+     * The target is not thread-safe, so call this on the thread that owns it
+     * (normally the server thread). Items added concurrently are either moved or left
+     * for the next transfer, never lost or duplicated.
+     *
+     * The target's quota applies as with addItem, except that a partial amount is moved
+     * whenever it fits. Whatever the quota refuses stays here for a later transfer.
+     *
+     * @param target The inventory to move the items into
+     * @return The net changes made to the target
+     */
+    public List<InventoryChange> transferTo(InfiniteInventory target) {
+        List<InventoryChange> changes = new ArrayList<>();
+        for (int i = 0; i < stripes.length; i++) {
+            InventorySnapshot moved;
+            locks[i].lock();
+            try {
+                if (stripes[i].isEmpty()) {
+                    continue;
+                }
+                moved = stripes[i].snapshot();
+                if (!quota.isUnlimited()) {
+                    account(-stripes[i].getUniqueItemCount(), -stripes[i].getTotalItemCount(),
+                            -stripes[i].estimateMemory().totalBytes());
+                }
+                stripes[i].clear();
+                if (!quota.isUnlimited()) {
+                    account(0, 0, stripes[i].estimateMemory().totalBytes());
+                }
+            } finally {
+                locks[i].unlock();
+            }
+
+            // The snapshot is immutable, so the target can be updated without holding the lock
+            List<InfiniteInventoryEntry> refused = new ArrayList<>();
+            for (InfiniteInventoryEntry entry : moved.getAllEntries()) {
+                ItemStackKey key = entry.getKey();
+                long accepted = target.acceptableCount(key, entry.getCount());
+                if (accepted < entry.getCount()) {
+                    refused.add(new InfiniteInventoryEntry(key, entry.getCount() - accepted));
+                }
+                if (accepted <= 0) {
+                    continue;
+                }
+
+                long before = target.storedCount(key);
+                target.add(key, accepted);
+                long after = target.storedCount(key);
+                if (after != before) {
+                    changes.add(new InventoryChange(key, before, after));
+                }
+            }
+
+            if (!refused.isEmpty()) {
+                locks[i].lock();
+                try {
+                    // Put back without a quota check: these items were admitted when they were first added
+                    InfiniteInventory stripe = stripes[i];
+                    int uniqueBefore = stripe.getUniqueItemCount();
+                    long totalBefore = stripe.getTotalItemCount();
+                    long bytesBefore = stripe.estimateMemory().totalBytes();
+                    for (InfiniteInventoryEntry entry : refused) {
+                        stripe.add(entry.getKey(), entry.getCount());
+                    }
+                    if (!quota.isUnlimited()) {
+                        account(stripe.getUniqueItemCount() - uniqueBefore, stripe.getTotalItemCount() - totalBefore,
+                                stripe.estimateMemory().totalBytes() - bytesBefore);
+                    }
+                } finally {
+                    locks[i].unlock();
+                }
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Reserves room for an insertion under every cap of the quota, or nothing if any cap is hit.
+     * Each counter only commits an increase that stays within its cap (see tryAdd), so writers
+     * on different stripes can not overshoot a cap together and a refused increase never has
+     * to be taken back. Only the counters already raised when a later cap refuses are released.
+     */
+    private boolean reserve(StorageQuota quota, int variants, long items, long bytes) {
+        if (!tryAdd(uniqueItems, variants, quota.maxUniqueItems())) {
+            return false;
+        }
+        if (!tryAdd(estimatedBytes, bytes, quota.maxEstimatedBytes())) {
+            tryAdd(uniqueItems, -variants, 0);
+            return false;
+        }
+        if (!tryAdd(totalItems, items, quota.maxTotalItems())) {
+            tryAdd(estimatedBytes, -bytes, 0);
+            tryAdd(uniqueItems, -variants, 0);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Adds a change in the usage of a stripe to the shared counters.
+     */
+    private void account(int variants, long items, long bytes) {
+        tryAdd(uniqueItems, variants, 0);
+        tryAdd(totalItems, items, 0);
+        tryAdd(estimatedBytes, bytes, 0);
+    }
+
+    /**
+     * Adds to a shared counter in one compare-and-set loop, saturating at Long.MAX_VALUE.
+     * Every counter update goes through here, so reservations and releases use the same arithmetic.
+     *
+     * @param cap The most an increase may bring the counter to, or 0 or less for no cap
+     * @return false, leaving the counter unchanged, if an increase would exceed the cap
+     */
+    private static boolean tryAdd(AtomicLong counter, long delta, long cap) {
+        if (delta == 0) {
+            return true;
+        }
+        while (true) {
+            long current = counter.get();
+            long updated = delta > 0 ? InfiniteInventoryEntry.saturatedAdd(current, delta) : current + delta;
+            if (delta > 0 && cap > 0 && updated > cap) {
+                return false;
+            }
+            if (counter.compareAndSet(current, updated)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Locks every stripe, always in index order so concurrent callers cannot deadlock.
+     */
+    private void lockAll() {
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = locks.length - 1; i >= 0; i--) {
+            locks[i].unlock();
+        }
+    }
+
+    private int stripeFor(ItemStackKey key) {
+        int spread = key.hashCode() * 0x9E3779B9;
+        return (spread ^ (spread >>> 16)) & mask;
+    }
+
+    @Override
+    public String toString() {
+        return "ConcurrentInfiniteInventory{" +
+                "stripes=" + stripes.length +
+                '}';
+    }
+}
@@ -0,0 +1,165 @@
+package com.chayut.bottomlessinventory.inventory;
+
+import java.util.Arrays;
+
+/**
+ * Damage value to count histogram for all damaged variants of one base key
+ * (the same item and components apart from minecraft:damage).
+ *
+ * Damages are kept sorted in a primitive int[] with counts in a parallel long[], so a bow
+ * with a few hundred distinct damage values costs two small arrays instead of a key,
+ * component patch and table slot per damage value. A count of 0 is never stored.
+ * A third parallel long[] holds the tick each damage value was last modified at.
+ *
+ * Histograms are shared with snapshots; HistogramTable copies one before changing it if it
+ * was created before the latest snapshot (see generation).
+ */
+final class DamageHistogram {
+    private static final int[] NO_DAMAGES = new int[0];
+    private static final long[] NO_COUNTS = new long[0];
+
+    private int[] damages;
+    private long[] counts;
+    private long[] ticks;
+    private int size;
+
+    /**
+     * The HistogramTable generation this histogram was created in.
+     */
+    final int generation;
+
+    DamageHistogram(int generation) {
+        this.damages = NO_DAMAGES;
+        this.counts = NO_COUNTS;
+        this.ticks = NO_COUNTS;
+        this.generation = generation;
+    }
+
+    private DamageHistogram(DamageHistogram source, int generation) {
+        this.damages = Arrays.copyOf(source.damages, source.size);
+        this.counts = Arrays.copyOf(source.counts, source.size);
+        this.ticks = Arrays.copyOf(source.ticks, source.size);
+        this.size = source.size;
+        this.generation = generation;
+    }
+
+    /**
+     * Creates a private copy for a newer table generation.
+     */
+    DamageHistogram copy(int generation) {
+        return new DamageHistogram(this, generation);
+    }
+
+    /**
+     * Gets the number of distinct damage values stored.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gets the damage value at a position (ascending order).
+     */
+    int damageAt(int index) {
+        return damages[index];
+    }
+
+    /**
+     * Gets the count at a position.
+     */
+    long countAt(int index) {
+        return counts[index];
+    }
+
+    /**
+     * Gets the tick the damage value at a position was last modified at.
+     */
+    long tickAt(int index) {
+        return ticks[index];
+    }
+
+    /**
+     * Gets the tick a damage value was last modified at.
+     *
+     * @return The tick, or 0 if absent
+     */
+    long getTick(int damage) {
+        int index = Arrays.binarySearch(damages, 0, size, damage);
+        return index >= 0 ? ticks[index] : 0;
+    }
+
+    /**
+     * Gets the count stored for a damage value.
+     *
+     * @return The count, or 0 if absent
+     */
+    long get(int damage) {
+        int index = Arrays.binarySearch(damages, 0, size, damage);
+        return index >= 0 ? counts[index] : 0;
+    }
+
+    /**
+     * Sets the tick a stored damage value was last modified at, leaving its count unchanged.
+     */
+    void setTick(int damage, long tick) {
+        int index = Arrays.binarySearch(damages, 0, size, damage);
+        if (index >= 0) {
+            ticks[index] = tick;
+        }
+    }
+
+    /**
+     * Sets the count for a damage value without a modification tick.
+     *
+     * @see #put(int, long, long)
+     */
+    long put(int damage, long count) {
+        return put(damage, count, 0);
+    }
+
+    /**
+     * Sets the count for a damage value, inserting or removing it as needed.
+     *
+     * @param damage The damage value
+     * @param count The new count (0 removes the damage value)
+     * @param tick The tick of this change
+     * @return The previous count (0 if absent)
+     */
+    long put(int damage, long count, long tick) {
+        int index = Arrays.binarySearch(damages, 0, size, damage);
+        if (index >= 0) {
+            long previous = counts[index];
+            if (count != 0) {
+                counts[index] = count;
+                ticks[index] = tick;
+            } else {
+                int moved = size - index - 1;
+                System.arraycopy(damages, index + 1, damages, index, moved);
+                System.arraycopy(counts, index + 1, counts, index, moved);
+                System.arraycopy(ticks, index + 1, ticks, index, moved);
+                size--;
+            }
+            return previous;
+        }
+
+        if (count == 0) {
+            return 0;
+        }
+
+        int insert = -index - 1;
+        if (size == damages.length) {
+            int capacity = Math.max(4, size + (size >> 1));
+            damages = Arrays.copyOf(damages, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            ticks = Arrays.copyOf(ticks, capacity);
+        }
+        System.arraycopy(damages, insert, damages, insert + 1, size - insert);
+        System.arraycopy(counts, insert, counts, insert + 1, size - insert);
+        System.arraycopy(ticks, insert, ticks, insert + 1, size - insert);
+        damages[insert] = damage;
+        counts[insert] = count;
+        ticks[insert] = tick;
+        size++;
+        return 0;
+    }
+}
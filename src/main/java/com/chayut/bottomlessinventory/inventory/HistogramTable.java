@@ -0,0 +1,278 @@
+package com.chayut.bottomlessinventory.inventory;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash table from a base ItemStackKey to the DamageHistogram of its damaged variants.
+ *
+ * Uses the same layout as VariantTable (parallel arrays, linear probing, backward-shift deletion).
+ * Copy-on-write works on two levels: snapshot() shares the slot arrays, which are copied before the
+ * next write, and bumps the generation, so histograms created before the snapshot are copied before
+ * they are changed.
+ */
+final class HistogramTable {
+    private static final int MIN_CAPACITY = 16;
+
+    private ItemStackKey[] keys;
+    private DamageHistogram[] histograms;
+    private int size;
+    private int mask;
+    private int generation;
+
+    /**
+     * Whether the arrays are shared with a snapshot and must be copied before the next write.
+     */
+    private boolean shared;
+
+    /**
+     * Creates an empty table.
+     */
+    HistogramTable() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Creates a table over another table's arrays (used by snapshot()).
+     */
+    private HistogramTable(HistogramTable source) {
+        this.keys = source.keys;
+        this.histograms = source.histograms;
+        this.size = source.size;
+        this.mask = source.mask;
+        this.generation = source.generation;
+        this.shared = true;
+    }
+
+    /**
+     * Creates a read-only copy of this table in O(1).
+     * The returned table must never be written to.
+     */
+    HistogramTable snapshot() {
+        shared = true;
+        HistogramTable snapshot = new HistogramTable(this);
+        generation++;
+        return snapshot;
+    }
+
+    /**
+     * Gets the number of base keys with at least one damaged variant.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of slots (for iteration with keyAt/histogramAt).
+     */
+    int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Gets the base key stored in a slot, or null if the slot is empty.
+     */
+    ItemStackKey keyAt(int slot) {
+        return keys[slot];
+    }
+
+    /**
+     * Gets the histogram stored in a slot, or null if the slot is empty.
+     */
+    DamageHistogram histogramAt(int slot) {
+        return histograms[slot];
+    }
+
+    /**
+     * Gets the histogram for a base key.
+     *
+     * @return The histogram, or null if the base key has no damaged variants
+     */
+    DamageHistogram get(ItemStackKey base) {
+        int slot = indexOf(base);
+        return slot >= 0 ? histograms[slot] : null;
+    }
+
+    /**
+     * Gets the count of one damaged variant.
+     */
+    long get(ItemStackKey base, int damage) {
+        DamageHistogram histogram = get(base);
+        return histogram != null ? histogram.get(damage) : 0;
+    }
+
+    /**
+     * Gets the tick one damaged variant was last modified at.
+     */
+    long getTick(ItemStackKey base, int damage) {
+        DamageHistogram histogram = get(base);
+        return histogram != null ? histogram.getTick(damage) : 0;
+    }
+
+    /**
+     * Sets the tick one stored damaged variant was last modified at, leaving its count unchanged.
+     */
+    void setTick(ItemStackKey base, int damage, long tick) {
+        int slot = indexOf(base);
+        if (slot < 0 || histograms[slot].get(damage) == 0) {
+            return;
+        }
+
+        unshare();
+        DamageHistogram histogram = histograms[slot];
+        if (histogram.generation != generation) {
+            histogram = histogram.copy(generation);
+            histograms[slot] = histogram;
+        }
+        histogram.setTick(damage, tick);
+    }
+
+    /**
+     * Sets the count of one damaged variant without a modification tick.
+     *
+     * @see #put(ItemStackKey, int, long, long)
+     */
+    long put(ItemStackKey base, int damage, long count) {
+        return put(base, damage, count, 0);
+    }
+
+    /**
+     * Sets the count of one damaged variant.
+     *
+     * @param base The base key (the variant's key without damage)
+     * @param damage The damage value
+     * @param count The new count (0 removes the variant)
+     * @param tick The tick of this change
+     * @return The previous count
+     */
+    long put(ItemStackKey base, int damage, long count, long tick) {
+        int slot = indexOf(base);
+        if (slot < 0) {
+            if (count == 0) {
+                return 0;
+            }
+            unshare();
+            DamageHistogram histogram = new DamageHistogram(generation);
+            histogram.put(damage, count, tick);
+            insert(base, histogram);
+            return 0;
+        }
+
+        DamageHistogram histogram = histograms[slot];
+        if (histogram.get(damage) == count) {
+            return count;
+        }
+
+        unshare();
+        if (histogram.generation != generation) {
+            histogram = histogram.copy(generation);
+            histograms[slot] = histogram;
+        }
+
+        long previous = histogram.put(damage, count, tick);
+        if (histogram.size() == 0) {
+            removeAt(slot);
+        }
+        return previous;
+    }
+
+    /**
+     * Removes all histograms.
+     */
+    void clear() {
+        if (shared) {
+            allocate(keys.length);
+            shared = false;
+        } else {
+            Arrays.fill(keys, null);
+            Arrays.fill(histograms, null);
+        }
+        size = 0;
+    }
+
+    private int indexOf(ItemStackKey key) {
+        int slot = slotFor(key.hashCode());
+        ItemStackKey current;
+        while ((current = keys[slot]) != null) {
+            if (current == key || current.equals(key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insert(ItemStackKey key, DamageHistogram histogram) {
+        int slot = slotFor(key.hashCode());
+        while (keys[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        histograms[slot] = histogram;
+        if (++size > keys.length - (keys.length >>> 2)) {
+            allocateAndRehash(keys.length * 2);
+        }
+    }
+
+    private void removeAt(int slot) {
+        int gap = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            ItemStackKey key = keys[next];
+            if (key == null) {
+                break;
+            }
+
+            int home = slotFor(key.hashCode());
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = key;
+                histograms[gap] = histograms[next];
+                gap = next;
+            }
+        }
+
+        keys[gap] = null;
+        histograms[gap] = null;
+        size--;
+    }
+
+    /**
+     * Copies the slot arrays if a snapshot still references them.
+     */
+    private void unshare() {
+        if (shared) {
+            keys = keys.clone();
+            histograms = histograms.clone();
+            shared = false;
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new ItemStackKey[capacity];
+        histograms = new DamageHistogram[capacity];
+        mask = capacity - 1;
+    }
+
+    private void allocateAndRehash(int capacity) {
+        ItemStackKey[] oldKeys = keys;
+        DamageHistogram[] oldHistograms = histograms;
+        allocate(capacity);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            ItemStackKey key = oldKeys[i];
+            if (key != null) {
+                int slot = slotFor(key.hashCode());
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                histograms[slot] = oldHistograms[i];
+            }
+        }
+    }
+
+    private int slotFor(int hash) {
+        int spread = hash * 0x9E3779B9;
+        return (spread ^ (spread >>> 16)) & mask;
+    }
+}
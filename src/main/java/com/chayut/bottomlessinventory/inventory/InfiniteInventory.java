@@ -1,31 +1,209 @@
 package com.chayut.bottomlessinventory.inventory;
 
 import net.minecraft.core.HolderLookup;
+import net.minecraft.core.registries.BuiltInRegistries;
 import net.minecraft.nbt.CompoundTag;
+import net.minecraft.tags.TagKey;
+import net.minecraft.world.item.CreativeModeTab;
+import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
 
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.LongSupplier;
 
 /**
  * Main storage class for the infinite inventory system.
- * Uses a HashMap with ItemStackKey to store arbitrary amounts of items.
+ *
+ * Storage is split in two:
+ * - Stacks without components (plain blocks and materials, the bulk of most inventories)
+ *   are counted in a dense long[] indexed by the item's raw registry id.
+ * - Stacks that carry components are kept in a VariantTable, an open-addressing table
+ *   that stores ItemStackKeys and counts in parallel arrays.
+ * - In damage histogram mode (the default), damaged variants of damageable items are kept in a
+ *   HistogramTable instead: one damage -> count histogram per base key (the same item and
+ *   components without damage), so mob-farm gear with random damage does not create a key,
+ *   component patch and table slot per damage value. The index tracks the base key only.
+ *
+ * Every stored variant also carries the tick it was last modified at, and bounded
+ * "most stored" and "recently changed" rankings are maintained on each change
+ * (see InventoryRankings), so those views never sort the whole storage.
+ * The ticks also decide which variants spillColdEntries() moves out to a cold tier
+ * (on a server, a per-player segment on disk; see data.ColdStorage).
+ *
+ * With a ColdTier set, cold entries count against the quota, and only lookups and changes of one
+ * variant page the tier back in: getCount and every change to a component variant (addItem,
+ * removeItem, apply, and so transactions), and only if the tier may hold the variant's item.
+ * Only that item's cold variants come back, and a variant is never changed while part of it is
+ * still cold, so journals always see its whole count. Everything else describes the in-memory
+ * entries only, so no query reads the tier from disk or pulls all of it into the heap:
+ * getAllEntries() (and so saving), getStoredItems(), the per-item, namespace, tag and creative tab
+ * queries and totals, getTopByCount(), getRecentlyChanged(), getLastModified(), the stats and estimateMemory().
+ *
+ * No per-variant entry objects are kept; getAllEntries() creates them on the fly.
+ * Stored keys are canonical pooled keys (see ItemStackKey.of), so reads never allocate a key.
+ *
+ * snapshot() shares the current arrays (counts and ticks) with an immutable InventorySnapshot
+ * in O(1). The first write after a snapshot copies the arrays it touches (copy-on-write),
+ * so the snapshot can be read from any thread while the live inventory keeps changing.
  */
 public class InfiniteInventory {
-    private final Map<ItemStackKey, InfiniteInventoryEntry> storage;
+    private final VariantTable variants;
+    private final HistogramTable histograms;
+    private final boolean damageHistograms;
+    private final InventoryStats stats;
+    private final InventoryIndex index;
+    private final InventoryRankings rankings;
+    private final List<ChangeJournal> journals;
 
     /**
-     * Creates a new empty infinite inventory.
+     * Counts of component-free stacks, indexed by raw item registry id.
+     * Allocated on first use and grown if a larger id shows up.
+     */
+    private long[] plainCounts;
+
+    /**
+     * Last-modified ticks of component-free stacks, parallel to plainCounts.
+     */
+    private long[] plainTicks;
+
+    /**
+     * Whether plainCounts and plainTicks are shared with a snapshot and must be copied before the next write.
+     */
+    private boolean plainShared;
+
+    /**
+     * Stamps each change. Defaults to a counter of changes made to this inventory.
+     */
+    private LongSupplier clock;
+    private long changeCount;
+
+    /**
+     * Running memory estimates of the stored entries (see InventoryMemoryEstimator),
+     * updated whenever an entry is added or removed.
+     */
+    private long keyBytes;
+    private long referenceStackBytes;
+    private long histogramEntryBytes;
+    private int indexedKeyCount;
+
+    private StorageQuota quota = StorageQuota.UNLIMITED;
+
+    /**
+     * Entries moved out of memory, or null if this inventory has no cold tier.
+     */
+    private ColdTier coldTier;
+    private boolean pagingIn;
+
+    /**
+     * Insertions admitted by the quota but not merged yet, or null if nothing buffers insertions
+     * into this inventory (see InsertionBuffer).
+     */
+    private InsertionBuffer insertions;
+
+    /**
+     * Set while entries move to or from a cold tier (spillColdEntries and mergeColdEntries),
+     * so each journal treats the move as its ColdMoves says.
+     */
+    private boolean movingCold;
+
+    /**
+     * Creates a new empty infinite inventory that stores damaged items in damage histograms.
      */
     public InfiniteInventory() {
-        this.storage = new HashMap<>();
+        this(true);
+    }
+
+    /**
+     * Creates a new empty infinite inventory.
+     *
+     * @param damageHistograms true to store damaged variants of an item in one damage histogram,
+     *                         false to store every damage value as its own variant
+     */
+    public InfiniteInventory(boolean damageHistograms) {
+        this.damageHistograms = damageHistograms;
+        this.variants = new VariantTable();
+        this.histograms = new HistogramTable();
+        this.stats = new InventoryStats();
+        this.index = new InventoryIndex();
+        this.rankings = new InventoryRankings();
+        this.journals = new ArrayList<>(2);
+        this.plainCounts = new long[0];
+        this.plainTicks = new long[0];
+        this.clock = () -> changeCount;
+    }
+
+    /**
+     * Sets the clock used to stamp changes, e.g. the overworld game time on a server.
+     * Without one, changes are stamped with a running count of changes to this inventory.
+     *
+     * @param clock Supplies the current tick, or null to go back to the change counter
+     */
+    public void setClock(LongSupplier clock) {
+        this.clock = clock != null ? clock : () -> changeCount;
+    }
+
+    /**
+     * Sets the tier holding this inventory's cold entries (see spillColdEntries).
+     *
+     * @param coldTier The cold tier, or null for none
+     */
+    public void setColdTier(ColdTier coldTier) {
+        this.coldTier = coldTier;
+    }
+
+    /**
+     * Gets the tier holding this inventory's cold entries.
+     *
+     * @return The cold tier, or null if none is set
+     */
+    public ColdTier getColdTier() {
+        return coldTier;
+    }
+
+    /**
+     * Sets the buffer whose pending insertions the quota checks of direct writes count as stored.
+     * Called by the InsertionBuffer constructor; an inventory has at most one.
+     */
+    void setInsertionBuffer(InsertionBuffer insertions) {
+        this.insertions = insertions;
+    }
+
+    /**
+     * Sets the storage caps enforced by addItem.
+     *
+     * @param quota The quota, or null for no limits
+     */
+    public void setQuota(StorageQuota quota) {
+        this.quota = quota != null ? quota : StorageQuota.UNLIMITED;
+    }
+
+    /**
+     * Gets the storage caps enforced by addItem.
+     *
+     * @return The current quota
+     */
+    public StorageQuota getQuota() {
+        return quota;
     }
 
     /**
      * Adds items to the inventory.
      * If the item type already exists, increases the count.
      * If the item type is new, creates a new entry.
+     * Counts saturate at Long.MAX_VALUE instead of wrapping around.
+     *
+     * Nothing is added if the whole count does not fit the quota (see getAcceptableCount).
      *
      * @param stack The ItemStack to add (used as template)
      * @param count The number of items to add
@@ -39,19 +217,85 @@ public class InfiniteInventory {
             return false;
         }
 
-        ItemStackKey key = new ItemStackKey(stack);
-        InfiniteInventoryEntry entry = storage.get(key);
+        ItemStackKey key = ItemStackKey.of(stack);
+        pageInBeforeChange(key);
+        if (acceptableCount(key, count) < count) {
+            return false;
+        }
+        add(key, count);
+        return true;
+    }
 
-        if (entry == null) {
-            // Create new entry
-            entry = new InfiniteInventoryEntry(stack, count);
-            storage.put(key, entry);
-        } else {
-            // Add to existing entry
-            entry.addCount(count);
+    /**
+     * Gets how many of the given items the quota lets addItem accept. O(1).
+     * A new variant is refused outright if it would exceed the unique variant or memory cap;
+     * the total item cap allows a partial amount.
+     *
+     * @param stack The ItemStack to add
+     * @param count The number of items offered
+     * @return The number that would be accepted, between 0 and count
+     */
+    public long getAcceptableCount(ItemStack stack, long count) {
+        if (stack == null || stack.isEmpty() || count <= 0) {
+            return 0;
+        }
+        if (quota.isUnlimited()) {
+            return count;
         }
+        return acceptableCount(ItemStackKey.of(stack), count);
+    }
 
-        return true;
+    /**
+     * Gets how much of an insertion under a canonical key fits the quota.
+     */
+    long acceptableCount(ItemStackKey key, long count) {
+        if (insertions == null || insertions.isEmpty()) {
+            return acceptableCount(key, count, storedCount(key) == 0, 0, 0, 0);
+        }
+        // Room promised to pending insertions is taken, since their merge skips the quota
+        return acceptableCount(key, count, storedCount(key) == 0 && insertions.getPendingCount(key) == 0,
+                insertions.getPendingItemCount(), insertions.getPendingVariantCount(), insertions.getPendingBytes());
+    }
+
+    /**
+     * Gets how much of an insertion fits the quota while other insertions are still pending
+     * (see InsertionBuffer). Pending items count toward the total cap, and pending new variants
+     * toward the unique variant and memory caps. So do the entries of the cold tier; a cold
+     * variant that is added to again counts as a new one until it is paged in.
+     *
+     * @param newVariant Whether the key is neither stored nor pending yet
+     * @param pendingItems The number of items pending
+     * @param pendingVariants The number of new variants pending
+     * @param pendingBytes The estimated memory of the new variants pending
+     */
+    long acceptableCount(ItemStackKey key, long count, boolean newVariant,
+                         long pendingItems, int pendingVariants, long pendingBytes) {
+        if (quota.isUnlimited()) {
+            return count;
+        }
+
+        if (coldTier != null && coldTier.getVariantCount() > 0) {
+            pendingItems = InfiniteInventoryEntry.saturatedAdd(pendingItems, coldTier.getItemCount());
+            pendingVariants += coldTier.getVariantCount();
+            pendingBytes += coldTier.getEstimatedBytes();
+        }
+
+        if (newVariant) {
+            if (quota.maxUniqueItems() > 0 && (long) getUniqueItemCount() + pendingVariants >= quota.maxUniqueItems()) {
+                return 0;
+            }
+            if (quota.maxEstimatedBytes() > 0 && estimateMemory().totalBytes() + pendingBytes
+                    + estimatedEntryBytes(key) > quota.maxEstimatedBytes()) {
+                return 0;
+            }
+        }
+
+        if (quota.maxTotalItems() > 0) {
+            long stored = InfiniteInventoryEntry.saturatedAdd(getTotalItemCount(), pendingItems);
+            long room = Math.max(0, quota.maxTotalItems() - stored);
+            return Math.min(count, room);
+        }
+        return count;
     }
 
     /**
@@ -71,23 +315,82 @@ public class InfiniteInventory {
             return 0;
         }
 
-        ItemStackKey key = new ItemStackKey(stack);
-        InfiniteInventoryEntry entry = storage.get(key);
-
-        if (entry == null) {
+        // Stored keys are always pooled, so a missing key means the item is not stored
+        ItemStackKey key = ItemStackKey.findStored(stack);
+        if ((key == null || !key.isPlain()) && pageInCold(stack.getItem())) {
+            key = ItemStackKey.findStored(stack);
+        }
+        if (key == null) {
             return 0;
         }
+        return remove(key, count);
+    }
 
-        long removed = entry.removeCount(count);
+    /**
+     * Adds a positive count under a canonical key, saturating at Long.MAX_VALUE.
+     */
+    void add(ItemStackKey key, long count) {
+        pageInBeforeChange(key);
+        setCount(key, InfiniteInventoryEntry.saturatedAdd(storedCount(key), count));
+    }
 
-        // Clean up empty entries
-        if (entry.isEmpty()) {
-            storage.remove(key);
+    /**
+     * Removes up to a positive count from under a canonical key.
+     *
+     * @return The actual number of items removed
+     */
+    long remove(ItemStackKey key, long count) {
+        pageInBeforeChange(key);
+        long current = storedCount(key);
+        long removed = Math.min(count, current);
+        if (removed > 0) {
+            setCount(key, current - removed);
         }
-
         return removed;
     }
 
+    /**
+     * Applies a batch of additions and removals, touching each item type once.
+     * Additions to a type are applied before its removals, and removals never go below 0.
+     *
+     * Additions are checked against the quota type by type, in batch order, like
+     * getAcceptableCount: a type may receive only part of its addition, or none of it if it is
+     * a new variant that does not fit. Compare the returned changes with the batch to find
+     * what was refused.
+     *
+     * @param batch The batch to apply
+     * @return The net change of every item type whose count changed, in batch order
+     */
+    public List<InventoryChange> apply(InventoryBatch batch) {
+        return apply(batch, true);
+    }
+
+    /**
+     * Applies a batch, optionally without the quota check (for additions that were already
+     * admitted, such as the pending counts of an InsertionBuffer).
+     */
+    List<InventoryChange> apply(InventoryBatch batch, boolean checkQuota) {
+        List<InventoryChange> changes = new ArrayList<>(batch.size());
+        for (Map.Entry<ItemStackKey, InventoryBatch.Delta> entry : batch.entries()) {
+            ItemStackKey key = entry.getKey();
+            InventoryBatch.Delta delta = entry.getValue();
+
+            pageInBeforeChange(key);
+            long current = storedCount(key);
+            long accepted = delta.getAdded();
+            if (checkQuota && accepted > 0) {
+                accepted = acceptableCount(key, accepted);
+            }
+            long added = InfiniteInventoryEntry.saturatedAdd(current, accepted);
+            long updated = added - Math.min(delta.getRemoved(), added);
+            if (updated != current) {
+                setCount(key, updated);
+                changes.add(new InventoryChange(key, current, updated));
+            }
+        }
+        return changes;
+    }
+
     /**
      * Gets the count of a specific item type in the inventory.
      *
@@ -95,24 +398,346 @@ public class InfiniteInventory {
      * @return The count of matching items, or 0 if not present
      */
     public long getCount(ItemStack stack) {
-        if (stack == null || stack.isEmpty()) {
-            return 0;
+        ItemStackKey key = ItemStackKey.findStored(stack);
+        long count = key != null ? storedCount(key) : 0;
+        if (count == 0 && (key == null || !key.isPlain()) && stack != null && !stack.isEmpty()
+                && pageInCold(stack.getItem())) {
+            key = ItemStackKey.findStored(stack);
+            count = key != null ? storedCount(key) : 0;
+        }
+        return count;
+    }
+
+    /**
+     * Gets the count stored under a key, paging in the cold tier if the key may be there.
+     *
+     * @param key The key to check
+     * @return The count of matching items, or 0 if not present
+     */
+    public long getCount(ItemStackKey key) {
+        long count = storedCount(key);
+        if (count == 0 && !key.isPlain() && pageInCold(key.getItem())) {
+            count = storedCount(key);
+        }
+        return count;
+    }
+
+    /**
+     * Gets the count stored in memory under a key, without looking at the cold tier.
+     */
+    long storedCount(ItemStackKey key) {
+        if (key.isPlain()) {
+            int id = key.getItemId();
+            return id >= 0 && id < plainCounts.length ? plainCounts[id] : 0;
+        }
+        if (damageHistograms && key.getDamage() != 0) {
+            return histograms.get(key.getBaseKey(), key.getDamage());
         }
+        return variants.get(key);
+    }
 
-        ItemStackKey key = new ItemStackKey(stack);
-        InfiniteInventoryEntry entry = storage.get(key);
+    /**
+     * Gets the tick an item type was last modified at (see setClock).
+     *
+     * @param stack The ItemStack to check (used as key)
+     * @return The tick of the last change, or 0 if the item is not stored
+     */
+    public long getLastModified(ItemStack stack) {
+        ItemStackKey key = ItemStackKey.findStored(stack);
+        return key != null ? getLastModified(key) : 0;
+    }
 
-        return entry != null ? entry.getCount() : 0;
+    /**
+     * Gets the tick the entry under a key was last modified at (see setClock).
+     *
+     * @param key The key to check
+     * @return The tick of the last change, or 0 if nothing is stored under the key
+     */
+    public long getLastModified(ItemStackKey key) {
+        if (key.isPlain()) {
+            int id = key.getItemId();
+            return id >= 0 && id < plainTicks.length ? plainTicks[id] : 0;
+        }
+        if (damageHistograms && key.getDamage() != 0) {
+            return histograms.getTick(key.getBaseKey(), key.getDamage());
+        }
+        return variants.getTick(key);
+    }
+
+    /**
+     * Gets the most stored entries, largest count first.
+     * Backed by a bounded ranking updated in O(log K) per change, so this does not sort the storage.
+     *
+     * @param limit The maximum number of entries (at most InventoryRankings.TOP_CAPACITY)
+     * @return Detached entries with their current counts
+     */
+    public List<InfiniteInventoryEntry> getTopByCount(int limit) {
+        if (rankings.isStale(limit)) {
+            rankings.rebuild(getAllEntries());
+        }
+        return detachedEntries(rankings.top(limit));
+    }
+
+    /**
+     * Gets the most recently changed entries that are still stored, newest first.
+     *
+     * @param limit The maximum number of entries (at most InventoryRankings.RECENT_CAPACITY)
+     * @return Detached entries with their current counts
+     */
+    public List<InfiniteInventoryEntry> getRecentlyChanged(int limit) {
+        return detachedEntries(rankings.recent(limit));
+    }
+
+    private List<InfiniteInventoryEntry> detachedEntries(List<ItemStackKey> keys) {
+        List<InfiniteInventoryEntry> entries = new ArrayList<>(keys.size());
+        for (ItemStackKey key : keys) {
+            entries.add(new InfiniteInventoryEntry(key, storedCount(key)));
+        }
+        return entries;
+    }
+
+    /**
+     * Checks if this inventory keeps damaged variants in damage histograms.
+     *
+     * @return true in damage histogram mode
+     */
+    public boolean usesDamageHistograms() {
+        return damageHistograms;
     }
 
     /**
      * Gets all entries in the inventory.
      * Useful for rendering UI or iterating through all stored items.
      *
+     * The returned collection is a read-only view. Its entries are created while iterating
+     * and are detached from the inventory, so changing their counts has no effect here.
+     *
      * @return A collection of all inventory entries
      */
     public Collection<InfiniteInventoryEntry> getAllEntries() {
-        return storage.values();
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<InfiniteInventoryEntry> iterator() {
+                return new InventoryEntryIterator(plainCounts, variants, histograms);
+            }
+
+            @Override
+            public int size() {
+                return getUniqueItemCount();
+            }
+        };
+    }
+
+    /**
+     * Gets every stored variant of an item: the plain stack plus all component variants
+     * (enchanted, named, damaged, ...). Costs O(variants of that item).
+     *
+     * @param item The item
+     * @return A read-only view of the item's entries
+     */
+    public Collection<InfiniteInventoryEntry> getVariants(Item item) {
+        return entriesOf(index.keysOfItem(item));
+    }
+
+    /**
+     * Gets the items that have at least one stored variant (for grouped display).
+     *
+     * @return A read-only view of the stored item types
+     */
+    public Set<Item> getStoredItems() {
+        return index.items();
+    }
+
+    /**
+     * Gets the total count of an item across all its variants, saturated at Long.MAX_VALUE.
+     *
+     * @param item The item
+     * @return The count of the item regardless of components
+     */
+    public long getCountAnyVariant(Item item) {
+        long total = 0;
+        for (ItemStackKey key : index.keysOfItem(item)) {
+            total = InfiniteInventoryEntry.saturatedAdd(total, getIndexedCount(key));
+        }
+        return total;
+    }
+
+    /**
+     * Finds the preferred stored variant of an item.
+     *
+     * @param item The item
+     * @param preference Orders variants; the greatest one is returned
+     * @return The best variant with its current count, or empty if none is stored
+     */
+    public Optional<InfiniteInventoryEntry> findBestVariant(Item item, Comparator<InfiniteInventoryEntry> preference) {
+        InfiniteInventoryEntry best = null;
+        for (InfiniteInventoryEntry entry : getVariants(item)) {
+            if (best == null || preference.compare(entry, best) > 0) {
+                best = entry;
+            }
+        }
+        return Optional.ofNullable(best);
+    }
+
+    /**
+     * Removes up to the given number of items from the preferred stored variant of an item.
+     *
+     * @param item The item
+     * @param count The number of items to take
+     * @param preference Orders variants; items are taken from the greatest one
+     * @return The variant taken from with the number actually removed, or empty if nothing was taken
+     */
+    public Optional<InfiniteInventoryEntry> takeBestVariant(Item item, long count, Comparator<InfiniteInventoryEntry> preference) {
+        if (count <= 0) {
+            return Optional.empty();
+        }
+
+        return findBestVariant(item, preference).map(best -> {
+            ItemStackKey key = best.getKey();
+            return new InfiniteInventoryEntry(key, remove(key, count));
+        });
+    }
+
+    /**
+     * Gets the entries whose item comes from one namespace (mod id).
+     * Backed by a maintained index, so iterating costs O(result), not O(inventory).
+     *
+     * @param namespace The namespace, e.g. "minecraft"
+     * @return A read-only view of the matching entries
+     */
+    public Collection<InfiniteInventoryEntry> getEntriesByNamespace(String namespace) {
+        return entriesOf(index.keysInNamespace(namespace));
+    }
+
+    /**
+     * Gets the entries whose item is in a tag, e.g. ItemTags.LOGS.
+     * Backed by a maintained index that is rebuilt after a tag reload.
+     *
+     * @param tag The item tag
+     * @return A read-only view of the matching entries
+     */
+    public Collection<InfiniteInventoryEntry> getEntriesByTag(TagKey<Item> tag) {
+        return entriesOf(index.keysInTag(tag, this::getIndexedCount));
+    }
+
+    /**
+     * Gets the total count of all stored items in a tag ("how many planks of any kind").
+     * Per-tag totals are maintained on every change, so this is a single lookup.
+     * Saturates at Long.MAX_VALUE.
+     *
+     * @param tag The item tag, e.g. ItemTags.PLANKS
+     * @return The total count of items in the tag
+     */
+    public long getCountByTag(TagKey<Item> tag) {
+        return index.tagTotal(tag, this::getIndexedCount);
+    }
+
+    /**
+     * Gets the total counts for many tags at once.
+     *
+     * @param tags The item tags to count
+     * @return The total per tag, in the iteration order of the given tags
+     */
+    public Map<TagKey<Item>, Long> getCountsByTag(Collection<TagKey<Item>> tags) {
+        Map<TagKey<Item>, Long> totals = new LinkedHashMap<>();
+        for (TagKey<Item> tag : tags) {
+            totals.put(tag, index.tagTotal(tag, this::getIndexedCount));
+        }
+        return totals;
+    }
+
+    /**
+     * Gets the entries whose item is shown in a creative tab.
+     * Only populated where creative tab contents have been built (normally the client).
+     *
+     * @param tab The creative tab
+     * @return A read-only view of the matching entries
+     */
+    public Collection<InfiniteInventoryEntry> getEntriesByCreativeTab(CreativeModeTab tab) {
+        return entriesOf(index.keysInCreativeTab(tab));
+    }
+
+    /**
+     * Wraps a set of indexed keys as a view of detached entries with their current counts.
+     * Indexed keys are base keys, so each one expands to its own entry plus its damaged variants.
+     */
+    private Collection<InfiniteInventoryEntry> entriesOf(Set<ItemStackKey> keys) {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<InfiniteInventoryEntry> iterator() {
+                return new IndexedEntryIterator(keys.iterator());
+            }
+
+            @Override
+            public int size() {
+                int size = 0;
+                for (ItemStackKey key : keys) {
+                    size += storedCount(key) != 0 ? 1 : 0;
+                    DamageHistogram histogram = histograms.get(key);
+                    size += histogram != null ? histogram.size() : 0;
+                }
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Gets the count stored under an indexed key, including its damaged variants.
+     * Saturates at Long.MAX_VALUE.
+     */
+    private long getIndexedCount(ItemStackKey key) {
+        long total = storedCount(key);
+        DamageHistogram histogram = histograms.get(key);
+        if (histogram != null) {
+            for (int i = 0; i < histogram.size(); i++) {
+                total = InfiniteInventoryEntry.saturatedAdd(total, histogram.countAt(i));
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Takes an immutable point-in-time copy of the inventory in O(1).
+     * The snapshot is safe to read from other threads; the next write to this inventory
+     * pays a one-time copy of the storage it touches instead.
+     *
+     * @return A snapshot of the current contents
+     */
+    public InventorySnapshot snapshot() {
+        plainShared = true;
+        return new InventorySnapshot(plainCounts, plainTicks, variants.snapshot(), histograms.snapshot(),
+                getUniqueItemCount(), stats.getTotalItemCount());
+    }
+
+    /**
+     * Estimates the heap this inventory costs, broken down by what holds the memory.
+     * Entry costs are tracked on every change, so this is O(1).
+     *
+     * Pooled keys and reference stacks are counted in full even when other inventories share
+     * them, so the result is an upper bound of what dropping this inventory would free.
+     *
+     * @return The memory estimate
+     */
+    public MemoryEstimate estimateMemory() {
+        long storage = InventoryMemoryEstimator.storageBytes(plainCounts.length, variants, histograms)
+                + histogramEntryBytes;
+        return new MemoryEstimate(storage, keyBytes, referenceStackBytes,
+                (long) indexedKeyCount * InventoryMemoryEstimator.INDEX_KEY_BYTES);
+    }
+
+    /**
+     * Estimates what the entries of one item add to estimateMemory(), not counting the storage
+     * arrays (e.g. what paging them in would cost). Costs O(variants of that item).
+     *
+     * @param item The item
+     * @return The estimate in bytes
+     */
+    public long estimateMemory(Item item) {
+        long bytes = 0;
+        for (InfiniteInventoryEntry entry : getVariants(item)) {
+            bytes += estimatedEntryBytes(entry.getKey());
+        }
+        return bytes;
     }
 
     /**
@@ -121,14 +746,38 @@ public class InfiniteInventory {
      * @return true if no items are stored
      */
     public boolean isEmpty() {
-        return storage.isEmpty();
+        return getUniqueItemCount() == 0;
     }
 
     /**
      * Removes all items from the inventory.
      */
     public void clear() {
-        storage.clear();
+        if (!journals.isEmpty()) {
+            for (InfiniteInventoryEntry entry : getAllEntries()) {
+                for (ChangeJournal journal : journals) {
+                    journal.record(entry.getKey(), entry.getCount(), 0);
+                }
+            }
+        }
+
+        variants.clear();
+        histograms.clear();
+        if (plainShared) {
+            plainCounts = new long[plainCounts.length];
+            plainTicks = new long[plainTicks.length];
+            plainShared = false;
+        } else {
+            Arrays.fill(plainCounts, 0);
+            Arrays.fill(plainTicks, 0);
+        }
+        keyBytes = 0;
+        referenceStackBytes = 0;
+        histogramEntryBytes = 0;
+        indexedKeyCount = 0;
+        stats.clear();
+        index.clear();
+        rankings.clear();
     }
 
     /**
@@ -137,19 +786,82 @@ public class InfiniteInventory {
      * @return The number of unique item types
      */
     public int getUniqueItemCount() {
-        return storage.size();
+        return stats.getUniqueItemCount();
     }
 
     /**
      * Gets the total count of all items across all types.
-     * Note: May overflow if total exceeds Long.MAX_VALUE.
+     * Maintained incrementally, so this is O(1). Saturates at Long.MAX_VALUE.
      *
      * @return The total count of all items
      */
     public long getTotalItemCount() {
-        return storage.values().stream()
-                .mapToLong(InfiniteInventoryEntry::getCount)
-                .sum();
+        return stats.getTotalItemCount();
+    }
+
+    /**
+     * Gets the aggregate statistics for this inventory.
+     * The returned object is live and kept up to date on every change; all its getters are O(1).
+     *
+     * @return The inventory statistics
+     */
+    public InventoryStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Opens a change journal that records every key changed from now on.
+     * Each consumer should open its own journal and close it when done.
+     *
+     * @return A new, empty journal attached to this inventory
+     */
+    public ChangeJournal openJournal() {
+        ChangeJournal journal = new ChangeJournal();
+        journals.add(journal);
+        return journal;
+    }
+
+    /**
+     * Opens the journal of an InventoryTransaction. Unlike other journals, it does not record
+     * cold entries paged in while it is open (see ChangeJournal.rebase), so a rollback never
+     * undoes a page-in.
+     */
+    ChangeJournal openTransactionJournal() {
+        ChangeJournal journal = new ChangeJournal(ChangeJournal.ColdMoves.REBASE);
+        journals.add(journal);
+        return journal;
+    }
+
+    /**
+     * Opens a change journal that does not record entries moving to or from the cold tier
+     * (spillColdEntries and mergeColdEntries), for consumers that count cold entries as
+     * still stored, such as the client's view of a player's inventory.
+     *
+     * @return A new, empty journal attached to this inventory
+     */
+    public ChangeJournal openJournalExcludingColdMoves() {
+        ChangeJournal journal = new ChangeJournal(ChangeJournal.ColdMoves.IGNORE);
+        journals.add(journal);
+        return journal;
+    }
+
+    /**
+     * Detaches a journal so it stops recording changes.
+     *
+     * @param journal The journal to close
+     */
+    public void closeJournal(ChangeJournal journal) {
+        journals.remove(journal);
+    }
+
+    /**
+     * Starts a transaction whose changes can be committed or rolled back as a whole.
+     * Close it with try-with-resources; closing without commit() rolls back.
+     *
+     * @return A new open transaction on this inventory
+     */
+    public InventoryTransaction beginTransaction() {
+        return new InventoryTransaction(this);
     }
 
     /**
@@ -184,6 +896,389 @@ public class InfiniteInventory {
         return InfiniteInventorySerializer.deserialize(tag, registryAccess);
     }
 
+    /**
+     * Sets the count stored under a key, stamped with the clock's current tick.
+     *
+     * @param key The canonical key to update
+     * @param count The new count (0 removes the entry)
+     */
+    private void setCount(ItemStackKey key, long count) {
+        changeCount++;
+        setCount(key, count, clock.getAsLong());
+    }
+
+    /**
+     * Sets the count stored under a key. Every change to the inventory goes through here.
+     *
+     * @param key The canonical key to update
+     * @param count The new count (0 removes the entry)
+     * @param tick The tick to stamp the change with
+     */
+    private void setCount(ItemStackKey key, long count, long tick) {
+        long previous;
+        if (key.isPlain()) {
+            previous = setPlainCount(key.getItemId(), count, tick);
+        } else if (damageHistograms && key.getDamage() != 0) {
+            previous = histograms.put(key.getBaseKey(), key.getDamage(), count, tick);
+        } else {
+            previous = variants.put(key, count, tick);
+        }
+
+        stats.onCountChanged(key, previous, count);
+        if (previous != count) {
+            updateIndex(key, previous, count);
+            rankings.onCountChanged(key, previous, count);
+            if (previous == 0 || count == 0) {
+                updateMemoryEstimate(key, count != 0 ? 1 : -1);
+            }
+        }
+        for (int i = 0; i < journals.size(); i++) {
+            ChangeJournal journal = journals.get(i);
+            if (movingCold) {
+                journal.recordColdMove(key, previous, count);
+            } else {
+                journal.record(key, previous, count);
+            }
+        }
+    }
+
+    /**
+     * Puts a key back to an earlier count and tick (used by InventoryTransaction rollback),
+     * so a rolled-back change does not make the entry look recently modified.
+     */
+    void restoreEntry(ItemStackKey key, long count, long tick) {
+        if (storedCount(key) != count) {
+            setCount(key, count, tick);
+        } else if (count != 0) {
+            setLastModified(key, tick);
+        }
+    }
+
+    /**
+     * Gets the recently changed ranking, oldest first, to be put back by restoreRecentlyChanged.
+     */
+    List<ItemStackKey> saveRecentlyChanged() {
+        return rankings.saveRecent();
+    }
+
+    /**
+     * Puts back a recently changed ranking saved earlier (used by InventoryTransaction rollback).
+     */
+    void restoreRecentlyChanged(List<ItemStackKey> keys) {
+        rankings.restoreRecent(keys);
+    }
+
+    /**
+     * Adds a positive count under a canonical key, stamped with a given tick instead of the clock
+     * (used when loading and paging in, so entries keep the tick they were last modified at).
+     * A tick of 0 means unknown.
+     */
+    void addWithTick(ItemStackKey key, long count, long tick) {
+        changeCount++;
+        setCount(key, InfiniteInventoryEntry.saturatedAdd(storedCount(key), count), tick);
+    }
+
+    /**
+     * Moves cold component variants into another inventory, keeping their counts and ticks.
+     *
+     * A variant is cold if it was last modified before the cutoff tick. If more than
+     * maxHotVariants variants are left after that, the least recently modified ones are moved
+     * too, so the heap cost of what stays is bounded. Plain stacks always stay: their dense
+     * counts cost the same whether they are stored or not.
+     *
+     * Variants with an unknown tick (loaded from data saved before ticks were kept) are never
+     * cold by age; they are stamped with the current tick instead, so they start aging now.
+     * Journals see the move as their ColdMoves says (see openJournalExcludingColdMoves).
+     *
+     * @param cold The inventory to move cold variants into
+     * @param cutoffTick Variants last modified before this tick are cold
+     * @param maxHotVariants The most component variants to keep, or 0 or less for no limit
+     * @return The number of variants moved
+     */
+    public int spillColdEntries(InfiniteInventory cold, long cutoffTick, int maxHotVariants) {
+        long now = clock.getAsLong();
+        List<ItemStackKey> spilled = new ArrayList<>();
+        List<ItemStackKey> hot = new ArrayList<>();
+        List<ItemStackKey> unknown = new ArrayList<>();
+        for (InfiniteInventoryEntry entry : getAllEntries()) {
+            ItemStackKey key = entry.getKey();
+            if (key.isPlain()) {
+                continue;
+            }
+            long tick = getLastModified(key);
+            if (tick == 0) {
+                unknown.add(key);
+                hot.add(key);
+            } else if (tick < cutoffTick) {
+                spilled.add(key);
+            } else {
+                hot.add(key);
+            }
+        }
+
+        if (maxHotVariants > 0 && hot.size() > maxHotVariants) {
+            hot.sort(Comparator.comparingLong(this::getLastModified));
+            spilled.addAll(hot.subList(0, hot.size() - maxHotVariants));
+        }
+
+        for (ItemStackKey key : unknown) {
+            setLastModified(key, now);
+        }
+        movingCold = true;
+        try {
+            for (ItemStackKey key : spilled) {
+                long count = storedCount(key);
+                cold.addWithTick(key, count, getLastModified(key));
+                setCount(key, 0);
+            }
+        } finally {
+            movingCold = false;
+        }
+        return spilled.size();
+    }
+
+    /**
+     * Moves every entry of another inventory (e.g. a paged-in cold segment) into this one,
+     * bypassing the quota. Counts of variants stored in both are added, and each merged entry
+     * keeps the later of the two ticks. The other inventory is left empty.
+     * Journals see the move as their ColdMoves says (see openJournalExcludingColdMoves).
+     *
+     * @param cold The inventory to take the entries from
+     * @return The number of entries merged
+     */
+    public int mergeColdEntries(InfiniteInventory cold) {
+        int merged = mergeColdEntries(cold, cold.getAllEntries());
+        cold.clear();
+        return merged;
+    }
+
+    /**
+     * Moves the entries of one item from another inventory into this one, like
+     * mergeColdEntries(InfiniteInventory). The other entries are left where they are.
+     *
+     * @param cold The inventory to take the entries from
+     * @param item The item whose variants to move
+     * @return The number of entries merged
+     */
+    public int mergeColdEntries(InfiniteInventory cold, Item item) {
+        List<InfiniteInventoryEntry> entries = List.copyOf(cold.getVariants(item));
+        int merged = mergeColdEntries(cold, entries);
+        for (InfiniteInventoryEntry entry : entries) {
+            cold.setCount(entry.getKey(), 0);
+        }
+        return merged;
+    }
+
+    private int mergeColdEntries(InfiniteInventory cold, Collection<InfiniteInventoryEntry> entries) {
+        int merged = 0;
+        movingCold = true;
+        try {
+            for (InfiniteInventoryEntry entry : entries) {
+                ItemStackKey key = entry.getKey();
+                long tick = Math.max(getLastModified(key), cold.getLastModified(key));
+                addWithTick(key, entry.getCount(), tick);
+                merged++;
+            }
+        } finally {
+            movingCold = false;
+        }
+        return merged;
+    }
+
+    /**
+     * Pages in the cold variants of an item, if the cold tier may hold any.
+     *
+     * @return true if any entries were paged in
+     */
+    private boolean pageInCold(Item item) {
+        if (coldTier == null || pagingIn || coldTier.getVariantCount() == 0 || !coldTier.mayContain(item)) {
+            return false;
+        }
+        // Paging in merges entries through this inventory, which must not page in again
+        pagingIn = true;
+        try {
+            return coldTier.pageIn(item) > 0;
+        } finally {
+            pagingIn = false;
+        }
+    }
+
+    /**
+     * Pages in the cold variants of a key's item before the key changes, so a variant is never
+     * changed while part of its count is still cold.
+     */
+    private void pageInBeforeChange(ItemStackKey key) {
+        if (!key.isPlain()) {
+            pageInCold(key.getItem());
+        }
+    }
+
+    /**
+     * Restamps a stored entry without changing its count.
+     */
+    private void setLastModified(ItemStackKey key, long tick) {
+        if (key.isPlain()) {
+            int id = key.getItemId();
+            if (id < plainTicks.length && plainCounts[id] != 0) {
+                unsharePlain();
+                plainTicks[id] = tick;
+            }
+        } else if (damageHistograms && key.getDamage() != 0) {
+            histograms.setTick(key.getBaseKey(), key.getDamage(), tick);
+        } else {
+            variants.setTick(key, tick);
+        }
+    }
+
+    /**
+     * Updates the index after a count change. The index tracks base keys, so a base key
+     * is added with its first stored variant and removed with its last one.
+     */
+    private void updateIndex(ItemStackKey key, long previous, long count) {
+        ItemStackKey indexKey = damageHistograms ? key.getBaseKey() : key;
+        index.onCountChanged(indexKey, previous, count);
+
+        if (previous == 0) {
+            // The base key may already be indexed through its own count or other damage values
+            boolean indexed;
+            if (indexKey == key) {
+                indexed = histograms.get(indexKey) != null;
+            } else {
+                indexed = storedCount(indexKey) != 0 || histograms.get(indexKey).size() > 1;
+            }
+            if (!indexed) {
+                index.onKeyAdded(indexKey);
+                indexedKeyCount++;
+            }
+        } else if (count == 0 && storedCount(indexKey) == 0 && histograms.get(indexKey) == null) {
+            index.onKeyRemoved(indexKey);
+            indexedKeyCount--;
+        }
+    }
+
+    /**
+     * Estimates what storing a new entry under a key would add to estimateMemory().
+     */
+    long estimatedEntryBytes(ItemStackKey key) {
+        if (key.isPlain()) {
+            return 0;
+        }
+        if (damageHistograms && key.getDamage() != 0) {
+            return InventoryMemoryEstimator.HISTOGRAM_ENTRY_BYTES;
+        }
+        return InventoryMemoryEstimator.keyBytes(key) + InventoryMemoryEstimator.referenceStackBytes(key)
+                + InventoryMemoryEstimator.INDEX_KEY_BYTES;
+    }
+
+    /**
+     * Adds or subtracts the estimated cost of one entry.
+     * Plain entries live in the dense arrays (counted as storage), and histogram entries
+     * hold no key or stack of their own.
+     *
+     * @param sign 1 when the entry was added, -1 when it was removed
+     */
+    private void updateMemoryEstimate(ItemStackKey key, int sign) {
+        if (key.isPlain()) {
+            return;
+        }
+        if (damageHistograms && key.getDamage() != 0) {
+            histogramEntryBytes += sign * InventoryMemoryEstimator.HISTOGRAM_ENTRY_BYTES;
+            return;
+        }
+        keyBytes += sign * InventoryMemoryEstimator.keyBytes(key);
+        referenceStackBytes += sign * InventoryMemoryEstimator.referenceStackBytes(key);
+    }
+
+    /**
+     * Sets a count in the dense plain array, stamping it with the tick if it changes.
+     *
+     * @return The previous count
+     */
+    private long setPlainCount(int id, long count, long tick) {
+        if (id >= plainCounts.length) {
+            if (count == 0) {
+                return 0;
+            }
+            // Size to the whole item registry so the array is normally allocated only once
+            int length = Math.max(id + 1, BuiltInRegistries.ITEM.size());
+            plainCounts = Arrays.copyOf(plainCounts, length);
+            plainTicks = Arrays.copyOf(plainTicks, length);
+            plainShared = false;
+        }
+
+        long previous = plainCounts[id];
+        if (previous == count) {
+            return previous;
+        }
+        unsharePlain();
+        plainCounts[id] = count;
+        plainTicks[id] = count != 0 ? tick : 0;
+        return previous;
+    }
+
+    /**
+     * Copies the plain arrays if a snapshot still references them.
+     */
+    private void unsharePlain() {
+        if (plainShared) {
+            plainCounts = plainCounts.clone();
+            plainTicks = plainTicks.clone();
+            plainShared = false;
+        }
+    }
+
+    /**
+     * Expands indexed base keys into the base entry (if stored) followed by its damaged variants.
+     */
+    private class IndexedEntryIterator implements Iterator<InfiniteInventoryEntry> {
+        private final Iterator<ItemStackKey> keys;
+        private ItemStackKey base;
+        private DamageHistogram histogram;
+        private int position;
+        private InfiniteInventoryEntry next;
+
+        private IndexedEntryIterator(Iterator<ItemStackKey> keys) {
+            this.keys = keys;
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (next == null) {
+                if (histogram != null && position < histogram.size()) {
+                    ItemStackKey key = ItemStackKey.withDamage(base, histogram.damageAt(position));
+                    next = new InfiniteInventoryEntry(key, histogram.countAt(position));
+                    position++;
+                } else if (keys.hasNext()) {
+                    base = keys.next();
+                    histogram = histograms.get(base);
+                    position = 0;
+                    long count = storedCount(base);
+                    if (count != 0) {
+                        next = new InfiniteInventoryEntry(base, count);
+                    }
+                } else {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public InfiniteInventoryEntry next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            InfiniteInventoryEntry entry = next;
+            advance();
+            return entry;
+        }
+    }
+
     @Override
     public String toString() {
         return "InfiniteInventory{" +
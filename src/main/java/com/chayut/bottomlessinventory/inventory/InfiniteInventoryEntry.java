@@ -5,9 +5,14 @@ import net.minecraft.world.item.ItemStack;
 /**
  * Represents a single entry in the infinite inventory.
  * Contains a reference ItemStack (the template) and a count representing how many of that item are stored.
+ *
+ * InfiniteInventory does not keep entry objects itself; it hands them out from its
+ * key/count table. An entry only holds the canonical key and its count; the reference
+ * stack is the key's shared stack, so each variant exists once in memory no matter
+ * how many entries or players refer to it.
  */
 public class InfiniteInventoryEntry {
-    private final ItemStack referenceStack;
+    private final ItemStackKey key;
     private long count;
 
     /**
@@ -23,19 +28,45 @@ public class InfiniteInventoryEntry {
             throw new IllegalArgumentException("Count cannot be negative");
         }
 
-        // Store a copy with count of 1 as the reference
-        this.referenceStack = referenceStack.copy();
-        this.referenceStack.setCount(1);
+        // The canonical key's shared stack serves as the reference (count 1)
+        this.key = ItemStackKey.of(referenceStack);
         this.count = count;
     }
 
+    /**
+     * Creates an entry view for a stored key (used by InfiniteInventory).
+     * @param key The canonical key of the stored variant
+     * @param count The number of items stored
+     */
+    InfiniteInventoryEntry(ItemStackKey key, long count) {
+        this.key = key;
+        this.count = count;
+    }
+
+    /**
+     * Gets the key identifying this entry's item and components.
+     * @return The ItemStackKey for this entry
+     */
+    public ItemStackKey getKey() {
+        return key;
+    }
+
     /**
      * Gets the reference ItemStack (template).
      * This is the single item that represents the type and components.
      * @return A copy of the reference ItemStack with count 1
      */
     public ItemStack getReferenceStack() {
-        return referenceStack.copy();
+        return key.getSharedStack().copy();
+    }
+
+    /**
+     * Gets the shared reference ItemStack without copying it.
+     * Use this for rendering, comparisons and encoding; the returned stack must not be modified.
+     * @return The shared read-only reference stack with count 1
+     */
+    public ItemStack viewReferenceStack() {
+        return key.getSharedStack();
     }
 
     /**
@@ -59,13 +90,14 @@ public class InfiniteInventoryEntry {
 
     /**
      * Adds to the current count.
+     * The count saturates at Long.MAX_VALUE instead of wrapping around.
      * @param amount The amount to add (must be non-negative)
      */
     public void addCount(long amount) {
         if (amount < 0) {
             throw new IllegalArgumentException("Amount to add cannot be negative");
         }
-        this.count += amount;
+        this.count = saturatedAdd(this.count, amount);
     }
 
     /**
@@ -94,7 +126,7 @@ public class InfiniteInventoryEntry {
             throw new IllegalArgumentException("Count cannot be negative");
         }
 
-        ItemStack result = referenceStack.copy();
+        ItemStack result = key.getSharedStack().copy();
         // Clamp to max stack size
         int actualCount = Math.min(count, result.getMaxStackSize());
         result.setCount(actualCount);
@@ -109,10 +141,18 @@ public class InfiniteInventoryEntry {
         return count == 0;
     }
 
+    /**
+     * Adds two non-negative counts, clamping to Long.MAX_VALUE on overflow.
+     */
+    static long saturatedAdd(long a, long b) {
+        long result = a + b;
+        return result < 0 ? Long.MAX_VALUE : result;
+    }
+
     @Override
     public String toString() {
         return "InfiniteInventoryEntry{" +
-                "item=" + referenceStack.getItem() +
+                "item=" + key.getItem() +
                 ", count=" + count +
                 '}';
     }
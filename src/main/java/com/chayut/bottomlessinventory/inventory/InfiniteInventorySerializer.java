@@ -1,36 +1,61 @@
 package com.chayut.bottomlessinventory.inventory;
 
 import com.mojang.serialization.DataResult;
+import com.mojang.serialization.DynamicOps;
 import net.minecraft.core.HolderLookup;
+import net.minecraft.core.component.DataComponentPatch;
+import net.minecraft.core.registries.BuiltInRegistries;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.ListTag;
 import net.minecraft.nbt.NbtOps;
 import net.minecraft.nbt.Tag;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
  * Helper class for serializing and deserializing InfiniteInventory to/from NBT.
  * Handles versioning, edge cases, and error recovery.
+ *
+ * Loading decodes each stored stack straight into a pooled ItemStackKey (item id plus
+ * component patch) without building an ItemStack. Reference stacks are only materialized
+ * later, when an entry is rendered, synced or taken.
+ *
+ * Each entry also stores the tick it was last modified at (0 when unknown),
+ * so cold storage can tell rarely used entries apart across restarts.
+ *
+ * Version 2 (written by this version) is a compact binary layout with an item id string table,
+ * varint counts and component payloads only where they exist, inline in the record stream
+ * (see CompactInventoryFormat). Version 1 stored one CompoundTag per entry, with a full encoded
+ * ItemStack and a count. It is still read, and is migrated to version 2 on the next save.
  */
 public class InfiniteInventorySerializer {
     private static final Logger LOGGER = LoggerFactory.getLogger(InfiniteInventorySerializer.class);
 
     /**
      * Current serialization version.
-     * Increment this when changing the NBT format to support migration.
+     * Increment this when changing the NBT format to support migration, in the same change
+     * that writes any new record shape, so older readers warn about newer data instead of
+     * silently skipping records they do not know.
      */
-    public static final int VERSION = 1;
+    public static final int VERSION = 2;
 
-    // NBT keys
+    // NBT keys (KEY_ITEMS and below belong to the version 1 format)
     private static final String KEY_VERSION = "Version";
     private static final String KEY_ITEMS = "Items";
     private static final String KEY_STACK = "Stack";
     private static final String KEY_COUNT = "Count";
 
+    // Field names of the ItemStack codec, read directly when loading
+    private static final String KEY_STACK_ID = "id";
+    private static final String KEY_STACK_COMPONENTS = "components";
+
     /**
      * Serializes a single inventory entry to NBT.
      *
@@ -47,7 +72,7 @@ public class InfiniteInventorySerializer {
             CompoundTag entryTag = new CompoundTag();
 
             // Serialize the reference ItemStack using Codec
-            ItemStack stack = entry.getReferenceStack();
+            ItemStack stack = entry.viewReferenceStack();
             DataResult<Tag> encodeResult = ItemStack.CODEC.encodeStart(
                 registryAccess.createSerializationContext(NbtOps.INSTANCE),
                 stack
@@ -92,18 +117,12 @@ public class InfiniteInventorySerializer {
                 return null;
             }
 
-            DataResult<ItemStack> parseResult = ItemStack.CODEC.parse(
-                registryAccess.createSerializationContext(NbtOps.INSTANCE),
-                stackTag
-            );
-
-            Optional<ItemStack> stackOpt = parseResult.result();
-            if (stackOpt.isEmpty() || stackOpt.get().isEmpty()) {
+            ItemStackKey key = readKey(stackTag, registryAccess);
+            if (key == null) {
                 LOGGER.warn("Skipping entry with invalid or empty ItemStack");
                 return null;
             }
 
-            ItemStack stack = stackOpt.get();
             long count = tag.getLong(KEY_COUNT).orElse(0L);
 
             // Validate count
@@ -112,13 +131,46 @@ public class InfiniteInventorySerializer {
                 return null;
             }
 
-            return new InfiniteInventoryEntry(stack, count);
+            return new InfiniteInventoryEntry(key, count);
         } catch (Exception e) {
             LOGGER.error("Failed to deserialize inventory entry, skipping: {}", tag, e);
             return null;
         }
     }
 
+    /**
+     * Decodes an encoded ItemStack into its canonical key.
+     * Reads the item id and component patch directly; anything in an unexpected shape
+     * goes through the full ItemStack codec instead.
+     *
+     * @return The key, or null if the stack is invalid or empty
+     */
+    static ItemStackKey readKey(Tag stackTag, HolderLookup.Provider registryAccess) {
+        DynamicOps<Tag> ops = registryAccess.createSerializationContext(NbtOps.INSTANCE);
+
+        if (stackTag instanceof CompoundTag stackCompound) {
+            Optional<Item> item = stackCompound.getString(KEY_STACK_ID)
+                    .map(ResourceLocation::tryParse)
+                    .flatMap(BuiltInRegistries.ITEM::getOptional);
+            if (item.isPresent() && item.get() != Items.AIR) {
+                Tag componentsTag = stackCompound.get(KEY_STACK_COMPONENTS);
+                if (componentsTag == null) {
+                    return ItemStackKey.plain(item.get());
+                }
+                Optional<DataComponentPatch> components = DataComponentPatch.CODEC.parse(ops, componentsTag).result();
+                if (components.isPresent()) {
+                    return ItemStackKey.of(item.get(), components.get());
+                }
+            }
+        }
+
+        Optional<ItemStack> stack = ItemStack.CODEC.parse(ops, stackTag).result();
+        if (stack.isEmpty() || stack.get().isEmpty()) {
+            return null;
+        }
+        return ItemStackKey.of(stack.get());
+    }
+
     /**
      * Serializes a complete InfiniteInventory to NBT.
      *
@@ -132,20 +184,34 @@ public class InfiniteInventorySerializer {
 
         // Handle empty inventory
         if (inventory == null || inventory.isEmpty()) {
-            tag.put(KEY_ITEMS, new ListTag());
+            CompactInventoryFormat.write(tag, List.of(), key -> 0, registryAccess);
             return tag;
         }
 
-        // Serialize all entries
-        ListTag itemsList = new ListTag();
-        for (InfiniteInventoryEntry entry : inventory.getAllEntries()) {
-            CompoundTag entryTag = writeEntry(entry, registryAccess);
-            if (entryTag != null) {
-                itemsList.add(entryTag);
-            }
+        CompactInventoryFormat.write(tag, inventory.getAllEntries(), inventory::getLastModified, registryAccess);
+        return tag;
+    }
+
+    /**
+     * Serializes an inventory snapshot to NBT.
+     * Snapshots are immutable, so this can run on a worker thread while the live inventory changes.
+     * Entries keep the ticks they had at the time of the snapshot, as in serialize().
+     *
+     * @param snapshot The snapshot to serialize
+     * @param registryAccess Registry access for ItemStack serialization
+     * @return CompoundTag containing the full inventory data at the time of the snapshot
+     */
+    public static CompoundTag serializeSnapshot(InventorySnapshot snapshot, HolderLookup.Provider registryAccess) {
+        CompoundTag tag = new CompoundTag();
+        tag.putInt(KEY_VERSION, VERSION);
+
+        // Handle empty inventory
+        if (snapshot == null || snapshot.isEmpty()) {
+            CompactInventoryFormat.write(tag, List.of(), key -> 0, registryAccess);
+            return tag;
         }
 
-        tag.put(KEY_ITEMS, itemsList);
+        CompactInventoryFormat.write(tag, snapshot.getAllEntries(), snapshot::getLastModified, registryAccess);
         return tag;
     }
 
@@ -166,18 +232,26 @@ public class InfiniteInventorySerializer {
         }
 
         try {
-            // Check version (for future migration support)
             int version = tag.getInt(KEY_VERSION).orElse(0);
             if (version > VERSION) {
                 LOGGER.warn("Loading inventory data from newer version {} (current: {}). Some data may be lost.",
                            version, VERSION);
-            } else if (version < VERSION && version > 0) {
-                LOGGER.info("Loading inventory data from older version {} (current: {}). Applying migrations if needed.",
-                           version, VERSION);
-                // Future: Add migration logic here
             }
 
-            // Deserialize items
+            if (version >= 2) {
+                int failCount = CompactInventoryFormat.read(tag, registryAccess, inventory);
+                if (failCount > 0) {
+                    LOGGER.warn("Loaded {} entries, failed to load {} entries", inventory.getUniqueItemCount(), failCount);
+                } else {
+                    LOGGER.debug("Successfully loaded {} inventory entries", inventory.getUniqueItemCount());
+                }
+                return inventory;
+            }
+
+            // Version 1 (and unversioned) data; the next save writes it in the current format
+            if (version > 0) {
+                LOGGER.info("Migrating inventory data from version {} to {}", version, VERSION);
+            }
             if (!tag.contains(KEY_ITEMS)) {
                 LOGGER.warn("No items list found in NBT, returning empty inventory");
                 return inventory;
@@ -197,8 +271,8 @@ public class InfiniteInventorySerializer {
                 InfiniteInventoryEntry entry = readEntry(entryTagOpt.get(), registryAccess);
 
                 if (entry != null) {
-                    // Add directly to the inventory
-                    inventory.addItem(entry.getReferenceStack(), entry.getCount());
+                    // Add by key, so no ItemStack is built while loading; version 1 has no ticks
+                    inventory.addWithTick(entry.getKey(), entry.getCount(), 0);
                     successCount++;
                 } else {
                     failCount++;
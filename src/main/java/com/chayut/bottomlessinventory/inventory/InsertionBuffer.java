@@ -0,0 +1,173 @@
+package com.chayut.bottomlessinventory.inventory;
+
+import it.unimi.dsi.fastutil.ints.Int2LongMap;
+import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2LongMap;
+import it.unimi.dsi.fastutil.objects.Reference2LongOpenHashMap;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.world.item.ItemStack;
+
+import java.util.List;
+
+/**
+ * Collects high-rate insertions (item pickups, hopper-style importers) in front of an
+ * InfiniteInventory and merges them into storage in one pass, normally once per tick.
+ * On a server, each session owns one (see data.InventorySession.getInsertionBuffer): item
+ * pickups that overflow the player's inventory are offered to it, and it is merged and synced
+ * at the end of every server tick (see network.InventorySyncHandler.flushInsertions).
+ *
+ * Plain stacks are counted in a map keyed by raw item id, and component variants in a map
+ * keyed by their pooled ItemStackKey (compared by identity). Both maps hold primitive long
+ * counts, so an offer is one hash update and allocates nothing once the maps have grown.
+ * merge() applies every pending count as one InventoryBatch, so the inventory's journals
+ * record one change per item type and the player receives one sync for the whole tick.
+ *
+ * Buffered items are not visible through the inventory until they are merged.
+ * The quota is checked on offer against the stored contents plus everything still pending.
+ * Direct writes to the inventory count what is pending as stored too (deposits, transactions
+ * and batches), so a merge never goes over it.
+ *
+ * Not thread-safe: use it from the thread that owns the inventory.
+ */
+public class InsertionBuffer {
+    private final InfiniteInventory inventory;
+    private final Int2LongOpenHashMap plainCounts = new Int2LongOpenHashMap();
+    private final Reference2LongOpenHashMap<ItemStackKey> variantCounts = new Reference2LongOpenHashMap<>();
+
+    /**
+     * Running totals of what is pending, for quota checks.
+     */
+    private long pendingItems;
+    private int pendingVariants;
+    private long pendingBytes;
+
+    /**
+     * Creates an empty buffer in front of an inventory.
+     *
+     * @param inventory The inventory merged into
+     */
+    public InsertionBuffer(InfiniteInventory inventory) {
+        if (inventory == null) {
+            throw new IllegalArgumentException("Buffered inventory cannot be null");
+        }
+        this.inventory = inventory;
+        inventory.setInsertionBuffer(this);
+    }
+
+    /**
+     * Queues items to be added on the next merge.
+     * Counts saturate at Long.MAX_VALUE instead of wrapping around.
+     *
+     * @param stack The ItemStack to add (used as template)
+     * @param count The number of items to add
+     * @return The number of items accepted (less than count if the quota is reached)
+     */
+    public long offer(ItemStack stack, long count) {
+        if (stack == null || stack.isEmpty() || count <= 0) {
+            return 0;
+        }
+
+        ItemStackKey key = ItemStackKey.of(stack);
+        long pending = getPendingCount(key);
+        boolean newVariant = pending == 0 && inventory.storedCount(key) == 0;
+        long accepted = inventory.acceptableCount(key, count, newVariant, pendingItems, pendingVariants, pendingBytes);
+        if (accepted <= 0) {
+            return 0;
+        }
+
+        if (key.isPlain()) {
+            plainCounts.put(key.getItemId(), InfiniteInventoryEntry.saturatedAdd(pending, accepted));
+        } else {
+            variantCounts.put(key, InfiniteInventoryEntry.saturatedAdd(pending, accepted));
+        }
+        pendingItems = InfiniteInventoryEntry.saturatedAdd(pendingItems, accepted);
+        if (newVariant) {
+            pendingVariants++;
+            pendingBytes += inventory.estimatedEntryBytes(key);
+        }
+        return accepted;
+    }
+
+    /**
+     * Gets the count queued under a key and not merged yet.
+     *
+     * @param key The key to check
+     * @return The pending count, or 0 if none
+     */
+    public long getPendingCount(ItemStackKey key) {
+        return key.isPlain() ? plainCounts.get(key.getItemId()) : variantCounts.getLong(key);
+    }
+
+    /**
+     * Gets the total number of items queued and not merged yet, saturated at Long.MAX_VALUE.
+     *
+     * @return The pending item count
+     */
+    public long getPendingItemCount() {
+        return pendingItems;
+    }
+
+    /**
+     * Gets the number of pending variants that are not stored yet.
+     */
+    int getPendingVariantCount() {
+        return pendingVariants;
+    }
+
+    /**
+     * Gets the estimated memory of the pending variants that are not stored yet.
+     */
+    long getPendingBytes() {
+        return pendingBytes;
+    }
+
+    /**
+     * Checks if nothing is waiting to be merged.
+     *
+     * @return true if the buffer is empty
+     */
+    public boolean isEmpty() {
+        return plainCounts.isEmpty() && variantCounts.isEmpty();
+    }
+
+    /**
+     * Adds everything queued to the inventory in one batch and empties the buffer.
+     *
+     * @return The net change of every item type whose count changed
+     */
+    public List<InventoryChange> merge() {
+        if (isEmpty()) {
+            return List.of();
+        }
+
+        InventoryBatch batch = new InventoryBatch();
+        for (Int2LongMap.Entry entry : plainCounts.int2LongEntrySet()) {
+            batch.add(ItemStackKey.plain(BuiltInRegistries.ITEM.byId(entry.getIntKey())), entry.getLongValue());
+        }
+        for (Reference2LongMap.Entry<ItemStackKey> entry : variantCounts.reference2LongEntrySet()) {
+            batch.add(entry.getKey(), entry.getLongValue());
+        }
+        clear();
+        // Every pending count was admitted by the quota on offer
+        return inventory.apply(batch, false);
+    }
+
+    /**
+     * Discards everything queued without adding it.
+     */
+    public void clear() {
+        plainCounts.clear();
+        variantCounts.clear();
+        pendingItems = 0;
+        pendingVariants = 0;
+        pendingBytes = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "InsertionBuffer{" +
+                "pendingTypes=" + (plainCounts.size() + variantCounts.size()) +
+                ", pendingItems=" + pendingItems +
+                '}';
+    }
+}
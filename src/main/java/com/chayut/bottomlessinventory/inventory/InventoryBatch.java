@@ -0,0 +1,122 @@
+package com.chayut.bottomlessinventory.inventory;
+
+import net.minecraft.world.item.ItemStack;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A set of additions and removals to apply to an InfiniteInventory in one pass.
+ *
+ * Requests for the same item type are merged as they are added, so a batch built from
+ * a whole player inventory touches each key of the InfiniteInventory only once.
+ * For each key, additions are applied before removals, so a batch can remove items
+ * that it adds itself.
+ *
+ * Apply a batch with InfiniteInventory.apply(batch).
+ */
+public class InventoryBatch {
+    private final Map<ItemStackKey, Delta> deltas = new LinkedHashMap<>();
+
+    /**
+     * Merged amounts for one key. Both amounts saturate at Long.MAX_VALUE.
+     */
+    static final class Delta {
+        private long added;
+        private long removed;
+
+        long getAdded() {
+            return added;
+        }
+
+        long getRemoved() {
+            return removed;
+        }
+    }
+
+    /**
+     * Queues items to be added.
+     *
+     * @param stack The ItemStack to add (used as template)
+     * @param count The number of items to add
+     * @return This batch, for chaining
+     */
+    public InventoryBatch add(ItemStack stack, long count) {
+        if (stack != null && !stack.isEmpty() && count > 0) {
+            Delta delta = delta(ItemStackKey.of(stack));
+            delta.added = InfiniteInventoryEntry.saturatedAdd(delta.added, count);
+        }
+        return this;
+    }
+
+    /**
+     * Queues items to be added under a canonical key (used by InsertionBuffer).
+     */
+    InventoryBatch add(ItemStackKey key, long count) {
+        if (count > 0) {
+            Delta delta = delta(key);
+            delta.added = InfiniteInventoryEntry.saturatedAdd(delta.added, count);
+        }
+        return this;
+    }
+
+    /**
+     * Queues items to be removed.
+     * Like InfiniteInventory.removeItem, at most the stored count is removed.
+     *
+     * @param stack The ItemStack to remove (used as key)
+     * @param count The number of items to remove
+     * @return This batch, for chaining
+     */
+    public InventoryBatch remove(ItemStack stack, long count) {
+        if (stack != null && !stack.isEmpty() && count > 0) {
+            Delta delta = delta(ItemStackKey.of(stack));
+            delta.removed = InfiniteInventoryEntry.saturatedAdd(delta.removed, count);
+        }
+        return this;
+    }
+
+    /**
+     * Gets the number of distinct item types in this batch.
+     *
+     * @return The number of distinct keys
+     */
+    public int size() {
+        return deltas.size();
+    }
+
+    /**
+     * Checks if nothing has been queued.
+     *
+     * @return true if the batch is empty
+     */
+    public boolean isEmpty() {
+        return deltas.isEmpty();
+    }
+
+    /**
+     * Discards everything queued so the batch can be reused.
+     */
+    public void clear() {
+        deltas.clear();
+    }
+
+    /**
+     * Gets the merged deltas in the order their keys were first queued.
+     */
+    Collection<Map.Entry<ItemStackKey, Delta>> entries() {
+        return deltas.entrySet();
+    }
+
+    private Delta delta(ItemStackKey key) {
+        return deltas.computeIfAbsent(key, k -> new Delta());
+    }
+
+    @Override
+    public String toString() {
+        return "InventoryBatch{" +
+                "keys=" + deltas.size() +
+                '}';
+    }
+}
@@ -0,0 +1,29 @@
+package com.chayut.bottomlessinventory.inventory;
+
+/**
+ * A net change of the count stored under one key.
+ *
+ * @param key The canonical key that changed
+ * @param oldCount The count before the change (0 if the entry was new)
+ * @param newCount The count after the change (0 if the entry was removed)
+ */
+public record InventoryChange(ItemStackKey key, long oldCount, long newCount) {
+
+    /**
+     * Gets the signed difference between the new and old counts.
+     *
+     * @return newCount - oldCount
+     */
+    public long delta() {
+        return newCount - oldCount;
+    }
+
+    /**
+     * Checks if this change removed the entry entirely.
+     *
+     * @return true if the new count is 0
+     */
+    public boolean isRemoval() {
+        return newCount == 0;
+    }
+}
@@ -0,0 +1,87 @@
+package com.chayut.bottomlessinventory.inventory;
+
+import net.minecraft.core.registries.BuiltInRegistries;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Walks dense plain counts first, then the slots of a variant table, then every damage value
+ * of every damage histogram, creating a detached InfiniteInventoryEntry for every stored item type.
+ * The damaged variants of one base key are returned one after another, in ascending damage order.
+ */
+final class InventoryEntryIterator implements Iterator<InfiniteInventoryEntry> {
+    private final long[] plainCounts;
+    private final VariantTable variants;
+    private final HistogramTable histograms;
+    private int plainIndex = -1;
+    private int slot = -1;
+    private int histogramSlot = -1;
+    private int damageIndex;
+
+    InventoryEntryIterator(long[] plainCounts, VariantTable variants, HistogramTable histograms) {
+        this.plainCounts = plainCounts;
+        this.variants = variants;
+        this.histograms = histograms;
+        advance();
+    }
+
+    private void advance() {
+        if (plainIndex < plainCounts.length) {
+            do {
+                plainIndex++;
+            } while (plainIndex < plainCounts.length && plainCounts[plainIndex] == 0);
+
+            if (plainIndex < plainCounts.length) {
+                return;
+            }
+        }
+
+        if (slot < variants.capacity()) {
+            do {
+                slot++;
+            } while (slot < variants.capacity() && variants.keyAt(slot) == null);
+
+            if (slot < variants.capacity()) {
+                return;
+            }
+        }
+
+        // Next damage value of the current histogram, or the first of the next histogram
+        if (histogramSlot >= 0 && histogramSlot < histograms.capacity()
+                && ++damageIndex < histograms.histogramAt(histogramSlot).size()) {
+            return;
+        }
+        damageIndex = 0;
+        do {
+            histogramSlot++;
+        } while (histogramSlot < histograms.capacity() && histograms.keyAt(histogramSlot) == null);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return plainIndex < plainCounts.length || slot < variants.capacity() || histogramSlot < histograms.capacity();
+    }
+
+    @Override
+    public InfiniteInventoryEntry next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        InfiniteInventoryEntry entry;
+        if (plainIndex < plainCounts.length) {
+            ItemStackKey key = ItemStackKey.plain(BuiltInRegistries.ITEM.byId(plainIndex));
+            entry = new InfiniteInventoryEntry(key, plainCounts[plainIndex]);
+        } else if (slot < variants.capacity()) {
+            entry = new InfiniteInventoryEntry(variants.keyAt(slot), variants.countAt(slot));
+        } else {
+            DamageHistogram histogram = histograms.histogramAt(histogramSlot);
+            ItemStackKey key = ItemStackKey.withDamage(histograms.keyAt(histogramSlot), histogram.damageAt(damageIndex));
+            entry = new InfiniteInventoryEntry(key, histogram.countAt(damageIndex));
+        }
+
+        advance();
+        return entry;
+    }
+}
@@ -0,0 +1,284 @@
+package com.chayut.bottomlessinventory.inventory;
+
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.tags.TagKey;
+import net.minecraft.world.item.CreativeModeTab;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * Secondary indexes over the keys stored in an InfiniteInventory:
+ * by item (all component variants of one item), by namespace (mod id), by item tag and by
+ * creative tab, plus a running item total per tag.
+ *
+ * The key indexes only change when a key is added or removed. Tag totals are updated on every
+ * count change, using a shared per-item cache of tag lists so no tag lookup happens per change.
+ * The owning inventory decides which keys are indexed (base keys in damage histogram mode).
+ * Tag and creative tab membership can change at runtime (datapack reload, tab contents rebuild);
+ * the static invalidate methods bump a global generation and each index rebuilds its tag or tab
+ * part from its stored keys the next time it is used.
+ *
+ * Creative tab membership is per item type and only known where tab contents have been built
+ * (normally on the client); elsewhere the tab index is empty.
+ */
+public class InventoryIndex {
+    private static volatile int tagGeneration;
+    private static volatile int tabGeneration;
+    private static volatile TabMembership tabMembership;
+    private static volatile Map<Item, List<TagKey<Item>>> tagsByItem = new ConcurrentHashMap<>();
+
+    private final Map<Item, Set<ItemStackKey>> byItem = new IdentityHashMap<>();
+    private final Map<String, Set<ItemStackKey>> byNamespace = new HashMap<>();
+    private final Map<TagKey<Item>, Set<ItemStackKey>> byTag = new HashMap<>();
+    private final Map<TagKey<Item>, InventoryStats.Total> tagTotals = new HashMap<>();
+    private final Map<CreativeModeTab, Set<ItemStackKey>> byTab = new IdentityHashMap<>();
+    private int builtTagGeneration = tagGeneration;
+    private int builtTabGeneration = -1;
+
+    /**
+     * Marks every index's tag part as stale. Called when tags are (re)loaded.
+     */
+    public static void invalidateTags() {
+        tagsByItem = new ConcurrentHashMap<>();
+        tagGeneration++;
+    }
+
+    /**
+     * Marks every index's creative tab part as stale. Called when tab contents are rebuilt.
+     */
+    public static void invalidateCreativeTabs() {
+        tabGeneration++;
+        tabMembership = null;
+    }
+
+    /**
+     * Records a change of the count stored under a key (updates the tag totals).
+     */
+    void onCountChanged(ItemStackKey key, long oldCount, long newCount) {
+        if (oldCount == newCount || builtTagGeneration != tagGeneration) {
+            return;
+        }
+
+        for (TagKey<Item> tag : tagsOf(key)) {
+            InventoryStats.Total total = tagTotals.computeIfAbsent(tag, t -> new InventoryStats.Total());
+            total.add(oldCount, newCount);
+            if (total.isZero()) {
+                tagTotals.remove(tag);
+            }
+        }
+    }
+
+    /**
+     * Adds a key that just became stored to the key indexes.
+     */
+    void onKeyAdded(ItemStackKey key) {
+        byItem.computeIfAbsent(key.getItem(), item -> new HashSet<>()).add(key);
+        byNamespace.computeIfAbsent(namespaceOf(key), ns -> new HashSet<>()).add(key);
+        if (builtTagGeneration == tagGeneration) {
+            indexTags(key);
+        }
+        if (builtTabGeneration == tabGeneration) {
+            indexTabs(key, currentTabMembership());
+        }
+    }
+
+    /**
+     * Removes a key that is no longer stored from the key indexes.
+     */
+    void onKeyRemoved(ItemStackKey key) {
+        removeFrom(byItem, key.getItem(), key);
+        removeFrom(byNamespace, namespaceOf(key), key);
+        if (builtTagGeneration == tagGeneration) {
+            for (TagKey<Item> tag : tagsOf(key)) {
+                removeFrom(byTag, tag, key);
+            }
+        }
+        if (builtTabGeneration == tabGeneration) {
+            for (CreativeModeTab tab : currentTabMembership().tabsOf(key.getItem())) {
+                removeFrom(byTab, tab, key);
+            }
+        }
+    }
+
+    /**
+     * Removes all keys (used when the inventory is cleared).
+     */
+    void clear() {
+        byItem.clear();
+        byNamespace.clear();
+        byTag.clear();
+        tagTotals.clear();
+        byTab.clear();
+    }
+
+    /**
+     * Gets the stored keys of one item (its plain key and every component variant).
+     */
+    Set<ItemStackKey> keysOfItem(Item item) {
+        return readOnly(byItem.get(item));
+    }
+
+    /**
+     * Gets the items that have at least one stored variant.
+     */
+    Set<Item> items() {
+        return Collections.unmodifiableSet(byItem.keySet());
+    }
+
+    /**
+     * Gets the stored keys from one namespace.
+     */
+    Set<ItemStackKey> keysInNamespace(String namespace) {
+        return readOnly(byNamespace.get(namespace));
+    }
+
+    /**
+     * Gets the stored keys whose item is in a tag.
+     */
+    Set<ItemStackKey> keysInTag(TagKey<Item> tag, ToLongFunction<ItemStackKey> counts) {
+        ensureTagsCurrent(counts);
+        return readOnly(byTag.get(tag));
+    }
+
+    /**
+     * Gets the total count of stored items in a tag, saturated at Long.MAX_VALUE.
+     *
+     * @param counts Looks up stored counts, used only if the tag part must be rebuilt
+     */
+    long tagTotal(TagKey<Item> tag, ToLongFunction<ItemStackKey> counts) {
+        ensureTagsCurrent(counts);
+        InventoryStats.Total total = tagTotals.get(tag);
+        return total != null ? total.get() : 0;
+    }
+
+    /**
+     * Gets the stored keys whose item is shown in a creative tab.
+     */
+    Set<ItemStackKey> keysInCreativeTab(CreativeModeTab tab) {
+        ensureTabsCurrent();
+        return readOnly(byTab.get(tab));
+    }
+
+    private void ensureTagsCurrent(ToLongFunction<ItemStackKey> counts) {
+        int generation = tagGeneration;
+        if (builtTagGeneration == generation) {
+            return;
+        }
+
+        byTag.clear();
+        tagTotals.clear();
+        for (Set<ItemStackKey> keys : byNamespace.values()) {
+            for (ItemStackKey key : keys) {
+                indexTags(key);
+                long count = counts.applyAsLong(key);
+                for (TagKey<Item> tag : tagsOf(key)) {
+                    tagTotals.computeIfAbsent(tag, t -> new InventoryStats.Total()).add(0, count);
+                }
+            }
+        }
+        builtTagGeneration = generation;
+    }
+
+    private void ensureTabsCurrent() {
+        int generation = tabGeneration;
+        if (builtTabGeneration == generation) {
+            return;
+        }
+
+        byTab.clear();
+        TabMembership membership = currentTabMembership();
+        for (Set<ItemStackKey> keys : byNamespace.values()) {
+            for (ItemStackKey key : keys) {
+                indexTabs(key, membership);
+            }
+        }
+        builtTabGeneration = generation;
+    }
+
+    private void indexTags(ItemStackKey key) {
+        for (TagKey<Item> tag : tagsOf(key)) {
+            byTag.computeIfAbsent(tag, t -> new HashSet<>()).add(key);
+        }
+    }
+
+    private void indexTabs(ItemStackKey key, TabMembership membership) {
+        for (CreativeModeTab tab : membership.tabsOf(key.getItem())) {
+            byTab.computeIfAbsent(tab, t -> new HashSet<>()).add(key);
+        }
+    }
+
+    /**
+     * Gets the tags of a key's item from the shared cache, which is replaced on every tag reload.
+     */
+    private static List<TagKey<Item>> tagsOf(ItemStackKey key) {
+        return tagsByItem.computeIfAbsent(key.getItem(),
+                item -> List.copyOf(BuiltInRegistries.ITEM.wrapAsHolder(item).tags().toList()));
+    }
+
+    private static String namespaceOf(ItemStackKey key) {
+        return key.getNamespace();
+    }
+
+    private static <K> void removeFrom(Map<K, Set<ItemStackKey>> index, K indexKey, ItemStackKey key) {
+        Set<ItemStackKey> keys = index.get(indexKey);
+        if (keys != null && keys.remove(key) && keys.isEmpty()) {
+            index.remove(indexKey);
+        }
+    }
+
+    private static Set<ItemStackKey> readOnly(Set<ItemStackKey> keys) {
+        return keys != null ? Collections.unmodifiableSet(keys) : Collections.emptySet();
+    }
+
+    private static TabMembership currentTabMembership() {
+        TabMembership membership = tabMembership;
+        if (membership == null) {
+            membership = TabMembership.build();
+            tabMembership = membership;
+        }
+        return membership;
+    }
+
+    /**
+     * Which creative tabs show each item, built from the tabs' current display contents.
+     * Shared by all indexes until the tab contents are rebuilt.
+     */
+    private static final class TabMembership {
+        private final Map<Item, List<CreativeModeTab>> tabsByItem;
+
+        private TabMembership(Map<Item, List<CreativeModeTab>> tabsByItem) {
+            this.tabsByItem = tabsByItem;
+        }
+
+        static TabMembership build() {
+            Map<Item, List<CreativeModeTab>> tabsByItem = new IdentityHashMap<>();
+            for (CreativeModeTab tab : BuiltInRegistries.CREATIVE_MODE_TAB) {
+                if (tab.getType() != CreativeModeTab.Type.CATEGORY) {
+                    continue;
+                }
+                for (ItemStack stack : tab.getDisplayItems()) {
+                    List<CreativeModeTab> tabs = tabsByItem.computeIfAbsent(stack.getItem(), item -> new ArrayList<>(1));
+                    if (!tabs.contains(tab)) {
+                        tabs.add(tab);
+                    }
+                }
+            }
+            return new TabMembership(tabsByItem);
+        }
+
+        List<CreativeModeTab> tabsOf(Item item) {
+            return tabsByItem.getOrDefault(item, Collections.emptyList());
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.chayut.bottomlessinventory.inventory;
+
+import net.minecraft.core.component.DataComponentPatch;
+import net.minecraft.core.component.DataComponentType;
+import net.minecraft.nbt.Tag;
+import net.minecraft.world.item.component.CustomData;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Shallow heap size estimates for inventory storage, assuming a 64-bit JVM with compressed
+ * references (12 byte object headers, 4 byte references, 8 byte alignment).
+ *
+ * The figures are estimates, not measurements: component values other than custom_data are
+ * counted at a flat size, and pooled keys and reference stacks are counted in full for every
+ * inventory that stores them even though they are shared. That makes the estimate an upper
+ * bound of what one player would free, which is what limits and reports need.
+ */
+final class InventoryMemoryEstimator {
+    private static final int ARRAY_HEADER = 16;
+    private static final int REFERENCE = 4;
+
+    /**
+     * ItemStackKey: header, six references and six ints.
+     */
+    static final int KEY_BYTES = 64;
+
+    /**
+     * DataComponentPatch with its backing array map and its two arrays.
+     */
+    private static final int PATCH_BYTES = 72;
+
+    /**
+     * One component in a patch: its slots in both arrays plus a small value object.
+     */
+    private static final int COMPONENT_BYTES = 40;
+
+    /**
+     * The save cache of a key's encoded patch: its holder record, weak reference and array header.
+     */
+    private static final int ENCODED_BYTES = 16 + 32 + ARRAY_HEADER;
+
+    /**
+     * One component in an encoded patch: its type id and value in binary NBT.
+     */
+    private static final int ENCODED_COMPONENT_BYTES = 32;
+
+    /**
+     * ItemStack plus its PatchedDataComponentMap, before any copied patch entries.
+     */
+    static final int STACK_BYTES = 88;
+
+    /**
+     * One damage value in a DamageHistogram (int damage, long count, long tick).
+     */
+    static final int HISTOGRAM_ENTRY_BYTES = 20;
+
+    /**
+     * A DamageHistogram object with its three array headers.
+     */
+    static final int HISTOGRAM_BYTES = 24 + 3 * ARRAY_HEADER;
+
+    /**
+     * HashSet nodes for one indexed key: namespace, item and a typical handful of tags.
+     */
+    static final int INDEX_KEY_BYTES = 5 * 40;
+
+    private InventoryMemoryEstimator() {
+    }
+
+    /**
+     * Estimates a stored key together with its component patch and the encoded copy of the
+     * patch it keeps for saving.
+     */
+    static int keyBytes(ItemStackKey key) {
+        return KEY_BYTES + key.getEstimatedPatchBytes() + key.getEstimatedEncodedBytes();
+    }
+
+    /**
+     * Estimates the shared reference stack of a key. Its component map keeps its own copy of the patch.
+     */
+    static int referenceStackBytes(ItemStackKey key) {
+        return STACK_BYTES + key.getEstimatedPatchBytes();
+    }
+
+    /**
+     * Estimates a component patch. custom_data is measured by its tag size, since that is
+     * where other mods tend to keep large payloads.
+     */
+    static int patchBytes(DataComponentPatch components) {
+        if (components.isEmpty()) {
+            return 0;
+        }
+
+        long bytes = PATCH_BYTES;
+        for (Map.Entry<DataComponentType<?>, Optional<?>> entry : components.entrySet()) {
+            bytes += COMPONENT_BYTES;
+            Object value = entry.getValue().orElse(null);
+            if (value instanceof CustomData customData) {
+                Tag tag = customData.copyTag();
+                bytes += tag.sizeInBytes();
+            }
+        }
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Estimates the binary NBT encoding of a component patch, as cached by
+     * ItemStackKey#getEncodedComponents. Counted whether or not the key has been saved yet,
+     * so a key's estimate does not change under the quota that charged it.
+     */
+    static int encodedBytes(DataComponentPatch components) {
+        if (components.isEmpty()) {
+            return 0;
+        }
+
+        long bytes = ENCODED_BYTES;
+        for (Map.Entry<DataComponentType<?>, Optional<?>> entry : components.entrySet()) {
+            bytes += ENCODED_COMPONENT_BYTES;
+            Object value = entry.getValue().orElse(null);
+            if (value instanceof CustomData customData) {
+                bytes += customData.copyTag().sizeInBytes();
+            }
+        }
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Estimates the storage arrays of an inventory from their current sizes.
+     *
+     * @param plainLength The length of the dense plain count (and tick) arrays
+     * @param variants The variant table
+     * @param histograms The histogram table
+     */
+    static long storageBytes(int plainLength, VariantTable variants, HistogramTable histograms) {
+        long bytes = 2L * (ARRAY_HEADER + 8L * plainLength);
+        bytes += ARRAY_HEADER + (long) REFERENCE * variants.capacity();
+        bytes += 2L * (ARRAY_HEADER + 8L * variants.capacity());
+        bytes += 2L * (ARRAY_HEADER + (long) REFERENCE * histograms.capacity());
+        bytes += (long) HISTOGRAM_BYTES * histograms.size();
+        return bytes;
+    }
+}
@@ -0,0 +1,226 @@
+package com.chayut.bottomlessinventory.inventory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Bounded "most stored" and "recently changed" rankings for an InfiniteInventory,
+ * kept up to date on every change so views never sort the whole storage.
+ *
+ * The top-by-count ranking serves at most {@link #TOP_CAPACITY} keys but tracks up to
+ * {@link #TRACKED_CAPACITY} in a sorted set, so each change costs O(log K). Keys outside the
+ * ranking are not tracked; instead the ranking remembers an upper bound for their counts.
+ * A read of the top N is exact as long as the N-th member's count is at or above that bound,
+ * which is checked per read. Members that shrink or leave only use up the spare places,
+ * so a single shrinking entry never forces a rebuild; only once the served part of the
+ * ranking can no longer be trusted is it rebuilt with one scan, which also recomputes the bound.
+ *
+ * The recently changed ranking is a bounded insertion-ordered map: a change moves its key
+ * to the end in O(1), and the oldest key is dropped once {@link #RECENT_CAPACITY} is reached.
+ */
+final class InventoryRankings {
+    static final int TOP_CAPACITY = 64;
+    static final int TRACKED_CAPACITY = TOP_CAPACITY * 2;
+    static final int RECENT_CAPACITY = 64;
+
+    private static final Comparator<Member> BY_COUNT_DESCENDING = Comparator
+            .comparingLong((Member member) -> member.count).reversed()
+            .thenComparingLong(member -> member.sequence);
+
+    private final TreeSet<Member> top = new TreeSet<>(BY_COUNT_DESCENDING);
+    private final Map<ItemStackKey, Member> members = new HashMap<>();
+    private final LinkedHashMap<ItemStackKey, Boolean> recent = new LinkedHashMap<>();
+
+    /**
+     * No stored key outside the top ranking has a count above this.
+     */
+    private long outsideBound;
+    private long nextSequence;
+
+    /**
+     * Records a change of the count stored under a key.
+     *
+     * @param key The key that changed
+     * @param oldCount The count before the change
+     * @param newCount The count after the change
+     */
+    void onCountChanged(ItemStackKey key, long oldCount, long newCount) {
+        if (oldCount == newCount) {
+            return;
+        }
+
+        recent.remove(key);
+        if (newCount != 0) {
+            recent.put(key, Boolean.TRUE);
+            if (recent.size() > RECENT_CAPACITY) {
+                Iterator<ItemStackKey> eldest = recent.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+
+        updateTop(key, newCount);
+    }
+
+    private void updateTop(ItemStackKey key, long count) {
+        Member member = members.get(key);
+        if (member != null) {
+            top.remove(member);
+            if (count == 0) {
+                members.remove(key);
+                return;
+            }
+            // A member below the bound stays tracked; reads check whether it still matters
+            member.count = count;
+            top.add(member);
+            return;
+        }
+
+        if (count != 0) {
+            offer(key, count);
+        }
+    }
+
+    /**
+     * Offers a key that is not ranked, evicting the smallest member if the key beats it.
+     */
+    private void offer(ItemStackKey key, long count) {
+        if (top.size() < TRACKED_CAPACITY) {
+            add(key, count);
+            return;
+        }
+
+        Member smallest = top.last();
+        if (count > smallest.count) {
+            top.pollLast();
+            members.remove(smallest.key);
+            outsideBound = Math.max(outsideBound, smallest.count);
+            add(key, count);
+        } else {
+            outsideBound = Math.max(outsideBound, count);
+        }
+    }
+
+    private void add(ItemStackKey key, long count) {
+        Member member = new Member(key, count, nextSequence++);
+        top.add(member);
+        members.put(key, member);
+    }
+
+    /**
+     * Checks if the top ranking must be rebuilt before its first entries are read.
+     * Costs O(limit): the first entries are exact if the last of them is not below the bound.
+     *
+     * @param limit The number of entries that will be read
+     */
+    boolean isStale(int limit) {
+        int needed = Math.min(limit, TOP_CAPACITY);
+        if (needed <= 0) {
+            return false;
+        }
+        if (top.size() < needed) {
+            // Keys outside the ranking may fill the missing places
+            return outsideBound > 0;
+        }
+
+        Iterator<Member> iterator = top.iterator();
+        Member member = iterator.next();
+        for (int i = 1; i < needed; i++) {
+            member = iterator.next();
+        }
+        return member.count < outsideBound;
+    }
+
+    /**
+     * Rebuilds the top ranking from every stored entry in O(n log K).
+     *
+     * @param entries All entries of the inventory
+     */
+    void rebuild(Iterable<InfiniteInventoryEntry> entries) {
+        top.clear();
+        members.clear();
+        outsideBound = 0;
+        for (InfiniteInventoryEntry entry : entries) {
+            offer(entry.getKey(), entry.getCount());
+        }
+    }
+
+    /**
+     * Gets the most stored keys, largest count first.
+     * The caller must rebuild first if the ranking is stale.
+     *
+     * @param limit The maximum number of keys (at most TOP_CAPACITY are served)
+     */
+    List<ItemStackKey> top(int limit) {
+        limit = Math.min(limit, TOP_CAPACITY);
+        List<ItemStackKey> keys = new ArrayList<>(Math.min(limit, top.size()));
+        for (Member member : top) {
+            if (keys.size() >= limit) {
+                break;
+            }
+            keys.add(member.key);
+        }
+        return keys;
+    }
+
+    /**
+     * Gets the most recently changed keys that are still stored, newest first.
+     *
+     * @param limit The maximum number of keys (at most RECENT_CAPACITY are tracked)
+     */
+    List<ItemStackKey> recent(int limit) {
+        List<ItemStackKey> keys = new ArrayList<>(recent.keySet());
+        List<ItemStackKey> newestFirst = new ArrayList<>(Math.min(limit, keys.size()));
+        for (int i = keys.size() - 1; i >= 0 && newestFirst.size() < limit; i--) {
+            newestFirst.add(keys.get(i));
+        }
+        return newestFirst;
+    }
+
+    /**
+     * Gets the recently changed keys, oldest first, so they can be put back with restoreRecent.
+     */
+    List<ItemStackKey> saveRecent() {
+        return new ArrayList<>(recent.keySet());
+    }
+
+    /**
+     * Replaces the recently changed ranking with one saved earlier (used by transaction rollback).
+     *
+     * @param keys The keys returned by saveRecent, oldest first
+     */
+    void restoreRecent(List<ItemStackKey> keys) {
+        recent.clear();
+        for (ItemStackKey key : keys) {
+            recent.put(key, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Resets both rankings (used when the inventory is cleared).
+     */
+    void clear() {
+        top.clear();
+        members.clear();
+        recent.clear();
+        outsideBound = 0;
+    }
+
+    private static final class Member {
+        private final ItemStackKey key;
+        private final long sequence;
+        private long count;
+
+        private Member(ItemStackKey key, long count, long sequence) {
+            this.key = key;
+            this.count = count;
+            this.sequence = sequence;
+        }
+    }
+}
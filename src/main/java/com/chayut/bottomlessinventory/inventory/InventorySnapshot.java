@@ -0,0 +1,236 @@
+package com.chayut.bottomlessinventory.inventory;
+
+import net.minecraft.world.item.ItemStack;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable, point-in-time view of an InfiniteInventory.
+ *
+ * Created in O(1) by InfiniteInventory.snapshot(), which shares the inventory's storage
+ * arrays instead of copying them; the live inventory copies them before its next write.
+ * Nothing here changes after creation, so a snapshot can be handed to a worker thread
+ * (for saving, sync encoding or admin scans) while the server keeps modifying the inventory.
+ * Last-modified ticks are shared the same way as the counts, so a snapshot saves entry ages too.
+ *
+ * A snapshot of a ConcurrentInfiniteInventory is made of one part per stripe.
+ * Every key is stored in at most one part.
+ */
+public final class InventorySnapshot {
+    private final long[][] plainParts;
+    private final long[][] plainTickParts;
+    private final VariantTable[] variantParts;
+    private final HistogramTable[] histogramParts;
+    private final int uniqueItemCount;
+    private final long totalItemCount;
+
+    /**
+     * Package-private: snapshots are created by InfiniteInventory.snapshot().
+     */
+    InventorySnapshot(long[] plainCounts, long[] plainTicks, VariantTable variants, HistogramTable histograms,
+                      int uniqueItemCount, long totalItemCount) {
+        this(new long[][] {plainCounts}, new long[][] {plainTicks}, new VariantTable[] {variants},
+                new HistogramTable[] {histograms}, uniqueItemCount, totalItemCount);
+    }
+
+    private InventorySnapshot(long[][] plainParts, long[][] plainTickParts, VariantTable[] variantParts,
+                              HistogramTable[] histogramParts, int uniqueItemCount, long totalItemCount) {
+        this.plainParts = plainParts;
+        this.plainTickParts = plainTickParts;
+        this.variantParts = variantParts;
+        this.histogramParts = histogramParts;
+        this.uniqueItemCount = uniqueItemCount;
+        this.totalItemCount = totalItemCount;
+    }
+
+    /**
+     * Combines snapshots of disjoint inventories (the stripes of a ConcurrentInfiniteInventory).
+     */
+    static InventorySnapshot combine(InventorySnapshot[] parts) {
+        int partCount = 0;
+        for (InventorySnapshot part : parts) {
+            partCount += part.plainParts.length;
+        }
+
+        long[][] plainParts = new long[partCount][];
+        long[][] plainTickParts = new long[partCount][];
+        VariantTable[] variantParts = new VariantTable[partCount];
+        HistogramTable[] histogramParts = new HistogramTable[partCount];
+        int uniqueItemCount = 0;
+        long totalItemCount = 0;
+        int index = 0;
+        for (InventorySnapshot part : parts) {
+            for (int i = 0; i < part.plainParts.length; i++) {
+                plainParts[index] = part.plainParts[i];
+                plainTickParts[index] = part.plainTickParts[i];
+                variantParts[index] = part.variantParts[i];
+                histogramParts[index] = part.histogramParts[i];
+                index++;
+            }
+            uniqueItemCount += part.uniqueItemCount;
+            totalItemCount = InfiniteInventoryEntry.saturatedAdd(totalItemCount, part.totalItemCount);
+        }
+        return new InventorySnapshot(plainParts, plainTickParts, variantParts, histogramParts,
+                uniqueItemCount, totalItemCount);
+    }
+
+    /**
+     * Gets the count of a specific item type at the time of the snapshot.
+     *
+     * @param stack The ItemStack to check (used as key)
+     * @return The count of matching items, or 0 if not present
+     */
+    public long getCount(ItemStack stack) {
+        ItemStackKey key = ItemStackKey.findStored(stack);
+        return key != null ? getCount(key) : 0;
+    }
+
+    /**
+     * Gets the count stored under a key at the time of the snapshot.
+     *
+     * @param key The key to check
+     * @return The count of matching items, or 0 if not present
+     */
+    public long getCount(ItemStackKey key) {
+        // A key lives in at most one part, so the first non-zero count is the answer
+        for (int i = 0; i < plainParts.length; i++) {
+            long count;
+            if (key.isPlain()) {
+                int id = key.getItemId();
+                long[] plainCounts = plainParts[i];
+                count = id >= 0 && id < plainCounts.length ? plainCounts[id] : 0;
+            } else {
+                // Damaged variants are in the histograms or the variant table, depending on the mode
+                count = key.getDamage() != 0 ? histogramParts[i].get(key.getBaseKey(), key.getDamage()) : 0;
+                if (count == 0) {
+                    count = variantParts[i].get(key);
+                }
+            }
+            if (count != 0) {
+                return count;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the tick an item type was last modified at, as of the snapshot.
+     *
+     * @param stack The ItemStack to check (used as key)
+     * @return The tick of the last change, or 0 if the item was not stored
+     */
+    public long getLastModified(ItemStack stack) {
+        ItemStackKey key = ItemStackKey.findStored(stack);
+        return key != null ? getLastModified(key) : 0;
+    }
+
+    /**
+     * Gets the tick the entry under a key was last modified at, as of the snapshot.
+     *
+     * @param key The key to check
+     * @return The tick of the last change, or 0 if nothing was stored under the key
+     */
+    public long getLastModified(ItemStackKey key) {
+        for (int i = 0; i < plainParts.length; i++) {
+            if (key.isPlain()) {
+                int id = key.getItemId();
+                long[] plainTicks = plainTickParts[i];
+                if (id >= 0 && id < plainTicks.length && plainParts[i][id] != 0) {
+                    return plainTicks[id];
+                }
+            } else if (key.getDamage() != 0 && histogramParts[i].get(key.getBaseKey(), key.getDamage()) != 0) {
+                return histogramParts[i].getTick(key.getBaseKey(), key.getDamage());
+            } else if (variantParts[i].get(key) != 0) {
+                return variantParts[i].getTick(key);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Gets all entries at the time of the snapshot.
+     * Entries are created while iterating; changing their counts has no effect.
+     *
+     * @return A read-only collection of all entries
+     */
+    public Collection<InfiniteInventoryEntry> getAllEntries() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<InfiniteInventoryEntry> iterator() {
+                if (plainParts.length == 1) {
+                    return new InventoryEntryIterator(plainParts[0], variantParts[0], histogramParts[0]);
+                }
+                return new PartIterator();
+            }
+
+            @Override
+            public int size() {
+                return uniqueItemCount;
+            }
+        };
+    }
+
+    /**
+     * Gets the number of different item types stored.
+     *
+     * @return The number of unique item types
+     */
+    public int getUniqueItemCount() {
+        return uniqueItemCount;
+    }
+
+    /**
+     * Gets the total count of all items, saturated at Long.MAX_VALUE.
+     *
+     * @return The total count of all items
+     */
+    public long getTotalItemCount() {
+        return totalItemCount;
+    }
+
+    /**
+     * Checks if the snapshot is empty.
+     *
+     * @return true if no items were stored
+     */
+    public boolean isEmpty() {
+        return uniqueItemCount == 0;
+    }
+
+    /**
+     * Chains the entry iterators of all parts.
+     */
+    private class PartIterator implements Iterator<InfiniteInventoryEntry> {
+        private int part = -1;
+        private Iterator<InfiniteInventoryEntry> current = Collections.emptyIterator();
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext() && part + 1 < plainParts.length) {
+                part++;
+                current = new InventoryEntryIterator(plainParts[part], variantParts[part], histogramParts[part]);
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public InfiniteInventoryEntry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "InventorySnapshot{" +
+                "uniqueItems=" + uniqueItemCount +
+                ", totalItems=" + totalItemCount +
+                '}';
+    }
+}
@@ -0,0 +1,145 @@
+package com.chayut.bottomlessinventory.inventory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Aggregate statistics for an InfiniteInventory, kept up to date on every change.
+ * All getters are O(1) (per-namespace lookups are a single hash lookup).
+ *
+ * Totals are accumulated exactly in 128 bits and reported saturated at Long.MAX_VALUE,
+ * so removing items from a saturated inventory still brings the total back to the exact value.
+ */
+public class InventoryStats {
+    private final Total total = new Total();
+    private final Map<String, Total> namespaceTotals = new HashMap<>();
+    private int uniqueItemCount;
+
+    /**
+     * Records a change of the count stored under a key.
+     *
+     * @param key The key that changed
+     * @param oldCount The count before the change
+     * @param newCount The count after the change
+     */
+    void onCountChanged(ItemStackKey key, long oldCount, long newCount) {
+        if (oldCount == newCount) {
+            return;
+        }
+
+        if (oldCount == 0) {
+            uniqueItemCount++;
+        } else if (newCount == 0) {
+            uniqueItemCount--;
+        }
+
+        total.add(oldCount, newCount);
+
+        String namespace = key.getNamespace();
+        Total namespaceTotal = namespaceTotals.computeIfAbsent(namespace, ns -> new Total());
+        namespaceTotal.add(oldCount, newCount);
+        if (namespaceTotal.isZero()) {
+            namespaceTotals.remove(namespace);
+        }
+    }
+
+    /**
+     * Resets all statistics (used when the inventory is cleared).
+     */
+    void clear() {
+        total.reset();
+        namespaceTotals.clear();
+        uniqueItemCount = 0;
+    }
+
+    /**
+     * Gets the total count of all items, saturated at Long.MAX_VALUE.
+     *
+     * @return The total item count
+     */
+    public long getTotalItemCount() {
+        return total.get();
+    }
+
+    /**
+     * Gets the number of different item types stored.
+     *
+     * @return The number of unique item types
+     */
+    public int getUniqueItemCount() {
+        return uniqueItemCount;
+    }
+
+    /**
+     * Gets the total count of items from one namespace (mod id), saturated at Long.MAX_VALUE.
+     *
+     * @param namespace The namespace, e.g. "minecraft"
+     * @return The total count of items from that namespace, or 0 if none are stored
+     */
+    public long getNamespaceTotal(String namespace) {
+        Total namespaceTotal = namespaceTotals.get(namespace);
+        return namespaceTotal != null ? namespaceTotal.get() : 0;
+    }
+
+    /**
+     * Gets the namespaces that currently have items stored.
+     *
+     * @return An unmodifiable view of the stored namespaces
+     */
+    public Set<String> getNamespaces() {
+        return Collections.unmodifiableSet(namespaceTotals.keySet());
+    }
+
+    @Override
+    public String toString() {
+        return "InventoryStats{" +
+                "uniqueItems=" + uniqueItemCount +
+                ", totalItems=" + total.get() +
+                ", namespaces=" + namespaceTotals.size() +
+                '}';
+    }
+
+    /**
+     * An exact 128-bit running total (high word + unsigned low word).
+     * Entry counts are at most Long.MAX_VALUE and there are at most 2^31 entries, so it cannot overflow.
+     * Also used by InventoryIndex for per-tag totals.
+     */
+    static final class Total {
+        private long high;
+        private long low;
+
+        void add(long oldCount, long newCount) {
+            long previousLow = low;
+            if (newCount >= oldCount) {
+                // newCount - oldCount cannot overflow as an unsigned value since both are non-negative
+                low += newCount - oldCount;
+                if (Long.compareUnsigned(low, previousLow) < 0) {
+                    high++;
+                }
+            } else {
+                low -= oldCount - newCount;
+                if (Long.compareUnsigned(low, previousLow) > 0) {
+                    high--;
+                }
+            }
+        }
+
+        long get() {
+            if (high != 0 || low < 0) {
+                return high < 0 ? 0 : Long.MAX_VALUE;
+            }
+            return low;
+        }
+
+        boolean isZero() {
+            return high == 0 && low == 0;
+        }
+
+        void reset() {
+            high = 0;
+            low = 0;
+        }
+    }
+}
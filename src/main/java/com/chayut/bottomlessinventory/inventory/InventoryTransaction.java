@@ -0,0 +1,178 @@
+package com.chayut.bottomlessinventory.inventory;
+
+import it.unimi.dsi.fastutil.objects.Object2LongMap;
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
+import net.minecraft.world.item.ItemStack;
+
+import java.util.List;
+
+/**
+ * An all-or-nothing group of changes to an InfiniteInventory.
+ *
+ * Changes are applied to the inventory immediately, while a private ChangeJournal remembers
+ * the count each touched key had when the transaction began. Rolling back restores only
+ * those keys, so both commit and rollback cost is proportional to the keys touched,
+ * not to the size of the inventory.
+ *
+ * Rollback also restores the last-modified tick of every touched key and the "recently changed"
+ * ranking, so a rolled-back transaction leaves no trace in entry ages (which drive cold storage)
+ * or in the rankings.
+ *
+ * Typical use:
+ * <pre>
+ * try (InventoryTransaction tx = inventory.beginTransaction()) {
+ *     if (!tx.removeExactly(ingredientA, 3) || !tx.removeExactly(ingredientB, 1)) {
+ *         return; // closing without commit rolls back
+ *     }
+ *     tx.commit();
+ * }
+ * </pre>
+ *
+ * A transaction is not thread-safe and should not be interleaved with other writes to the
+ * same inventory, since rollback restores the counts recorded at the start.
+ */
+public class InventoryTransaction implements AutoCloseable {
+    private final InfiniteInventory inventory;
+    private final ChangeJournal journal;
+
+    /**
+     * The last-modified tick of each touched key when it was first touched (0 if not stored).
+     */
+    private final Object2LongOpenHashMap<ItemStackKey> startTicks = new Object2LongOpenHashMap<>();
+    private final List<ItemStackKey> startRecent;
+    private boolean finished;
+
+    /**
+     * Package-private: transactions are created by InfiniteInventory.beginTransaction().
+     */
+    InventoryTransaction(InfiniteInventory inventory) {
+        this.inventory = inventory;
+        this.journal = inventory.openTransactionJournal();
+        this.startRecent = inventory.saveRecentlyChanged();
+    }
+
+    /**
+     * Adds items as part of this transaction.
+     *
+     * @param stack The ItemStack to add (used as template)
+     * @param count The number of items to add
+     * @return true if items were added
+     */
+    public boolean add(ItemStack stack, long count) {
+        checkOpen();
+        if (stack != null && !stack.isEmpty()) {
+            // Looking the count up first pages in a cold variant, so the tick remembered is its own
+            inventory.getCount(stack);
+            rememberTick(ItemStackKey.of(stack));
+        }
+        return inventory.addItem(stack, count);
+    }
+
+    /**
+     * Removes up to the given number of items as part of this transaction.
+     *
+     * @param stack The ItemStack to remove (used as key)
+     * @param count The number of items to remove
+     * @return The actual number of items removed
+     */
+    public long remove(ItemStack stack, long count) {
+        checkOpen();
+        // Looking the count up first pages in a cold variant, so its tick is remembered too
+        if (count <= 0 || inventory.getCount(stack) <= 0) {
+            return 0;
+        }
+        rememberTick(ItemStackKey.findStored(stack));
+        return inventory.removeItem(stack, count);
+    }
+
+    /**
+     * Removes exactly the given number of items, or nothing if not enough are stored.
+     *
+     * @param stack The ItemStack to remove (used as key)
+     * @param count The number of items to remove
+     * @return true if all items were removed
+     */
+    public boolean removeExactly(ItemStack stack, long count) {
+        checkOpen();
+        if (count <= 0 || inventory.getCount(stack) < count) {
+            return false;
+        }
+        rememberTick(ItemStackKey.findStored(stack));
+        return inventory.removeItem(stack, count) == count;
+    }
+
+    /**
+     * Makes all changes of this transaction permanent.
+     *
+     * @return The net change of every item type this transaction changed
+     * @throws IllegalStateException if the transaction was already committed or rolled back
+     */
+    public List<InventoryChange> commit() {
+        checkOpen();
+        finished = true;
+        inventory.closeJournal(journal);
+        return journal.drain();
+    }
+
+    /**
+     * Restores every key touched by this transaction to its count and tick at the start.
+     *
+     * @throws IllegalStateException if the transaction was already committed or rolled back
+     */
+    public void rollback() {
+        checkOpen();
+        finished = true;
+        inventory.closeJournal(journal);
+        for (InventoryChange change : journal.drain()) {
+            inventory.restoreEntry(change.key(), change.oldCount(), startTicks.removeLong(change.key()));
+        }
+        // Keys that ended up back at their start count may still have been restamped
+        for (Object2LongMap.Entry<ItemStackKey> entry : startTicks.object2LongEntrySet()) {
+            ItemStackKey key = entry.getKey();
+            inventory.restoreEntry(key, inventory.storedCount(key), entry.getLongValue());
+        }
+        inventory.restoreRecentlyChanged(startRecent);
+    }
+
+    /**
+     * Checks if the transaction is still open.
+     *
+     * @return true if neither commit() nor rollback() has been called
+     */
+    public boolean isOpen() {
+        return !finished;
+    }
+
+    /**
+     * Rolls back the transaction if it was not committed.
+     */
+    @Override
+    public void close() {
+        if (!finished) {
+            rollback();
+        }
+    }
+
+    /**
+     * Remembers a key's tick before its first change in this transaction.
+     */
+    private void rememberTick(ItemStackKey key) {
+        if (key != null && !startTicks.containsKey(key)) {
+            startTicks.put(key, inventory.getLastModified(key));
+        }
+    }
+
+    private void checkOpen() {
+        if (finished) {
+            throw new IllegalStateException("Transaction has already been committed or rolled back");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "InventoryTransaction{" +
+                "touchedKeys=" + journal.getTouchedKeyCount() +
+                ", open=" + !finished +
+                '}';
+    }
+}
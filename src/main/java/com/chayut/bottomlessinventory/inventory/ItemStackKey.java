@@ -1,22 +1,85 @@
 package com.chayut.bottomlessinventory.inventory;
 
+import net.minecraft.core.HolderLookup;
 import net.minecraft.core.component.DataComponentPatch;
+import net.minecraft.core.component.DataComponents;
+import net.minecraft.core.component.PatchedDataComponentMap;
 import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtOps;
+import net.minecraft.nbt.Tag;
 import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
 
-import java.util.Objects;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Optional;
 
 /**
  * A key class for ItemStack comparison in HashMaps.
  * Two ItemStacks are considered equal if they have the same:
- * - Item type (Registry ID)
+ * - Item type (Item instances are registry singletons, so compared by identity)
  * - Data components (NBT equivalent in 1.21+)
+ *
+ * The component patch hash is computed once per key. Equality checks compare the item
+ * and the cached patch hash first, and only deep-compare the patches when both match.
+ *
+ * Hot paths should use {@link #of(ItemStack)} and {@link #find(ItemStack)}, which go through
+ * a shared pool of canonical keys instead of building a new key for every lookup.
+ *
+ * Every way of building a key first runs the component patch through the configured
+ * {@link ComponentNormalizer}, so stacks that only differ in ignored components share one key.
  */
 public class ItemStackKey {
+    private static final ItemStackKeyInterner INTERNER = new ItemStackKeyInterner();
+
+    /**
+     * Canonical keys for component-free stacks, indexed by raw item registry id.
+     * Filled lazily; a racing fill stores the same pooled instance, so no locking is needed.
+     */
+    private static volatile ItemStackKey[] plainKeys = new ItemStackKey[0];
+
+    private static volatile ComponentNormalizer normalizer = ComponentNormalizer.NONE;
+
     private final Item item;
     private final DataComponentPatch components;
+    private final int componentsHash;
     private final int cachedHashCode;
+    private final int itemId;
+    private final String namespace;
+    private final int damage;
+
+    /**
+     * Canonical key of the same variant without damage, resolved on first use.
+     */
+    private ItemStackKey baseKey;
+
+    /**
+     * The shared read-only stack of this variant, built on first use.
+     * Volatile because the stack is read off-thread (snapshot saves, sync encoding, concurrent
+     * writers) and ItemStack has mutable state that must be seen fully constructed.
+     */
+    private volatile ItemStack sharedStack;
+
+    /**
+     * Estimated heap size of the component patch, computed on first use (-1 until then).
+     */
+    private int estimatedPatchBytes = -1;
+
+    /**
+     * Cached InventoryMemoryEstimator#encodedBytes of the components, or -1 if not yet computed.
+     */
+    private int estimatedEncodedBytes = -1;
+
+    /**
+     * The component patch encoded as binary NBT, with the registry access it was encoded for.
+     * Filled on the first save (or load) of this variant. Pooled keys outlive a server, so the
+     * registry access is held weakly and a stopped world's registries can still be collected.
+     */
+    private volatile EncodedComponents encodedComponents;
 
     /**
      * Creates a key from an ItemStack.
@@ -29,17 +92,209 @@ public class ItemStackKey {
 
         this.item = stack.getItem();
         // Get the component patch which contains all the data components
-        this.components = stack.getComponentsPatch();
+        this.components = normalizer.normalize(item, stack.getComponentsPatch());
 
-        // Pre-calculate hash code since this object is immutable
-        this.cachedHashCode = computeHashCode();
+        // Pre-calculate hashes since this object is immutable
+        this.componentsHash = components.hashCode();
+        this.cachedHashCode = hash(item, componentsHash);
+        this.itemId = BuiltInRegistries.ITEM.getId(item);
+        this.namespace = BuiltInRegistries.ITEM.getKey(item).getNamespace();
+        this.damage = damageOf(components);
     }
 
-    private int computeHashCode() {
-        return Objects.hash(
-            BuiltInRegistries.ITEM.getKey(item),
-            components
-        );
+    /**
+     * Creates a key from already extracted parts (used by the key pool).
+     */
+    ItemStackKey(Item item, DataComponentPatch components, int componentsHash) {
+        this.item = item;
+        this.components = components;
+        this.componentsHash = componentsHash;
+        this.cachedHashCode = hash(item, componentsHash);
+        this.itemId = BuiltInRegistries.ITEM.getId(item);
+        this.namespace = BuiltInRegistries.ITEM.getKey(item).getNamespace();
+        this.damage = damageOf(components);
+    }
+
+    /**
+     * Reads the damage set in a component patch, or 0 if the patch does not set one.
+     */
+    private static int damageOf(DataComponentPatch components) {
+        if (components.isEmpty()) {
+            return 0;
+        }
+        Optional<? extends Integer> damage = components.get(DataComponents.DAMAGE);
+        return damage != null && damage.isPresent() ? damage.get() : 0;
+    }
+
+    /**
+     * Gets the canonical pooled key for an ItemStack, creating it if this variant has not been seen.
+     * Inventories should store canonical keys so {@link #find(ItemStack)} can locate them later.
+     *
+     * @param stack The ItemStack to get a key for
+     * @return The canonical key
+     */
+    public static ItemStackKey of(ItemStack stack) {
+        if (stack == null || stack.isEmpty()) {
+            throw new IllegalArgumentException("Cannot create ItemStackKey from null or empty ItemStack");
+        }
+
+        return of(stack.getItem(), stack.getComponentsPatch());
+    }
+
+    /**
+     * Gets the canonical pooled key for an item and component patch, creating it if needed.
+     * Lets decoded data become a key without materializing an ItemStack first.
+     *
+     * @param item The item type (must not be air)
+     * @param components The component patch
+     * @return The canonical key
+     */
+    public static ItemStackKey of(Item item, DataComponentPatch components) {
+        components = normalizer.normalize(item, components);
+        if (components.isEmpty()) {
+            return plain(item);
+        }
+        return INTERNER.intern(item, components, components.hashCode());
+    }
+
+    /**
+     * Finds the canonical pooled key for an ItemStack without creating one.
+     * If no key exists, no inventory can be holding this variant.
+     * Component-free stacks always resolve to their plain key.
+     *
+     * @param stack The ItemStack to look up
+     * @return The canonical key, or null if the stack is null, empty, or has never been interned
+     */
+    public static ItemStackKey find(ItemStack stack) {
+        if (stack == null || stack.isEmpty()) {
+            return null;
+        }
+        return find(stack.getItem(), stack.getComponentsPatch());
+    }
+
+    /**
+     * Finds the canonical pooled key for an item and component patch without creating one.
+     *
+     * @param item The item type
+     * @param components The component patch
+     * @return The canonical key, or null if it has never been interned
+     */
+    public static ItemStackKey find(Item item, DataComponentPatch components) {
+        components = normalizer.normalize(item, components);
+        if (components.isEmpty()) {
+            return plain(item);
+        }
+        return INTERNER.find(item, components, components.hashCode());
+    }
+
+    /**
+     * Finds the key an inventory would store an ItemStack under.
+     * Like {@link #find(ItemStack)}, but also resolves damaged variants kept in a damage histogram:
+     * those inventories only hold the base key, so the damaged key itself may have been collected.
+     *
+     * @param stack The ItemStack to look up
+     * @return The canonical key, or null if no inventory can be holding this variant
+     */
+    static ItemStackKey findStored(ItemStack stack) {
+        ItemStackKey key = find(stack);
+        if (key != null || stack == null || stack.isEmpty()) {
+            return key;
+        }
+
+        DataComponentPatch components = normalizer.normalize(stack.getItem(), stack.getComponentsPatch());
+        if (damageOf(components) == 0) {
+            return null;
+        }
+
+        // Histograms hold their base key strongly, so a missing base key means nothing is stored
+        DataComponentPatch undamaged = components.forget(type -> type == DataComponents.DAMAGE);
+        return find(stack.getItem(), undamaged) != null ? of(stack) : null;
+    }
+
+    /**
+     * Sets the normalizer applied to component patches before keys are built.
+     * Must be called before any inventory is loaded (normally when the logical server starts):
+     * keys built under different rules would not match each other.
+     *
+     * @param normalizer The normalizer to use, or null for none
+     */
+    public static void setNormalizer(ComponentNormalizer normalizer) {
+        ItemStackKey.normalizer = normalizer != null ? normalizer : ComponentNormalizer.NONE;
+    }
+
+    /**
+     * Gets the normalizer applied to component patches before keys are built.
+     *
+     * @return The current normalizer
+     */
+    public static ComponentNormalizer getNormalizer() {
+        return normalizer;
+    }
+
+    /**
+     * Gets the canonical key for an item without any components.
+     * Backed by an array indexed by raw registry id, so it does not probe the pool after the first call.
+     *
+     * @param item The item type
+     * @return The canonical component-free key
+     */
+    public static ItemStackKey plain(Item item) {
+        int id = BuiltInRegistries.ITEM.getId(item);
+        ItemStackKey[] keys = plainKeys;
+        if (id >= 0 && id < keys.length && keys[id] != null) {
+            return keys[id];
+        }
+
+        ItemStackKey key = INTERNER.intern(item, DataComponentPatch.EMPTY, DataComponentPatch.EMPTY.hashCode());
+        if (id >= 0) {
+            if (id >= keys.length) {
+                keys = Arrays.copyOf(keys, Math.max(id + 1, BuiltInRegistries.ITEM.size()));
+            }
+            keys[id] = key;
+            plainKeys = keys;
+        }
+        return key;
+    }
+
+    /**
+     * Gets the canonical key of the damaged variant of a base key.
+     *
+     * @param base The base key (without damage)
+     * @param damage The damage value (non-zero)
+     * @return The canonical key with the damage set
+     */
+    static ItemStackKey withDamage(ItemStackKey base, int damage) {
+        // Patch the components directly rather than building a throwaway ItemStack
+        PatchedDataComponentMap components = PatchedDataComponentMap.fromPatch(base.item.components(), base.components);
+        components.set(DataComponents.DAMAGE, damage);
+        return of(base.item, components.asPatch());
+    }
+
+    /**
+     * Combines an item's identity with a component patch hash.
+     * Item instances are registry singletons, so their identity hash is stable for the session.
+     */
+    static int hash(Item item, int componentsHash) {
+        return 31 * System.identityHashCode(item) + componentsHash;
+    }
+
+    /**
+     * Checks if this key represents the given item and component patch.
+     * The patches are only deep-compared when the item and the patch hash already match.
+     */
+    boolean matches(Item item, DataComponentPatch components, int componentsHash) {
+        return this.item == item
+                && this.componentsHash == componentsHash
+                && (this.components == components || this.components.equals(components));
+    }
+
+    /**
+     * Gets the number of live keys in the shared pool (for testing and diagnostics).
+     *
+     * @return The number of pooled keys
+     */
+    static int pooledKeyCount() {
+        return INTERNER.size();
     }
 
     @Override
@@ -53,14 +308,7 @@ public class ItemStackKey {
         }
 
         ItemStackKey other = (ItemStackKey) obj;
-
-        // Compare item types by registry ID
-        if (!BuiltInRegistries.ITEM.getKey(this.item).equals(BuiltInRegistries.ITEM.getKey(other.item))) {
-            return false;
-        }
-
-        // Compare components
-        return Objects.equals(this.components, other.components);
+        return matches(other.item, other.components, other.componentsHash);
     }
 
     @Override
@@ -84,6 +332,170 @@ public class ItemStackKey {
         return components;
     }
 
+    /**
+     * Gets the raw registry id of this key's item (used to index dense per-item arrays).
+     * @return The raw item id
+     */
+    int getItemId() {
+        return itemId;
+    }
+
+    /**
+     * Gets the namespace (mod id) of this key's item, looked up once when the key is built.
+     * @return The namespace, e.g. "minecraft"
+     */
+    String getNamespace() {
+        return namespace;
+    }
+
+    /**
+     * Gets the damage set on this variant (0 if it does not set one).
+     * @return The damage value
+     */
+    int getDamage() {
+        return damage;
+    }
+
+    /**
+     * Gets the canonical key of this variant with its damage removed.
+     * Keys without damage are their own base key.
+     * @return The base key
+     */
+    ItemStackKey getBaseKey() {
+        if (damage == 0) {
+            return this;
+        }
+
+        ItemStackKey base = baseKey;
+        if (base == null) {
+            DataComponentPatch undamaged = components.forget(type -> type == DataComponents.DAMAGE);
+            base = undamaged.isEmpty() ? plain(item) : INTERNER.intern(item, undamaged, undamaged.hashCode());
+            // Racing threads resolve the same pooled instance, so a plain field is enough
+            baseKey = base;
+        }
+        return base;
+    }
+
+    /**
+     * Gets the estimated heap size of this key's component patch (see InventoryMemoryEstimator).
+     * Computed once per key, since keys are immutable.
+     * @return The estimated size in bytes (0 for plain keys)
+     */
+    int getEstimatedPatchBytes() {
+        int bytes = estimatedPatchBytes;
+        if (bytes < 0) {
+            bytes = InventoryMemoryEstimator.patchBytes(components);
+            estimatedPatchBytes = bytes;
+        }
+        return bytes;
+    }
+
+    /**
+     * Gets the estimated size of this key's cached patch encoding (see getEncodedComponents).
+     * @return The estimated size in bytes, 0 for a plain key
+     */
+    int getEstimatedEncodedBytes() {
+        int bytes = estimatedEncodedBytes;
+        if (bytes < 0) {
+            bytes = InventoryMemoryEstimator.encodedBytes(components);
+            estimatedEncodedBytes = bytes;
+        }
+        return bytes;
+    }
+
+    /**
+     * Gets this key's component patch encoded as binary NBT, as written by the storage format.
+     * Keys are immutable, so the encoding is done once per key and reused by every later save
+     * of every inventory holding this variant. It is only redone for a different registry access
+     * (e.g. after switching worlds in singleplayer).
+     *
+     * The returned array is shared and must not be modified.
+     *
+     * @param registryAccess Registry access for component serialization
+     * @return The encoded component patch
+     * @throws IllegalStateException if the patch cannot be encoded
+     */
+    byte[] getEncodedComponents(HolderLookup.Provider registryAccess) {
+        EncodedComponents encoded = encodedComponents;
+        if (encoded == null || !encoded.isFor(registryAccess)) {
+            Tag tag = DataComponentPatch.CODEC
+                    .encodeStart(registryAccess.createSerializationContext(NbtOps.INSTANCE), components)
+                    .getOrThrow();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream output = new DataOutputStream(bytes)) {
+                NbtIo.writeAnyTag(tag, output);
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to write components of " + this, e);
+            }
+            encoded = new EncodedComponents(new WeakReference<>(registryAccess), bytes.toByteArray());
+            // A racing thread may encode equal bytes; either one is fine to keep
+            encodedComponents = encoded;
+        }
+        return encoded.bytes();
+    }
+
+    /**
+     * Remembers the bytes this key's component patch was just decoded from, so saving the
+     * variant again does not have to encode it. Ignored if an encoding is already cached
+     * for the same registry access.
+     *
+     * @param registryAccess The registry access the bytes were decoded with
+     * @param bytes The decoded binary NBT; it must encode exactly this key's (normalized) patch,
+     *              and is kept, so the caller must not modify it afterwards
+     */
+    void cacheEncodedComponents(HolderLookup.Provider registryAccess, byte[] bytes) {
+        EncodedComponents encoded = encodedComponents;
+        if (encoded == null || !encoded.isFor(registryAccess)) {
+            encodedComponents = new EncodedComponents(new WeakReference<>(registryAccess), bytes);
+        }
+    }
+
+    /**
+     * Checks if this key has no components (a plain block or material).
+     * @return true if the component patch is empty
+     */
+    public boolean isPlain() {
+        return components.isEmpty();
+    }
+
+    /**
+     * Creates a new ItemStack of this variant.
+     * @param count The stack count
+     * @return A new ItemStack with this key's item and components
+     */
+    public ItemStack createStack(int count) {
+        return new ItemStack(BuiltInRegistries.ITEM.wrapAsHolder(item), count, components);
+    }
+
+    /**
+     * Gets the shared reference stack of this variant (count 1).
+     * Canonical keys are pooled, so every inventory and view holding this variant
+     * sees the same instance.
+     *
+     * The returned stack must not be modified. Use {@link #createStack(int)} for a stack
+     * that can be given to a player or otherwise changed.
+     *
+     * @return The shared read-only stack
+     */
+    public ItemStack getSharedStack() {
+        ItemStack stack = sharedStack;
+        if (stack == null) {
+            stack = createStack(1);
+            // A racing thread may build a second equal stack; either one is fine to keep,
+            // and the volatile write publishes it fully constructed
+            sharedStack = stack;
+        }
+        return stack;
+    }
+
+    /**
+     * Gets the cached hash of the component patch.
+     * @return The component patch hash
+     */
+    public int getComponentsHash() {
+        return componentsHash;
+    }
+
     @Override
     public String toString() {
         return "ItemStackKey{" +
@@ -91,4 +503,10 @@ public class ItemStackKey {
                 ", components=" + components +
                 '}';
     }
+
+    private record EncodedComponents(WeakReference<HolderLookup.Provider> registryAccess, byte[] bytes) {
+        boolean isFor(HolderLookup.Provider registryAccess) {
+            return this.registryAccess.get() == registryAccess;
+        }
+    }
 }
@@ -0,0 +1,171 @@
+package com.chayut.bottomlessinventory.inventory;
+
+import net.minecraft.core.component.DataComponentPatch;
+import net.minecraft.world.item.Item;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Shared pool of canonical ItemStackKey instances.
+ *
+ * Keys are held through weak references, so a key disappears from the pool once no
+ * inventory or cache refers to it anymore. Lookups probe by Item + DataComponentPatch
+ * directly, which means checking whether a key exists never allocates a new key.
+ *
+ * The pool is shared by the server, client and worker threads (e.g. the lock stripes of a
+ * ConcurrentInfiniteInventory). Lookups of existing keys are lock-free: bucket heads are
+ * published through an AtomicReferenceArray, links are volatile, and resizing copies the
+ * chains into a new table instead of relinking them, so a reader walking an old table still
+ * sees every key that table held. Only creating a key (and the cleanup and resizing that go
+ * with it) is synchronized. A lookup racing with the creation of the same key may miss it,
+ * which is fine: intern() checks again under the lock.
+ */
+final class ItemStackKeyInterner {
+    private static final int INITIAL_CAPACITY = 256;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private final ReferenceQueue<ItemStackKey> staleKeys = new ReferenceQueue<>();
+    private volatile AtomicReferenceArray<KeyRef> table = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+    private int size;
+
+    /**
+     * Weak reference to a pooled key, chained per bucket.
+     * The hash is kept on the reference so stale links can be unlinked after the key is collected.
+     */
+    private static final class KeyRef extends WeakReference<ItemStackKey> {
+        private final int hash;
+        private volatile KeyRef next;
+
+        private KeyRef(ItemStackKey key, int hash, ReferenceQueue<ItemStackKey> queue, KeyRef next) {
+            super(key, queue);
+            this.hash = hash;
+            this.next = next;
+        }
+    }
+
+    /**
+     * Finds the canonical key for an item and component patch without creating one.
+     *
+     * @param item The item type
+     * @param components The component patch
+     * @param componentsHash The hash of the component patch
+     * @return The canonical key, or null if no live key matches
+     */
+    ItemStackKey find(Item item, DataComponentPatch components, int componentsHash) {
+        int hash = ItemStackKey.hash(item, componentsHash);
+        AtomicReferenceArray<KeyRef> buckets = table;
+        for (KeyRef ref = buckets.get(indexFor(hash, buckets.length())); ref != null; ref = ref.next) {
+            if (ref.hash != hash) {
+                continue;
+            }
+
+            ItemStackKey key = ref.get();
+            if (key != null && key.matches(item, components, componentsHash)) {
+                return key;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the canonical key for an item and component patch, creating and pooling it if needed.
+     *
+     * @param item The item type
+     * @param components The component patch
+     * @param componentsHash The hash of the component patch
+     * @return The canonical key
+     */
+    ItemStackKey intern(Item item, DataComponentPatch components, int componentsHash) {
+        // Most calls find an existing key, which needs no lock
+        ItemStackKey existing = find(item, components, componentsHash);
+        return existing != null ? existing : internLocked(item, components, componentsHash);
+    }
+
+    private synchronized ItemStackKey internLocked(Item item, DataComponentPatch components, int componentsHash) {
+        expungeStaleEntries();
+
+        ItemStackKey existing = find(item, components, componentsHash);
+        if (existing != null) {
+            return existing;
+        }
+
+        ItemStackKey key = new ItemStackKey(item, components, componentsHash);
+        int hash = key.hashCode();
+        AtomicReferenceArray<KeyRef> buckets = table;
+        int index = indexFor(hash, buckets.length());
+        buckets.set(index, new KeyRef(key, hash, staleKeys, buckets.get(index)));
+
+        if (++size > buckets.length() * LOAD_FACTOR) {
+            resize();
+        }
+        return key;
+    }
+
+    /**
+     * Gets the number of live keys in the pool.
+     *
+     * @return The number of pooled keys
+     */
+    synchronized int size() {
+        expungeStaleEntries();
+        return size;
+    }
+
+    /**
+     * Unlinks references whose keys have been garbage collected.
+     * Unlinking only bypasses a link, so a reader standing on it still reaches the rest of the chain.
+     */
+    private void expungeStaleEntries() {
+        AtomicReferenceArray<KeyRef> buckets = table;
+        Reference<? extends ItemStackKey> stale;
+        while ((stale = staleKeys.poll()) != null) {
+            KeyRef ref = (KeyRef) stale;
+            int index = indexFor(ref.hash, buckets.length());
+
+            KeyRef prev = null;
+            for (KeyRef cur = buckets.get(index); cur != null; prev = cur, cur = cur.next) {
+                if (cur == ref) {
+                    if (prev == null) {
+                        buckets.set(index, cur.next);
+                    } else {
+                        prev.next = cur.next;
+                    }
+                    size--;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Doubles the bucket array, dropping any links whose keys were already collected.
+     * Live links are copied rather than moved, so lock-free readers of the old table are unaffected;
+     * the old links are left for the garbage collector (and their queue entries are ignored).
+     */
+    private void resize() {
+        AtomicReferenceArray<KeyRef> oldTable = table;
+        AtomicReferenceArray<KeyRef> newTable = new AtomicReferenceArray<>(oldTable.length() * 2);
+        int liveCount = 0;
+
+        for (int i = 0; i < oldTable.length(); i++) {
+            for (KeyRef ref = oldTable.get(i); ref != null; ref = ref.next) {
+                ItemStackKey key = ref.get();
+                if (key != null) {
+                    int index = indexFor(ref.hash, newTable.length());
+                    newTable.set(index, new KeyRef(key, ref.hash, staleKeys, newTable.get(index)));
+                    liveCount++;
+                }
+            }
+        }
+
+        table = newTable;
+        size = liveCount;
+    }
+
+    private static int indexFor(int hash, int length) {
+        return (hash ^ (hash >>> 16)) & (length - 1);
+    }
+}
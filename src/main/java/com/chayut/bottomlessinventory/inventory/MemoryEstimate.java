@@ -0,0 +1,22 @@
+package com.chayut.bottomlessinventory.inventory;
+
+/**
+ * An estimate of the heap an InfiniteInventory costs, split by what holds the memory.
+ * See InventoryMemoryEstimator for how each part is estimated.
+ *
+ * @param storageBytes The count, tick and slot arrays of the storage tables
+ * @param keyBytes The stored ItemStackKeys and their DataComponentPatch objects
+ * @param referenceStackBytes The shared reference stacks of the stored variants
+ * @param indexBytes The namespace, item and tag index entries
+ */
+public record MemoryEstimate(long storageBytes, long keyBytes, long referenceStackBytes, long indexBytes) {
+
+    /**
+     * Gets the estimated total.
+     *
+     * @return The sum of all parts, in bytes
+     */
+    public long totalBytes() {
+        return storageBytes + keyBytes + referenceStackBytes + indexBytes;
+    }
+}
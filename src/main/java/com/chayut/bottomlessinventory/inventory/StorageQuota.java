@@ -0,0 +1,30 @@
+package com.chayut.bottomlessinventory.inventory;
+
+/**
+ * Per-player storage caps for an InfiniteInventory. A limit of 0 (or less) means unlimited.
+ *
+ * Quotas are checked against the inventory's running statistics and memory estimate,
+ * so every check is O(1). They apply to every new insertion: addItem and the deposit path,
+ * InfiniteInventory.apply(batch), InsertionBuffer offers, and ConcurrentInfiniteInventory,
+ * where one quota covers all stripes together. Loading saved data never drops items that are
+ * already stored.
+ *
+ * @param maxUniqueItems The maximum number of different variants
+ * @param maxTotalItems The maximum total item count
+ * @param maxEstimatedBytes The maximum estimated heap size (see InfiniteInventory.estimateMemory)
+ */
+public record StorageQuota(int maxUniqueItems, long maxTotalItems, long maxEstimatedBytes) {
+    /**
+     * No limits at all.
+     */
+    public static final StorageQuota UNLIMITED = new StorageQuota(0, 0, 0);
+
+    /**
+     * Checks if no limit is set.
+     *
+     * @return true if every limit is 0 or less
+     */
+    public boolean isUnlimited() {
+        return maxUniqueItems <= 0 && maxTotalItems <= 0 && maxEstimatedBytes <= 0;
+    }
+}
@@ -0,0 +1,294 @@
+package com.chayut.bottomlessinventory.inventory;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash table from ItemStackKey to a long count.
+ *
+ * Keys and counts live in parallel arrays (struct-of-arrays), so a stored variant costs one
+ * array slot per column instead of a HashMap node plus an entry object. Collisions are
+ * resolved with linear probing, and removals use backward-shift deletion so no tombstones
+ * are needed. A count of 0 is never stored; it means "absent".
+ * A third column holds the tick each variant was last modified at.
+ *
+ * snapshot() hands out a read-only table over the same arrays; this table then copies
+ * its arrays before its next write, so the snapshot never changes.
+ */
+final class VariantTable {
+    private static final int MIN_CAPACITY = 16;
+
+    private ItemStackKey[] keys;
+    private long[] counts;
+    private long[] ticks;
+    private int size;
+    private int mask;
+
+    /**
+     * Whether the arrays are shared with a snapshot and must be copied before the next write.
+     */
+    private boolean shared;
+
+    /**
+     * Creates an empty table.
+     */
+    VariantTable() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Creates a table over another table's arrays (used by snapshot()).
+     */
+    private VariantTable(VariantTable source) {
+        this.keys = source.keys;
+        this.counts = source.counts;
+        this.ticks = source.ticks;
+        this.size = source.size;
+        this.mask = source.mask;
+        this.shared = true;
+    }
+
+    /**
+     * Creates a read-only copy of this table in O(1) by sharing its arrays.
+     * The returned table must never be written to.
+     */
+    VariantTable snapshot() {
+        shared = true;
+        return new VariantTable(this);
+    }
+
+    /**
+     * Gets the number of stored variants.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of slots (for iteration with keyAt/countAt).
+     */
+    int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Gets the key stored in a slot, or null if the slot is empty.
+     */
+    ItemStackKey keyAt(int slot) {
+        return keys[slot];
+    }
+
+    /**
+     * Gets the count stored in a slot (0 if the slot is empty).
+     */
+    long countAt(int slot) {
+        return counts[slot];
+    }
+
+    /**
+     * Gets the tick a slot's variant was last modified at (0 if the slot is empty).
+     */
+    long tickAt(int slot) {
+        return ticks[slot];
+    }
+
+    /**
+     * Gets the tick a key was last modified at.
+     *
+     * @param key The key to look up
+     * @return The tick, or 0 if absent
+     */
+    long getTick(ItemStackKey key) {
+        int slot = indexOf(key);
+        return slot >= 0 ? ticks[slot] : 0;
+    }
+
+    /**
+     * Gets the count for a key.
+     *
+     * @param key The key to look up
+     * @return The stored count, or 0 if absent
+     */
+    long get(ItemStackKey key) {
+        int slot = indexOf(key);
+        return slot >= 0 ? counts[slot] : 0;
+    }
+
+    /**
+     * Finds the slot holding a key.
+     *
+     * @param key The key to look up
+     * @return The slot index, or -1 if absent
+     */
+    int indexOf(ItemStackKey key) {
+        int slot = slotFor(key.hashCode());
+        ItemStackKey current;
+        while ((current = keys[slot]) != null) {
+            if (current == key || current.equals(key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Sets the count for a key without a modification tick.
+     *
+     * @see #put(ItemStackKey, long, long)
+     */
+    long put(ItemStackKey key, long count) {
+        return put(key, count, 0);
+    }
+
+    /**
+     * Sets the count for a key, inserting or removing the key as needed.
+     *
+     * @param key The key to update
+     * @param count The new count (0 removes the key)
+     * @param tick The tick of this change, stored if the count changes
+     * @return The previous count (0 if the key was absent)
+     */
+    long put(ItemStackKey key, long count, long tick) {
+        int slot = slotFor(key.hashCode());
+        ItemStackKey current;
+        while ((current = keys[slot]) != null) {
+            if (current == key || current.equals(key)) {
+                long previous = counts[slot];
+                if (previous == count) {
+                    return previous;
+                }
+                unshare();
+                if (count == 0) {
+                    removeAt(slot);
+                } else {
+                    counts[slot] = count;
+                    ticks[slot] = tick;
+                }
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (count != 0) {
+            unshare();
+            keys[slot] = key;
+            counts[slot] = count;
+            ticks[slot] = tick;
+            if (++size > maxSize(keys.length)) {
+                allocateAndRehash(keys.length * 2);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Sets the tick a stored key was last modified at, leaving its count unchanged.
+     *
+     * @param key The key to update
+     * @param tick The new tick
+     */
+    void setTick(ItemStackKey key, long tick) {
+        int slot = indexOf(key);
+        if (slot >= 0) {
+            unshare();
+            ticks[slot] = tick;
+        }
+    }
+
+    /**
+     * Removes all variants.
+     */
+    void clear() {
+        if (shared) {
+            allocate(keys.length);
+            shared = false;
+        } else {
+            Arrays.fill(keys, null);
+            Arrays.fill(counts, 0);
+            Arrays.fill(ticks, 0);
+        }
+        size = 0;
+    }
+
+    /**
+     * Removes the key in a slot and shifts any following keys of the same probe run back,
+     * so lookups never need to skip over deleted slots.
+     */
+    private void removeAt(int slot) {
+        int gap = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            ItemStackKey key = keys[next];
+            if (key == null) {
+                break;
+            }
+
+            // Move the key into the gap unless its home slot lies after the gap
+            int home = slotFor(key.hashCode());
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = key;
+                counts[gap] = counts[next];
+                ticks[gap] = ticks[next];
+                gap = next;
+            }
+        }
+
+        keys[gap] = null;
+        counts[gap] = 0;
+        ticks[gap] = 0;
+        size--;
+    }
+
+    /**
+     * Copies the arrays if a snapshot still references them.
+     */
+    private void unshare() {
+        if (shared) {
+            keys = keys.clone();
+            counts = counts.clone();
+            ticks = ticks.clone();
+            shared = false;
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new ItemStackKey[capacity];
+        counts = new long[capacity];
+        ticks = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    private void allocateAndRehash(int capacity) {
+        ItemStackKey[] oldKeys = keys;
+        long[] oldCounts = counts;
+        long[] oldTicks = ticks;
+        allocate(capacity);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            ItemStackKey key = oldKeys[i];
+            if (key != null) {
+                int slot = slotFor(key.hashCode());
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                counts[slot] = oldCounts[i];
+                ticks[slot] = oldTicks[i];
+            }
+        }
+    }
+
+    private int slotFor(int hash) {
+        // Spread the high bits so keys differing only there do not pile into one run
+        int spread = hash * 0x9E3779B9;
+        return (spread ^ (spread >>> 16)) & mask;
+    }
+
+    /**
+     * Linear probing degrades quickly when full, so keep the table at most 3/4 full.
+     */
+    private static int maxSize(int capacity) {
+        return capacity - (capacity >>> 2);
+    }
+}
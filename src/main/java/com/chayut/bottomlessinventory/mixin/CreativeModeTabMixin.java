@@ -0,0 +1,21 @@
+package com.chayut.bottomlessinventory.mixin;
+
+import com.chayut.bottomlessinventory.inventory.InventoryIndex;
+import net.minecraft.world.item.CreativeModeTab;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+/**
+ * Mixin to invalidate the inventory creative tab indexes whenever a tab's contents are rebuilt
+ * (feature flags, operator items or registries changed).
+ */
+@Mixin(CreativeModeTab.class)
+public class CreativeModeTabMixin {
+
+    @Inject(method = "buildContents", at = @At("TAIL"))
+    private void onBuildContents(CreativeModeTab.ItemDisplayParameters parameters, CallbackInfo ci) {
+        InventoryIndex.invalidateCreativeTabs();
+    }
+}
@@ -0,0 +1,62 @@
+package com.chayut.bottomlessinventory.mixin;
+
+import com.chayut.bottomlessinventory.data.InventorySessionManager;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.stats.Stats;
+import net.minecraft.world.entity.item.ItemEntity;
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+import org.jetbrains.annotations.Nullable;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import java.util.UUID;
+
+/**
+ * Mixin to send item pickups that do not fit the player's own inventory to the bottomless
+ * inventory (see BottomlessConfig.Pickup).
+ *
+ * Runs after vanilla tried the player's inventory, under the same pickup delay and owner
+ * checks. The items go into the session's insertion buffer, so a mob farm's worth of pickups
+ * is merged and synced once per tick.
+ */
+@Mixin(ItemEntity.class)
+public abstract class ItemEntityMixin {
+
+    @Shadow
+    private int pickupDelay;
+
+    @Shadow
+    @Nullable
+    private UUID target;
+
+    @Inject(method = "playerTouch", at = @At("TAIL"))
+    private void onPlayerTouch(Player player, CallbackInfo ci) {
+        ItemEntity self = (ItemEntity) (Object) this;
+        ItemStack stack = self.getItem();
+        if (!(player instanceof ServerPlayer serverPlayer) || self.isRemoved() || stack.isEmpty()
+                || pickupDelay != 0 || (target != null && !target.equals(player.getUUID()))) {
+            return;
+        }
+
+        Item item = stack.getItem();
+        int taken = InventorySessionManager.offerPickup(serverPlayer, stack);
+        if (taken <= 0) {
+            return;
+        }
+
+        // Same bookkeeping as a vanilla pickup
+        player.take(self, taken);
+        stack.shrink(taken);
+        if (stack.isEmpty()) {
+            self.discard();
+            stack.setCount(taken);
+        }
+        player.awardStat(Stats.ITEM_PICKED_UP.get(item), taken);
+        player.onItemPickup(self);
+    }
+}
@@ -0,0 +1,25 @@
+package com.chayut.bottomlessinventory.mixin;
+
+import com.chayut.bottomlessinventory.data.InventorySessionManager;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.server.players.PlayerList;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+/**
+ * Mixin to write the live inventory session back into the player attachment
+ * right before the player's data is saved.
+ *
+ * PlayerList.save(ServerPlayer) is used by both autosave (saveAll) and logout (remove),
+ * so hooking it covers every path that persists player data.
+ */
+@Mixin(PlayerList.class)
+public class PlayerListMixin {
+
+    @Inject(method = "save", at = @At("HEAD"))
+    private void onSave(ServerPlayer player, CallbackInfo ci) {
+        InventorySessionManager.save(player);
+    }
+}
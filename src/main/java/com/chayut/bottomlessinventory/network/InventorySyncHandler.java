@@ -1,16 +1,23 @@
 package com.chayut.bottomlessinventory.network;
 
 import com.chayut.bottomlessinventory.BottomlessInventory;
-import com.chayut.bottomlessinventory.data.ModAttachments;
+import com.chayut.bottomlessinventory.data.InventorySession;
+import com.chayut.bottomlessinventory.data.InventorySessionManager;
 import com.chayut.bottomlessinventory.inventory.InfiniteInventory;
+import com.chayut.bottomlessinventory.inventory.InfiniteInventoryEntry;
+import com.chayut.bottomlessinventory.inventory.InventoryChange;
 import com.chayut.bottomlessinventory.network.packets.InventoryActionPacket;
 import com.chayut.bottomlessinventory.network.packets.SyncInventoryPacket;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.minecraft.network.chat.Component;
 import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.Container;
 import net.minecraft.world.entity.player.Inventory;
 import net.minecraft.world.item.ItemStack;
 
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
@@ -28,6 +35,11 @@ public class InventorySyncHandler {
      */
     private static final long MIN_ACTION_INTERVAL_MS = 50;
 
+    /**
+     * Action bar message shown when a deposit is refused by the storage quota.
+     */
+    static final String QUOTA_REACHED_MESSAGE = "message.bottomless-inventory.quota_reached";
+
     /**
      * Tracks the last action timestamp for each player for rate limiting.
      */
@@ -58,6 +70,13 @@ public class InventorySyncHandler {
         // attachment behavior and respawn sync should handle most dimension-related scenarios.
         // A future improvement could add a mixin to detect ServerPlayer.changeDimension calls.
 
+        // Merge buffered insertions once per tick, so a burst of pickups costs one change set and one sync
+        ServerTickEvents.END_SERVER_TICK.register(server -> {
+            for (ServerPlayer player : server.getPlayerList().getPlayers()) {
+                flushInsertions(player);
+            }
+        });
+
         // Register packet receiver for client actions
         ServerPlayNetworking.registerGlobalReceiver(InventoryActionPacket.TYPE, (payload, context) -> {
             ServerPlayer player = context.player();
@@ -80,13 +99,54 @@ public class InventorySyncHandler {
             return;
         }
 
-        InfiniteInventory inventory = ModAttachments.getInventory(player);
-        SyncInventoryPacket packet = SyncInventoryPacket.fullSync(inventory);
+        InventorySession session = InventorySessionManager.getSession(player);
+        // Cold entries are still the player's. If they can not be read, their counts are unknown
+        // and left out rather than sent as removed.
+        List<InfiniteInventoryEntry> cold = InventorySessionManager.readColdEntries(player);
+        SyncInventoryPacket packet = SyncInventoryPacket.fullSync(session.getInventory(), cold != null ? cold : List.of());
+
+        // The full sync already contains every pending change
+        session.getSyncJournal().clear();
         ServerPlayNetworking.send(player, packet);
     }
 
     // === Incremental Sync Methods ===
 
+    /**
+     * Sends every change recorded since the last sync as one incremental sync packet.
+     * Does nothing if nothing changed.
+     *
+     * @param player The player to sync to
+     */
+    public static void sendPendingChanges(ServerPlayer player) {
+        if (player == null) {
+            return;
+        }
+
+        List<InventoryChange> changes = InventorySessionManager.getSession(player).getSyncJournal().drain();
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        ServerPlayNetworking.send(player, SyncInventoryPacket.fromChanges(changes));
+    }
+
+    /**
+     * Merges a player's buffered insertions into their inventory and syncs the result.
+     * Does nothing if no session is open or nothing is buffered.
+     *
+     * @param player The player whose insertions should be merged
+     */
+    public static void flushInsertions(ServerPlayer player) {
+        InventorySession session = InventorySessionManager.getSessions().get(player.getUUID());
+        if (session == null || session.getInsertionBuffer().isEmpty()) {
+            return;
+        }
+
+        session.getInsertionBuffer().merge();
+        sendPendingChanges(player);
+    }
+
     /**
      * Sends an incremental sync for a single item change.
      * Use this when an item's count has changed.
@@ -139,12 +199,18 @@ public class InventorySyncHandler {
             return;
         }
 
+        // Apply buffered insertions first, so the action sees every item the player owns
+        InventorySessionManager.getSession(player).getInsertionBuffer().merge();
+
         // Process based on action type
         switch (packet.actionType()) {
             case TAKE_ITEMS -> handleTakeItems(player, packet.targetStack(), packet.amount());
             case DEPOSIT_ITEMS -> handleDepositItems(player, packet.targetStack(), packet.amount());
             case QUICK_MOVE -> handleQuickMove(player, packet.targetStack(), packet.amount());
         }
+
+        // Send whatever the action changed as a single incremental sync
+        sendPendingChanges(player);
     }
 
     /**
@@ -155,7 +221,7 @@ public class InventorySyncHandler {
      * @param amount The amount requested
      */
     private static void handleTakeItems(ServerPlayer player, ItemStack stack, long amount) {
-        InfiniteInventory inventory = ModAttachments.getInventory(player);
+        InfiniteInventory inventory = InventorySessionManager.getInventory(player);
 
         // Check how many are available
         long available = inventory.getCount(stack);
@@ -190,11 +256,6 @@ public class InventorySyncHandler {
         // Remove the items we actually gave from infinite inventory
         if (totalGiven > 0) {
             inventory.removeItem(stack, totalGiven);
-            ModAttachments.setInventory(player, inventory);
-
-            // Send incremental sync
-            long newCount = inventory.getCount(stack);
-            syncItemChange(player, stack, newCount);
 
             BottomlessInventory.LOGGER.debug("Player {} took {} {} from infinite inventory",
                     player.getName().getString(), totalGiven, stack.getItem());
@@ -209,7 +270,7 @@ public class InventorySyncHandler {
      * @param amount The amount to deposit
      */
     private static void handleDepositItems(ServerPlayer player, ItemStack stack, long amount) {
-        InfiniteInventory inventory = ModAttachments.getInventory(player);
+        InfiniteInventory inventory = InventorySessionManager.getInventory(player);
         Inventory playerInv = player.getInventory();
 
         // Count how many matching items the player has
@@ -220,48 +281,30 @@ public class InventorySyncHandler {
             return;
         }
 
-        // Calculate how many to actually take
-        long toTake = Math.min(amount, playerHas);
-        long totalTaken = 0;
-
-        // Remove items from player inventory
-        for (int i = 0; i < playerInv.getContainerSize() && totalTaken < toTake; i++) {
-            ItemStack slotStack = playerInv.getItem(i);
-            if (ItemStack.isSameItemSameComponents(slotStack, stack)) {
-                int canTake = (int) Math.min(slotStack.getCount(), toTake - totalTaken);
-                slotStack.shrink(canTake);
-                totalTaken += canTake;
-
-                if (slotStack.isEmpty()) {
-                    playerInv.setItem(i, ItemStack.EMPTY);
-                }
-            }
+        // Calculate how many to actually take, leaving anything over the storage quota with the player
+        long toTake = inventory.getAcceptableCount(stack, Math.min(amount, playerHas));
+        if (toTake <= 0) {
+            player.displayClientMessage(Component.translatable(QUOTA_REACHED_MESSAGE), true);
+            BottomlessInventory.LOGGER.debug("Player {} hit the storage quota depositing {}",
+                    player.getName().getString(), stack.getItem());
+            return;
         }
 
-        // Also check cursor slot (carried item)
-        ItemStack carried = player.containerMenu.getCarried();
-        if (!carried.isEmpty() && ItemStack.isSameItemSameComponents(carried, stack) && totalTaken < toTake) {
-            int canTake = (int) Math.min(carried.getCount(), toTake - totalTaken);
-            carried.shrink(canTake);
-            totalTaken += canTake;
-
-            if (carried.isEmpty()) {
-                player.containerMenu.setCarried(ItemStack.EMPTY);
-            }
+        // Take from the player only what the infinite inventory accepted
+        long totalTaken = depositFrom(inventory, playerInv, player.containerMenu.getCarried(), stack, toTake);
+        if (player.containerMenu.getCarried().isEmpty()) {
+            player.containerMenu.setCarried(ItemStack.EMPTY);
         }
-
-        // Add to infinite inventory
-        if (totalTaken > 0) {
-            inventory.addItem(stack, totalTaken);
-            ModAttachments.setInventory(player, inventory);
-
-            // Send incremental sync
-            long newCount = inventory.getCount(stack);
-            syncItemChange(player, stack, newCount);
-
-            BottomlessInventory.LOGGER.debug("Player {} deposited {} {} to infinite inventory",
-                    player.getName().getString(), totalTaken, stack.getItem());
+        if (totalTaken <= 0) {
+            // The add can still be refused, e.g. by cold variants paged in before it
+            player.displayClientMessage(Component.translatable(QUOTA_REACHED_MESSAGE), true);
+            BottomlessInventory.LOGGER.debug("Player {} hit the storage quota depositing {}",
+                    player.getName().getString(), stack.getItem());
+            return;
         }
+
+        BottomlessInventory.LOGGER.debug("Player {} deposited {} {} to infinite inventory",
+                player.getName().getString(), totalTaken, stack.getItem());
     }
 
     /**
@@ -274,7 +317,7 @@ public class InventorySyncHandler {
      * @param amount The amount to move
      */
     private static void handleQuickMove(ServerPlayer player, ItemStack stack, long amount) {
-        InfiniteInventory inventory = ModAttachments.getInventory(player);
+        InfiniteInventory inventory = InventorySessionManager.getInventory(player);
 
         // Check if player has this item - if so, deposit
         long playerHas = countMatchingItems(player.getInventory(), stack);
@@ -337,6 +380,55 @@ public class InventorySyncHandler {
 
     // === Helper Methods ===
 
+    /**
+     * Moves matching items from a player's slots, then from the carried stack, into the infinite
+     * inventory. The items are only taken once the inventory has accepted them, so nothing is lost
+     * if the quota refuses the add.
+     *
+     * @param inventory The infinite inventory to deposit into
+     * @param slots The player's inventory slots
+     * @param carried The stack on the cursor (shrunk in place, may be empty)
+     * @param stack The item type to deposit
+     * @param count The maximum number of items to move
+     * @return The number of items moved, or 0 if the inventory refused them
+     */
+    static long depositFrom(InfiniteInventory inventory, Container slots, ItemStack carried, ItemStack stack, long count) {
+        long available = 0;
+        for (int i = 0; i < slots.getContainerSize() && available < count; i++) {
+            ItemStack slotStack = slots.getItem(i);
+            if (ItemStack.isSameItemSameComponents(slotStack, stack)) {
+                available += slotStack.getCount();
+            }
+        }
+        if (ItemStack.isSameItemSameComponents(carried, stack)) {
+            available += carried.getCount();
+        }
+        long toTake = Math.min(count, available);
+        if (toTake <= 0 || !inventory.addItem(stack, toTake)) {
+            return 0;
+        }
+
+        long taken = 0;
+        for (int i = 0; i < slots.getContainerSize() && taken < toTake; i++) {
+            ItemStack slotStack = slots.getItem(i);
+            if (ItemStack.isSameItemSameComponents(slotStack, stack)) {
+                int canTake = (int) Math.min(slotStack.getCount(), toTake - taken);
+                slotStack.shrink(canTake);
+                taken += canTake;
+
+                if (slotStack.isEmpty()) {
+                    slots.setItem(i, ItemStack.EMPTY);
+                }
+            }
+        }
+        if (taken < toTake && ItemStack.isSameItemSameComponents(carried, stack)) {
+            int canTake = (int) Math.min(carried.getCount(), toTake - taken);
+            carried.shrink(canTake);
+            taken += canTake;
+        }
+        return taken;
+    }
+
     /**
      * Counts how many items matching the given stack the player has in their inventory.
      *
@@ -2,6 +2,9 @@ package com.chayut.bottomlessinventory.network.packets;
 
 import com.chayut.bottomlessinventory.inventory.InfiniteInventory;
 import com.chayut.bottomlessinventory.inventory.InfiniteInventoryEntry;
+import com.chayut.bottomlessinventory.inventory.InventoryChange;
+import com.chayut.bottomlessinventory.inventory.InventorySnapshot;
+import com.chayut.bottomlessinventory.inventory.ItemStackKey;
 import com.chayut.bottomlessinventory.network.BottomlessNetworking;
 import net.minecraft.network.RegistryFriendlyByteBuf;
 import net.minecraft.network.codec.ByteBufCodecs;
@@ -10,7 +13,10 @@ import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
 import net.minecraft.world.item.ItemStack;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Server -> Client packet that syncs the infinite inventory state.
@@ -108,11 +114,57 @@ public record SyncInventoryPacket(
      * @return A new SyncInventoryPacket with FULL sync type
      */
     public static SyncInventoryPacket fullSync(InfiniteInventory inventory) {
-        List<SyncEntry> entries = new ArrayList<>();
+        return fullSync(inventory, List.of());
+    }
+
+    /**
+     * Creates a full sync packet from an InfiniteInventory and its entries in cold storage,
+     * which the client sees as stored like any other. A variant both in memory and cold is
+     * sent once, with the counts added.
+     *
+     * @param inventory The inventory to sync
+     * @param coldEntries The inventory's cold entries, read without paging them in
+     * @return A new SyncInventoryPacket with FULL sync type
+     */
+    public static SyncInventoryPacket fullSync(InfiniteInventory inventory, Collection<InfiniteInventoryEntry> coldEntries) {
+        Map<ItemStackKey, Long> cold = new LinkedHashMap<>();
+        for (InfiniteInventoryEntry entry : coldEntries) {
+            cold.merge(entry.getKey(), entry.getCount(), SyncInventoryPacket::saturatedAdd);
+        }
 
+        List<SyncEntry> entries = new ArrayList<>();
         if (inventory != null) {
             for (InfiniteInventoryEntry entry : inventory.getAllEntries()) {
-                entries.add(new SyncEntry(entry.getReferenceStack(), entry.getCount()));
+                Long coldCount = cold.remove(entry.getKey());
+                long count = coldCount != null ? saturatedAdd(entry.getCount(), coldCount) : entry.getCount();
+                entries.add(new SyncEntry(entry.viewReferenceStack(), count));
+            }
+        }
+        for (Map.Entry<ItemStackKey, Long> entry : cold.entrySet()) {
+            entries.add(new SyncEntry(entry.getKey().getSharedStack(), entry.getValue()));
+        }
+
+        return new SyncInventoryPacket(PACKET_VERSION, SyncType.FULL, entries);
+    }
+
+    private static long saturatedAdd(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    /**
+     * Creates a full sync packet from an inventory snapshot.
+     * Snapshots are immutable, so the packet can be built on a worker thread.
+     *
+     * @param snapshot The snapshot to sync (null creates an empty sync)
+     * @return A new SyncInventoryPacket with FULL sync type
+     */
+    public static SyncInventoryPacket fullSyncSnapshot(InventorySnapshot snapshot) {
+        List<SyncEntry> entries = new ArrayList<>();
+
+        if (snapshot != null) {
+            for (InfiniteInventoryEntry entry : snapshot.getAllEntries()) {
+                entries.add(new SyncEntry(entry.viewReferenceStack(), entry.getCount()));
             }
         }
 
@@ -144,6 +196,21 @@ public record SyncInventoryPacket(
         return new SyncInventoryPacket(PACKET_VERSION, SyncType.INCREMENTAL, entries);
     }
 
+    /**
+     * Creates an incremental sync packet from a set of inventory changes (e.g. a drained ChangeJournal).
+     * Removed entries are sent with count 0.
+     *
+     * @param changes The net changes to send
+     * @return A new SyncInventoryPacket with INCREMENTAL sync type
+     */
+    public static SyncInventoryPacket fromChanges(Collection<InventoryChange> changes) {
+        List<SyncEntry> entries = new ArrayList<>(changes.size());
+        for (InventoryChange change : changes) {
+            entries.add(new SyncEntry(change.key().getSharedStack(), change.newCount()));
+        }
+        return new SyncInventoryPacket(PACKET_VERSION, SyncType.INCREMENTAL, entries);
+    }
+
     /**
      * Creates an empty full sync packet (clears the client inventory).
      *
@@ -528,6 +528,27 @@ class ClientInventoryCacheTest {
         assertEquals(1, entry.getReferenceStack().getCount());
     }
 
+    @Test
+    void cachedEntry_viewReferenceStack_isSharedAndNotCopied() {
+        ClientInventoryCache cache = ClientInventoryCache.getInstance();
+
+        List<SyncEntry> entries = new ArrayList<>();
+        entries.add(new SyncEntry(new ItemStack(Items.DIAMOND, 5), 100L));
+
+        cache.handleSync(new SyncInventoryPacket(
+                SyncInventoryPacket.PACKET_VERSION,
+                SyncType.FULL,
+                entries
+        ));
+
+        var entry = cache.getAllEntries().iterator().next();
+
+        assertSame(entry.viewReferenceStack(), entry.viewReferenceStack());
+        assertSame(entry.viewReferenceStack(),
+                new ClientInventoryCache.CachedEntry(new ItemStack(Items.DIAMOND), 1).viewReferenceStack());
+        assertEquals(1, entry.viewReferenceStack().getCount());
+    }
+
     @Test
     void cachedEntry_toString_containsRelevantInfo() {
         ClientInventoryCache cache = ClientInventoryCache.getInstance();
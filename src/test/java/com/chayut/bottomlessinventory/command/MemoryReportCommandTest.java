@@ -0,0 +1,93 @@
+package com.chayut.bottomlessinventory.command;
+
+import com.chayut.bottomlessinventory.data.InventorySession;
+import com.chayut.bottomlessinventory.inventory.InfiniteInventory;
+import net.minecraft.SharedConstants;
+import net.minecraft.core.component.DataComponents;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the ranking and formatting of the memory report command.
+ */
+class MemoryReportCommandTest {
+
+    @BeforeAll
+    static void setupMinecraft() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+    }
+
+    private static InventorySession sessionWithVariants(int variants) {
+        InfiniteInventory inventory = new InfiniteInventory();
+        for (int i = 0; i < variants; i++) {
+            ItemStack stack = new ItemStack(Items.PAPER);
+            stack.set(DataComponents.CUSTOM_NAME, Component.literal("Report " + i));
+            inventory.addItem(stack, 1);
+        }
+        return new InventorySession(inventory);
+    }
+
+    @Test
+    void rank_ordersLargestFirstAndAppliesLimit() {
+        UUID small = UUID.randomUUID();
+        UUID large = UUID.randomUUID();
+        UUID medium = UUID.randomUUID();
+        Map<UUID, InventorySession> sessions = new LinkedHashMap<>();
+        sessions.put(small, sessionWithVariants(1));
+        sessions.put(large, sessionWithVariants(200));
+        sessions.put(medium, sessionWithVariants(20));
+
+        List<MemoryReportCommand.Consumer> ranked = MemoryReportCommand.rank(sessions, 2);
+
+        assertEquals(2, ranked.size());
+        assertEquals(large, ranked.get(0).playerId());
+        assertEquals(medium, ranked.get(1).playerId());
+        assertEquals(200, ranked.get(0).uniqueItems());
+    }
+
+    @Test
+    void formatBytes_usesBinaryUnits() {
+        assertEquals("512 B", MemoryReportCommand.formatBytes(512));
+        assertEquals("1.5 KiB", MemoryReportCommand.formatBytes(1536));
+        assertEquals("3.0 MiB", MemoryReportCommand.formatBytes(3L * 1024 * 1024));
+    }
+
+    @Test
+    void formatLine_containsNameAndBreakdown() {
+        MemoryReportCommand.Consumer consumer = MemoryReportCommand.rank(
+                Map.of(UUID.randomUUID(), sessionWithVariants(3)), 1).get(0);
+
+        String line = MemoryReportCommand.formatLine(1, "Steve", consumer);
+
+        assertTrue(line.startsWith("1. Steve: "));
+        assertTrue(line.contains("3 variants"));
+        assertTrue(line.contains("keys "));
+        assertFalse(line.contains("cold"));
+    }
+
+    @Test
+    void formatLine_reportsColdVariants() {
+        InventorySession session = sessionWithVariants(2);
+        session.setColdSegments(1);
+        session.putColdItem(Items.PAPER, new InventorySession.ColdItem(new long[] {1}, 5, 40, 2048));
+        MemoryReportCommand.Consumer consumer = MemoryReportCommand.rank(Map.of(UUID.randomUUID(), session), 1).get(0);
+
+        String line = MemoryReportCommand.formatLine(1, "Alex", consumer);
+
+        assertEquals(5, consumer.coldVariants());
+        assertTrue(line.contains("2 variants"));
+        assertTrue(line.endsWith(" + 5 cold variants (2.0 KiB if paged in)"));
+    }
+}
@@ -0,0 +1,104 @@
+package com.chayut.bottomlessinventory.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for reading and writing the mod config file.
+ */
+class BottomlessConfigTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void load_missingFile_writesDefaults() {
+        Path path = dir.resolve("bottomless-inventory.json");
+
+        BottomlessConfig config = BottomlessConfig.load(path);
+
+        assertTrue(Files.exists(path));
+        assertTrue(config.normalization.stripComponents.isEmpty());
+        assertTrue(config.normalization.stripCustomDataKeys.isEmpty());
+    }
+
+    @Test
+    void load_readsNormalizationLists() throws IOException {
+        Path path = dir.resolve("bottomless-inventory.json");
+        Files.writeString(path, """
+                {
+                  "normalization": {
+                    "stripComponents": ["minecraft:repair_cost"],
+                    "stripCustomDataKeys": ["noise"]
+                  }
+                }
+                """);
+
+        BottomlessConfig config = BottomlessConfig.load(path);
+
+        assertEquals(List.of("minecraft:repair_cost"), config.normalization.stripComponents);
+        assertEquals(List.of("noise"), config.normalization.stripCustomDataKeys);
+    }
+
+    @Test
+    void load_partialFile_fillsMissingFields() throws IOException {
+        Path path = dir.resolve("bottomless-inventory.json");
+        Files.writeString(path, "{ \"normalization\": { \"stripComponents\": [\"minecraft:repair_cost\"] } }");
+
+        BottomlessConfig config = BottomlessConfig.load(path);
+
+        assertNotNull(config.normalization.stripCustomDataKeys);
+        assertTrue(Files.readString(path).contains("stripCustomDataKeys"));
+    }
+
+    @Test
+    void load_readsPickupSwitch() throws IOException {
+        Path path = dir.resolve("bottomless-inventory.json");
+        assertFalse(BottomlessConfig.load(path).pickup.overflowIntoBottomless);
+
+        Files.writeString(path, "{ \"pickup\": { \"overflowIntoBottomless\": true } }");
+
+        assertTrue(BottomlessConfig.load(path).pickup.overflowIntoBottomless);
+    }
+
+    @Test
+    void load_malformedFile_usesDefaults() throws IOException {
+        Path path = dir.resolve("bottomless-inventory.json");
+        Files.writeString(path, "{ not json");
+
+        BottomlessConfig config = BottomlessConfig.load(path);
+
+        assertTrue(config.normalization.stripComponents.isEmpty());
+        assertEquals("{ not json", Files.readString(path));
+    }
+
+    @Test
+    void load_readsQuotas() throws IOException {
+        Path path = dir.resolve("bottomless-inventory.json");
+        Files.writeString(path, "{ \"quotas\": { \"maxUniqueItems\": 5000, \"maxEstimatedBytes\": 1048576 } }");
+
+        BottomlessConfig config = BottomlessConfig.load(path);
+
+        assertEquals(5000, config.quotas.maxUniqueItems);
+        assertEquals(0, config.quotas.maxTotalItems);
+        assertEquals(1048576, config.quotas.maxEstimatedBytes);
+    }
+
+    @Test
+    void load_readsColdStorageSettings() throws IOException {
+        Path path = dir.resolve("bottomless-inventory.json");
+        Files.writeString(path, "{ \"coldStorage\": { \"maxHotVariants\": 500 } }");
+
+        BottomlessConfig config = BottomlessConfig.load(path);
+
+        assertEquals(500, config.coldStorage.maxHotVariants);
+        assertEquals(new BottomlessConfig.ColdStorage().evictAfterTicks, config.coldStorage.evictAfterTicks);
+    }
+}
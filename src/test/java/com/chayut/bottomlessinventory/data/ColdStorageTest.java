@@ -0,0 +1,305 @@
+package com.chayut.bottomlessinventory.data;
+
+import com.chayut.bottomlessinventory.inventory.InfiniteInventory;
+import com.chayut.bottomlessinventory.inventory.InfiniteInventoryEntry;
+import net.minecraft.SharedConstants;
+import net.minecraft.core.HolderLookup;
+import net.minecraft.core.RegistryAccess;
+import net.minecraft.core.component.DataComponents;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static com.chayut.bottomlessinventory.inventory.TestStacks.named;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for ColdStorage segment files.
+ */
+class ColdStorageTest {
+
+    private static HolderLookup.Provider registryAccess;
+
+    @BeforeAll
+    static void setupMinecraft() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+        registryAccess = RegistryAccess.fromRegistryOfRegistries(BuiltInRegistries.REGISTRY);
+    }
+
+    @TempDir
+    Path directory;
+
+    private static final Item SWORD = Items.DIAMOND_SWORD;
+
+    private final UUID playerId = UUID.randomUUID();
+    private final long[] now = {0};
+    private InfiniteInventory inventory;
+    private InventorySession session;
+
+    @BeforeEach
+    void setUp() {
+        inventory = new InfiniteInventory();
+        inventory.setClock(() -> now[0]);
+        session = new InventorySession(inventory);
+    }
+
+    @Test
+    void spill_writesColdEntriesToNewSegment() {
+        now[0] = 10;
+        inventory.addItem(named("old"), 2);
+        now[0] = 1000;
+        inventory.addItem(named("new"), 1);
+
+        int spilled = ColdStorage.spill(directory, playerId, session, 500, 0, registryAccess);
+
+        assertEquals(1, spilled);
+        assertArrayEquals(new long[] {1}, session.getColdSegments());
+        assertTrue(session.isDirty());
+        assertTrue(Files.exists(ColdStorage.segmentPath(directory, playerId, 1)));
+        assertEquals(0, inventory.getCount(named("old")));
+        assertEquals(1, inventory.getCount(named("new")));
+        assertEquals(1, session.getColdVariantCount());
+        assertEquals(2, session.getColdItemCount());
+        assertTrue(session.getColdEstimatedBytes() > 0);
+        assertTrue(session.getColdItems().contains(Items.DIAMOND_SWORD));
+    }
+
+    @Test
+    void spill_withNothingCold_writesNothing() {
+        now[0] = 1000;
+        inventory.addItem(named("new"), 1);
+
+        int spilled = ColdStorage.spill(directory, playerId, session, 500, 0, registryAccess);
+
+        assertEquals(0, spilled);
+        assertFalse(session.hasColdSegments());
+        assertFalse(Files.exists(ColdStorage.segmentPath(directory, playerId, 1)));
+    }
+
+    @Test
+    void pageIn_restoresCountsAndTicks() {
+        now[0] = 10;
+        inventory.addItem(named("old"), 2);
+        now[0] = 1000;
+        ColdStorage.spill(directory, playerId, session, 500, 0, registryAccess);
+
+        int paged = ColdStorage.pageIn(directory, playerId, session, SWORD, registryAccess);
+
+        assertEquals(1, paged);
+        assertFalse(session.hasColdSegments());
+        assertEquals(2, inventory.getCount(named("old")));
+        assertEquals(10, inventory.getLastModified(named("old")));
+        assertEquals(0, session.getColdVariantCount());
+        assertTrue(session.getColdItems().isEmpty());
+    }
+
+    @Test
+    void getCount_pagesInThroughSessionPager() {
+        now[0] = 10;
+        inventory.addItem(named("old"), 2);
+        now[0] = 1000;
+        ColdStorage.spill(directory, playerId, session, 500, 0, registryAccess);
+        session.setColdPager(item -> ColdStorage.pageIn(directory, playerId, session, item, registryAccess));
+
+        assertEquals(2, inventory.getCount(named("old")));
+        assertFalse(session.hasColdSegments());
+    }
+
+    @Test
+    void spill_appendsOnlyNewEntriesAsNewSegment() throws IOException {
+        now[0] = 10;
+        inventory.addItem(named("first"), 1);
+        now[0] = 20;
+        inventory.addItem(named("second"), 1);
+        now[0] = 1000;
+
+        ColdStorage.spill(directory, playerId, session, 15, 0, registryAccess);
+        ColdStorage.spill(directory, playerId, session, 25, 0, registryAccess);
+
+        assertArrayEquals(new long[] {1, 2}, session.getColdSegments());
+        // The first segment is left as written, and the second holds only the newly cold entry
+        assertEquals(1, ColdStorage.read(ColdStorage.segmentPath(directory, playerId, 1), registryAccess).getUniqueItemCount());
+        assertEquals(1, ColdStorage.read(ColdStorage.segmentPath(directory, playerId, 2), registryAccess).getUniqueItemCount());
+        assertEquals(2, session.getColdVariantCount());
+        assertEquals(2, ColdStorage.pageIn(directory, playerId, session, SWORD, registryAccess));
+        assertEquals(1, inventory.getCount(named("first")));
+        assertEquals(1, inventory.getCount(named("second")));
+    }
+
+    @Test
+    void spill_atMaxSegments_compactsIntoOne() {
+        now[0] = 1000;
+        for (int i = 0; i <= ColdStorage.MAX_SEGMENTS; i++) {
+            inventory.addItem(named("sword " + i), 1);
+            ColdStorage.spill(directory, playerId, session, 1001, 0, registryAccess);
+        }
+
+        long[] segments = session.getColdSegments();
+        assertEquals(1, segments.length);
+        assertEquals(ColdStorage.MAX_SEGMENTS + 1, segments[0]);
+        assertEquals(ColdStorage.MAX_SEGMENTS + 1, session.getColdVariantCount());
+        assertEquals(ColdStorage.MAX_SEGMENTS + 1, ColdStorage.pageIn(directory, playerId, session, SWORD, registryAccess));
+        assertEquals(1, inventory.getCount(named("sword 0")));
+    }
+
+    @Test
+    void pageIn_sameVariantInTwoSegments_addsCounts() {
+        now[0] = 10;
+        inventory.addItem(named("twice"), 2);
+        now[0] = 1000;
+        ColdStorage.spill(directory, playerId, session, 500, 0, registryAccess);
+        now[0] = 20;
+        inventory.addItem(named("twice"), 3);
+        now[0] = 1000;
+        ColdStorage.spill(directory, playerId, session, 500, 0, registryAccess);
+
+        ColdStorage.pageIn(directory, playerId, session, SWORD, registryAccess);
+
+        assertEquals(5, inventory.getCount(named("twice")));
+        assertEquals(20, inventory.getLastModified(named("twice")));
+    }
+
+    @Test
+    void spill_afterPageIn_neverReusesGeneration() {
+        now[0] = 10;
+        inventory.addItem(named("old"), 1);
+        now[0] = 1000;
+        ColdStorage.spill(directory, playerId, session, 500, 0, registryAccess);
+        ColdStorage.pageIn(directory, playerId, session, SWORD, registryAccess);
+
+        ColdStorage.spill(directory, playerId, session, 500, 0, registryAccess);
+
+        // Generation 1 may still be referenced by the last saved attachment
+        assertArrayEquals(new long[] {2}, session.getColdSegments());
+        assertTrue(Files.exists(ColdStorage.segmentPath(directory, playerId, 1)));
+    }
+
+    @Test
+    void pageIn_withMissingSegment_keepsEverySegment() {
+        now[0] = 10;
+        inventory.addItem(named("old"), 2);
+        now[0] = 1000;
+        ColdStorage.spill(directory, playerId, session, 500, 0, registryAccess);
+        session.addColdSegment(7);
+        session.putColdItem(SWORD, new InventorySession.ColdItem(new long[] {1, 7}, 2, 3, 0));
+
+        int paged = ColdStorage.pageIn(directory, playerId, session, SWORD, registryAccess);
+
+        // Nothing is merged unless every segment could be read
+        assertEquals(-1, paged);
+        assertArrayEquals(new long[] {1, 7}, session.getColdSegments());
+        assertEquals(0, inventory.getUniqueItemCount());
+        assertTrue(session.getColdItems().contains(SWORD));
+    }
+
+    @Test
+    void pageIn_ofOneItem_leavesOtherItemsOnDisk() {
+        now[0] = 10;
+        inventory.addItem(named("old"), 2);
+        inventory.addItem(namedBow("old"), 1);
+        now[0] = 1000;
+        ColdStorage.spill(directory, playerId, session, 500, 0, registryAccess);
+
+        assertEquals(1, ColdStorage.pageIn(directory, playerId, session, SWORD, registryAccess));
+
+        assertEquals(2, inventory.getCount(named("old")));
+        assertEquals(1, inventory.getUniqueItemCount());
+        assertArrayEquals(new long[] {1}, session.getColdSegments());
+        assertEquals(Set.of(Items.BOW), session.getColdItems());
+        assertEquals(1, session.getColdVariantCount());
+        assertEquals(1, session.getColdItemCount());
+    }
+
+    @Test
+    void pageIn_readsOnlySegmentsOfItem() throws IOException {
+        now[0] = 10;
+        inventory.addItem(named("old"), 2);
+        now[0] = 20;
+        inventory.addItem(namedBow("old"), 1);
+        now[0] = 1000;
+        ColdStorage.spill(directory, playerId, session, 15, 0, registryAccess);
+        ColdStorage.spill(directory, playerId, session, 25, 0, registryAccess);
+        Files.delete(ColdStorage.segmentPath(directory, playerId, 1));
+
+        assertEquals(1, ColdStorage.pageIn(directory, playerId, session, Items.BOW, registryAccess));
+
+        // Segment 2 has no live records left; segment 1 still holds the sword
+        assertArrayEquals(new long[] {1}, session.getColdSegments());
+        assertEquals(1, inventory.getCount(namedBow("old")));
+    }
+
+    @Test
+    void readEntries_leavesOutPagedInRecords() {
+        now[0] = 10;
+        inventory.addItem(named("old"), 2);
+        inventory.addItem(namedBow("old"), 1);
+        now[0] = 1000;
+        ColdStorage.spill(directory, playerId, session, 500, 0, registryAccess);
+        ColdStorage.pageIn(directory, playerId, session, SWORD, registryAccess);
+
+        List<InfiniteInventoryEntry> entries = ColdStorage.readEntries(directory, playerId, session, registryAccess);
+
+        assertNotNull(entries);
+        assertEquals(1, entries.size());
+        assertEquals(Items.BOW, entries.get(0).getKey().getItem());
+        assertEquals(1, entries.get(0).getCount());
+    }
+
+    @Test
+    void spill_atMaxSegments_carriesOverOnlyLiveRecords() {
+        now[0] = 10;
+        inventory.addItem(named("old"), 2);
+        inventory.addItem(namedBow("old"), 1);
+        now[0] = 1000;
+        ColdStorage.spill(directory, playerId, session, 500, 0, registryAccess);
+        session.setColdPager(item -> ColdStorage.pageIn(directory, playerId, session, item, registryAccess));
+        assertEquals(2, inventory.removeItem(named("old"), 2));
+
+        for (int i = 1; i <= ColdStorage.MAX_SEGMENTS; i++) {
+            inventory.addItem(named("sword " + i), 1);
+            ColdStorage.spill(directory, playerId, session, 1001, 0, registryAccess);
+        }
+
+        assertEquals(1, session.getColdSegments().length);
+        assertEquals(ColdStorage.MAX_SEGMENTS + 1, session.getColdVariantCount());
+        assertEquals(ColdStorage.MAX_SEGMENTS, session.getColdItem(SWORD).variantCount());
+        assertEquals(0, inventory.getCount(named("old")));
+    }
+
+    private static ItemStack namedBow(String name) {
+        ItemStack bow = new ItemStack(Items.BOW);
+        bow.set(DataComponents.CUSTOM_NAME, Component.literal(name));
+        return bow;
+    }
+
+    @Test
+    void deleteStale_keepsOnlyReferencedGenerations() throws IOException {
+        UUID otherPlayer = UUID.randomUUID();
+        for (long generation = 1; generation <= 3; generation++) {
+            Files.writeString(ColdStorage.segmentPath(directory, playerId, generation), "");
+        }
+        Files.writeString(ColdStorage.segmentPath(directory, otherPlayer, 1), "");
+
+        ColdStorage.deleteStale(directory, playerId, 1, 2);
+
+        assertTrue(Files.exists(ColdStorage.segmentPath(directory, playerId, 1)));
+        assertTrue(Files.exists(ColdStorage.segmentPath(directory, playerId, 2)));
+        assertFalse(Files.exists(ColdStorage.segmentPath(directory, playerId, 3)));
+        assertTrue(Files.exists(ColdStorage.segmentPath(directory, otherPlayer, 1)));
+    }
+}
@@ -0,0 +1,253 @@
+package com.chayut.bottomlessinventory.data;
+
+import com.chayut.bottomlessinventory.inventory.InfiniteInventory;
+import net.minecraft.SharedConstants;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static com.chayut.bottomlessinventory.inventory.TestStacks.named;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for InventorySession.
+ * Note: Opening sessions through InventorySessionManager requires a running server,
+ * so these tests cover the session's dirty tracking and write-back logic.
+ */
+class InventorySessionTest {
+
+    @BeforeAll
+    static void setupMinecraft() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+    }
+
+    @Test
+    void constructor_withNullInventory_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> new InventorySession(null));
+    }
+
+    @Test
+    void newSession_isNotDirty() {
+        InventorySession session = new InventorySession(new InfiniteInventory());
+
+        assertFalse(session.isDirty());
+    }
+
+    @Test
+    void getInventory_returnsSameLiveInstance() {
+        InfiniteInventory inventory = new InfiniteInventory();
+        InventorySession session = new InventorySession(inventory);
+
+        session.getInventory().addItem(new ItemStack(Items.DIAMOND), 10);
+
+        assertSame(inventory, session.getInventory());
+        assertEquals(10, inventory.getCount(new ItemStack(Items.DIAMOND)));
+    }
+
+    @Test
+    void flush_whenClean_doesNotWrite() {
+        InventorySession session = new InventorySession(new InfiniteInventory());
+        List<InfiniteInventory> written = new ArrayList<>();
+
+        boolean flushed = session.flush(written::add);
+
+        assertFalse(flushed);
+        assertTrue(written.isEmpty());
+    }
+
+    @Test
+    void flush_whenDirty_writesOnceAndClearsDirty() {
+        InventorySession session = new InventorySession(new InfiniteInventory());
+        List<InfiniteInventory> written = new ArrayList<>();
+
+        session.getInventory().addItem(new ItemStack(Items.GOLD_INGOT), 5);
+        session.markDirty();
+
+        assertTrue(session.flush(written::add));
+        assertFalse(session.isDirty());
+        assertFalse(session.flush(written::add));
+
+        assertEquals(1, written.size());
+        assertSame(session.getInventory(), written.get(0));
+    }
+
+    @Test
+    void multipleChanges_betweenFlushes_writeOnlyOnce() {
+        InventorySession session = new InventorySession(new InfiniteInventory());
+        List<InfiniteInventory> written = new ArrayList<>();
+
+        for (int i = 0; i < 100; i++) {
+            session.getInventory().addItem(new ItemStack(Items.IRON_INGOT), 1);
+            session.markDirty();
+        }
+        session.flush(written::add);
+
+        assertEquals(1, written.size());
+        assertEquals(100, written.get(0).getCount(new ItemStack(Items.IRON_INGOT)));
+    }
+
+    @Test
+    void inventoryChange_withoutMarkDirty_makesSessionDirty() {
+        InventorySession session = new InventorySession(new InfiniteInventory());
+        List<InfiniteInventory> written = new ArrayList<>();
+
+        session.getInventory().addItem(new ItemStack(Items.EMERALD), 3);
+
+        assertTrue(session.isDirty());
+        assertTrue(session.flush(written::add));
+        assertFalse(session.isDirty());
+        assertEquals(1, written.size());
+    }
+
+    @Test
+    void changeThatCancelsOut_leavesSessionClean() {
+        InventorySession session = new InventorySession(new InfiniteInventory());
+
+        session.getInventory().addItem(new ItemStack(Items.EMERALD), 3);
+        session.getInventory().removeItem(new ItemStack(Items.EMERALD), 3);
+
+        assertFalse(session.isDirty());
+    }
+
+    @Test
+    void syncJournal_isNotClearedByFlush() {
+        InventorySession session = new InventorySession(new InfiniteInventory());
+
+        session.getInventory().addItem(new ItemStack(Items.EMERALD), 3);
+        session.flush(inventory -> { });
+
+        assertEquals(1, session.getSyncJournal().drain().size());
+    }
+
+    @Test
+    void hasSession_unknownPlayer_returnsFalse() {
+        assertFalse(InventorySessionManager.hasSession(UUID.randomUUID()));
+    }
+
+    @Test
+    void newSession_hasNoColdSegment() {
+        InventorySession session = new InventorySession(new InfiniteInventory());
+
+        assertFalse(session.hasColdSegments());
+        assertEquals(1, session.nextColdGeneration());
+    }
+
+    @Test
+    void pendingInsertions_makeSessionDirty() {
+        InventorySession session = new InventorySession(new InfiniteInventory());
+
+        session.getInsertionBuffer().offer(new ItemStack(Items.COBBLESTONE), 10);
+
+        assertTrue(session.isDirty());
+    }
+
+    @Test
+    void flush_mergesPendingInsertionsBeforeWriting() {
+        InventorySession session = new InventorySession(new InfiniteInventory());
+        List<InfiniteInventory> written = new ArrayList<>();
+        session.getInsertionBuffer().offer(new ItemStack(Items.COBBLESTONE), 10);
+
+        assertTrue(session.flush(written::add));
+
+        assertEquals(10, written.get(0).getCount(new ItemStack(Items.COBBLESTONE)));
+        assertTrue(session.getInsertionBuffer().isEmpty());
+        assertFalse(session.isDirty());
+    }
+
+    @Test
+    void insertionMerge_isOneSyncJournalEntryPerItemType() {
+        InventorySession session = new InventorySession(new InfiniteInventory());
+        for (int i = 0; i < 64; i++) {
+            session.getInsertionBuffer().offer(new ItemStack(Items.COBBLESTONE), 1);
+        }
+        session.getInsertionBuffer().offer(new ItemStack(Items.DIRT), 3);
+
+        session.getInsertionBuffer().merge();
+
+        assertEquals(2, session.getSyncJournal().drain().size());
+        assertEquals(64, session.getInventory().getCount(new ItemStack(Items.COBBLESTONE)));
+    }
+
+    @Test
+    void nextColdGeneration_staysAboveEveryUsedGeneration() {
+        InventorySession session = new InventorySession(new InfiniteInventory());
+        session.setColdSegments(1, 3);
+
+        session.setColdSegments();
+
+        assertFalse(session.hasColdSegments());
+        assertEquals(4, session.nextColdGeneration());
+    }
+
+    @Test
+    void addColdContents_indexesEachItemBySegment() {
+        InventorySession session = new InventorySession(new InfiniteInventory());
+        InfiniteInventory first = new InfiniteInventory();
+        first.addItem(named("A"), 2);
+        first.addItem(named("B"), 1);
+        InfiniteInventory second = new InfiniteInventory();
+        second.addItem(named("A"), 3);
+        second.addItem(new ItemStack(Items.BOOK), 5);
+
+        session.addColdContents(1, first);
+        session.addColdContents(2, second);
+
+        InventorySession.ColdItem swords = session.getColdItem(Items.DIAMOND_SWORD);
+        assertArrayEquals(new long[] {1, 2}, swords.segments());
+        assertEquals(3, swords.variantCount());
+        assertEquals(6, swords.itemCount());
+        assertTrue(swords.estimatedBytes() > 0);
+        assertArrayEquals(new long[] {2}, session.getColdItem(Items.BOOK).segments());
+        assertEquals(4, session.getColdVariantCount());
+        assertEquals(11, session.getColdItemCount());
+        assertEquals(Set.of(Items.DIAMOND_SWORD, Items.BOOK), session.getColdItems());
+    }
+
+    @Test
+    void removeColdItem_dropsSegmentsWithoutLiveRecords() {
+        InventorySession session = new InventorySession(new InfiniteInventory());
+        session.setColdSegments(1, 2);
+        session.putColdItem(Items.DIAMOND_SWORD, new InventorySession.ColdItem(new long[] {1, 2}, 2, 2, 100));
+        session.putColdItem(Items.BOOK, new InventorySession.ColdItem(new long[] {2}, 1, 5, 50));
+
+        session.removeColdItem(Items.DIAMOND_SWORD);
+
+        assertArrayEquals(new long[] {2}, session.getColdSegments());
+        assertEquals(1, session.getColdVariantCount());
+        assertEquals(50, session.getColdEstimatedBytes());
+        assertFalse(session.isColdRecordLive(Items.DIAMOND_SWORD, 2));
+        assertTrue(session.isColdRecordLive(Items.BOOK, 2));
+
+        session.removeColdItem(Items.BOOK);
+
+        assertFalse(session.hasColdSegments());
+        assertEquals(3, session.nextColdGeneration());
+    }
+
+    @Test
+    void pageInCold_afterFailure_doesNotRetry() {
+        InventorySession session = new InventorySession(new InfiniteInventory());
+        session.setColdSegments(1);
+        session.putColdItem(Items.DIAMOND_SWORD, new InventorySession.ColdItem(new long[] {1}, 1, 1, 0));
+        List<Item> reads = new ArrayList<>();
+        session.setColdPager(item -> {
+            reads.add(item);
+            return -1;
+        });
+
+        assertEquals(-1, session.pageInCold(Items.DIAMOND_SWORD));
+        assertEquals(-1, session.pageInCold(Items.DIAMOND_SWORD));
+        assertEquals(0, session.pageInCold(Items.BOOK));
+
+        assertEquals(List.of(Items.DIAMOND_SWORD), reads);
+    }
+}
@@ -0,0 +1,191 @@
+package com.chayut.bottomlessinventory.inventory;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.core.component.DataComponents;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for ChangeJournal and how InfiniteInventory feeds it.
+ */
+class ChangeJournalTest {
+
+    @BeforeAll
+    static void setupMinecraft() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+    }
+
+    private InfiniteInventory inventory;
+    private ChangeJournal journal;
+
+    @BeforeEach
+    void setUp() {
+        inventory = new InfiniteInventory();
+        journal = inventory.openJournal();
+    }
+
+    @Test
+    void newJournal_hasNoChanges() {
+        assertFalse(journal.hasChanges());
+        assertTrue(journal.drain().isEmpty());
+        assertEquals(0, journal.getTouchedKeyCount());
+    }
+
+    @Test
+    void addItem_recordsChange() {
+        inventory.addItem(new ItemStack(Items.DIAMOND), 10);
+
+        List<InventoryChange> changes = journal.drain();
+
+        assertEquals(1, changes.size());
+        InventoryChange change = changes.get(0);
+        assertEquals(ItemStackKey.plain(Items.DIAMOND), change.key());
+        assertEquals(0, change.oldCount());
+        assertEquals(10, change.newCount());
+        assertEquals(10, change.delta());
+        assertFalse(change.isRemoval());
+    }
+
+    @Test
+    void repeatedChanges_collapseIntoNetChange() {
+        inventory.addItem(new ItemStack(Items.DIAMOND), 10);
+        journal.drain();
+
+        inventory.addItem(new ItemStack(Items.DIAMOND), 5);
+        inventory.removeItem(new ItemStack(Items.DIAMOND), 2);
+        inventory.addItem(new ItemStack(Items.DIAMOND), 1);
+
+        List<InventoryChange> changes = journal.drain();
+
+        assertEquals(1, changes.size());
+        assertEquals(10, changes.get(0).oldCount());
+        assertEquals(14, changes.get(0).newCount());
+    }
+
+    @Test
+    void changeThatCancelsOut_isNotReported() {
+        inventory.addItem(new ItemStack(Items.DIAMOND), 10);
+        inventory.removeItem(new ItemStack(Items.DIAMOND), 10);
+
+        assertFalse(journal.hasChanges());
+        assertTrue(journal.drain().isEmpty());
+    }
+
+    @Test
+    void removingAllItems_isReportedAsRemoval() {
+        inventory.addItem(new ItemStack(Items.DIAMOND), 10);
+        journal.drain();
+
+        inventory.removeItem(new ItemStack(Items.DIAMOND), 10);
+
+        List<InventoryChange> changes = journal.drain();
+        assertEquals(1, changes.size());
+        assertTrue(changes.get(0).isRemoval());
+        assertEquals(-10, changes.get(0).delta());
+    }
+
+    @Test
+    void componentVariants_areTrackedSeparately() {
+        ItemStack named = new ItemStack(Items.DIAMOND_SWORD);
+        named.set(DataComponents.CUSTOM_NAME, Component.literal("Excalibur"));
+
+        inventory.addItem(new ItemStack(Items.DIAMOND_SWORD), 1);
+        inventory.addItem(named, 2);
+
+        List<InventoryChange> changes = journal.drain();
+
+        assertEquals(2, changes.size());
+        assertEquals(ItemStackKey.plain(Items.DIAMOND_SWORD), changes.get(0).key());
+        assertEquals(ItemStackKey.of(named), changes.get(1).key());
+        assertEquals(2, changes.get(1).newCount());
+    }
+
+    @Test
+    void drain_resetsCheckpoint() {
+        inventory.addItem(new ItemStack(Items.DIAMOND), 10);
+
+        journal.drain();
+
+        assertFalse(journal.hasChanges());
+        assertTrue(journal.drain().isEmpty());
+    }
+
+    @Test
+    void peek_doesNotResetCheckpoint() {
+        inventory.addItem(new ItemStack(Items.DIAMOND), 10);
+
+        assertEquals(1, journal.peek().size());
+        assertEquals(1, journal.peek().size());
+        assertTrue(journal.hasChanges());
+    }
+
+    @Test
+    void clear_discardsChanges() {
+        inventory.addItem(new ItemStack(Items.DIAMOND), 10);
+
+        journal.clear();
+
+        assertFalse(journal.hasChanges());
+        assertEquals(0, journal.getTouchedKeyCount());
+    }
+
+    @Test
+    void inventoryClear_recordsRemovalOfEveryEntry() {
+        inventory.addItem(new ItemStack(Items.DIAMOND), 10);
+        inventory.addItem(new ItemStack(Items.GOLD_INGOT), 5);
+        journal.drain();
+
+        inventory.clear();
+
+        List<InventoryChange> changes = journal.drain();
+        assertEquals(2, changes.size());
+        assertTrue(changes.stream().allMatch(InventoryChange::isRemoval));
+    }
+
+    @Test
+    void multipleJournals_areIndependent() {
+        ChangeJournal other = inventory.openJournal();
+
+        inventory.addItem(new ItemStack(Items.DIAMOND), 10);
+        journal.drain();
+        inventory.addItem(new ItemStack(Items.GOLD_INGOT), 5);
+
+        assertEquals(1, journal.drain().size());
+        assertEquals(2, other.drain().size());
+    }
+
+    @Test
+    void rebase_shiftsTouchedKeyAndIgnoresUntouchedOne() {
+        ItemStackKey diamond = ItemStackKey.plain(Items.DIAMOND);
+        ItemStackKey gold = ItemStackKey.plain(Items.GOLD_INGOT);
+        ChangeJournal transactional = new ChangeJournal(ChangeJournal.ColdMoves.REBASE);
+        transactional.record(diamond, 5, 4);
+
+        transactional.rebase(diamond, 4, 10);
+        transactional.rebase(gold, 0, 3);
+
+        List<InventoryChange> changes = transactional.drain();
+        assertEquals(1, changes.size());
+        assertEquals(11, changes.get(0).oldCount());
+        assertEquals(10, changes.get(0).newCount());
+    }
+
+    @Test
+    void closedJournal_stopsRecording() {
+        inventory.closeJournal(journal);
+
+        inventory.addItem(new ItemStack(Items.DIAMOND), 10);
+
+        assertFalse(journal.hasChanges());
+    }
+}
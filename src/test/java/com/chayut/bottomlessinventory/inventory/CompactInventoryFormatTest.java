@@ -0,0 +1,294 @@
+package com.chayut.bottomlessinventory.inventory;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
+import net.minecraft.SharedConstants;
+import net.minecraft.core.HolderLookup;
+import net.minecraft.core.RegistryAccess;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.NbtAccounter;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.StringTag;
+import net.minecraft.nbt.Tag;
+import net.minecraft.network.VarInt;
+import net.minecraft.network.VarLong;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+import static com.chayut.bottomlessinventory.inventory.TestStacks.named;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for CompactInventoryFormat, the version 2 storage layout.
+ */
+class CompactInventoryFormatTest {
+
+    private static HolderLookup.Provider registryAccess;
+
+    @BeforeAll
+    static void setupMinecraft() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+        registryAccess = RegistryAccess.fromRegistryOfRegistries(BuiltInRegistries.REGISTRY);
+    }
+
+    private InfiniteInventory inventory;
+
+    @BeforeEach
+    void setUp() {
+        inventory = new InfiniteInventory();
+    }
+
+    private CompoundTag write() {
+        CompoundTag tag = new CompoundTag();
+        CompactInventoryFormat.write(tag, inventory.getAllEntries(), inventory::getLastModified, registryAccess);
+        return tag;
+    }
+
+    private static InfiniteInventory read(CompoundTag tag) {
+        InfiniteInventory restored = new InfiniteInventory();
+        CompactInventoryFormat.read(tag, registryAccess, restored);
+        return restored;
+    }
+
+    /**
+     * Builds a tag for a sword with the given components followed by ten plain diamonds.
+     */
+    private static CompoundTag swordAndDiamonds(Tag components) {
+        ListTag ids = new ListTag();
+        ids.add(StringTag.valueOf("minecraft:diamond_sword"));
+        ids.add(StringTag.valueOf("minecraft:diamond"));
+
+        ByteBuf out = Unpooled.buffer();
+        VarInt.write(out, 0);
+        VarInt.write(out, 1); // components flag
+        ByteBuf payload = Unpooled.buffer();
+        try (ByteBufOutputStream output = new ByteBufOutputStream(payload)) {
+            NbtIo.writeAnyTag(components, output);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        VarInt.write(out, payload.readableBytes());
+        out.writeBytes(payload);
+        VarLong.write(out, 1);
+        VarLong.write(out, 0);
+        VarInt.write(out, 1);
+        VarInt.write(out, 0);
+        VarLong.write(out, 10);
+        VarLong.write(out, 0);
+
+        CompoundTag tag = new CompoundTag();
+        tag.put(CompactInventoryFormat.KEY_ITEM_IDS, ids);
+        byte[] entries = new byte[out.readableBytes()];
+        out.readBytes(entries);
+        tag.putByteArray(CompactInventoryFormat.KEY_ENTRIES, entries);
+        return tag;
+    }
+
+    private static CompoundTag encodedName(String name) {
+        return (CompoundTag) readTag(ItemStackKey.of(named(name)).getEncodedComponents(registryAccess));
+    }
+
+    private static Tag readTag(byte[] encoded) {
+        try {
+            return NbtIo.readAnyTag(new DataInputStream(new ByteArrayInputStream(encoded)),
+                    NbtAccounter.unlimitedHeap());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Test
+    void write_storesEachItemIdOnce() {
+        inventory.addItem(new ItemStack(Items.DIAMOND_SWORD), 1);
+        inventory.addItem(named("a"), 1);
+        inventory.addItem(named("b"), 1);
+
+        CompoundTag tag = write();
+
+        assertEquals(1, tag.getList(CompactInventoryFormat.KEY_ITEM_IDS).orElseThrow().size());
+    }
+
+    @Test
+    void roundTrip_preservesPlainComponentAndDamagedEntries() {
+        inventory.addItem(new ItemStack(Items.COBBLESTONE), Long.MAX_VALUE);
+        inventory.addItem(named("Excalibur"), 3);
+        for (int damage = 1; damage <= 5; damage++) {
+            ItemStack bow = new ItemStack(Items.BOW);
+            bow.setDamageValue(damage);
+            inventory.addItem(bow, damage);
+        }
+        ItemStack single = new ItemStack(Items.SHIELD);
+        single.setDamageValue(9);
+        inventory.addItem(single, 1);
+
+        InfiniteInventory restored = read(write());
+
+        assertEquals(inventory.getUniqueItemCount(), restored.getUniqueItemCount());
+        for (InfiniteInventoryEntry entry : inventory.getAllEntries()) {
+            assertEquals(entry.getCount(), restored.getCount(entry.getKey()));
+            assertEquals(inventory.getLastModified(entry.getKey()), restored.getLastModified(entry.getKey()));
+        }
+    }
+
+    @Test
+    void read_unknownItemId_skipsOnlyItsRecords() {
+        inventory.addItem(new ItemStack(Items.DIAMOND), 10);
+        inventory.addItem(new ItemStack(Items.EMERALD), 20);
+        CompoundTag tag = write();
+        ListTag ids = tag.getList(CompactInventoryFormat.KEY_ITEM_IDS).orElseThrow();
+        ids.set(0, StringTag.valueOf("removedmod:gadget"));
+
+        InfiniteInventory restored = new InfiniteInventory();
+        int failed = CompactInventoryFormat.read(tag, registryAccess, restored);
+
+        assertEquals(1, failed);
+        assertEquals(1, restored.getUniqueItemCount());
+    }
+
+    @Test
+    void read_unknownRecordFlags_stopsWithoutMisreading() {
+        inventory.addItem(new ItemStack(Items.DIAMOND), 10);
+        CompoundTag tag = write();
+        byte[] entries = tag.getByteArray(CompactInventoryFormat.KEY_ENTRIES).orElseThrow();
+        // A record of a shape from a newer version: item 0 with an unknown flag bit
+        byte[] extended = new byte[entries.length + 4];
+        System.arraycopy(entries, 0, extended, 0, entries.length);
+        extended[entries.length] = 0;
+        extended[entries.length + 1] = 64;
+        extended[entries.length + 2] = 1;
+        extended[entries.length + 3] = 1;
+        tag.putByteArray(CompactInventoryFormat.KEY_ENTRIES, extended);
+
+        InfiniteInventory restored = new InfiniteInventory();
+        int failed = CompactInventoryFormat.read(tag, registryAccess, restored);
+
+        assertEquals(1, failed);
+        assertEquals(10, restored.getCount(new ItemStack(Items.DIAMOND)));
+        assertEquals(1, restored.getUniqueItemCount());
+    }
+
+    @Test
+    void read_invalidComponents_skipsOnlyThatRecord() {
+        CompoundTag invalid = new CompoundTag();
+        invalid.putString("minecraft:custom_name", "");
+        invalid.putInt("minecraft:max_stack_size", -5);
+
+        InfiniteInventory restored = new InfiniteInventory();
+        int failed = CompactInventoryFormat.read(swordAndDiamonds(invalid), registryAccess, restored);
+
+        assertEquals(1, failed);
+        assertEquals(10, restored.getCount(new ItemStack(Items.DIAMOND)));
+    }
+
+    @Test
+    void read_inlineComponents_loadsRecords() {
+        InfiniteInventory restored = read(swordAndDiamonds(encodedName("New layout")));
+
+        assertEquals(1, restored.getCount(named("New layout")));
+        assertEquals(10, restored.getCount(new ItemStack(Items.DIAMOND)));
+    }
+
+    @Test
+    void write_reusesEncodedComponentsAcrossSaves() {
+        inventory.addItem(named("Saved twice"), 1);
+        write();
+        byte[] cached = ItemStackKey.of(named("Saved twice")).getEncodedComponents(registryAccess);
+        inventory.addItem(named("Saved twice"), 4);
+
+        CompoundTag second = write();
+
+        // Only the count changed, so the second save copies the cached bytes without encoding again
+        assertSame(cached, ItemStackKey.of(named("Saved twice")).getEncodedComponents(registryAccess));
+        assertEquals(5, read(second).getCount(named("Saved twice")));
+    }
+
+    @Test
+    void write_editingSavedTag_leavesCacheIntact() {
+        inventory.addItem(named("Edited"), 1);
+        CompoundTag first = write();
+
+        // e.g. a data fixer or another mod rewriting the saved attachment
+        Arrays.fill(first.getByteArray(CompactInventoryFormat.KEY_ENTRIES).orElseThrow(), (byte) 0);
+        CompoundTag second = write();
+
+        assertEquals(1, read(second).getCount(named("Edited")));
+    }
+
+    @Test
+    void read_seedsEncodedComponentsOfLoadedKeys() {
+        inventory.addItem(named("Loaded"), 1);
+        CompoundTag tag = write();
+        byte[] written = ItemStackKey.of(named("Loaded")).getEncodedComponents(registryAccess);
+        HolderLookup.Provider otherAccess = RegistryAccess.fromRegistryOfRegistries(BuiltInRegistries.REGISTRY);
+
+        InfiniteInventory restored = new InfiniteInventory();
+        CompactInventoryFormat.read(tag, otherAccess, restored);
+
+        byte[] cached = ItemStackKey.of(named("Loaded")).getEncodedComponents(otherAccess);
+        // The loaded bytes, not a new encoding and not the saved tag's own array
+        assertArrayEquals(written, cached);
+        assertNotSame(tag.getByteArray(CompactInventoryFormat.KEY_ENTRIES).orElseThrow(), cached);
+    }
+
+    @Test
+    void read_emptyTag_loadsNothing() {
+        InfiniteInventory restored = read(new CompoundTag());
+
+        assertTrue(restored.isEmpty());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {10_000, 100_000})
+    void write_isSmallerThanVersion1(int entries) throws IOException {
+        // Plain stacks of up to 1024 items, then named variants
+        int plain = 0;
+        for (Item item : BuiltInRegistries.ITEM) {
+            if (item != Items.AIR && plain < Math.min(entries / 2, 1024)) {
+                inventory.addItem(new ItemStack(item), ++plain * 64L);
+            }
+        }
+        for (int i = plain; i < entries; i++) {
+            inventory.addItem(named("Variant " + i), i + 1);
+        }
+        CompoundTag legacy = new CompoundTag();
+        legacy.putInt("Version", 1);
+        ListTag items = new ListTag();
+        for (InfiniteInventoryEntry entry : inventory.getAllEntries()) {
+            items.add(InfiniteInventorySerializer.writeEntry(entry, registryAccess));
+        }
+        legacy.put("Items", items);
+
+        int compactBytes = sizeOf(InfiniteInventorySerializer.serialize(inventory, registryAccess));
+        int legacyBytes = sizeOf(legacy);
+
+        assertEquals(entries, inventory.getUniqueItemCount());
+        assertTrue(compactBytes < legacyBytes,
+                "Compact: " + compactBytes + " bytes, version 1: " + legacyBytes + " bytes");
+    }
+
+    private static int sizeOf(CompoundTag tag) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        NbtIo.write(tag, new DataOutputStream(bytes));
+        return bytes.size();
+    }
+}
@@ -0,0 +1,136 @@
+package com.chayut.bottomlessinventory.inventory;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.core.component.DataComponents;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import net.minecraft.world.item.component.CustomData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for ComponentNormalizer and its use when building ItemStackKeys.
+ */
+class ComponentNormalizerTest {
+
+    @BeforeAll
+    static void setupMinecraft() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+    }
+
+    @AfterEach
+    void resetNormalizer() {
+        ItemStackKey.setNormalizer(null);
+    }
+
+    private static ItemStack swordWithRepairCost(int cost) {
+        ItemStack stack = new ItemStack(Items.DIAMOND_SWORD);
+        stack.set(DataComponents.REPAIR_COST, cost);
+        return stack;
+    }
+
+    private static ItemStack stoneWithCustomData(String... keys) {
+        CompoundTag tag = new CompoundTag();
+        for (String key : keys) {
+            tag.putString(key, "value");
+        }
+        ItemStack stack = new ItemStack(Items.STONE);
+        stack.set(DataComponents.CUSTOM_DATA, CustomData.of(tag));
+        return stack;
+    }
+
+    @Test
+    void none_leavesPatchUnchanged() {
+        ItemStack stack = swordWithRepairCost(3);
+
+        assertTrue(ComponentNormalizer.NONE.isIdentity());
+        assertSame(stack.getComponentsPatch(),
+                ComponentNormalizer.NONE.normalize(stack.getItem(), stack.getComponentsPatch()));
+    }
+
+    @Test
+    void fromIds_withEmptyLists_returnsNone() {
+        assertSame(ComponentNormalizer.NONE, ComponentNormalizer.fromIds(List.of(), List.of()));
+    }
+
+    @Test
+    void fromIds_skipsUnknownIds() {
+        ComponentNormalizer normalizer = ComponentNormalizer.fromIds(
+                List.of("minecraft:repair_cost", "notamod:nothing", "Not A Valid Id"), List.of());
+
+        assertEquals(Set.of(DataComponents.REPAIR_COST), normalizer.getStrippedTypes());
+    }
+
+    @Test
+    void strippedType_isRemovedFromPatch() {
+        ComponentNormalizer normalizer = ComponentNormalizer.fromIds(List.of("minecraft:repair_cost"), List.of());
+        ItemStack stack = swordWithRepairCost(7);
+        stack.set(DataComponents.CUSTOM_NAME, Component.literal("Keep"));
+
+        var normalized = normalizer.normalize(stack.getItem(), stack.getComponentsPatch());
+
+        assertNull(normalized.get(DataComponents.REPAIR_COST));
+        assertNotNull(normalized.get(DataComponents.CUSTOM_NAME));
+    }
+
+    @Test
+    void patchWithoutListedTypes_isReturnedAsIs() {
+        ComponentNormalizer normalizer = ComponentNormalizer.fromIds(List.of("minecraft:repair_cost"), List.of("noise"));
+        ItemStack stack = new ItemStack(Items.DIAMOND_SWORD);
+        stack.set(DataComponents.CUSTOM_NAME, Component.literal("Keep"));
+
+        assertSame(stack.getComponentsPatch(), normalizer.normalize(stack.getItem(), stack.getComponentsPatch()));
+    }
+
+    @Test
+    void customDataKeys_areRemovedAndEmptyCustomDataDropped() {
+        ComponentNormalizer normalizer = ComponentNormalizer.fromIds(List.of(), List.of("noise"));
+
+        ItemStack onlyNoise = stoneWithCustomData("noise");
+        assertTrue(normalizer.normalize(onlyNoise.getItem(), onlyNoise.getComponentsPatch()).isEmpty());
+
+        ItemStack mixed = stoneWithCustomData("noise", "keep");
+        var normalized = normalizer.normalize(mixed.getItem(), mixed.getComponentsPatch());
+        CustomData data = normalized.get(DataComponents.CUSTOM_DATA).orElseThrow();
+        assertTrue(data.copyTag().contains("keep"));
+        assertFalse(data.copyTag().contains("noise"));
+    }
+
+    @Test
+    void keys_ofStacksDifferingOnlyInStrippedComponents_areSame() {
+        ItemStackKey.setNormalizer(ComponentNormalizer.fromIds(List.of("minecraft:repair_cost"), List.of()));
+
+        ItemStackKey a = ItemStackKey.of(swordWithRepairCost(1));
+        ItemStackKey b = ItemStackKey.of(swordWithRepairCost(9));
+
+        assertSame(a, b);
+        assertSame(ItemStackKey.plain(Items.DIAMOND_SWORD), a);
+        assertEquals(a, new ItemStackKey(swordWithRepairCost(4)));
+        assertSame(a, ItemStackKey.find(swordWithRepairCost(2)));
+    }
+
+    @Test
+    void inventory_mergesNormalizedVariantsIntoOneEntry() {
+        ItemStackKey.setNormalizer(ComponentNormalizer.fromIds(List.of("minecraft:repair_cost"), List.of("noise")));
+        InfiniteInventory inventory = new InfiniteInventory();
+
+        inventory.addItem(swordWithRepairCost(1), 1);
+        inventory.addItem(swordWithRepairCost(5), 2);
+        inventory.addItem(stoneWithCustomData("noise"), 3);
+        inventory.addItem(new ItemStack(Items.STONE), 4);
+
+        assertEquals(2, inventory.getUniqueItemCount());
+        assertEquals(3, inventory.getCount(swordWithRepairCost(12)));
+        assertEquals(7, inventory.getCount(new ItemStack(Items.STONE)));
+    }
+}
@@ -0,0 +1,264 @@
+package com.chayut.bottomlessinventory.inventory;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.chayut.bottomlessinventory.inventory.TestStacks.named;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for ConcurrentInfiniteInventory, including contention with 1 to 16 writer threads.
+ */
+class ConcurrentInfiniteInventoryTest {
+
+    private static final Item[] ITEMS = {
+            Items.DIAMOND, Items.GOLD_INGOT, Items.IRON_INGOT, Items.COBBLESTONE,
+            Items.DIRT, Items.OAK_LOG, Items.STICK, Items.COAL
+    };
+
+    @BeforeAll
+    static void setupMinecraft() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+    }
+
+    private ConcurrentInfiniteInventory inventory;
+
+    @BeforeEach
+    void setUp() {
+        inventory = new ConcurrentInfiniteInventory();
+    }
+
+    @Test
+    void constructor_withNonPositiveStripes_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> new ConcurrentInfiniteInventory(0));
+    }
+
+    @Test
+    void addAndRemove_singleThread_behaveLikeInfiniteInventory() {
+        assertTrue(inventory.addItem(new ItemStack(Items.DIAMOND), 10));
+        assertTrue(inventory.addItem(named("Excalibur"), 2));
+        assertFalse(inventory.addItem(ItemStack.EMPTY, 5));
+
+        assertEquals(4, inventory.removeItem(new ItemStack(Items.DIAMOND), 4));
+        assertEquals(2, inventory.removeItem(named("Excalibur"), 10));
+        assertEquals(0, inventory.removeItem(new ItemStack(Items.GOLD_INGOT), 1));
+
+        assertEquals(6, inventory.getCount(new ItemStack(Items.DIAMOND)));
+        assertEquals(0, inventory.getCount(named("Excalibur")));
+        assertEquals(1, inventory.getUniqueItemCount());
+        assertEquals(6, inventory.getTotalItemCount());
+    }
+
+    @Test
+    void snapshot_containsEveryStripe() {
+        for (Item item : ITEMS) {
+            inventory.addItem(new ItemStack(item), 3);
+        }
+        inventory.addItem(named("Excalibur"), 1);
+
+        InventorySnapshot snapshot = inventory.snapshot();
+        inventory.addItem(new ItemStack(Items.DIAMOND), 100);
+
+        assertEquals(ITEMS.length + 1, snapshot.getUniqueItemCount());
+        assertEquals(ITEMS.length * 3L + 1, snapshot.getTotalItemCount());
+        assertEquals(ITEMS.length + 1, snapshot.getAllEntries().size());
+        assertEquals(ITEMS.length + 1, snapshot.getAllEntries().stream().count());
+        assertEquals(3, snapshot.getCount(new ItemStack(Items.DIAMOND)));
+        assertEquals(1, snapshot.getCount(named("Excalibur")));
+    }
+
+    @Test
+    void transferTo_movesEverythingOnce() {
+        InfiniteInventory target = new InfiniteInventory();
+        target.addItem(new ItemStack(Items.DIAMOND), 1);
+        inventory.addItem(new ItemStack(Items.DIAMOND), 10);
+        inventory.addItem(named("Excalibur"), 2);
+
+        List<InventoryChange> changes = inventory.transferTo(target);
+
+        assertEquals(2, changes.size());
+        assertEquals(11, target.getCount(new ItemStack(Items.DIAMOND)));
+        assertEquals(2, target.getCount(named("Excalibur")));
+        assertTrue(inventory.isEmpty());
+        assertTrue(inventory.transferTo(target).isEmpty());
+    }
+
+    @Test
+    void transferTo_keepsWhatTheQuotaRefuses() {
+        InfiniteInventory target = new InfiniteInventory();
+        target.setQuota(new StorageQuota(0, 15, 0));
+        target.addItem(new ItemStack(Items.DIAMOND), 1);
+        inventory.addItem(new ItemStack(Items.DIAMOND), 10);
+        inventory.addItem(new ItemStack(Items.EMERALD), 10);
+
+        inventory.transferTo(target);
+
+        // 14 of the 20 items fit under the cap; the rest waits for the next transfer
+        assertEquals(15, target.getTotalItemCount());
+        assertEquals(6, inventory.getTotalItemCount());
+    }
+
+    @Test
+    void addItem_respectsQuotaOfWholeInventory() {
+        inventory.setQuota(new StorageQuota(2, 0, 0));
+        assertTrue(inventory.addItem(named("A"), 1));
+        assertTrue(inventory.addItem(named("B"), 1));
+
+        assertFalse(inventory.addItem(named("C"), 1));
+        assertTrue(inventory.addItem(named("A"), 5));
+
+        // Removing a variant frees its place
+        inventory.removeItem(named("B"), 1);
+        assertTrue(inventory.addItem(named("C"), 1));
+        assertEquals(2, inventory.getUniqueItemCount());
+    }
+
+    @Test
+    void setQuota_countsWhatIsAlreadyStored() {
+        inventory.addItem(new ItemStack(Items.DIAMOND), 8);
+
+        inventory.setQuota(new StorageQuota(0, 10, 0));
+
+        assertFalse(inventory.addItem(new ItemStack(Items.GOLD_INGOT), 3));
+        assertTrue(inventory.addItem(new ItemStack(Items.GOLD_INGOT), 2));
+    }
+
+    @Test
+    void addItem_refusedHugeCount_leavesQuotaUsageIntact() {
+        inventory.setQuota(new StorageQuota(0, 100, 0));
+        inventory.addItem(new ItemStack(Items.DIAMOND), 50);
+
+        // Would saturate the shared total; refusing it must not release more than was reserved
+        assertFalse(inventory.addItem(new ItemStack(Items.DIAMOND), Long.MAX_VALUE));
+
+        assertFalse(inventory.addItem(new ItemStack(Items.DIAMOND), 51));
+        assertTrue(inventory.addItem(new ItemStack(Items.DIAMOND), 50));
+        assertEquals(100, inventory.getTotalItemCount());
+    }
+
+    @Test
+    void transferTo_freesQuotaForNewItems() {
+        inventory.setQuota(new StorageQuota(0, 10, 0));
+        inventory.addItem(new ItemStack(Items.DIAMOND), 10);
+
+        inventory.transferTo(new InfiniteInventory());
+
+        assertTrue(inventory.addItem(new ItemStack(Items.DIAMOND), 10));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {2, 8, 16})
+    void contention_writersNeverOvershootQuota(int writers) throws Exception {
+        long cap = 5_000;
+        inventory.setQuota(new StorageQuota(0, cap, 0));
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < writers; t++) {
+                int offset = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 2_000; i++) {
+                        inventory.addItem(new ItemStack(ITEMS[(i + offset) % ITEMS.length]), 1);
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+
+            assertEquals(Math.min(cap, writers * 2_000L), inventory.getTotalItemCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void snapshot_whileWritersRun_isConsistent() throws Exception {
+        // Each writer moves one item from DIAMOND to GOLD_INGOT per step, so every consistent
+        // cut has the same total; a torn read across stripes would break this.
+        inventory.addItem(new ItemStack(Items.DIAMOND), 1_000_000);
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                writers.add(executor.submit(() -> {
+                    while (running.get()) {
+                        if (inventory.removeItem(new ItemStack(Items.DIAMOND), 1) == 1) {
+                            inventory.addItem(new ItemStack(Items.GOLD_INGOT), 1);
+                        }
+                    }
+                }));
+            }
+
+            for (int i = 0; i < 200; i++) {
+                // Up to one item per writer can be between its remove and its add
+                long total = inventory.snapshot().getTotalItemCount();
+                assertTrue(total <= 1_000_000 && total >= 1_000_000 - 4,
+                        "Snapshot total out of range: " + total);
+            }
+
+            running.set(false);
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1_000_000, inventory.getTotalItemCount());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 4, 8, 16})
+    void contention_writersNeverLoseUpdates(int writers) throws Exception {
+        int opsPerWriter = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < writers; t++) {
+                int offset = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < opsPerWriter; i++) {
+                        inventory.addItem(new ItemStack(ITEMS[(i + offset) % ITEMS.length]), 1);
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+
+            assertEquals((long) writers * opsPerWriter, inventory.getTotalItemCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.chayut.bottomlessinventory.inventory;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.item.Items;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for DamageHistogram and the copy-on-write HistogramTable that holds them.
+ */
+class DamageHistogramTest {
+
+    @BeforeAll
+    static void setupMinecraft() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+    }
+
+    private DamageHistogram histogram;
+
+    @BeforeEach
+    void setUp() {
+        histogram = new DamageHistogram(0);
+    }
+
+    @Test
+    void put_keepsDamagesSorted() {
+        histogram.put(30, 1);
+        histogram.put(10, 2);
+        histogram.put(20, 3);
+
+        assertEquals(3, histogram.size());
+        assertEquals(10, histogram.damageAt(0));
+        assertEquals(20, histogram.damageAt(1));
+        assertEquals(30, histogram.damageAt(2));
+        assertEquals(2, histogram.countAt(0));
+    }
+
+    @Test
+    void put_returnsPreviousAndZeroRemoves() {
+        assertEquals(0, histogram.put(10, 5));
+        assertEquals(5, histogram.put(10, 7));
+        assertEquals(7, histogram.put(10, 0));
+
+        assertEquals(0, histogram.size());
+        assertEquals(0, histogram.get(10));
+    }
+
+    @Test
+    void randomPuts_matchTreeMap() {
+        Random random = new Random(42);
+        TreeMap<Integer, Long> expected = new TreeMap<>();
+        for (int step = 0; step < 10_000; step++) {
+            int damage = random.nextInt(400) + 1;
+            long count = random.nextInt(3) == 0 ? 0 : random.nextInt(100) + 1;
+            histogram.put(damage, count);
+            if (count == 0) {
+                expected.remove(damage);
+            } else {
+                expected.put(damage, count);
+            }
+        }
+
+        assertEquals(expected.size(), histogram.size());
+        int i = 0;
+        for (var entry : expected.entrySet()) {
+            assertEquals(entry.getKey(), histogram.damageAt(i));
+            assertEquals(entry.getValue(), histogram.countAt(i));
+            i++;
+        }
+    }
+
+    @Test
+    void copy_isIndependent() {
+        histogram.put(10, 5);
+
+        DamageHistogram copy = histogram.copy(1);
+        copy.put(10, 6);
+        copy.put(20, 1);
+
+        assertEquals(5, histogram.get(10));
+        assertEquals(1, histogram.size());
+        assertEquals(1, copy.generation);
+    }
+
+    @Test
+    void table_putAndGetByBaseKey() {
+        HistogramTable table = new HistogramTable();
+        ItemStackKey base = ItemStackKey.plain(Items.BOW);
+
+        table.put(base, 12, 3);
+        table.put(base, 40, 1);
+
+        assertEquals(1, table.size());
+        assertEquals(3, table.get(base, 12));
+        assertEquals(2, table.get(base).size());
+
+        table.put(base, 12, 0);
+        table.put(base, 40, 0);
+        assertEquals(0, table.size());
+        assertNull(table.get(base));
+    }
+
+    @Test
+    void table_snapshotIsNotChangedByLaterWrites() {
+        HistogramTable table = new HistogramTable();
+        ItemStackKey bow = ItemStackKey.plain(Items.BOW);
+        ItemStackKey helmet = ItemStackKey.plain(Items.IRON_HELMET);
+        table.put(bow, 12, 3);
+
+        HistogramTable snapshot = table.snapshot();
+        table.put(bow, 12, 4);
+        table.put(bow, 13, 1);
+        table.put(helmet, 5, 1);
+
+        assertEquals(3, snapshot.get(bow, 12));
+        assertEquals(0, snapshot.get(bow, 13));
+        assertNull(snapshot.get(helmet));
+        assertEquals(4, table.get(bow, 12));
+
+        table.clear();
+        assertEquals(3, snapshot.get(bow, 12));
+    }
+}
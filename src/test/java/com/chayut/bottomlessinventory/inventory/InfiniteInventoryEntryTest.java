@@ -112,6 +112,15 @@ class InfiniteInventoryEntryTest {
         assertEquals(2_000_000_000L, entry.getCount());
     }
 
+    @Test
+    void addCount_pastMaxValue_saturates() {
+        InfiniteInventoryEntry entry = new InfiniteInventoryEntry(testStack, Long.MAX_VALUE - 5);
+
+        entry.addCount(100);
+
+        assertEquals(Long.MAX_VALUE, entry.getCount());
+    }
+
     @Test
     void addCount_withNegativeAmount_throwsException() {
         InfiniteInventoryEntry entry = new InfiniteInventoryEntry(testStack, 100);
@@ -215,4 +224,32 @@ class InfiniteInventoryEntryTest {
 
         assertFalse(entry.isEmpty());
     }
+
+    @Test
+    void viewReferenceStack_isSharedAcrossEntriesAndInventories() {
+        InfiniteInventoryEntry a = new InfiniteInventoryEntry(testStack, 1);
+        InfiniteInventoryEntry b = new InfiniteInventoryEntry(testStack.copy(), 2);
+
+        InfiniteInventory first = new InfiniteInventory();
+        InfiniteInventory second = new InfiniteInventory();
+        first.addItem(testStack, 1);
+        second.addItem(testStack, 5);
+
+        ItemStack shared = a.viewReferenceStack();
+        assertSame(shared, b.viewReferenceStack());
+        assertSame(shared, first.getAllEntries().iterator().next().viewReferenceStack());
+        assertSame(shared, second.getAllEntries().iterator().next().viewReferenceStack());
+        assertEquals(1, shared.getCount());
+    }
+
+    @Test
+    void viewReferenceStack_isNotAffectedByOriginalStack() {
+        ItemStack original = new ItemStack(Items.GOLD_INGOT, 16);
+        InfiniteInventoryEntry entry = new InfiniteInventoryEntry(original, 1);
+
+        original.setCount(3);
+
+        assertEquals(1, entry.viewReferenceStack().getCount());
+        assertTrue(ItemStack.isSameItemSameComponents(entry.viewReferenceStack(), entry.getReferenceStack()));
+    }
 }
@@ -6,8 +6,10 @@ import net.minecraft.core.RegistryAccess;
 import net.minecraft.core.component.DataComponents;
 import net.minecraft.core.registries.BuiltInRegistries;
 import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
 import net.minecraft.network.chat.Component;
 import net.minecraft.server.Bootstrap;
+import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.item.Items;
 import org.junit.jupiter.api.BeforeAll;
@@ -45,8 +47,9 @@ class InfiniteInventorySerializerTest {
         CompoundTag tag = InfiniteInventorySerializer.serialize(inventory, registryAccess);
 
         assertNotNull(tag);
-        assertEquals(1, tag.getInt("Version").orElse(0));
-        assertTrue(tag.contains("Items"));
+        assertEquals(InfiniteInventorySerializer.VERSION, tag.getInt("Version").orElse(0));
+        assertTrue(tag.contains("ItemIds"));
+        assertTrue(tag.contains("Entries"));
     }
 
     @Test
@@ -54,7 +57,7 @@ class InfiniteInventorySerializerTest {
         CompoundTag tag = InfiniteInventorySerializer.serialize(null, registryAccess);
 
         assertNotNull(tag);
-        assertEquals(1, tag.getInt("Version").orElse(0));
+        assertEquals(InfiniteInventorySerializer.VERSION, tag.getInt("Version").orElse(0));
     }
 
     @Test
@@ -65,7 +68,7 @@ class InfiniteInventorySerializerTest {
         CompoundTag tag = InfiniteInventorySerializer.serialize(inventory, registryAccess);
 
         assertNotNull(tag);
-        assertEquals(2, tag.getList("Items").orElseThrow().size());
+        assertEquals(2, tag.getList("ItemIds").orElseThrow().size());
     }
 
     // === deserialize Tests ===
@@ -262,6 +265,157 @@ class InfiniteInventorySerializerTest {
         assertNull(entry);
     }
 
+    @Test
+    void readEntry_withComponents_resolvesCanonicalKey() {
+        ItemStack stack = new ItemStack(Items.DIAMOND_SWORD, 1);
+        stack.set(DataComponents.CUSTOM_NAME, Component.literal("Lazy"));
+        CompoundTag tag = InfiniteInventorySerializer.writeEntry(new InfiniteInventoryEntry(stack, 3), registryAccess);
+
+        InfiniteInventoryEntry restored = InfiniteInventorySerializer.readEntry(tag, registryAccess);
+
+        assertNotNull(restored);
+        assertSame(ItemStackKey.of(stack), restored.getKey());
+    }
+
+    @Test
+    void readEntry_withUnknownItemId_returnsNull() {
+        CompoundTag stackTag = new CompoundTag();
+        stackTag.putString("id", "notamod:missing_item");
+        stackTag.putInt("count", 1);
+        CompoundTag tag = new CompoundTag();
+        tag.put("Stack", stackTag);
+        tag.putLong("Count", 5);
+
+        assertNull(InfiniteInventorySerializer.readEntry(tag, registryAccess));
+    }
+
+    @Test
+    void roundTrip_damagedVariants_writesOneHistogramEntry() {
+        for (int damage = 1; damage <= 20; damage++) {
+            ItemStack bow = new ItemStack(Items.BOW);
+            bow.setDamageValue(damage);
+            inventory.addItem(bow, damage);
+        }
+
+        CompoundTag tag = InfiniteInventorySerializer.serialize(inventory, registryAccess);
+        InfiniteInventory restored = InfiniteInventorySerializer.deserialize(tag, registryAccess);
+
+        assertEquals(1, tag.getList("ItemIds").orElseThrow().size());
+        assertEquals(20, restored.getUniqueItemCount());
+        for (int damage = 1; damage <= 20; damage++) {
+            ItemStack bow = new ItemStack(Items.BOW);
+            bow.setDamageValue(damage);
+            assertEquals(damage, restored.getCount(bow));
+        }
+    }
+
+    // === Modification tick Tests ===
+
+    @Test
+    void roundTrip_preservesLastModifiedTicks() {
+        long[] now = {1234};
+        inventory.setClock(() -> now[0]);
+        inventory.addItem(new ItemStack(Items.DIAMOND), 10);
+        now[0] = 5678;
+        ItemStack named = new ItemStack(Items.DIAMOND_SWORD);
+        named.set(DataComponents.CUSTOM_NAME, Component.literal("Tick"));
+        inventory.addItem(named, 1);
+
+        InfiniteInventory restored = InfiniteInventorySerializer.deserialize(
+                InfiniteInventorySerializer.serialize(inventory, registryAccess), registryAccess);
+
+        assertEquals(1234, restored.getLastModified(new ItemStack(Items.DIAMOND)));
+        assertEquals(5678, restored.getLastModified(named));
+    }
+
+    @Test
+    void roundTrip_preservesHistogramTicks() {
+        long[] now = {0};
+        inventory.setClock(() -> now[0]);
+        for (int damage = 1; damage <= 3; damage++) {
+            now[0] = damage * 100L;
+            ItemStack bow = new ItemStack(Items.BOW);
+            bow.setDamageValue(damage);
+            inventory.addItem(bow, 1);
+        }
+
+        InfiniteInventory restored = InfiniteInventorySerializer.deserialize(
+                InfiniteInventorySerializer.serialize(inventory, registryAccess), registryAccess);
+
+        for (int damage = 1; damage <= 3; damage++) {
+            ItemStack bow = new ItemStack(Items.BOW);
+            bow.setDamageValue(damage);
+            assertEquals(damage * 100L, restored.getLastModified(bow));
+        }
+    }
+
+    // === Version 1 migration Tests ===
+
+    /**
+     * Builds version 1 data: one CompoundTag per entry with an encoded stack and a count.
+     */
+    private static CompoundTag versionOneTag(InfiniteInventoryEntry... entries) {
+        ListTag items = new ListTag();
+        for (InfiniteInventoryEntry entry : entries) {
+            items.add(InfiniteInventorySerializer.writeEntry(entry, registryAccess));
+        }
+        CompoundTag tag = new CompoundTag();
+        tag.putInt("Version", 1);
+        tag.put("Items", items);
+        return tag;
+    }
+
+    @Test
+    void deserialize_versionOne_migratesEntries() {
+        ItemStack named = new ItemStack(Items.DIAMOND_SWORD);
+        named.set(DataComponents.CUSTOM_NAME, Component.literal("Old"));
+        CompoundTag tag = versionOneTag(
+                new InfiniteInventoryEntry(new ItemStack(Items.DIAMOND), 10),
+                new InfiniteInventoryEntry(named, 2));
+
+        InfiniteInventory restored = InfiniteInventorySerializer.deserialize(tag, registryAccess);
+
+        assertEquals(10, restored.getCount(new ItemStack(Items.DIAMOND)));
+        assertEquals(2, restored.getCount(named));
+        // Entries without a stored tick have an unknown tick
+        assertEquals(0, restored.getLastModified(new ItemStack(Items.DIAMOND)));
+    }
+
+    @Test
+    void migratedVersionOne_isSavedAsCurrentVersion() {
+        CompoundTag tag = versionOneTag(new InfiniteInventoryEntry(new ItemStack(Items.DIAMOND), 10));
+
+        CompoundTag saved = InfiniteInventorySerializer.serialize(
+                InfiniteInventorySerializer.deserialize(tag, registryAccess), registryAccess);
+
+        assertEquals(InfiniteInventorySerializer.VERSION, saved.getInt("Version").orElse(0));
+        assertFalse(saved.contains("Items"));
+        assertEquals(10, InfiniteInventorySerializer.deserialize(saved, registryAccess)
+                .getCount(new ItemStack(Items.DIAMOND)));
+    }
+
+    @Test
+    void currentVersion_isMuchSmallerThanVersionOne() {
+        for (Item item : BuiltInRegistries.ITEM) {
+            if (item != Items.AIR) {
+                inventory.addItem(new ItemStack(item), 1000);
+            }
+        }
+        for (int i = 0; i < 1000; i++) {
+            ItemStack named = new ItemStack(Items.DIAMOND_SWORD);
+            named.set(DataComponents.CUSTOM_NAME, Component.literal("Sword " + i));
+            inventory.addItem(named, 1);
+        }
+
+        CompoundTag current = InfiniteInventorySerializer.serialize(inventory, registryAccess);
+        CompoundTag versionOne = versionOneTag(inventory.getAllEntries().toArray(new InfiniteInventoryEntry[0]));
+
+        assertTrue(current.sizeInBytes() * 2 < versionOne.sizeInBytes(),
+                "v2 " + current.sizeInBytes() + " bytes, v1 " + versionOne.sizeInBytes() + " bytes");
+        assertEquals(inventory.getTotalItemCount(),
+                InfiniteInventorySerializer.deserialize(current, registryAccess).getTotalItemCount());
+    }
+
     // === Version handling Tests ===
 
     @Test
@@ -1,6 +1,8 @@
 package com.chayut.bottomlessinventory.inventory;
 
 import net.minecraft.SharedConstants;
+import net.minecraft.core.component.DataComponents;
+import net.minecraft.network.chat.Component;
 import net.minecraft.server.Bootstrap;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.item.Items;
@@ -10,7 +12,9 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.Collection;
+import java.util.List;
 
+import static com.chayut.bottomlessinventory.inventory.TestStacks.named;
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -338,4 +342,447 @@ class InfiniteInventoryTest {
         assertEquals(100, inventory.getCount(stack1));
         assertEquals(100, inventory.getCount(stack64));
     }
+
+    // === Plain vs Component Storage Tests ===
+
+    @Test
+    void plainAndNamedVariants_areStoredSeparately() {
+        ItemStack plain = new ItemStack(Items.DIAMOND, 1);
+        ItemStack named = new ItemStack(Items.DIAMOND, 1);
+        named.set(DataComponents.CUSTOM_NAME, Component.literal("Shiny"));
+
+        inventory.addItem(plain, 100);
+        inventory.addItem(named, 5);
+
+        assertEquals(100, inventory.getCount(plain));
+        assertEquals(5, inventory.getCount(named));
+        assertEquals(2, inventory.getUniqueItemCount());
+        assertEquals(105, inventory.getTotalItemCount());
+    }
+
+    @Test
+    void removeItem_namedVariant_doesNotTouchPlainCount() {
+        ItemStack plain = new ItemStack(Items.DIAMOND, 1);
+        ItemStack named = new ItemStack(Items.DIAMOND, 1);
+        named.set(DataComponents.CUSTOM_NAME, Component.literal("Shiny"));
+
+        inventory.addItem(plain, 100);
+        inventory.addItem(named, 5);
+
+        assertEquals(5, inventory.removeItem(named, 50));
+        assertEquals(100, inventory.getCount(plain));
+        assertEquals(1, inventory.getUniqueItemCount());
+    }
+
+    @Test
+    void getAllEntries_includesPlainAndComponentEntries() {
+        ItemStack named = new ItemStack(Items.DIAMOND_SWORD, 1);
+        named.set(DataComponents.CUSTOM_NAME, Component.literal("Blade"));
+
+        inventory.addItem(new ItemStack(Items.COBBLESTONE, 1), 5000);
+        inventory.addItem(named, 1);
+
+        Collection<InfiniteInventoryEntry> entries = inventory.getAllEntries();
+
+        assertEquals(2, entries.size());
+        assertTrue(entries.stream().anyMatch(e ->
+                e.getReferenceStack().is(Items.COBBLESTONE) && e.getCount() == 5000));
+        assertTrue(entries.stream().anyMatch(e ->
+                ItemStack.isSameItemSameComponents(e.getReferenceStack(), named) && e.getCount() == 1));
+    }
+
+    @Test
+    void clear_resetsPlainCounts() {
+        inventory.addItem(new ItemStack(Items.COBBLESTONE, 1), 5000);
+
+        inventory.clear();
+        inventory.addItem(new ItemStack(Items.COBBLESTONE, 1), 1);
+
+        assertEquals(1, inventory.getCount(new ItemStack(Items.COBBLESTONE)));
+        assertEquals(1, inventory.getUniqueItemCount());
+    }
+
+    @Test
+    void getAllEntries_entriesCarryCanonicalKeys() {
+        ItemStack named = new ItemStack(Items.DIAMOND_SWORD, 1);
+        named.set(DataComponents.CUSTOM_NAME, Component.literal("Keyed"));
+        inventory.addItem(named, 3);
+        inventory.addItem(new ItemStack(Items.STONE), 9);
+
+        for (InfiniteInventoryEntry entry : inventory.getAllEntries()) {
+            assertSame(ItemStackKey.of(entry.getReferenceStack()), entry.getKey());
+            assertEquals(entry.getCount(), inventory.getCount(entry.getKey()));
+        }
+    }
+
+    // === Damage Histogram Tests ===
+
+    private static ItemStack damagedBow(int damage) {
+        ItemStack stack = new ItemStack(Items.BOW);
+        stack.setDamageValue(damage);
+        return stack;
+    }
+
+    @Test
+    void damageHistograms_areOnByDefault() {
+        assertTrue(inventory.usesDamageHistograms());
+        assertFalse(new InfiniteInventory(false).usesDamageHistograms());
+    }
+
+    @Test
+    void damagedVariants_keepExactCountsPerDamage() {
+        inventory.addItem(damagedBow(10), 2);
+        inventory.addItem(damagedBow(200), 3);
+        inventory.addItem(new ItemStack(Items.BOW), 1);
+
+        assertEquals(2, inventory.getCount(damagedBow(10)));
+        assertEquals(3, inventory.getCount(damagedBow(200)));
+        assertEquals(1, inventory.getCount(new ItemStack(Items.BOW)));
+        assertEquals(0, inventory.getCount(damagedBow(11)));
+        assertEquals(3, inventory.getUniqueItemCount());
+        assertEquals(6, inventory.getTotalItemCount());
+    }
+
+    @Test
+    void damagedVariants_canBeRemoved() {
+        inventory.addItem(damagedBow(10), 2);
+        inventory.addItem(damagedBow(20), 1);
+
+        assertEquals(2, inventory.removeItem(damagedBow(10), 5));
+        assertEquals(1, inventory.removeItem(damagedBow(20), 1));
+
+        assertTrue(inventory.isEmpty());
+        assertFalse(inventory.getAllEntries().iterator().hasNext());
+    }
+
+    @Test
+    void damagedVariants_areListedByGetAllEntries() {
+        for (int damage = 1; damage <= 50; damage++) {
+            inventory.addItem(damagedBow(damage), damage);
+        }
+        inventory.addItem(new ItemStack(Items.STONE), 9);
+
+        Collection<InfiniteInventoryEntry> entries = inventory.getAllEntries();
+
+        assertEquals(51, entries.size());
+        assertEquals(51, entries.stream().count());
+        for (InfiniteInventoryEntry entry : entries) {
+            assertSame(ItemStackKey.of(entry.getReferenceStack()), entry.getKey());
+            assertEquals(entry.getCount(), inventory.getCount(entry.getReferenceStack()));
+        }
+    }
+
+    @Test
+    void damagedVariants_shareOneIndexedKey() {
+        for (int damage = 1; damage <= 50; damage++) {
+            inventory.addItem(damagedBow(damage), 1);
+        }
+
+        assertEquals(50, inventory.getVariants(Items.BOW).size());
+        assertEquals(50, inventory.getCountAnyVariant(Items.BOW));
+        assertEquals(50, inventory.getEntriesByNamespace("minecraft").size());
+    }
+
+    @Test
+    void damagedVariants_matchInventoryWithoutHistograms() {
+        InfiniteInventory flat = new InfiniteInventory(false);
+        for (int damage = 0; damage < 30; damage++) {
+            inventory.addItem(damagedBow(damage), damage + 1);
+            flat.addItem(damagedBow(damage), damage + 1);
+        }
+        inventory.removeItem(damagedBow(5), 3);
+        flat.removeItem(damagedBow(5), 3);
+
+        assertEquals(flat.getUniqueItemCount(), inventory.getUniqueItemCount());
+        assertEquals(flat.getTotalItemCount(), inventory.getTotalItemCount());
+        for (InfiniteInventoryEntry entry : flat.getAllEntries()) {
+            assertEquals(entry.getCount(), inventory.getCount(entry.getReferenceStack()));
+        }
+    }
+
+    // === Cold storage Tests ===
+
+    @Test
+    void spillColdEntries_movesVariantsOlderThanCutoff() {
+        long[] now = {100};
+        inventory.setClock(() -> now[0]);
+        inventory.addItem(named("old"), 2);
+        inventory.addItem(new ItemStack(Items.DIAMOND), 64);
+        now[0] = 500;
+        inventory.addItem(named("new"), 3);
+
+        InfiniteInventory cold = new InfiniteInventory();
+        int spilled = inventory.spillColdEntries(cold, 200, 0);
+
+        assertEquals(1, spilled);
+        assertEquals(0, inventory.getCount(named("old")));
+        assertEquals(3, inventory.getCount(named("new")));
+        assertEquals(2, cold.getCount(named("old")));
+        assertEquals(100, cold.getLastModified(named("old")));
+    }
+
+    @Test
+    void spillColdEntries_neverMovesPlainStacks() {
+        inventory.setClock(() -> 1);
+        inventory.addItem(new ItemStack(Items.DIAMOND), 64);
+
+        InfiniteInventory cold = new InfiniteInventory();
+        inventory.spillColdEntries(cold, Long.MAX_VALUE, 0);
+
+        assertEquals(64, inventory.getCount(new ItemStack(Items.DIAMOND)));
+        assertTrue(cold.isEmpty());
+    }
+
+    @Test
+    void spillColdEntries_keepsAtMostMaxHotVariants() {
+        long[] now = {0};
+        inventory.setClock(() -> now[0]);
+        for (int i = 1; i <= 10; i++) {
+            now[0] = i;
+            inventory.addItem(named("sword " + i), 1);
+        }
+
+        InfiniteInventory cold = new InfiniteInventory();
+        int spilled = inventory.spillColdEntries(cold, Long.MIN_VALUE, 4);
+
+        assertEquals(6, spilled);
+        assertEquals(4, inventory.getUniqueItemCount());
+        // The least recently modified variants go first
+        for (int i = 1; i <= 6; i++) {
+            assertEquals(1, cold.getCount(named("sword " + i)));
+        }
+        for (int i = 7; i <= 10; i++) {
+            assertEquals(1, inventory.getCount(named("sword " + i)));
+        }
+    }
+
+    @Test
+    void spillColdEntries_stampsUnknownTicksInsteadOfSpilling() {
+        inventory.addWithTick(ItemStackKey.of(named("legacy")), 1, 0);
+        inventory.setClock(() -> 1000);
+
+        int spilled = inventory.spillColdEntries(new InfiniteInventory(), 500, 0);
+
+        assertEquals(0, spilled);
+        assertEquals(1000, inventory.getLastModified(named("legacy")));
+    }
+
+    @Test
+    void spillColdEntries_movesDamagedVariants() {
+        inventory.setClock(() -> 10);
+        inventory.addItem(damagedBow(5), 2);
+
+        InfiniteInventory cold = new InfiniteInventory();
+        inventory.spillColdEntries(cold, 20, 0);
+
+        assertEquals(0, inventory.getCount(damagedBow(5)));
+        assertEquals(2, cold.getCount(damagedBow(5)));
+        assertEquals(10, cold.getLastModified(damagedBow(5)));
+    }
+
+    @Test
+    void mergeColdEntries_addsCountsAndKeepsLaterTick() {
+        InfiniteInventory cold = new InfiniteInventory();
+        cold.setClock(() -> 100);
+        cold.addItem(named("shared"), 2);
+        cold.addItem(named("cold only"), 1);
+        inventory.setClock(() -> 300);
+        inventory.addItem(named("shared"), 5);
+
+        int merged = inventory.mergeColdEntries(cold);
+
+        assertEquals(2, merged);
+        assertEquals(7, inventory.getCount(named("shared")));
+        assertEquals(300, inventory.getLastModified(named("shared")));
+        assertEquals(1, inventory.getCount(named("cold only")));
+        assertEquals(100, inventory.getLastModified(named("cold only")));
+        assertTrue(cold.isEmpty());
+    }
+
+    @Test
+    void mergeColdEntries_ofItem_leavesOtherItems() {
+        InfiniteInventory cold = new InfiniteInventory();
+        cold.addItem(named("cold"), 2);
+        ItemStack namedBow = new ItemStack(Items.BOW);
+        namedBow.set(DataComponents.CUSTOM_NAME, Component.literal("cold"));
+        cold.addItem(namedBow, 1);
+
+        assertEquals(1, inventory.mergeColdEntries(cold, Items.DIAMOND_SWORD));
+
+        assertEquals(2, inventory.getCount(named("cold")));
+        assertEquals(0, inventory.getCount(namedBow));
+        assertEquals(1, cold.getUniqueItemCount());
+        assertEquals(0, cold.getCount(named("cold")));
+    }
+
+    @Test
+    void mergeColdEntries_ignoresQuota() {
+        inventory.setQuota(new StorageQuota(1, 0, 0));
+        inventory.addItem(new ItemStack(Items.DIAMOND), 1);
+        InfiniteInventory cold = new InfiniteInventory();
+        cold.addItem(named("cold"), 1);
+
+        inventory.mergeColdEntries(cold);
+
+        assertEquals(1, inventory.getCount(named("cold")));
+    }
+
+    // === Cold tier Tests ===
+
+    private InfiniteInventory spillAll() {
+        InfiniteInventory cold = new InfiniteInventory();
+        inventory.setClock(() -> 1000);
+        inventory.spillColdEntries(cold, Long.MAX_VALUE, 0);
+        inventory.setColdTier(new InventoryColdTier(inventory, cold));
+        return cold;
+    }
+
+    @Test
+    void getCount_pagesInColdVariantOnMiss() {
+        inventory.setClock(() -> 10);
+        inventory.addItem(named("old"), 2);
+        InfiniteInventory cold = spillAll();
+
+        assertEquals(2, inventory.getCount(named("old")));
+        assertTrue(cold.isEmpty());
+    }
+
+    @Test
+    void getCount_pagesInOnlyThatItem() {
+        inventory.setClock(() -> 10);
+        inventory.addItem(named("old"), 2);
+        inventory.addItem(named("older"), 1);
+        ItemStack namedBow = new ItemStack(Items.BOW);
+        namedBow.set(DataComponents.CUSTOM_NAME, Component.literal("old"));
+        inventory.addItem(namedBow, 1);
+        InfiniteInventory cold = spillAll();
+
+        assertEquals(2, inventory.getCount(named("old")));
+
+        // Every variant of the item comes back, and the other item stays cold
+        assertEquals(1, inventory.getCount(named("older")));
+        assertEquals(1, cold.getUniqueItemCount());
+        assertEquals(1, cold.getCount(namedBow));
+    }
+
+    @Test
+    void getCount_ofPlainStack_doesNotPageIn() {
+        inventory.setClock(() -> 10);
+        inventory.addItem(named("old"), 2);
+        InfiniteInventory cold = spillAll();
+
+        assertEquals(0, inventory.getCount(new ItemStack(Items.DIAMOND_SWORD)));
+        assertEquals(1, cold.getUniqueItemCount());
+    }
+
+    @Test
+    void getCount_ofOtherItem_doesNotPageIn() {
+        inventory.setClock(() -> 10);
+        inventory.addItem(named("old"), 2);
+        InfiniteInventory cold = spillAll();
+        ItemStack namedBow = new ItemStack(Items.BOW);
+        namedBow.set(DataComponents.CUSTOM_NAME, Component.literal("old"));
+
+        assertEquals(0, inventory.getCount(namedBow));
+        assertEquals(1, cold.getUniqueItemCount());
+    }
+
+    @Test
+    void getCountAnyVariant_leavesColdVariantsOut() {
+        inventory.setClock(() -> 10);
+        inventory.addItem(named("old"), 2);
+        inventory.addItem(new ItemStack(Items.DIAMOND_SWORD), 1);
+        InfiniteInventory cold = spillAll();
+
+        assertEquals(1, inventory.getCountAnyVariant(Items.DIAMOND_SWORD));
+        assertEquals(1, cold.getUniqueItemCount());
+    }
+
+    @Test
+    void queriesOverManyEntries_doNotPageIn() {
+        inventory.setClock(() -> 10);
+        inventory.addItem(named("old"), 2);
+        InfiniteInventory cold = spillAll();
+
+        assertTrue(inventory.getTopByCount(10).isEmpty());
+        assertTrue(inventory.getVariants(Items.DIAMOND_SWORD).isEmpty());
+        assertTrue(inventory.getEntriesByNamespace("minecraft").isEmpty());
+        assertEquals(1, cold.getUniqueItemCount());
+    }
+
+    @Test
+    void removeItem_pagesInColdVariant() {
+        inventory.setClock(() -> 10);
+        inventory.addItem(named("old"), 2);
+        spillAll();
+
+        assertEquals(2, inventory.removeItem(named("old"), 5));
+        assertTrue(inventory.isEmpty());
+    }
+
+    @Test
+    void apply_batchRemoval_pagesInColdVariant() {
+        inventory.setClock(() -> 10);
+        inventory.addItem(named("old"), 3);
+        InfiniteInventory cold = spillAll();
+
+        List<InventoryChange> changes = inventory.apply(new InventoryBatch().remove(named("old"), 2));
+
+        assertEquals(1, changes.size());
+        assertEquals(3, changes.get(0).oldCount());
+        assertEquals(1, changes.get(0).newCount());
+        assertEquals(1, inventory.getCount(named("old")));
+        assertTrue(cold.isEmpty());
+    }
+
+    @Test
+    void addItem_toColdVariant_pagesInFirst() {
+        inventory.setClock(() -> 10);
+        inventory.addItem(named("old"), 2);
+        InfiniteInventory cold = spillAll();
+        ChangeJournal journal = inventory.openJournalExcludingColdMoves();
+
+        assertTrue(inventory.addItem(named("old"), 3));
+
+        assertTrue(cold.isEmpty());
+        assertEquals(5, inventory.getCount(named("old")));
+        // The journal sees the whole count, not just what was added while the rest was cold
+        List<InventoryChange> changes = journal.drain();
+        assertEquals(1, changes.size());
+        assertEquals(2, changes.get(0).oldCount());
+        assertEquals(5, changes.get(0).newCount());
+    }
+
+    @Test
+    void journalExcludingColdMoves_seesChangesButNotSpillOrPageIn() {
+        inventory.setClock(() -> 10);
+        inventory.addItem(named("old"), 2);
+        ChangeJournal journal = inventory.openJournalExcludingColdMoves();
+        ChangeJournal all = inventory.openJournal();
+        spillAll();
+
+        assertEquals(2, inventory.getCount(named("old")));
+        assertFalse(journal.hasChanges());
+        assertEquals(1, all.drain().size());
+
+        inventory.removeItem(named("old"), 1);
+        List<InventoryChange> changes = journal.drain();
+        assertEquals(1, changes.size());
+        assertEquals(2, changes.get(0).oldCount());
+        assertEquals(1, changes.get(0).newCount());
+    }
+
+    @Test
+    void rollback_keepsEntriesPagedInDuringTransaction() {
+        inventory.setClock(() -> 10);
+        inventory.addItem(named("old"), 3);
+        spillAll();
+
+        try (InventoryTransaction tx = inventory.beginTransaction()) {
+            assertEquals(1, tx.remove(named("old"), 1));
+        }
+
+        assertEquals(3, inventory.getCount(named("old")));
+        assertEquals(10, inventory.getLastModified(named("old")));
+    }
 }
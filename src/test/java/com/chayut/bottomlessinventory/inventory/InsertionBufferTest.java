@@ -0,0 +1,168 @@
+package com.chayut.bottomlessinventory.inventory;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.chayut.bottomlessinventory.inventory.TestStacks.named;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for InsertionBuffer.
+ */
+class InsertionBufferTest {
+
+    @BeforeAll
+    static void setupMinecraft() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+    }
+
+    private InfiniteInventory inventory;
+    private InsertionBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        inventory = new InfiniteInventory();
+        buffer = new InsertionBuffer(inventory);
+    }
+
+    @Test
+    void constructor_withNullInventory_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> new InsertionBuffer(null));
+    }
+
+    @Test
+    void offer_isNotVisibleUntilMerged() {
+        buffer.offer(new ItemStack(Items.COBBLESTONE), 5);
+
+        assertEquals(0, inventory.getCount(new ItemStack(Items.COBBLESTONE)));
+        assertEquals(5, buffer.getPendingCount(ItemStackKey.of(new ItemStack(Items.COBBLESTONE))));
+        assertFalse(buffer.isEmpty());
+    }
+
+    @Test
+    void offer_invalidInput_acceptsNothing() {
+        assertEquals(0, buffer.offer(ItemStack.EMPTY, 5));
+        assertEquals(0, buffer.offer(null, 5));
+        assertEquals(0, buffer.offer(new ItemStack(Items.COBBLESTONE), 0));
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    void merge_appliesManyOffersAsOneChangePerType() {
+        for (int i = 0; i < 1000; i++) {
+            buffer.offer(new ItemStack(Items.COBBLESTONE), 1);
+            buffer.offer(named("Loot"), 1);
+        }
+        ChangeJournal journal = inventory.openJournal();
+
+        List<InventoryChange> changes = buffer.merge();
+
+        assertEquals(2, changes.size());
+        assertEquals(2, journal.drain().size());
+        assertEquals(1000, inventory.getCount(new ItemStack(Items.COBBLESTONE)));
+        assertEquals(1000, inventory.getCount(named("Loot")));
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, buffer.getPendingItemCount());
+    }
+
+    @Test
+    void merge_addsToStoredCounts() {
+        inventory.addItem(new ItemStack(Items.COBBLESTONE), 10);
+        buffer.offer(new ItemStack(Items.COBBLESTONE), 5);
+
+        List<InventoryChange> changes = buffer.merge();
+
+        assertEquals(1, changes.size());
+        assertEquals(10, changes.get(0).oldCount());
+        assertEquals(15, changes.get(0).newCount());
+    }
+
+    @Test
+    void merge_whenEmpty_changesNothing() {
+        assertTrue(buffer.merge().isEmpty());
+    }
+
+    @Test
+    void offer_saturatesAtMaxValue() {
+        buffer.offer(new ItemStack(Items.COBBLESTONE), Long.MAX_VALUE);
+        buffer.offer(new ItemStack(Items.COBBLESTONE), Long.MAX_VALUE);
+
+        buffer.merge();
+
+        assertEquals(Long.MAX_VALUE, inventory.getCount(new ItemStack(Items.COBBLESTONE)));
+    }
+
+    @Test
+    void offer_countsPendingItemsTowardTotalQuota() {
+        inventory.setQuota(new StorageQuota(0, 100, 0));
+        inventory.addItem(new ItemStack(Items.COBBLESTONE), 60);
+
+        assertEquals(30, buffer.offer(new ItemStack(Items.DIRT), 30));
+        assertEquals(10, buffer.offer(new ItemStack(Items.STONE), 30));
+        assertEquals(0, buffer.offer(new ItemStack(Items.DIRT), 1));
+
+        buffer.merge();
+        assertEquals(100, inventory.getTotalItemCount());
+    }
+
+    @Test
+    void offer_countsPendingVariantsTowardUniqueQuota() {
+        inventory.setQuota(new StorageQuota(2, 0, 0));
+        inventory.addItem(new ItemStack(Items.COBBLESTONE), 1);
+
+        assertEquals(1, buffer.offer(named("first"), 1));
+        assertEquals(0, buffer.offer(named("second"), 1));
+        // A variant that is already pending is not new
+        assertEquals(1, buffer.offer(named("first"), 1));
+
+        buffer.merge();
+        assertEquals(2, inventory.getUniqueItemCount());
+    }
+
+    @Test
+    void addItem_betweenOfferAndMerge_leavesRoomForPendingItems() {
+        inventory.setQuota(new StorageQuota(0, 100, 0));
+        assertEquals(60, buffer.offer(new ItemStack(Items.DIRT), 60));
+
+        // A deposit in the same tick must not take the room the pending items were given
+        assertFalse(inventory.addItem(new ItemStack(Items.STONE), 50));
+        assertEquals(40, inventory.getAcceptableCount(new ItemStack(Items.STONE), 50));
+        assertTrue(inventory.addItem(new ItemStack(Items.STONE), 40));
+
+        buffer.merge();
+        assertEquals(100, inventory.getTotalItemCount());
+    }
+
+    @Test
+    void addItem_betweenOfferAndMerge_countsPendingVariants() {
+        inventory.setQuota(new StorageQuota(1, 0, 0));
+        assertEquals(1, buffer.offer(named("first"), 1));
+
+        assertFalse(inventory.addItem(named("second"), 1));
+        // The pending variant itself is not new
+        assertTrue(inventory.addItem(named("first"), 1));
+
+        buffer.merge();
+        assertEquals(1, inventory.getUniqueItemCount());
+        assertEquals(2, inventory.getCount(named("first")));
+    }
+
+    @Test
+    void clear_discardsPendingItems() {
+        buffer.offer(new ItemStack(Items.COBBLESTONE), 5);
+
+        buffer.clear();
+
+        assertTrue(buffer.isEmpty());
+        assertTrue(buffer.merge().isEmpty());
+        assertTrue(inventory.isEmpty());
+    }
+}
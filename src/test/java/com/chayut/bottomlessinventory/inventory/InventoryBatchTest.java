@@ -0,0 +1,197 @@
+package com.chayut.bottomlessinventory.inventory;
+
+import com.chayut.bottomlessinventory.network.packets.SyncInventoryPacket;
+import net.minecraft.SharedConstants;
+import net.minecraft.core.component.DataComponents;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for InventoryBatch and InfiniteInventory.apply.
+ */
+class InventoryBatchTest {
+
+    @BeforeAll
+    static void setupMinecraft() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+    }
+
+    private InfiniteInventory inventory;
+    private InventoryBatch batch;
+
+    @BeforeEach
+    void setUp() {
+        inventory = new InfiniteInventory();
+        batch = new InventoryBatch();
+    }
+
+    @Test
+    void newBatch_isEmpty() {
+        assertTrue(batch.isEmpty());
+        assertEquals(0, batch.size());
+        assertTrue(inventory.apply(batch).isEmpty());
+    }
+
+    @Test
+    void add_duplicateItems_areMerged() {
+        batch.add(new ItemStack(Items.DIAMOND, 64), 64)
+                .add(new ItemStack(Items.DIAMOND, 32), 32)
+                .add(new ItemStack(Items.COBBLESTONE, 64), 64);
+
+        assertEquals(2, batch.size());
+
+        List<InventoryChange> changes = inventory.apply(batch);
+
+        assertEquals(2, changes.size());
+        assertEquals(96, inventory.getCount(new ItemStack(Items.DIAMOND)));
+        assertEquals(64, inventory.getCount(new ItemStack(Items.COBBLESTONE)));
+    }
+
+    @Test
+    void add_emptyOrNonPositive_isIgnored() {
+        batch.add(ItemStack.EMPTY, 10)
+                .add(null, 10)
+                .add(new ItemStack(Items.DIAMOND), 0)
+                .remove(new ItemStack(Items.DIAMOND), -5);
+
+        assertTrue(batch.isEmpty());
+    }
+
+    @Test
+    void componentVariants_areKeptSeparate() {
+        ItemStack named = new ItemStack(Items.DIAMOND_SWORD);
+        named.set(DataComponents.CUSTOM_NAME, Component.literal("Excalibur"));
+
+        batch.add(new ItemStack(Items.DIAMOND_SWORD), 1).add(named, 2);
+        inventory.apply(batch);
+
+        assertEquals(1, inventory.getCount(new ItemStack(Items.DIAMOND_SWORD)));
+        assertEquals(2, inventory.getCount(named));
+    }
+
+    @Test
+    void apply_reportsOldAndNewCounts() {
+        inventory.addItem(new ItemStack(Items.DIAMOND), 10);
+
+        batch.add(new ItemStack(Items.DIAMOND), 5);
+        List<InventoryChange> changes = inventory.apply(batch);
+
+        assertEquals(1, changes.size());
+        assertEquals(ItemStackKey.plain(Items.DIAMOND), changes.get(0).key());
+        assertEquals(10, changes.get(0).oldCount());
+        assertEquals(15, changes.get(0).newCount());
+    }
+
+    @Test
+    void remove_isClampedToStoredCount() {
+        inventory.addItem(new ItemStack(Items.DIAMOND), 10);
+
+        batch.remove(new ItemStack(Items.DIAMOND), 25);
+        List<InventoryChange> changes = inventory.apply(batch);
+
+        assertEquals(1, changes.size());
+        assertTrue(changes.get(0).isRemoval());
+        assertFalse(inventory.contains(new ItemStack(Items.DIAMOND)));
+    }
+
+    @Test
+    void remove_canUseItemsAddedInSameBatch() {
+        batch.remove(new ItemStack(Items.DIAMOND), 4).add(new ItemStack(Items.DIAMOND), 10);
+
+        inventory.apply(batch);
+
+        assertEquals(6, inventory.getCount(new ItemStack(Items.DIAMOND)));
+    }
+
+    @Test
+    void netNoOp_isNotReported() {
+        inventory.addItem(new ItemStack(Items.DIAMOND), 10);
+
+        batch.add(new ItemStack(Items.DIAMOND), 5).remove(new ItemStack(Items.DIAMOND), 5);
+        batch.remove(new ItemStack(Items.GOLD_INGOT), 5);
+
+        assertTrue(inventory.apply(batch).isEmpty());
+        assertEquals(10, inventory.getCount(new ItemStack(Items.DIAMOND)));
+    }
+
+    @Test
+    void add_saturatesAtMaxValue() {
+        inventory.addItem(new ItemStack(Items.DIAMOND), Long.MAX_VALUE - 1);
+
+        batch.add(new ItemStack(Items.DIAMOND), Long.MAX_VALUE).add(new ItemStack(Items.DIAMOND), 10);
+        inventory.apply(batch);
+
+        assertEquals(Long.MAX_VALUE, inventory.getCount(new ItemStack(Items.DIAMOND)));
+    }
+
+    @Test
+    void apply_updatesStatsAndJournals() {
+        ChangeJournal journal = inventory.openJournal();
+
+        batch.add(new ItemStack(Items.DIAMOND), 10).add(new ItemStack(Items.GOLD_INGOT), 5);
+        inventory.apply(batch);
+
+        assertEquals(15, inventory.getTotalItemCount());
+        assertEquals(2, inventory.getUniqueItemCount());
+        assertEquals(2, journal.drain().size());
+    }
+
+    @Test
+    void apply_capsAdditionsByQuota() {
+        inventory.setQuota(new StorageQuota(2, 10, 0));
+        ItemStack named = new ItemStack(Items.DIAMOND_SWORD);
+        named.set(DataComponents.CUSTOM_NAME, Component.literal("Over the cap"));
+
+        batch.add(new ItemStack(Items.DIAMOND), 8).add(new ItemStack(Items.GOLD_INGOT), 8).add(named, 1);
+        List<InventoryChange> changes = inventory.apply(batch);
+
+        assertEquals(2, changes.size());
+        assertEquals(8, inventory.getCount(new ItemStack(Items.DIAMOND)));
+        assertEquals(2, inventory.getCount(new ItemStack(Items.GOLD_INGOT)));
+        assertEquals(0, inventory.getCount(named));
+    }
+
+    @Test
+    void apply_removalsAreNotLimitedByQuota() {
+        inventory.addItem(new ItemStack(Items.DIAMOND), 10);
+        inventory.setQuota(new StorageQuota(1, 5, 0));
+
+        batch.remove(new ItemStack(Items.DIAMOND), 7);
+        inventory.apply(batch);
+
+        assertEquals(3, inventory.getCount(new ItemStack(Items.DIAMOND)));
+    }
+
+    @Test
+    void apply_resultFitsOneIncrementalPacket() {
+        batch.add(new ItemStack(Items.DIAMOND), 10).add(new ItemStack(Items.GOLD_INGOT), 5);
+
+        SyncInventoryPacket packet = SyncInventoryPacket.fromChanges(inventory.apply(batch));
+
+        assertEquals(SyncInventoryPacket.SyncType.INCREMENTAL, packet.syncType());
+        assertEquals(2, packet.getEntryCount());
+    }
+
+    @Test
+    void clear_allowsReuse() {
+        batch.add(new ItemStack(Items.DIAMOND), 10);
+        inventory.apply(batch);
+
+        batch.clear();
+        batch.add(new ItemStack(Items.DIAMOND), 1);
+        inventory.apply(batch);
+
+        assertEquals(1, batch.size());
+        assertEquals(11, inventory.getCount(new ItemStack(Items.DIAMOND)));
+    }
+}
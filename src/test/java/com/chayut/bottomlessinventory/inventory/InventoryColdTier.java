@@ -0,0 +1,45 @@
+package com.chayut.bottomlessinventory.inventory;
+
+import net.minecraft.world.item.Item;
+
+/**
+ * A cold tier backed by another inventory, paged in item by item with mergeColdEntries.
+ */
+final class InventoryColdTier implements ColdTier {
+    private final InfiniteInventory inventory;
+    private final InfiniteInventory cold;
+
+    /**
+     * @param inventory The inventory the tier belongs to
+     * @param cold The inventory holding the spilled entries
+     */
+    InventoryColdTier(InfiniteInventory inventory, InfiniteInventory cold) {
+        this.inventory = inventory;
+        this.cold = cold;
+    }
+
+    @Override
+    public int getVariantCount() {
+        return cold.getUniqueItemCount();
+    }
+
+    @Override
+    public long getItemCount() {
+        return cold.getTotalItemCount();
+    }
+
+    @Override
+    public long getEstimatedBytes() {
+        return cold.estimateMemory().totalBytes();
+    }
+
+    @Override
+    public boolean mayContain(Item item) {
+        return cold.getStoredItems().contains(item);
+    }
+
+    @Override
+    public int pageIn(Item item) {
+        return inventory.mergeColdEntries(cold, item);
+    }
+}
@@ -0,0 +1,245 @@
+package com.chayut.bottomlessinventory.inventory;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.core.component.DataComponents;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.tags.ItemTags;
+import net.minecraft.tags.TagKey;
+import net.minecraft.world.item.CreativeModeTab;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the secondary indexes behind InfiniteInventory's filtered views.
+ * Filtered views must always match a brute-force scan of getAllEntries().
+ */
+class InventoryIndexTest {
+
+    @BeforeAll
+    static void setupMinecraft() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+    }
+
+    private InfiniteInventory inventory;
+
+    @BeforeEach
+    void setUp() {
+        inventory = new InfiniteInventory();
+        inventory.addItem(new ItemStack(Items.OAK_LOG), 64);
+        inventory.addItem(new ItemStack(Items.BIRCH_LOG), 32);
+        inventory.addItem(new ItemStack(Items.OAK_PLANKS), 16);
+        inventory.addItem(new ItemStack(Items.DIAMOND), 5);
+        ItemStack named = new ItemStack(Items.DIAMOND_SWORD);
+        named.set(DataComponents.CUSTOM_NAME, Component.literal("Excalibur"));
+        inventory.addItem(named, 1);
+    }
+
+    private static Set<ItemStackKey> keys(Iterable<InfiniteInventoryEntry> entries) {
+        Set<ItemStackKey> keys = new HashSet<>();
+        entries.forEach(entry -> keys.add(entry.getKey()));
+        return keys;
+    }
+
+    private Set<ItemStackKey> scanNamespace(String namespace) {
+        return inventory.getAllEntries().stream()
+                .filter(entry -> BuiltInRegistries.ITEM.getKey(entry.getKey().getItem()).getNamespace().equals(namespace))
+                .map(InfiniteInventoryEntry::getKey)
+                .collect(Collectors.toSet());
+    }
+
+    private Set<ItemStackKey> scanTag(TagKey<Item> tag) {
+        return inventory.getAllEntries().stream()
+                .filter(entry -> entry.getReferenceStack().is(tag))
+                .map(InfiniteInventoryEntry::getKey)
+                .collect(Collectors.toSet());
+    }
+
+    @Test
+    void namespaceView_matchesScan() {
+        assertEquals(5, inventory.getEntriesByNamespace("minecraft").size());
+        assertEquals(scanNamespace("minecraft"), keys(inventory.getEntriesByNamespace("minecraft")));
+        assertTrue(inventory.getEntriesByNamespace("othermod").isEmpty());
+    }
+
+    @Test
+    void namespaceView_reportsCurrentCounts() {
+        inventory.addItem(new ItemStack(Items.DIAMOND), 10);
+
+        long diamonds = inventory.getEntriesByNamespace("minecraft").stream()
+                .filter(entry -> entry.getKey().getItem() == Items.DIAMOND)
+                .mapToLong(InfiniteInventoryEntry::getCount)
+                .sum();
+
+        assertEquals(15, diamonds);
+    }
+
+    @Test
+    void namespaceView_followsRemovalsAndClear() {
+        inventory.removeItem(new ItemStack(Items.DIAMOND), 5);
+        assertEquals(4, inventory.getEntriesByNamespace("minecraft").size());
+
+        inventory.clear();
+        assertTrue(inventory.getEntriesByNamespace("minecraft").isEmpty());
+    }
+
+    @Test
+    void tagViews_matchScan() {
+        for (TagKey<Item> tag : List.of(ItemTags.LOGS, ItemTags.PLANKS, ItemTags.SWORDS)) {
+            assertEquals(scanTag(tag), keys(inventory.getEntriesByTag(tag)), tag.toString());
+        }
+    }
+
+    @Test
+    void tagViews_matchScanAfterInvalidation() {
+        InventoryIndex.invalidateTags();
+        inventory.removeItem(new ItemStack(Items.OAK_LOG), 64);
+        inventory.addItem(new ItemStack(Items.SPRUCE_LOG), 8);
+
+        assertEquals(scanTag(ItemTags.LOGS), keys(inventory.getEntriesByTag(ItemTags.LOGS)));
+
+        inventory.addItem(new ItemStack(Items.JUNGLE_LOG), 8);
+        assertEquals(scanTag(ItemTags.LOGS), keys(inventory.getEntriesByTag(ItemTags.LOGS)));
+    }
+
+    private long scanTagTotal(TagKey<Item> tag) {
+        return inventory.getAllEntries().stream()
+                .filter(entry -> entry.getReferenceStack().is(tag))
+                .mapToLong(InfiniteInventoryEntry::getCount)
+                .sum();
+    }
+
+    @Test
+    void countByTag_matchesScan() {
+        for (TagKey<Item> tag : List.of(ItemTags.LOGS, ItemTags.PLANKS, ItemTags.SWORDS, ItemTags.WOOL)) {
+            assertEquals(scanTagTotal(tag), inventory.getCountByTag(tag), tag.toString());
+        }
+    }
+
+    @Test
+    void countByTag_followsEveryChange() {
+        inventory.addItem(new ItemStack(Items.OAK_LOG), 10);
+        inventory.removeItem(new ItemStack(Items.BIRCH_LOG), 30);
+        inventory.addItem(new ItemStack(Items.SPRUCE_LOG), 7);
+        inventory.removeItem(new ItemStack(Items.SPRUCE_LOG), 7);
+
+        assertEquals(scanTagTotal(ItemTags.LOGS), inventory.getCountByTag(ItemTags.LOGS));
+
+        inventory.clear();
+        assertEquals(0, inventory.getCountByTag(ItemTags.LOGS));
+    }
+
+    @Test
+    void countByTag_matchesScanAfterInvalidation() {
+        InventoryIndex.invalidateTags();
+        inventory.addItem(new ItemStack(Items.OAK_LOG), 1);
+
+        assertEquals(scanTagTotal(ItemTags.LOGS), inventory.getCountByTag(ItemTags.LOGS));
+
+        inventory.addItem(new ItemStack(Items.OAK_LOG), 1);
+        assertEquals(scanTagTotal(ItemTags.LOGS), inventory.getCountByTag(ItemTags.LOGS));
+    }
+
+    @Test
+    void countsByTag_bulkMatchesSingleQueries() {
+        List<TagKey<Item>> tags = List.of(ItemTags.LOGS, ItemTags.PLANKS, ItemTags.SWORDS);
+
+        Map<TagKey<Item>, Long> totals = inventory.getCountsByTag(tags);
+
+        assertEquals(tags, List.copyOf(totals.keySet()));
+        for (TagKey<Item> tag : tags) {
+            assertEquals(inventory.getCountByTag(tag), totals.get(tag));
+        }
+    }
+
+    @Test
+    void creativeTabViews_matchScan() {
+        for (CreativeModeTab tab : BuiltInRegistries.CREATIVE_MODE_TAB) {
+            if (tab.getType() != CreativeModeTab.Type.CATEGORY) {
+                continue;
+            }
+            Set<ItemStackKey> expected = inventory.getAllEntries().stream()
+                    .filter(entry -> tab.getDisplayItems().stream()
+                            .anyMatch(stack -> stack.getItem() == entry.getKey().getItem()))
+                    .map(InfiniteInventoryEntry::getKey)
+                    .collect(Collectors.toSet());
+
+            assertEquals(expected, keys(inventory.getEntriesByCreativeTab(tab)));
+        }
+    }
+
+    private static ItemStack damagedSword(int damage) {
+        ItemStack stack = new ItemStack(Items.DIAMOND_SWORD);
+        stack.set(DataComponents.DAMAGE, damage);
+        return stack;
+    }
+
+    @Test
+    void variants_groupAllComponentVariantsOfAnItem() {
+        inventory.addItem(new ItemStack(Items.DIAMOND_SWORD), 2);
+        inventory.addItem(damagedSword(100), 3);
+
+        assertEquals(3, inventory.getVariants(Items.DIAMOND_SWORD).size());
+        assertEquals(6, inventory.getCountAnyVariant(Items.DIAMOND_SWORD));
+        assertEquals(1, inventory.getVariants(Items.DIAMOND).size());
+        assertTrue(inventory.getVariants(Items.NETHERITE_SWORD).isEmpty());
+        assertEquals(0, inventory.getCountAnyVariant(Items.NETHERITE_SWORD));
+    }
+
+    @Test
+    void storedItems_listEachItemOnce() {
+        inventory.addItem(damagedSword(100), 3);
+
+        assertEquals(Set.of(Items.OAK_LOG, Items.BIRCH_LOG, Items.OAK_PLANKS, Items.DIAMOND, Items.DIAMOND_SWORD),
+                inventory.getStoredItems());
+
+        inventory.removeItem(new ItemStack(Items.DIAMOND), 5);
+        assertFalse(inventory.getStoredItems().contains(Items.DIAMOND));
+    }
+
+    @Test
+    void takeBestVariant_takesFromPreferredVariant() {
+        inventory.addItem(damagedSword(500), 2);
+        inventory.addItem(damagedSword(10), 2);
+        Comparator<InfiniteInventoryEntry> leastDamaged =
+                Comparator.comparingInt(entry -> -entry.getReferenceStack().getDamageValue());
+
+        InfiniteInventoryEntry taken = inventory.takeBestVariant(Items.DIAMOND_SWORD, 5, leastDamaged).orElseThrow();
+
+        // The undamaged, named sword is the least damaged variant
+        assertEquals(0, taken.getReferenceStack().getDamageValue());
+        assertEquals(1, taken.getCount());
+
+        taken = inventory.takeBestVariant(Items.DIAMOND_SWORD, 5, leastDamaged).orElseThrow();
+        assertEquals(10, taken.getReferenceStack().getDamageValue());
+        assertEquals(2, taken.getCount());
+        assertEquals(2, inventory.getCountAnyVariant(Items.DIAMOND_SWORD));
+    }
+
+    @Test
+    void takeBestVariant_withNothingStored_returnsEmpty() {
+        assertTrue(inventory.takeBestVariant(Items.NETHERITE_SWORD, 1, Comparator.comparingLong(InfiniteInventoryEntry::getCount)).isEmpty());
+        assertTrue(inventory.findBestVariant(Items.NETHERITE_SWORD, Comparator.comparingLong(InfiniteInventoryEntry::getCount)).isEmpty());
+    }
+
+    @Test
+    void filteredViews_areReadOnly() {
+        assertThrows(UnsupportedOperationException.class,
+                () -> inventory.getEntriesByNamespace("minecraft").clear());
+    }
+}
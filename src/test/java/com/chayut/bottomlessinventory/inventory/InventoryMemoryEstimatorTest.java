@@ -0,0 +1,129 @@
+package com.chayut.bottomlessinventory.inventory;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.core.component.DataComponents;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import net.minecraft.world.item.component.CustomData;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static com.chayut.bottomlessinventory.inventory.TestStacks.named;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the memory estimates of InfiniteInventory.
+ */
+class InventoryMemoryEstimatorTest {
+
+    @BeforeAll
+    static void setupMinecraft() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+    }
+
+    private InfiniteInventory inventory;
+
+    @BeforeEach
+    void setUp() {
+        inventory = new InfiniteInventory();
+    }
+
+    @Test
+    void emptyInventory_hasOnlyStorageOverhead() {
+        MemoryEstimate estimate = inventory.estimateMemory();
+
+        assertTrue(estimate.storageBytes() > 0);
+        assertEquals(0, estimate.keyBytes());
+        assertEquals(0, estimate.referenceStackBytes());
+        assertEquals(0, estimate.indexBytes());
+        assertEquals(estimate.storageBytes(), estimate.totalBytes());
+    }
+
+    @Test
+    void componentVariants_addKeyAndStackCosts() {
+        inventory.addItem(named("A"), 1);
+        inventory.addItem(named("B"), 1);
+
+        MemoryEstimate estimate = inventory.estimateMemory();
+
+        assertTrue(estimate.keyBytes() >= 2L * InventoryMemoryEstimator.KEY_BYTES);
+        assertTrue(estimate.referenceStackBytes() >= 2L * InventoryMemoryEstimator.STACK_BYTES);
+        assertEquals(2L * InventoryMemoryEstimator.INDEX_KEY_BYTES, estimate.indexBytes());
+    }
+
+    @Test
+    void removingEverything_returnsEntryCostsToZero() {
+        for (int i = 0; i < 100; i++) {
+            inventory.addItem(named("Temp " + i), 3);
+            inventory.addItem(new ItemStack(Items.STONE), 1);
+        }
+        ItemStack bow = new ItemStack(Items.BOW);
+        bow.setDamageValue(7);
+        inventory.addItem(bow, 1);
+
+        for (int i = 0; i < 100; i++) {
+            inventory.removeItem(named("Temp " + i), 3);
+        }
+        inventory.removeItem(new ItemStack(Items.STONE), 100);
+        inventory.removeItem(bow, 1);
+
+        MemoryEstimate estimate = inventory.estimateMemory();
+        assertEquals(0, estimate.keyBytes());
+        assertEquals(0, estimate.referenceStackBytes());
+        assertEquals(0, estimate.indexBytes());
+    }
+
+    @Test
+    void addingToExistingEntry_doesNotChangeEstimate() {
+        inventory.addItem(named("Same"), 1);
+        long before = inventory.estimateMemory().totalBytes();
+
+        inventory.addItem(named("Same"), 1000);
+
+        assertEquals(before, inventory.estimateMemory().totalBytes());
+    }
+
+    @Test
+    void largeCustomData_isCountedBySize() {
+        CompoundTag small = new CompoundTag();
+        small.putString("k", "v");
+        CompoundTag large = new CompoundTag();
+        large.putString("k", "v".repeat(10_000));
+
+        ItemStack smallStack = new ItemStack(Items.STONE);
+        smallStack.set(DataComponents.CUSTOM_DATA, CustomData.of(small));
+        ItemStack largeStack = new ItemStack(Items.STONE);
+        largeStack.set(DataComponents.CUSTOM_DATA, CustomData.of(large));
+
+        assertTrue(ItemStackKey.of(largeStack).getEstimatedPatchBytes()
+                > ItemStackKey.of(smallStack).getEstimatedPatchBytes() + 10_000);
+    }
+
+    @Test
+    void keyBytes_countsEncodedComponents() {
+        CompoundTag large = new CompoundTag();
+        large.putString("k", "v".repeat(10_000));
+        ItemStack stack = new ItemStack(Items.STONE);
+        stack.set(DataComponents.CUSTOM_DATA, CustomData.of(large));
+        ItemStackKey key = ItemStackKey.of(stack);
+
+        // The patch and its cached save encoding both hold the payload
+        assertTrue(InventoryMemoryEstimator.keyBytes(key)
+                > InventoryMemoryEstimator.KEY_BYTES + key.getEstimatedPatchBytes() + 10_000);
+        assertEquals(0, ItemStackKey.plain(Items.STONE).getEstimatedEncodedBytes());
+    }
+
+    @Test
+    void clear_resetsEntryCosts() {
+        inventory.addItem(named("Cleared"), 1);
+
+        inventory.clear();
+
+        assertEquals(0, inventory.estimateMemory().keyBytes());
+        assertEquals(0, inventory.estimateMemory().indexBytes());
+    }
+}
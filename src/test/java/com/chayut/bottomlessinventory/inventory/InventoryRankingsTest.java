@@ -0,0 +1,209 @@
+package com.chayut.bottomlessinventory.inventory;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static com.chayut.bottomlessinventory.inventory.TestStacks.named;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the top-by-count and recently changed rankings of InfiniteInventory.
+ */
+class InventoryRankingsTest {
+
+    @BeforeAll
+    static void setupMinecraft() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+    }
+
+    private InfiniteInventory inventory;
+
+    @BeforeEach
+    void setUp() {
+        inventory = new InfiniteInventory();
+    }
+
+    private static List<Long> counts(List<InfiniteInventoryEntry> entries) {
+        return entries.stream().map(InfiniteInventoryEntry::getCount).toList();
+    }
+
+    private List<Long> expectedTopCounts(int limit) {
+        List<Long> all = new ArrayList<>();
+        for (InfiniteInventoryEntry entry : inventory.getAllEntries()) {
+            all.add(entry.getCount());
+        }
+        all.sort(Comparator.reverseOrder());
+        return all.subList(0, Math.min(limit, all.size()));
+    }
+
+    @Test
+    void topByCount_ordersLargestFirst() {
+        inventory.addItem(new ItemStack(Items.DIRT), 10);
+        inventory.addItem(new ItemStack(Items.STONE), 500);
+        inventory.addItem(named("Note"), 42);
+
+        List<InfiniteInventoryEntry> top = inventory.getTopByCount(2);
+
+        assertEquals(List.of(500L, 42L), counts(top));
+        assertSame(ItemStackKey.plain(Items.STONE), top.get(0).getKey());
+    }
+
+    @Test
+    void topByCount_emptyInventory_isEmpty() {
+        assertTrue(inventory.getTopByCount(10).isEmpty());
+    }
+
+    @Test
+    void topByCount_afterLeaderShrinks_promotesOutsideKey() {
+        for (int i = 0; i < InventoryRankings.TOP_CAPACITY + 10; i++) {
+            inventory.addItem(named("Item " + i), i + 1);
+        }
+
+        // Drop every ranked key below the keys that were left outside the ranking
+        for (InfiniteInventoryEntry entry : inventory.getTopByCount(InventoryRankings.TOP_CAPACITY)) {
+            inventory.removeItem(entry.getReferenceStack(), entry.getCount() - 1);
+        }
+
+        assertEquals(expectedTopCounts(InventoryRankings.TOP_CAPACITY),
+                counts(inventory.getTopByCount(InventoryRankings.TOP_CAPACITY)));
+    }
+
+    @Test
+    void topByCount_randomChanges_matchFullSort() {
+        Random random = new Random(19);
+        List<ItemStack> stacks = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            stacks.add(named("Random " + i));
+        }
+
+        for (int step = 0; step < 20_000; step++) {
+            ItemStack stack = stacks.get(random.nextInt(stacks.size()));
+            if (random.nextBoolean()) {
+                inventory.addItem(stack, random.nextInt(1000) + 1);
+            } else {
+                inventory.removeItem(stack, random.nextInt(1000) + 1);
+            }
+
+            if (step % 1000 == 0) {
+                assertEquals(expectedTopCounts(20), counts(inventory.getTopByCount(20)));
+            }
+        }
+        assertEquals(expectedTopCounts(InventoryRankings.TOP_CAPACITY),
+                counts(inventory.getTopByCount(InventoryRankings.TOP_CAPACITY)));
+    }
+
+    @Test
+    void rankings_shrinkingOrRemovedMembers_doNotForceRebuild() {
+        InventoryRankings rankings = new InventoryRankings();
+        List<ItemStackKey> keys = new ArrayList<>();
+        for (int i = 0; i < InventoryRankings.TRACKED_CAPACITY + 10; i++) {
+            ItemStackKey key = ItemStackKey.of(named("Ranked " + i));
+            keys.add(key);
+            rankings.onCountChanged(key, 0, 1000 + i);
+        }
+
+        // The leader shrinks below every key outside the ranking, another one leaves
+        ItemStackKey leader = keys.get(keys.size() - 1);
+        rankings.onCountChanged(leader, 1000 + keys.size() - 1, 1);
+        rankings.onCountChanged(keys.get(keys.size() - 2), 1000 + keys.size() - 2, 0);
+
+        assertFalse(rankings.isStale(InventoryRankings.TOP_CAPACITY));
+        assertFalse(rankings.top(InventoryRankings.TOP_CAPACITY).contains(leader));
+    }
+
+    @Test
+    void rankings_whenServedMembersFallBelowBound_areStale() {
+        InventoryRankings rankings = new InventoryRankings();
+        List<ItemStackKey> keys = new ArrayList<>();
+        for (int i = 0; i < InventoryRankings.TRACKED_CAPACITY + 10; i++) {
+            ItemStackKey key = ItemStackKey.of(named("Fading " + i));
+            keys.add(key);
+            rankings.onCountChanged(key, 0, 1000 + i);
+        }
+
+        // Every tracked member drops below the keys that were left outside
+        for (int i = 10; i < keys.size(); i++) {
+            rankings.onCountChanged(keys.get(i), 1000 + i, 1);
+        }
+
+        assertTrue(rankings.isStale(1));
+    }
+
+    @Test
+    void recentlyChanged_isNewestFirstAndSkipsRemoved() {
+        inventory.addItem(new ItemStack(Items.DIRT), 1);
+        inventory.addItem(new ItemStack(Items.STONE), 1);
+        inventory.addItem(new ItemStack(Items.SAND), 1);
+        inventory.addItem(new ItemStack(Items.DIRT), 1);
+        inventory.removeItem(new ItemStack(Items.SAND), 1);
+
+        List<InfiniteInventoryEntry> recent = inventory.getRecentlyChanged(10);
+
+        assertEquals(2, recent.size());
+        assertSame(ItemStackKey.plain(Items.DIRT), recent.get(0).getKey());
+        assertSame(ItemStackKey.plain(Items.STONE), recent.get(1).getKey());
+    }
+
+    @Test
+    void recentlyChanged_isBounded() {
+        for (int i = 0; i < InventoryRankings.RECENT_CAPACITY * 2; i++) {
+            inventory.addItem(named("Recent " + i), 1);
+        }
+
+        List<InfiniteInventoryEntry> recent = inventory.getRecentlyChanged(Integer.MAX_VALUE);
+
+        assertEquals(InventoryRankings.RECENT_CAPACITY, recent.size());
+        assertEquals(ItemStackKey.of(named("Recent " + (InventoryRankings.RECENT_CAPACITY * 2 - 1))),
+                recent.get(0).getKey());
+    }
+
+    @Test
+    void lastModified_usesClock() {
+        long[] now = {100};
+        inventory.setClock(() -> now[0]);
+        ItemStack bow = new ItemStack(Items.BOW);
+        bow.setDamageValue(3);
+
+        inventory.addItem(new ItemStack(Items.DIRT), 1);
+        inventory.addItem(named("Clocked"), 1);
+        now[0] = 250;
+        inventory.addItem(bow, 1);
+        inventory.addItem(new ItemStack(Items.DIRT), 1);
+
+        assertEquals(250, inventory.getLastModified(new ItemStack(Items.DIRT)));
+        assertEquals(100, inventory.getLastModified(named("Clocked")));
+        assertEquals(250, inventory.getLastModified(bow));
+        assertEquals(0, inventory.getLastModified(new ItemStack(Items.SAND)));
+    }
+
+    @Test
+    void lastModified_defaultClockCountsChanges() {
+        inventory.addItem(new ItemStack(Items.DIRT), 1);
+        inventory.addItem(new ItemStack(Items.STONE), 1);
+
+        assertTrue(inventory.getLastModified(new ItemStack(Items.STONE))
+                > inventory.getLastModified(new ItemStack(Items.DIRT)));
+    }
+
+    @Test
+    void clear_resetsRankingsAndTicks() {
+        inventory.addItem(new ItemStack(Items.DIRT), 5);
+
+        inventory.clear();
+
+        assertTrue(inventory.getTopByCount(10).isEmpty());
+        assertTrue(inventory.getRecentlyChanged(10).isEmpty());
+        assertEquals(0, inventory.getLastModified(new ItemStack(Items.DIRT)));
+    }
+}
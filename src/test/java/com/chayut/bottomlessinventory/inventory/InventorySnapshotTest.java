@@ -0,0 +1,201 @@
+package com.chayut.bottomlessinventory.inventory;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.core.HolderLookup;
+import net.minecraft.core.RegistryAccess;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static com.chayut.bottomlessinventory.inventory.TestStacks.named;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for InventorySnapshot and the copy-on-write storage behind InfiniteInventory.snapshot().
+ */
+class InventorySnapshotTest {
+
+    private static HolderLookup.Provider registryAccess;
+
+    @BeforeAll
+    static void setupMinecraft() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+        registryAccess = RegistryAccess.fromRegistryOfRegistries(BuiltInRegistries.REGISTRY);
+    }
+
+    private InfiniteInventory inventory;
+
+    @BeforeEach
+    void setUp() {
+        inventory = new InfiniteInventory();
+    }
+
+    @Test
+    void snapshot_ofEmptyInventory_isEmpty() {
+        InventorySnapshot snapshot = inventory.snapshot();
+
+        assertTrue(snapshot.isEmpty());
+        assertEquals(0, snapshot.getUniqueItemCount());
+        assertFalse(snapshot.getAllEntries().iterator().hasNext());
+    }
+
+    @Test
+    void snapshot_reflectsContentsAtCreation() {
+        inventory.addItem(new ItemStack(Items.DIAMOND), 10);
+        inventory.addItem(named("Excalibur"), 2);
+
+        InventorySnapshot snapshot = inventory.snapshot();
+
+        assertEquals(10, snapshot.getCount(new ItemStack(Items.DIAMOND)));
+        assertEquals(2, snapshot.getCount(named("Excalibur")));
+        assertEquals(2, snapshot.getUniqueItemCount());
+        assertEquals(12, snapshot.getTotalItemCount());
+        assertEquals(2, snapshot.getAllEntries().size());
+    }
+
+    @Test
+    void laterWrites_doNotChangeSnapshot() {
+        inventory.addItem(new ItemStack(Items.DIAMOND), 10);
+        inventory.addItem(named("Excalibur"), 2);
+        InventorySnapshot snapshot = inventory.snapshot();
+
+        inventory.addItem(new ItemStack(Items.DIAMOND), 5);
+        inventory.removeItem(named("Excalibur"), 2);
+        inventory.addItem(new ItemStack(Items.GOLD_INGOT), 3);
+        inventory.addItem(named("Durendal"), 1);
+
+        assertEquals(10, snapshot.getCount(new ItemStack(Items.DIAMOND)));
+        assertEquals(2, snapshot.getCount(named("Excalibur")));
+        assertEquals(0, snapshot.getCount(new ItemStack(Items.GOLD_INGOT)));
+        assertEquals(0, snapshot.getCount(named("Durendal")));
+        assertEquals(2, snapshot.getAllEntries().size());
+
+        assertEquals(15, inventory.getCount(new ItemStack(Items.DIAMOND)));
+        assertEquals(0, inventory.getCount(named("Excalibur")));
+    }
+
+    @Test
+    void clear_doesNotChangeSnapshot() {
+        inventory.addItem(new ItemStack(Items.DIAMOND), 10);
+        inventory.addItem(named("Excalibur"), 2);
+        InventorySnapshot snapshot = inventory.snapshot();
+
+        inventory.clear();
+
+        assertTrue(inventory.isEmpty());
+        assertEquals(10, snapshot.getCount(new ItemStack(Items.DIAMOND)));
+        assertEquals(2, snapshot.getCount(named("Excalibur")));
+    }
+
+    @Test
+    void tableGrowth_doesNotChangeSnapshot() {
+        inventory.addItem(named("First"), 1);
+        InventorySnapshot snapshot = inventory.snapshot();
+
+        for (int i = 0; i < 1000; i++) {
+            inventory.addItem(named("Grow " + i), 1);
+        }
+
+        assertEquals(1, snapshot.getUniqueItemCount());
+        assertEquals(1, snapshot.getAllEntries().size());
+        assertEquals(1001, inventory.getUniqueItemCount());
+    }
+
+    @Test
+    void successiveSnapshots_areIndependent() {
+        inventory.addItem(new ItemStack(Items.DIAMOND), 1);
+        InventorySnapshot first = inventory.snapshot();
+        inventory.addItem(new ItemStack(Items.DIAMOND), 1);
+        InventorySnapshot second = inventory.snapshot();
+        inventory.addItem(new ItemStack(Items.DIAMOND), 1);
+
+        assertEquals(1, first.getCount(new ItemStack(Items.DIAMOND)));
+        assertEquals(2, second.getCount(new ItemStack(Items.DIAMOND)));
+        assertEquals(3, inventory.getCount(new ItemStack(Items.DIAMOND)));
+    }
+
+    @Test
+    void snapshot_keepsLastModifiedTicks() {
+        long[] now = {100};
+        inventory.setClock(() -> now[0]);
+        inventory.addItem(new ItemStack(Items.DIAMOND), 1);
+        inventory.addItem(named("Excalibur"), 1);
+        ItemStack damaged = new ItemStack(Items.BOW);
+        damaged.setDamageValue(3);
+        inventory.addItem(damaged, 1);
+
+        InventorySnapshot snapshot = inventory.snapshot();
+        now[0] = 200;
+        inventory.addItem(new ItemStack(Items.DIAMOND), 1);
+        inventory.addItem(named("Excalibur"), 1);
+        inventory.addItem(damaged, 1);
+
+        assertEquals(100, snapshot.getLastModified(new ItemStack(Items.DIAMOND)));
+        assertEquals(100, snapshot.getLastModified(named("Excalibur")));
+        assertEquals(100, snapshot.getLastModified(damaged));
+        assertEquals(200, inventory.getLastModified(new ItemStack(Items.DIAMOND)));
+    }
+
+    @Test
+    void clear_doesNotChangeSnapshotTicks() {
+        long[] now = {100};
+        inventory.setClock(() -> now[0]);
+        inventory.addItem(new ItemStack(Items.DIAMOND), 1);
+
+        InventorySnapshot snapshot = inventory.snapshot();
+        inventory.clear();
+
+        assertEquals(100, snapshot.getLastModified(new ItemStack(Items.DIAMOND)));
+        assertEquals(0, snapshot.getLastModified(new ItemStack(Items.EMERALD)));
+    }
+
+    @Test
+    void serializeSnapshot_matchesLiveSerialization() {
+        inventory.addItem(new ItemStack(Items.DIAMOND), 10);
+        inventory.addItem(named("Excalibur"), 2);
+
+        CompoundTag live = InfiniteInventorySerializer.serialize(inventory, registryAccess);
+        CompoundTag fromSnapshot = InfiniteInventorySerializer.serializeSnapshot(inventory.snapshot(), registryAccess);
+
+        assertEquals(live, fromSnapshot);
+    }
+
+    @Test
+    void serializeSnapshot_keepsTicks() {
+        inventory.setClock(() -> 1234);
+        inventory.addItem(new ItemStack(Items.DIAMOND), 10);
+        inventory.addItem(named("Excalibur"), 2);
+
+        CompoundTag tag = InfiniteInventorySerializer.serializeSnapshot(inventory.snapshot(), registryAccess);
+        InfiniteInventory restored = InfiniteInventorySerializer.deserialize(tag, registryAccess);
+
+        assertEquals(1234, restored.getLastModified(new ItemStack(Items.DIAMOND)));
+        assertEquals(1234, restored.getLastModified(named("Excalibur")));
+    }
+
+    @Test
+    void snapshot_canBeReadOnAnotherThreadWhileInventoryChanges() throws Exception {
+        for (int i = 0; i < 200; i++) {
+            inventory.addItem(named("Worker " + i), i + 1);
+        }
+        InventorySnapshot snapshot = inventory.snapshot();
+
+        CompletableFuture<CompoundTag> save = CompletableFuture.supplyAsync(
+                () -> InfiniteInventorySerializer.serializeSnapshot(snapshot, registryAccess));
+        for (int i = 0; i < 200; i++) {
+            inventory.removeItem(named("Worker " + i), 1);
+        }
+
+        InfiniteInventory loaded = InfiniteInventorySerializer.deserialize(save.get(), registryAccess);
+        assertEquals(200, loaded.getUniqueItemCount());
+        assertEquals(200L * 201 / 2, loaded.getTotalItemCount());
+    }
+}
@@ -0,0 +1,122 @@
+package com.chayut.bottomlessinventory.inventory;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.core.component.DataComponents;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the incrementally maintained InventoryStats of an InfiniteInventory.
+ */
+class InventoryStatsTest {
+
+    @BeforeAll
+    static void setupMinecraft() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+    }
+
+    private InfiniteInventory inventory;
+    private InventoryStats stats;
+
+    @BeforeEach
+    void setUp() {
+        inventory = new InfiniteInventory();
+        stats = inventory.getStats();
+    }
+
+    @Test
+    void newInventory_hasZeroStats() {
+        assertEquals(0, stats.getTotalItemCount());
+        assertEquals(0, stats.getUniqueItemCount());
+        assertTrue(stats.getNamespaces().isEmpty());
+    }
+
+    @Test
+    void addAndRemove_keepTotalsInSync() {
+        ItemStack named = new ItemStack(Items.DIAMOND_SWORD, 1);
+        named.set(DataComponents.CUSTOM_NAME, Component.literal("Blade"));
+
+        inventory.addItem(new ItemStack(Items.DIAMOND), 100);
+        inventory.addItem(new ItemStack(Items.STONE), 50);
+        inventory.addItem(named, 2);
+        inventory.removeItem(new ItemStack(Items.STONE), 20);
+
+        assertEquals(132, stats.getTotalItemCount());
+        assertEquals(3, stats.getUniqueItemCount());
+        assertEquals(inventory.getUniqueItemCount(), stats.getUniqueItemCount());
+    }
+
+    @Test
+    void removingLastItem_decrementsUniqueCount() {
+        inventory.addItem(new ItemStack(Items.DIAMOND), 10);
+
+        inventory.removeItem(new ItemStack(Items.DIAMOND), 10);
+
+        assertEquals(0, stats.getUniqueItemCount());
+        assertEquals(0, stats.getTotalItemCount());
+    }
+
+    @Test
+    void namespaceTotals_trackItemsPerNamespace() {
+        inventory.addItem(new ItemStack(Items.DIAMOND), 10);
+        inventory.addItem(new ItemStack(Items.STONE), 5);
+
+        assertEquals(15, stats.getNamespaceTotal("minecraft"));
+        assertEquals(0, stats.getNamespaceTotal("othermod"));
+        assertTrue(stats.getNamespaces().contains("minecraft"));
+    }
+
+    @Test
+    void namespaceTotals_emptyNamespaceIsDropped() {
+        inventory.addItem(new ItemStack(Items.DIAMOND), 10);
+        inventory.removeItem(new ItemStack(Items.DIAMOND), 10);
+
+        assertFalse(stats.getNamespaces().contains("minecraft"));
+    }
+
+    @Test
+    void totals_saturateInsteadOfWrapping() {
+        inventory.addItem(new ItemStack(Items.DIAMOND), Long.MAX_VALUE);
+        inventory.addItem(new ItemStack(Items.STONE), Long.MAX_VALUE);
+
+        assertEquals(Long.MAX_VALUE, stats.getTotalItemCount());
+        assertEquals(Long.MAX_VALUE, stats.getNamespaceTotal("minecraft"));
+    }
+
+    @Test
+    void totals_recoverExactValueAfterSaturation() {
+        inventory.addItem(new ItemStack(Items.DIAMOND), Long.MAX_VALUE);
+        inventory.addItem(new ItemStack(Items.STONE), 1000);
+
+        inventory.removeItem(new ItemStack(Items.DIAMOND), Long.MAX_VALUE);
+
+        assertEquals(1000, stats.getTotalItemCount());
+    }
+
+    @Test
+    void entryCount_saturatesAtMaxValue() {
+        inventory.addItem(new ItemStack(Items.DIAMOND), Long.MAX_VALUE);
+        inventory.addItem(new ItemStack(Items.DIAMOND), 10);
+
+        assertEquals(Long.MAX_VALUE, inventory.getCount(new ItemStack(Items.DIAMOND)));
+    }
+
+    @Test
+    void clear_resetsStats() {
+        inventory.addItem(new ItemStack(Items.DIAMOND), 10);
+
+        inventory.clear();
+
+        assertEquals(0, stats.getTotalItemCount());
+        assertEquals(0, stats.getUniqueItemCount());
+        assertTrue(stats.getNamespaces().isEmpty());
+    }
+}
@@ -0,0 +1,200 @@
+package com.chayut.bottomlessinventory.inventory;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.core.component.DataComponents;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.chayut.bottomlessinventory.inventory.TestStacks.named;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for InventoryTransaction commit and rollback.
+ */
+class InventoryTransactionTest {
+
+    @BeforeAll
+    static void setupMinecraft() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+    }
+
+    private InfiniteInventory inventory;
+
+    @BeforeEach
+    void setUp() {
+        inventory = new InfiniteInventory();
+        inventory.addItem(new ItemStack(Items.IRON_INGOT), 10);
+        inventory.addItem(new ItemStack(Items.STICK), 4);
+    }
+
+    @Test
+    void commit_keepsChangesAndReturnsThem() {
+        List<InventoryChange> changes;
+        try (InventoryTransaction tx = inventory.beginTransaction()) {
+            assertTrue(tx.removeExactly(new ItemStack(Items.IRON_INGOT), 3));
+            assertTrue(tx.removeExactly(new ItemStack(Items.STICK), 2));
+            assertTrue(tx.add(new ItemStack(Items.IRON_PICKAXE), 1));
+            changes = tx.commit();
+        }
+
+        assertEquals(3, changes.size());
+        assertEquals(7, inventory.getCount(new ItemStack(Items.IRON_INGOT)));
+        assertEquals(2, inventory.getCount(new ItemStack(Items.STICK)));
+        assertEquals(1, inventory.getCount(new ItemStack(Items.IRON_PICKAXE)));
+    }
+
+    @Test
+    void rollback_restoresTouchedKeys() {
+        InventoryTransaction tx = inventory.beginTransaction();
+        tx.remove(new ItemStack(Items.IRON_INGOT), 10);
+        tx.add(new ItemStack(Items.DIAMOND), 5);
+
+        tx.rollback();
+
+        assertEquals(10, inventory.getCount(new ItemStack(Items.IRON_INGOT)));
+        assertEquals(0, inventory.getCount(new ItemStack(Items.DIAMOND)));
+        assertEquals(2, inventory.getUniqueItemCount());
+        assertEquals(14, inventory.getTotalItemCount());
+        assertFalse(tx.isOpen());
+    }
+
+    @Test
+    void close_withoutCommit_rollsBack() {
+        try (InventoryTransaction tx = inventory.beginTransaction()) {
+            assertTrue(tx.removeExactly(new ItemStack(Items.IRON_INGOT), 3));
+            // Not enough sticks: give up without committing
+            assertFalse(tx.removeExactly(new ItemStack(Items.STICK), 5));
+        }
+
+        assertEquals(10, inventory.getCount(new ItemStack(Items.IRON_INGOT)));
+        assertEquals(4, inventory.getCount(new ItemStack(Items.STICK)));
+    }
+
+    @Test
+    void removeExactly_withInsufficientItems_removesNothing() {
+        try (InventoryTransaction tx = inventory.beginTransaction()) {
+            assertFalse(tx.removeExactly(new ItemStack(Items.STICK), 5));
+            assertEquals(4, inventory.getCount(new ItemStack(Items.STICK)));
+            assertTrue(tx.commit().isEmpty());
+        }
+    }
+
+    @Test
+    void rollback_restoresRemovedComponentVariant() {
+        ItemStack named = new ItemStack(Items.DIAMOND_SWORD);
+        named.set(DataComponents.CUSTOM_NAME, Component.literal("Excalibur"));
+        inventory.addItem(named, 1);
+
+        try (InventoryTransaction tx = inventory.beginTransaction()) {
+            assertEquals(1, tx.remove(named, 1));
+            assertFalse(inventory.contains(named));
+        }
+
+        assertEquals(1, inventory.getCount(named));
+    }
+
+    @Test
+    void rollback_leavesNoNetChangeInOtherJournals() {
+        ChangeJournal journal = inventory.openJournal();
+
+        try (InventoryTransaction tx = inventory.beginTransaction()) {
+            tx.remove(new ItemStack(Items.IRON_INGOT), 5);
+            tx.add(new ItemStack(Items.DIAMOND), 5);
+        }
+
+        assertFalse(journal.hasChanges());
+    }
+
+    @Test
+    void commit_isVisibleToOtherJournals() {
+        ChangeJournal journal = inventory.openJournal();
+
+        try (InventoryTransaction tx = inventory.beginTransaction()) {
+            tx.add(new ItemStack(Items.DIAMOND), 5);
+            tx.commit();
+        }
+
+        assertEquals(1, journal.drain().size());
+    }
+
+    @Test
+    void finishedTransaction_rejectsFurtherUse() {
+        InventoryTransaction tx = inventory.beginTransaction();
+        tx.commit();
+
+        assertThrows(IllegalStateException.class, () -> tx.add(new ItemStack(Items.DIAMOND), 1));
+        assertThrows(IllegalStateException.class, tx::commit);
+        assertThrows(IllegalStateException.class, tx::rollback);
+        assertDoesNotThrow(tx::close);
+    }
+
+    @Test
+    void changesAfterCommit_areNotRolledBack() {
+        InventoryTransaction tx = inventory.beginTransaction();
+        tx.add(new ItemStack(Items.DIAMOND), 5);
+        tx.commit();
+
+        inventory.addItem(new ItemStack(Items.DIAMOND), 5);
+        tx.close();
+
+        assertEquals(10, inventory.getCount(new ItemStack(Items.DIAMOND)));
+    }
+
+    @Test
+    void rollback_restoresLastModifiedTicks() {
+        long[] now = {100};
+        inventory.setClock(() -> now[0]);
+        inventory.addItem(new ItemStack(Items.GOLD_INGOT), 1);
+        long ironTick = inventory.getLastModified(new ItemStack(Items.IRON_INGOT));
+        now[0] = 500;
+
+        try (InventoryTransaction tx = inventory.beginTransaction()) {
+            tx.removeExactly(new ItemStack(Items.IRON_INGOT), 3);
+            tx.add(new ItemStack(Items.GOLD_INGOT), 2);
+            tx.remove(new ItemStack(Items.GOLD_INGOT), 2);
+        }
+
+        assertEquals(ironTick, inventory.getLastModified(new ItemStack(Items.IRON_INGOT)));
+        // Back at its start count, but restamped during the transaction
+        assertEquals(100, inventory.getLastModified(new ItemStack(Items.GOLD_INGOT)));
+    }
+
+    @Test
+    void rollback_ofAddToColdVariant_keepsItsTick() {
+        long[] now = {100};
+        inventory.setClock(() -> now[0]);
+        inventory.addItem(named("Cold"), 2);
+        now[0] = 1000;
+        InfiniteInventory cold = new InfiniteInventory();
+        inventory.spillColdEntries(cold, Long.MAX_VALUE, 0);
+        inventory.setColdTier(new InventoryColdTier(inventory, cold));
+
+        try (InventoryTransaction tx = inventory.beginTransaction()) {
+            assertTrue(tx.add(named("Cold"), 3));
+        }
+
+        // Paged in by the add, then rolled back to the count and tick it had on disk
+        assertEquals(2, inventory.getCount(named("Cold")));
+        assertEquals(100, inventory.getLastModified(named("Cold")));
+    }
+
+    @Test
+    void rollback_leavesRecentlyChangedAsItWas() {
+        List<ItemStackKey> before = inventory.getRecentlyChanged(10).stream().map(InfiniteInventoryEntry::getKey).toList();
+
+        try (InventoryTransaction tx = inventory.beginTransaction()) {
+            tx.removeExactly(new ItemStack(Items.IRON_INGOT), 3);
+            tx.add(new ItemStack(Items.DIAMOND), 1);
+        }
+
+        assertEquals(before, inventory.getRecentlyChanged(10).stream().map(InfiniteInventoryEntry::getKey).toList());
+    }
+}
@@ -0,0 +1,162 @@
+package com.chayut.bottomlessinventory.inventory;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.core.component.DataComponents;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the shared ItemStackKey pool (ItemStackKey.of / ItemStackKey.find).
+ * Uses randomly named stacks where a variant must not already be pooled by another test.
+ */
+class ItemStackKeyInternerTest {
+
+    @BeforeAll
+    static void setupMinecraft() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+    }
+
+    private static ItemStack uniquelyNamed(String prefix) {
+        ItemStack stack = new ItemStack(Items.DIAMOND_SWORD, 1);
+        stack.set(DataComponents.CUSTOM_NAME, Component.literal(prefix + " " + UUID.randomUUID()));
+        return stack;
+    }
+
+    // === of() Tests ===
+
+    @Test
+    void of_sameVariant_returnsSameInstance() {
+        ItemStackKey key1 = ItemStackKey.of(new ItemStack(Items.DIAMOND, 1));
+        ItemStackKey key2 = ItemStackKey.of(new ItemStack(Items.DIAMOND, 64));
+
+        assertSame(key1, key2);
+    }
+
+    @Test
+    void of_differentComponents_returnsDifferentKeys() {
+        ItemStackKey plain = ItemStackKey.of(new ItemStack(Items.DIAMOND_SWORD, 1));
+        ItemStackKey named = ItemStackKey.of(uniquelyNamed("Blade"));
+
+        assertNotSame(plain, named);
+        assertNotEquals(plain, named);
+    }
+
+    @Test
+    void of_equalsConstructedKey() {
+        ItemStack stack = uniquelyNamed("Equal");
+
+        ItemStackKey pooled = ItemStackKey.of(stack);
+        ItemStackKey constructed = new ItemStackKey(stack);
+
+        assertEquals(constructed, pooled);
+        assertEquals(constructed.hashCode(), pooled.hashCode());
+    }
+
+    @Test
+    void of_withNullOrEmptyStack_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> ItemStackKey.of(null));
+        assertThrows(IllegalArgumentException.class, () -> ItemStackKey.of(ItemStack.EMPTY));
+    }
+
+    // === find() Tests ===
+
+    @Test
+    void find_neverInternedVariant_returnsNull() {
+        assertNull(ItemStackKey.find(uniquelyNamed("Unseen")));
+    }
+
+    @Test
+    void find_afterOf_returnsCanonicalKey() {
+        ItemStack stack = uniquelyNamed("Seen");
+        ItemStackKey key = ItemStackKey.of(stack);
+
+        assertSame(key, ItemStackKey.find(stack.copy()));
+        assertSame(key, ItemStackKey.find(stack.getItem(), stack.getComponentsPatch()));
+    }
+
+    @Test
+    void find_withNullOrEmptyStack_returnsNull() {
+        assertNull(ItemStackKey.find(null));
+        assertNull(ItemStackKey.find(ItemStack.EMPTY));
+    }
+
+    @Test
+    void find_doesNotAddToPool() {
+        ItemStack stack = uniquelyNamed("Probe");
+
+        ItemStackKey.find(stack);
+
+        assertNull(ItemStackKey.find(stack));
+    }
+
+    // === Pool Growth Tests ===
+
+    @Test
+    void pool_manyVariants_allRemainFindable() {
+        List<ItemStackKey> keys = new ArrayList<>();
+        List<ItemStack> stacks = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            ItemStack stack = uniquelyNamed("Bulk " + i);
+            stacks.add(stack);
+            keys.add(ItemStackKey.of(stack));
+        }
+
+        for (int i = 0; i < stacks.size(); i++) {
+            assertSame(keys.get(i), ItemStackKey.find(stacks.get(i)));
+        }
+        assertTrue(ItemStackKey.pooledKeyCount() >= keys.size());
+    }
+
+    // === Concurrency Tests ===
+
+    @Test
+    void of_fromManyThreadsWhileGrowing_returnsOneInstancePerVariant() throws Exception {
+        int threads = 8;
+        List<ItemStack> stacks = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            stacks.add(uniquelyNamed("Contended " + i));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<ItemStackKey[]>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(executor.submit(() -> {
+                    ItemStackKey[] keys = new ItemStackKey[stacks.size()];
+                    for (int i = 0; i < keys.length; i++) {
+                        keys[i] = ItemStackKey.of(stacks.get(i));
+                        // Lookups race with the inserts (and resizes) of the other threads
+                        assertSame(keys[i], ItemStackKey.find(stacks.get(i)));
+                    }
+                    return keys;
+                }));
+            }
+
+            ItemStackKey[] first = results.get(0).get(30, TimeUnit.SECONDS);
+            for (Future<ItemStackKey[]> result : results) {
+                assertArrayEquals(first, result.get(30, TimeUnit.SECONDS));
+                ItemStackKey[] keys = result.get();
+                for (int i = 0; i < keys.length; i++) {
+                    assertSame(first[i], keys[i]);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -1,7 +1,13 @@
 package com.chayut.bottomlessinventory.inventory;
 
 import net.minecraft.SharedConstants;
+import net.minecraft.core.HolderLookup;
+import net.minecraft.core.RegistryAccess;
 import net.minecraft.core.component.DataComponents;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtAccounter;
+import net.minecraft.nbt.NbtIo;
 import net.minecraft.network.chat.Component;
 import net.minecraft.server.Bootstrap;
 import net.minecraft.world.item.ItemStack;
@@ -9,9 +15,15 @@ import net.minecraft.world.item.Items;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
 import java.util.HashMap;
 import java.util.Map;
 
+import static com.chayut.bottomlessinventory.inventory.TestStacks.named;
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -231,6 +243,13 @@ class ItemStackKeyTest {
         assertEquals(Items.GOLD_INGOT, key.getItem());
     }
 
+    @Test
+    void getNamespace_matchesRegistryNamespace() {
+        ItemStackKey key = ItemStackKey.of(new ItemStack(Items.GOLD_INGOT, 1));
+
+        assertEquals(BuiltInRegistries.ITEM.getKey(Items.GOLD_INGOT).getNamespace(), key.getNamespace());
+    }
+
     @Test
     void getComponents_returnsComponents() {
         ItemStack stack = new ItemStack(Items.DIAMOND, 1);
@@ -240,4 +259,117 @@ class ItemStackKeyTest {
 
         assertNotNull(key.getComponents());
     }
+
+    @Test
+    void getComponentsHash_matchesPatchHash() {
+        ItemStack stack = new ItemStack(Items.DIAMOND, 1);
+        stack.set(DataComponents.CUSTOM_NAME, Component.literal("Hashed"));
+
+        ItemStackKey key = new ItemStackKey(stack);
+
+        assertEquals(stack.getComponentsPatch().hashCode(), key.getComponentsHash());
+    }
+
+    // === Encoded Component Tests ===
+
+    @Test
+    void getEncodedComponents_encodesOncePerRegistryAccess() {
+        HolderLookup.Provider registryAccess = RegistryAccess.fromRegistryOfRegistries(BuiltInRegistries.REGISTRY);
+        ItemStackKey key = ItemStackKey.of(named("Encoded once"));
+
+        byte[] first = key.getEncodedComponents(registryAccess);
+
+        assertTrue(readTag(first).contains("minecraft:custom_name"));
+        assertSame(first, key.getEncodedComponents(registryAccess));
+    }
+
+    @Test
+    void getEncodedComponents_withOtherRegistryAccess_reencodes() {
+        ItemStackKey key = ItemStackKey.of(named("Encoded twice"));
+        byte[] first = key.getEncodedComponents(RegistryAccess.fromRegistryOfRegistries(BuiltInRegistries.REGISTRY));
+
+        byte[] second = key.getEncodedComponents(RegistryAccess.fromRegistryOfRegistries(BuiltInRegistries.REGISTRY));
+
+        assertNotSame(first, second);
+        assertArrayEquals(first, second);
+    }
+
+    @Test
+    void cacheEncodedComponents_isReturnedWithoutEncoding() {
+        HolderLookup.Provider registryAccess = RegistryAccess.fromRegistryOfRegistries(BuiltInRegistries.REGISTRY);
+        ItemStackKey key = ItemStackKey.of(named("Loaded"));
+        byte[] loaded = key.getEncodedComponents(RegistryAccess.fromRegistryOfRegistries(BuiltInRegistries.REGISTRY)).clone();
+
+        key.cacheEncodedComponents(registryAccess, loaded);
+
+        assertSame(loaded, key.getEncodedComponents(registryAccess));
+    }
+
+    @Test
+    void cacheEncodedComponents_keepsExistingEncoding() {
+        HolderLookup.Provider registryAccess = RegistryAccess.fromRegistryOfRegistries(BuiltInRegistries.REGISTRY);
+        ItemStackKey key = ItemStackKey.of(named("Already encoded"));
+        byte[] encoded = key.getEncodedComponents(registryAccess);
+
+        key.cacheEncodedComponents(registryAccess, encoded.clone());
+
+        assertSame(encoded, key.getEncodedComponents(registryAccess));
+    }
+
+    @Test
+    void getEncodedComponents_doesNotKeepRegistryAccessAlive() throws InterruptedException {
+        ItemStackKey key = ItemStackKey.of(named("Outlives the world"));
+        WeakReference<HolderLookup.Provider> registryAccess = encodeWithDiscardedRegistryAccess(key);
+
+        for (int i = 0; i < 50 && registryAccess.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertNull(registryAccess.get());
+    }
+
+    private static CompoundTag readTag(byte[] encoded) {
+        try {
+            return (CompoundTag) NbtIo.readAnyTag(new DataInputStream(new ByteArrayInputStream(encoded)),
+                    NbtAccounter.unlimitedHeap());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static WeakReference<HolderLookup.Provider> encodeWithDiscardedRegistryAccess(ItemStackKey key) {
+        HolderLookup.Provider registryAccess = RegistryAccess.fromRegistryOfRegistries(BuiltInRegistries.REGISTRY);
+        key.getEncodedComponents(registryAccess);
+        return new WeakReference<>(registryAccess);
+    }
+
+    // === Collision-Heavy Tests ===
+
+    @Test
+    void equals_sameComponentsDifferentItems_returnsFalse() {
+        // Both patches are empty, so only item identity separates the keys
+        ItemStackKey sword = new ItemStackKey(new ItemStack(Items.DIAMOND_SWORD, 1));
+        ItemStackKey pickaxe = new ItemStackKey(new ItemStack(Items.DIAMOND_PICKAXE, 1));
+
+        assertEquals(sword.getComponentsHash(), pickaxe.getComponentsHash());
+        assertNotEquals(sword, pickaxe);
+    }
+
+    @Test
+    void hashMapUsage_manyVariantsOfSameItem_allDistinct() {
+        Map<ItemStackKey, Integer> map = new HashMap<>();
+        for (int i = 0; i < 2000; i++) {
+            ItemStack stack = new ItemStack(Items.DIAMOND_SWORD, 1);
+            stack.set(DataComponents.CUSTOM_NAME, Component.literal("Sword #" + i));
+            map.put(new ItemStackKey(stack), i);
+        }
+
+        assertEquals(2000, map.size());
+        for (int i = 0; i < 2000; i++) {
+            ItemStack probe = new ItemStack(Items.DIAMOND_SWORD, 1);
+            probe.set(DataComponents.CUSTOM_NAME, Component.literal("Sword #" + i));
+            assertEquals(i, map.get(new ItemStackKey(probe)));
+        }
+    }
 }
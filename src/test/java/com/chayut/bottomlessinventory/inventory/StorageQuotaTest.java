@@ -0,0 +1,148 @@
+package com.chayut.bottomlessinventory.inventory;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+
+import static com.chayut.bottomlessinventory.inventory.TestStacks.named;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for StorageQuota enforcement in InfiniteInventory.
+ */
+class StorageQuotaTest {
+
+    @BeforeAll
+    static void setupMinecraft() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+    }
+
+    private InfiniteInventory inventory;
+
+    @BeforeEach
+    void setUp() {
+        inventory = new InfiniteInventory();
+    }
+
+    @Test
+    void defaultQuota_isUnlimited() {
+        assertTrue(inventory.getQuota().isUnlimited());
+        assertEquals(Long.MAX_VALUE, inventory.getAcceptableCount(new ItemStack(Items.STONE), Long.MAX_VALUE));
+    }
+
+    @Test
+    void maxUniqueItems_refusesNewVariantsButNotExistingOnes() {
+        inventory.setQuota(new StorageQuota(2, 0, 0));
+        assertTrue(inventory.addItem(named("A"), 1));
+        assertTrue(inventory.addItem(named("B"), 1));
+
+        assertFalse(inventory.addItem(named("C"), 1));
+        assertEquals(0, inventory.getAcceptableCount(named("C"), 5));
+        assertTrue(inventory.addItem(named("A"), 100));
+        assertEquals(2, inventory.getUniqueItemCount());
+    }
+
+    @Test
+    void maxTotalItems_allowsPartialAmounts() {
+        inventory.setQuota(new StorageQuota(0, 100, 0));
+        inventory.addItem(new ItemStack(Items.STONE), 90);
+
+        assertEquals(10, inventory.getAcceptableCount(new ItemStack(Items.DIRT), 64));
+        assertFalse(inventory.addItem(new ItemStack(Items.DIRT), 64));
+        assertTrue(inventory.addItem(new ItemStack(Items.DIRT), 10));
+        assertEquals(0, inventory.getAcceptableCount(new ItemStack(Items.DIRT), 1));
+        assertEquals(100, inventory.getTotalItemCount());
+    }
+
+    @Test
+    void maxEstimatedBytes_refusesVariantsThatDoNotFit() {
+        long limit = inventory.estimateMemory().totalBytes() + 2_000;
+        inventory.setQuota(new StorageQuota(0, 0, limit));
+
+        int added = 0;
+        while (inventory.addItem(named("Bytes " + added), 1)) {
+            added++;
+            assertTrue(added < 1000, "quota never refused a new variant");
+        }
+
+        assertTrue(added > 0);
+        assertTrue(inventory.estimateMemory().totalBytes() <= limit);
+        // Plain stacks live in the dense arrays and do not grow the estimate
+        assertTrue(inventory.addItem(new ItemStack(Items.STONE), 1));
+    }
+
+    @Test
+    void quota_doesNotLimitRemovals() {
+        inventory.addItem(named("Kept"), 10);
+        inventory.setQuota(new StorageQuota(1, 5, 1));
+
+        assertEquals(10, inventory.removeItem(named("Kept"), 10));
+    }
+
+    @Test
+    void quota_countsColdTier() {
+        inventory.setQuota(new StorageQuota(2, 100, 0));
+        inventory.setColdTier(fixedColdTier(1, 60));
+        assertTrue(inventory.addItem(named("A"), 1));
+
+        // One variant and 60 items are on disk, so only the hot remainder is left
+        assertFalse(inventory.addItem(named("B"), 1));
+        assertEquals(39, inventory.getAcceptableCount(named("A"), 64));
+    }
+
+    @Test
+    void quota_withEmptyColdTier_isUnchanged() {
+        inventory.setQuota(new StorageQuota(2, 0, 0));
+        inventory.setColdTier(fixedColdTier(0, 0));
+
+        assertTrue(inventory.addItem(named("A"), 1));
+        assertTrue(inventory.addItem(named("B"), 1));
+    }
+
+    /**
+     * A cold tier with fixed contents that can not be paged in.
+     */
+    private static ColdTier fixedColdTier(int variants, long items) {
+        return new ColdTier() {
+            @Override
+            public int getVariantCount() {
+                return variants;
+            }
+
+            @Override
+            public long getItemCount() {
+                return items;
+            }
+
+            @Override
+            public long getEstimatedBytes() {
+                return 0;
+            }
+
+            @Override
+            public boolean mayContain(Item item) {
+                return false;
+            }
+
+            @Override
+            public int pageIn(Item item) {
+                return 0;
+            }
+        };
+    }
+
+    @Test
+    void setQuota_null_meansUnlimited() {
+        inventory.setQuota(new StorageQuota(1, 1, 1));
+        inventory.setQuota(null);
+
+        assertSame(StorageQuota.UNLIMITED, inventory.getQuota());
+    }
+}
@@ -0,0 +1,26 @@
+package com.chayut.bottomlessinventory.inventory;
+
+import net.minecraft.core.component.DataComponents;
+import net.minecraft.network.chat.Component;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+
+/**
+ * Stacks shared by the storage tests. The registries must be bootstrapped first.
+ */
+public final class TestStacks {
+    private TestStacks() {
+    }
+
+    /**
+     * Creates a named diamond sword, a component variant that differs from others only in its name.
+     *
+     * @param name The custom name
+     * @return A new stack of one
+     */
+    public static ItemStack named(String name) {
+        ItemStack stack = new ItemStack(Items.DIAMOND_SWORD);
+        stack.set(DataComponents.CUSTOM_NAME, Component.literal(name));
+        return stack;
+    }
+}
@@ -0,0 +1,165 @@
+package com.chayut.bottomlessinventory.inventory;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.item.ItemStack;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static com.chayut.bottomlessinventory.inventory.TestStacks.named;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the open-addressing VariantTable backing InfiniteInventory.
+ */
+class VariantTableTest {
+
+    @BeforeAll
+    static void setupMinecraft() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+    }
+
+    private VariantTable table;
+
+    @BeforeEach
+    void setUp() {
+        table = new VariantTable();
+    }
+
+    @Test
+    void newTable_isEmpty() {
+        assertEquals(0, table.size());
+        assertEquals(0, table.get(ItemStackKey.of(named("Missing"))));
+        assertEquals(-1, table.indexOf(ItemStackKey.of(named("Missing"))));
+    }
+
+    @Test
+    void put_newKey_storesCount() {
+        ItemStackKey key = ItemStackKey.of(named("A"));
+
+        long previous = table.put(key, 42);
+
+        assertEquals(0, previous);
+        assertEquals(42, table.get(key));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    void put_existingKey_replacesCountAndReturnsPrevious() {
+        ItemStackKey key = ItemStackKey.of(named("A"));
+        table.put(key, 42);
+
+        long previous = table.put(key, 7);
+
+        assertEquals(42, previous);
+        assertEquals(7, table.get(key));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    void put_zeroCount_removesKey() {
+        ItemStackKey key = ItemStackKey.of(named("A"));
+        table.put(key, 42);
+
+        table.put(key, 0);
+
+        assertEquals(0, table.get(key));
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    void put_zeroCountForAbsentKey_doesNothing() {
+        table.put(ItemStackKey.of(named("A")), 0);
+
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    void get_withEqualNonCanonicalKey_findsEntry() {
+        ItemStack stack = named("Equal");
+        table.put(ItemStackKey.of(stack), 5);
+
+        assertEquals(5, table.get(new ItemStackKey(stack)));
+    }
+
+    @Test
+    void manyKeys_growAndStayFindable() {
+        List<ItemStackKey> keys = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            ItemStackKey key = ItemStackKey.of(named("Grow " + i));
+            keys.add(key);
+            table.put(key, i + 1);
+        }
+
+        assertEquals(5000, table.size());
+        for (int i = 0; i < keys.size(); i++) {
+            assertEquals(i + 1, table.get(keys.get(i)));
+        }
+    }
+
+    @Test
+    void randomPutsAndRemovals_matchHashMap() {
+        Random random = new Random(1234);
+        List<ItemStackKey> keys = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            keys.add(ItemStackKey.of(named("Random " + i)));
+        }
+
+        Map<ItemStackKey, Long> expected = new HashMap<>();
+        for (int step = 0; step < 20_000; step++) {
+            ItemStackKey key = keys.get(random.nextInt(keys.size()));
+            long count = random.nextInt(4) == 0 ? 0 : random.nextInt(1000) + 1;
+
+            table.put(key, count);
+            if (count == 0) {
+                expected.remove(key);
+            } else {
+                expected.put(key, count);
+            }
+        }
+
+        assertEquals(expected.size(), table.size());
+        for (ItemStackKey key : keys) {
+            assertEquals(expected.getOrDefault(key, 0L), table.get(key));
+        }
+    }
+
+    @Test
+    void slotIteration_visitsEveryStoredKeyOnce() {
+        for (int i = 0; i < 100; i++) {
+            table.put(ItemStackKey.of(named("Iterate " + i)), i + 1);
+        }
+
+        int seen = 0;
+        long total = 0;
+        for (int slot = 0; slot < table.capacity(); slot++) {
+            if (table.keyAt(slot) != null) {
+                seen++;
+                total += table.countAt(slot);
+            }
+        }
+
+        assertEquals(100, seen);
+        assertEquals(100 * 101 / 2, total);
+    }
+
+    @Test
+    void clear_removesEverything() {
+        for (int i = 0; i < 100; i++) {
+            table.put(ItemStackKey.of(named("Clear " + i)), 1);
+        }
+
+        table.clear();
+
+        assertEquals(0, table.size());
+        assertEquals(0, table.get(ItemStackKey.of(named("Clear 5"))));
+    }
+}
@@ -1,10 +1,12 @@
 package com.chayut.bottomlessinventory.network;
 
 import com.chayut.bottomlessinventory.inventory.InfiniteInventory;
+import com.chayut.bottomlessinventory.inventory.StorageQuota;
 import com.chayut.bottomlessinventory.network.packets.InventoryActionPacket;
 import com.chayut.bottomlessinventory.network.packets.SyncInventoryPacket;
 import net.minecraft.SharedConstants;
 import net.minecraft.server.Bootstrap;
+import net.minecraft.world.SimpleContainer;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.item.Items;
 import org.junit.jupiter.api.BeforeAll;
@@ -281,6 +283,36 @@ class InventorySyncHandlerTest {
         assertTrue(inventory.isEmpty());
     }
 
+    @Test
+    void depositFrom_movesSlotsThenCarriedStack() {
+        InfiniteInventory inventory = new InfiniteInventory();
+        SimpleContainer slots = new SimpleContainer(new ItemStack(Items.DIAMOND, 10), new ItemStack(Items.DIRT, 5));
+        ItemStack carried = new ItemStack(Items.DIAMOND, 8);
+
+        long moved = InventorySyncHandler.depositFrom(inventory, slots, carried, new ItemStack(Items.DIAMOND), 15);
+
+        assertEquals(15, moved);
+        assertEquals(15, inventory.getCount(new ItemStack(Items.DIAMOND)));
+        assertTrue(slots.getItem(0).isEmpty());
+        assertEquals(5, slots.getItem(1).getCount());
+        assertEquals(3, carried.getCount());
+    }
+
+    @Test
+    void depositFrom_refusedByQuota_leavesItemsWithPlayer() {
+        InfiniteInventory inventory = new InfiniteInventory();
+        inventory.setQuota(new StorageQuota(0, 10, 0));
+        SimpleContainer slots = new SimpleContainer(new ItemStack(Items.DIAMOND, 32));
+        ItemStack carried = new ItemStack(Items.DIAMOND, 4);
+
+        long moved = InventorySyncHandler.depositFrom(inventory, slots, carried, new ItemStack(Items.DIAMOND), 36);
+
+        assertEquals(0, moved);
+        assertEquals(32, slots.getItem(0).getCount());
+        assertEquals(4, carried.getCount());
+        assertTrue(inventory.isEmpty());
+    }
+
     // === Sync Packet Entry Tests ===
 
     @Test
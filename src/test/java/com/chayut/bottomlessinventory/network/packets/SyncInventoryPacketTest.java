@@ -1,6 +1,8 @@
 package com.chayut.bottomlessinventory.network.packets;
 
+import com.chayut.bottomlessinventory.inventory.ChangeJournal;
 import com.chayut.bottomlessinventory.inventory.InfiniteInventory;
+import com.chayut.bottomlessinventory.inventory.InfiniteInventoryEntry;
 import com.chayut.bottomlessinventory.network.packets.SyncInventoryPacket.SyncEntry;
 import com.chayut.bottomlessinventory.network.packets.SyncInventoryPacket.SyncType;
 import io.netty.buffer.Unpooled;
@@ -180,6 +182,24 @@ class SyncInventoryPacketTest {
         assertTrue(packet.isCompatibleVersion());
     }
 
+    @Test
+    void fullSync_withColdEntries_addsThemToStoredCounts() {
+        InfiniteInventory inventory = new InfiniteInventory();
+        inventory.addItem(new ItemStack(Items.DIAMOND, 1), 100);
+        ItemStack named = new ItemStack(Items.DIAMOND_SWORD, 1);
+        named.set(DataComponents.CUSTOM_NAME, Component.literal("cold"));
+        List<InfiniteInventoryEntry> cold = List.of(
+                new InfiniteInventoryEntry(new ItemStack(Items.DIAMOND, 1), 5),
+                new InfiniteInventoryEntry(named, 2));
+
+        SyncInventoryPacket packet = SyncInventoryPacket.fullSync(inventory, cold);
+
+        assertEquals(2, packet.getEntryCount());
+        assertEquals(105, packet.entries().get(0).count());
+        assertEquals(2, packet.entries().get(1).count());
+        assertTrue(ItemStack.isSameItemSameComponents(named, packet.entries().get(1).stack()));
+    }
+
     @Test
     void fullSync_fromEmptyInventory_createsEmptyPacket() {
         InfiniteInventory inventory = new InfiniteInventory();
@@ -221,6 +241,24 @@ class SyncInventoryPacketTest {
         assertEquals(500L, packet.entries().get(0).count());
     }
 
+    @Test
+    void fromChanges_createsIncrementalPacketWithNewCounts() {
+        InfiniteInventory inventory = new InfiniteInventory();
+        inventory.addItem(new ItemStack(Items.GOLD_INGOT, 1), 5);
+        ChangeJournal journal = inventory.openJournal();
+
+        inventory.addItem(new ItemStack(Items.DIAMOND, 1), 150);
+        inventory.removeItem(new ItemStack(Items.GOLD_INGOT, 1), 5);
+
+        SyncInventoryPacket packet = SyncInventoryPacket.fromChanges(journal.drain());
+
+        assertEquals(SyncType.INCREMENTAL, packet.syncType());
+        assertEquals(2, packet.getEntryCount());
+        assertTrue(ItemStack.isSameItemSameComponents(new ItemStack(Items.DIAMOND), packet.entries().get(0).stack()));
+        assertEquals(150L, packet.entries().get(0).count());
+        assertEquals(0L, packet.entries().get(1).count()); // Remove signal
+    }
+
     @Test
     void emptySync_createsCorrectPacket() {
         SyncInventoryPacket packet = SyncInventoryPacket.emptySync();